@@ -814,6 +814,73 @@ END;
 $$;
 
 
+--
+-- Name: update_resourcestock(bigint, bigint, numeric, numeric, numeric, numeric); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_resourcestock(_location_id bigint, _product_id bigint, _quantity numeric, _quantityinadditionalunit numeric, _reservedquantity numeric, _totalvalue numeric) RETURNS void
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+	IF _location_id IS NULL OR _product_id IS NULL THEN
+		RETURN;
+	END IF;
+
+	INSERT INTO materialflowresources_resourcestock (location_id, product_id, quantity, quantityinadditionalunit, reservedquantity, totalvalue)
+		VALUES (_location_id, _product_id, _quantity, _quantityinadditionalunit, _reservedquantity, _totalvalue)
+		ON CONFLICT (location_id, product_id) DO UPDATE SET
+			quantity = materialflowresources_resourcestock.quantity + EXCLUDED.quantity,
+			quantityinadditionalunit = materialflowresources_resourcestock.quantityinadditionalunit + EXCLUDED.quantityinadditionalunit,
+			reservedquantity = materialflowresources_resourcestock.reservedquantity + EXCLUDED.reservedquantity,
+			totalvalue = materialflowresources_resourcestock.totalvalue + EXCLUDED.totalvalue;
+END;
+$$;
+
+
+--
+-- Name: update_resourcestock_for_reservation_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_resourcestock_for_reservation_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') THEN
+		PERFORM update_resourcestock(OLD.location_id, OLD.product_id, 0, 0, -COALESCE(OLD.quantity, 0), 0);
+	END IF;
+
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		PERFORM update_resourcestock(NEW.location_id, NEW.product_id, 0, 0, COALESCE(NEW.quantity, 0), 0);
+	END IF;
+
+	RETURN NULL;
+END;
+$$;
+
+
+--
+-- Name: update_resourcestock_for_resource_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_resourcestock_for_resource_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') THEN
+		PERFORM update_resourcestock(OLD.location_id, OLD.product_id, -COALESCE(OLD.quantity, 0),
+			-COALESCE(OLD.quantityinadditionalunit, 0), 0, -COALESCE(OLD.quantity * OLD.price, 0));
+	END IF;
+
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		PERFORM update_resourcestock(NEW.location_id, NEW.product_id, COALESCE(NEW.quantity, 0),
+			COALESCE(NEW.quantityinadditionalunit, 0), 0, COALESCE(NEW.quantity * NEW.price, 0));
+	END IF;
+
+	RETURN NULL;
+END;
+$$;
+
+
 --
 -- Name: generate_arch_tables(text, text, integer); Type: FUNCTION; Schema: public; Owner: -
 --
@@ -16108,7 +16175,11 @@ CREATE SEQUENCE materialflowresources_resourcedto_id_seq
 CREATE TABLE materialflowresources_resourcestock (
     id bigint NOT NULL,
     location_id bigint,
-    product_id bigint
+    product_id bigint,
+    quantity numeric(14,5) DEFAULT (0)::numeric NOT NULL,
+    quantityinadditionalunit numeric(14,5) DEFAULT (0)::numeric NOT NULL,
+    reservedquantity numeric(14,5) DEFAULT (0)::numeric NOT NULL,
+    totalvalue numeric(19,5) DEFAULT (0)::numeric NOT NULL
 );
 
 
@@ -16160,20 +16231,6 @@ CREATE VIEW materialflowresources_resourcestockdto AS
             sum(warehouseminimalstate_warehouseminimumstate.minimumstate) AS quantity
            FROM warehouseminimalstate_warehouseminimumstate
           GROUP BY warehouseminimalstate_warehouseminimumstate.product_id, warehouseminimalstate_warehouseminimumstate.location_id
-        ), quantities AS (
-         SELECT materialflowresources_resource.product_id,
-            materialflowresources_resource.location_id,
-            sum(materialflowresources_resource.quantity) AS quantity,
-            sum(materialflowresources_resource.quantityinadditionalunit) AS quantityinadditionalunit,
-            sum((materialflowresources_resource.quantity * materialflowresources_resource.price)) AS totalvalue
-           FROM materialflowresources_resource
-          GROUP BY materialflowresources_resource.product_id, materialflowresources_resource.location_id
-        ), reserved_quantities AS (
-         SELECT materialflowresources_reservation.product_id,
-            materialflowresources_reservation.location_id,
-            sum(materialflowresources_reservation.quantity) AS quantity
-           FROM materialflowresources_reservation
-          GROUP BY materialflowresources_reservation.product_id, materialflowresources_reservation.location_id
         ), ordered_quantities AS (
          SELECT dop.product_id,
             dd.location_id,
@@ -16188,22 +16245,20 @@ CREATE VIEW materialflowresources_resourcestockdto AS
     (rs.product_id)::integer AS product_id,
     COALESCE(oq.quantity, (0)::numeric) AS orderedquantity,
     COALESCE(ms.quantity, (0)::numeric) AS minimumstate,
-    COALESCE(q.quantity, (0)::numeric) AS quantity,
-    COALESCE(q.quantityinadditionalunit, (0)::numeric) AS quantityinadditionalunit,
-    COALESCE(rq.quantity, (0)::numeric) AS reservedquantity,
-    (COALESCE(q.quantity, (0)::numeric) - COALESCE(rq.quantity, (0)::numeric)) AS availablequantity,
+    rs.quantity,
+    rs.quantityinadditionalunit,
+    rs.reservedquantity,
+    (rs.quantity - rs.reservedquantity) AS availablequantity,
     location.number AS locationnumber,
     location.name AS locationname,
     product.number AS productnumber,
     product.name AS productname,
     product.unit AS productunit,
-    COALESCE(q.totalvalue, (0)::numeric) AS totalvalue,
+    rs.totalvalue,
     family.number AS familynumber
-   FROM (((((((materialflowresources_resourcestock rs
+   FROM (((((materialflowresources_resourcestock rs
      LEFT JOIN ordered_quantities oq ON (((oq.product_id = rs.product_id) AND (oq.location_id = rs.location_id))))
      LEFT JOIN minimum_states ms ON (((ms.product_id = rs.product_id) AND (ms.location_id = rs.location_id))))
-     LEFT JOIN quantities q ON (((q.product_id = rs.product_id) AND (q.location_id = rs.location_id))))
-     LEFT JOIN reserved_quantities rq ON (((rq.product_id = rs.product_id) AND (rq.location_id = rs.location_id))))
      JOIN materialflow_location location ON ((location.id = rs.location_id)))
      JOIN basic_product product ON ((product.id = rs.product_id)))
      LEFT JOIN basic_product family ON ((product.parent_id = family.id)));
@@ -21708,6 +21763,47 @@ CREATE SEQUENCE qcadooplugin_plugin_id_seq
 ALTER SEQUENCE qcadooplugin_plugin_id_seq OWNED BY qcadooplugin_plugin.id;
 
 
+--
+-- Name: qcadooreport_reportjob; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE qcadooreport_reportjob (
+    id bigint NOT NULL,
+    pluginidentifier character varying(255),
+    modelname character varying(255),
+    entityid integer,
+    parameters character varying(1024),
+    priority character varying(255) DEFAULT 'interactive'::character varying,
+    state character varying(255) DEFAULT 'pending'::character varying,
+    progress integer DEFAULT 0,
+    username character varying(255),
+    queuedate timestamp without time zone,
+    startdate timestamp without time zone,
+    finishdate timestamp without time zone,
+    errormessage text,
+    entityversion bigint DEFAULT 0
+);
+
+
+--
+-- Name: qcadooreport_reportjob_id_seq; Type: SEQUENCE; Schema: public; Owner: -
+--
+
+CREATE SEQUENCE qcadooreport_reportjob_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+--
+-- Name: qcadooreport_reportjob_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: -
+--
+
+ALTER SEQUENCE qcadooreport_reportjob_id_seq OWNED BY qcadooreport_reportjob.id;
+
+
 --
 -- Name: qcadoosecurity_group; Type: TABLE; Schema: public; Owner: -
 --
@@ -21888,6 +21984,16 @@ CREATE SEQUENCE qcadooview_category_id_seq
 ALTER SEQUENCE qcadooview_category_id_seq OWNED BY qcadooview_category.id;
 
 
+--
+-- Name: qcadooview_numbersequence; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE qcadooview_numbersequence (
+    sequencekey character varying(255) NOT NULL,
+    lastvalue bigint NOT NULL
+);
+
+
 --
 -- Name: qcadooview_item; Type: TABLE; Schema: public; Owner: -
 --
@@ -27290,6 +27396,13 @@ ALTER TABLE ONLY qcadoomodel_unitconversionitem ALTER COLUMN id SET DEFAULT next
 ALTER TABLE ONLY qcadooplugin_plugin ALTER COLUMN id SET DEFAULT nextval('qcadooplugin_plugin_id_seq'::regclass);
 
 
+--
+-- Name: id; Type: DEFAULT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY qcadooreport_reportjob ALTER COLUMN id SET DEFAULT nextval('qcadooreport_reportjob_id_seq'::regclass);
+
+
 --
 -- Name: id; Type: DEFAULT; Schema: public; Owner: -
 --
@@ -35245,6 +35358,21 @@ COPY qcadooplugin_plugin (id, identifier, version, state, issystem, entityversio
 SELECT pg_catalog.setval('qcadooplugin_plugin_id_seq', 154, true);
 
 
+--
+-- Data for Name: qcadooreport_reportjob; Type: TABLE DATA; Schema: public; Owner: -
+--
+
+COPY qcadooreport_reportjob (id, pluginidentifier, modelname, entityid, parameters, priority, state, progress, username, queuedate, startdate, finishdate, errormessage, entityversion) FROM stdin;
+\.
+
+
+--
+-- Name: qcadooreport_reportjob_id_seq; Type: SEQUENCE SET; Schema: public; Owner: -
+--
+
+SELECT pg_catalog.setval('qcadooreport_reportjob_id_seq', 1, false);
+
+
 --
 -- Data for Name: qcadoosecurity_group; Type: TABLE DATA; Schema: public; Owner: -
 --
@@ -40535,6 +40663,14 @@ ALTER TABLE ONLY qcadooplugin_plugin
     ADD CONSTRAINT qcadooplugin_plugin_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: qcadooreport_reportjob_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY qcadooreport_reportjob
+    ADD CONSTRAINT qcadooreport_reportjob_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: qcadoosecurity_group_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -40583,6 +40719,14 @@ ALTER TABLE ONLY qcadooview_category
     ADD CONSTRAINT qcadooview_category_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: qcadooview_numbersequence_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY qcadooview_numbersequence
+    ADD CONSTRAINT qcadooview_numbersequence_pkey PRIMARY KEY (sequencekey);
+
+
 --
 -- Name: qcadooview_item_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -42374,6 +42518,13 @@ CREATE INDEX idx_mat_resource_product_id ON materialflowresources_resource USING
 CREATE INDEX idx_mat_resourcestock_product_id ON materialflowresources_resourcestock USING btree (product_id);
 
 
+--
+-- Name: idx_mat_resourcestock_location_id_product_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE UNIQUE INDEX idx_mat_resourcestock_location_id_product_id ON materialflowresources_resourcestock USING btree (location_id, product_id);
+
+
 --
 -- Name: idx_ord_coverageproduct_product_id; Type: INDEX; Schema: public; Owner: -
 --
@@ -43296,6 +43447,43 @@ CREATE TRIGGER goodfood_pallet_trigger_externalnumber BEFORE INSERT ON goodfood_
 CREATE TRIGGER materialflowresources_document_trigger_number BEFORE INSERT ON materialflowresources_document FOR EACH ROW EXECUTE PROCEDURE generate_and_set_document_number_trigger();
 
 
+--
+-- Name: materialflowresources_reservation_trigger_resourcestock; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER materialflowresources_reservation_trigger_resourcestock AFTER INSERT OR DELETE OR UPDATE ON materialflowresources_reservation FOR EACH ROW EXECUTE PROCEDURE update_resourcestock_for_reservation_trigger();
+
+
+--
+-- Name: materialflowresources_resource_trigger_resourcestock; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER materialflowresources_resource_trigger_resourcestock AFTER INSERT OR DELETE OR UPDATE ON materialflowresources_resource FOR EACH ROW EXECUTE PROCEDURE update_resourcestock_for_resource_trigger();
+
+
+--
+-- Name: materialflowresources_resourcestock; Type: TABLE DATA; Schema: public; Owner: -
+--
+
+INSERT INTO materialflowresources_resourcestock (location_id, product_id, quantity, quantityinadditionalunit, reservedquantity, totalvalue)
+    SELECT stock.location_id, stock.product_id, sum(stock.quantity), sum(stock.quantityinadditionalunit), sum(stock.reservedquantity), sum(stock.totalvalue)
+      FROM ( SELECT resource.location_id, resource.product_id, COALESCE(resource.quantity, (0)::numeric) AS quantity,
+                COALESCE(resource.quantityinadditionalunit, (0)::numeric) AS quantityinadditionalunit, (0)::numeric AS reservedquantity,
+                COALESCE((resource.quantity * resource.price), (0)::numeric) AS totalvalue
+               FROM materialflowresources_resource resource
+            UNION ALL
+             SELECT reservation.location_id, reservation.product_id, (0)::numeric AS quantity, (0)::numeric AS quantityinadditionalunit,
+                COALESCE(reservation.quantity, (0)::numeric) AS reservedquantity, (0)::numeric AS totalvalue
+               FROM materialflowresources_reservation reservation) stock
+     WHERE ((stock.location_id IS NOT NULL) AND (stock.product_id IS NOT NULL))
+     GROUP BY stock.location_id, stock.product_id
+    ON CONFLICT (location_id, product_id) DO UPDATE SET
+        quantity = EXCLUDED.quantity,
+        quantityinadditionalunit = EXCLUDED.quantityinadditionalunit,
+        reservedquantity = EXCLUDED.reservedquantity,
+        totalvalue = EXCLUDED.totalvalue;
+
+
 --
 -- Name: repairs_repairorder_trigger_number; Type: TRIGGER; Schema: public; Owner: -
 --
@@ -24,29 +24,27 @@
 package com.qcadoo.mes.advancedGenealogy.tree;
 
 import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.ENTITY_TYPE;
-import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.NUMBER;
 import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.PARENT;
 import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.PRIORITY;
-import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.SUPPLIER;
-import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.TRACKING_RECORDS;
-import static com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordFields.STATE;
-import static com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordFields.USED_BATCHES_SIMPLE;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.qcadoo.mes.advancedGenealogy.constants.AdvancedGenealogyConstants;
-import com.qcadoo.mes.advancedGenealogy.constants.BatchFields;
-import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordFields;
 import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordType;
 import com.qcadoo.mes.advancedGenealogy.states.constants.TrackingRecordState;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.EntityList;
+import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.plugin.api.PluginAccessor;
 
 @Service
@@ -54,6 +52,35 @@ public class AdvancedGenealogyTreeService {
 
     private static final String L_BATCH = "batch";
 
+    private static final String L_ADVANCED_GENEALOGY_FOR_ORDERS = "advancedGenealogyForOrders";
+
+    private static final String L_GENEALOGY_PRODUCT_IN_BATCH = "genealogyProductInBatch";
+
+    private static final String L_ENTITY_TYPE = "entityType";
+
+    private static final String L_STATES = "states";
+
+    private static final String L_PRODUCED_BATCH_ID = "producedBatchId";
+
+    private static final String L_USED_BATCH_ID = "usedBatchId";
+
+    private static final String L_BATCH_IDS = "batchIds";
+
+    private static final String L_SIMPLE_EDGES_QUERY = "select trackingRecord.producedBatch.id as producedBatchId, "
+            + "usedBatch.batch.id as usedBatchId from #advancedGenealogy_usedBatchSimple as usedBatch "
+            + "inner join usedBatch.trackingRecord as trackingRecord "
+            + "where trackingRecord.entityType = :entityType and trackingRecord.state in (:states) and %s in (:batchIds) "
+            + "order by trackingRecord.id, usedBatch.id";
+
+    private static final String L_FOR_ORDER_EDGES_QUERY = "select trackingRecord.producedBatch.id as producedBatchId, "
+            + "productInBatch.batch.id as usedBatchId from #advancedGenealogyForOrders_genealogyProductInBatch as productInBatch "
+            + "inner join productInBatch.genealogyProductInComponent as productInComponent "
+            + "inner join productInComponent.trackingRecord as trackingRecord "
+            + "where trackingRecord.entityType = :entityType and trackingRecord.state in (:states) and %s in (:batchIds) "
+            + "order by trackingRecord.id, productInComponent.id, productInBatch.id";
+
+    private static final int L_MAX_BATCHES_IN_QUERY = 500;
+
     @Autowired
     private PluginAccessor pluginAccessor;
 
@@ -61,168 +88,126 @@ public class AdvancedGenealogyTreeService {
     private DataDefinitionService dataDefinitionService;
 
     public List<Entity> getProducedFromTree(final Entity batch, final boolean includeDrafts, final boolean makeIdsUnique) {
-        List<Entity> tree = new ArrayList<Entity>();
+        GenealogyIndex.Trace trace = getGenealogyIndex(batch.getId(), Direction.PRODUCED_FROM, includeDrafts)
+                .traceProducedFrom(batch.getId());
 
-        addChild(tree, batch, makeIdsUnique);
+        return createTree(batch, trace, makeIdsUnique);
+    }
 
-        generateProducedFromTree(batch, tree, includeDrafts, makeIdsUnique);
+    public List<Entity> getUsedToProduceTree(final Entity batch, final boolean includeDrafts, final boolean makeIdsUnique) {
+        GenealogyIndex.Trace trace = getGenealogyIndex(batch.getId(), Direction.USED_TO_PRODUCE, includeDrafts)
+                .traceUsedToProduce(batch.getId());
 
-        return tree;
+        return createTree(batch, trace, true);
     }
 
-    public List<Entity> getUsedToProduceTree(final Entity batch, final boolean includeDrafts, final boolean makeIdsUnique) {
-        List<Entity> tree = new ArrayList<Entity>();
+    /**
+     * Loads genealogy edges level by level, starting from given batch - each query gets edges of the batches found by the
+     * previous one, so only the part of genealogy reachable from the batch is loaded.
+     */
+    private GenealogyIndex getGenealogyIndex(final Long batchId, final Direction direction, final boolean includeDrafts) {
+        List<String> states = Lists.newArrayList(TrackingRecordState.ACCEPTED.getStringValue());
 
-        long realParentId = batch.getId();
+        if (includeDrafts) {
+            states.add(TrackingRecordState.DRAFT.getStringValue());
+        }
 
-        addChild(tree, batch, true);
+        boolean forOrdersEnabled = isEnabled(L_ADVANCED_GENEALOGY_FOR_ORDERS);
 
-        generateUsedToProduceTree(batch, tree, includeDrafts, true, realParentId);
+        GenealogyIndex.Builder genealogyIndexBuilder = GenealogyIndex.builder();
 
-        return tree;
-    }
+        Set<Long> visitedBatchIds = Sets.newHashSet(batchId);
+        List<Long> frontier = Lists.newArrayList(batchId);
 
-    private boolean addChild(final List<Entity> tree, final Entity child, final boolean makeIdsUnique) {
-        child.setField(PARENT, null);
-        return addToList(tree, child, makeIdsUnique);
-    }
+        while (!frontier.isEmpty()) {
+            List<Entity> edges = Lists.newArrayList();
 
-    private boolean addChild(final List<Entity> tree, final Entity child, final Entity parent, final boolean makeIdsUnique) {
-        child.setField(PARENT, parent);
-        return addToList(tree, child, makeIdsUnique);
-    }
+            for (List<Long> frontierPart : Lists.partition(frontier, L_MAX_BATCHES_IN_QUERY)) {
+                edges.addAll(getDD().find(String.format(L_SIMPLE_EDGES_QUERY, direction.getSimpleBatchIdPath()))
+                        .setString(L_ENTITY_TYPE, TrackingRecordType.SIMPLE).setParameterList(L_STATES, states)
+                        .setParameterList(L_BATCH_IDS, frontierPart).list().getEntities());
 
-    private boolean addToList(final List<Entity> tree, final Entity child, final boolean makeIdsUnique) {
-        child.setField(PRIORITY, 1);
-        child.setField(ENTITY_TYPE, L_BATCH);
+                if (forOrdersEnabled) {
+                    DataDefinition genealogyProductInBatchDD = dataDefinitionService.get(L_ADVANCED_GENEALOGY_FOR_ORDERS,
+                            L_GENEALOGY_PRODUCT_IN_BATCH);
 
-        if (checkIfTreeContainsEntity(tree, child)) {
-            return false;
-        } else {
-            if (makeIdsUnique) {
-                child.setId((long) tree.size());
+                    edges.addAll(genealogyProductInBatchDD
+                            .find(String.format(L_FOR_ORDER_EDGES_QUERY, direction.getForOrderBatchIdPath()))
+                            .setString(L_ENTITY_TYPE, TrackingRecordType.FOR_ORDER).setParameterList(L_STATES, states)
+                            .setParameterList(L_BATCH_IDS, frontierPart).list().getEntities());
+                }
             }
-            tree.add(child);
-            return true;
-        }
-    }
 
-    private boolean checkIfTreeContainsEntity(final List<Entity> tree, final Entity child) {
-        for (Entity entity : tree) {
-            if (child.getField(PARENT).equals(entity.getField(PARENT)) && entity.getField(NUMBER).equals(child.getField(NUMBER))) {
-                Entity supplierChild = child.getBelongsToField(SUPPLIER);
-                Entity supplierEntity = entity.getBelongsToField(SUPPLIER);
-                if (supplierChild != null && supplierEntity != null && supplierChild.equals(supplierEntity)) {
-                    return true;
+            frontier = Lists.newArrayList();
+
+            for (Entity edge : edges) {
+                Long producedBatchId = (Long) edge.getField(L_PRODUCED_BATCH_ID);
+                Long usedBatchId = (Long) edge.getField(L_USED_BATCH_ID);
+
+                genealogyIndexBuilder.add(producedBatchId, usedBatchId);
+
+                Long nextBatchId = direction.getNextBatchId(producedBatchId, usedBatchId);
+
+                if ((nextBatchId != null) && visitedBatchIds.add(nextBatchId)) {
+                    frontier.add(nextBatchId);
                 }
-                return true;
             }
         }
-        return false;
+
+        return genealogyIndexBuilder.build();
     }
 
-    private void generateUsedToProduceTree(final Entity parent, final List<Entity> tree, final boolean includeDrafts,
-            final boolean makeIdsUnique, final long realParentId) {
-        List<Entity> batches = getDD().find().list().getEntities();
+    private List<Entity> createTree(final Entity batch, final GenealogyIndex.Trace trace, final boolean makeIdsUnique) {
+        List<Entity> tree = new ArrayList<Entity>(trace.size());
 
-        for (Entity producedBatch : batches) {
-            EntityList trackingRecords = producedBatch.getHasManyField(TRACKING_RECORDS);
-            for (Entity trackingRecord : trackingRecords) {
-                String type = trackingRecord.getStringField(ENTITY_TYPE);
-                if (type == null) {
-                    continue;
-                }
-
-                String state = trackingRecord.getStringField(STATE);
+        addChild(tree, batch, makeIdsUnique);
 
-                if (!TrackingRecordState.ACCEPTED.getStringValue().equals(state)) {
-                    boolean isDraftAndWeIncludeDrafts = TrackingRecordState.DRAFT.getStringValue().equals(state) && includeDrafts;
+        if (trace.size() > 1) {
+            Map<Long, Entity> batches = getBatches(trace.getBatchIds());
 
-                    if (!isDraftAndWeIncludeDrafts) {
-                        continue;
-                    }
-                }
+            for (int node = 1; node < trace.size(); node++) {
+                Entity child = batches.get(trace.getBatchId(node));
 
-                if (TrackingRecordType.SIMPLE.equals(type)) {
-                    EntityList usedBatches = trackingRecord.getHasManyField(USED_BATCHES_SIMPLE);
-                    for (Entity usedBatch : usedBatches) {
-                        Entity batch = usedBatch.getBelongsToField(L_BATCH);
-                        if (batch.getId().equals(realParentId)) {
-                            long realId = producedBatch.getId();
-                            boolean addedChild = addChild(tree, producedBatch, parent, makeIdsUnique);
-                            if (addedChild) {
-                                generateUsedToProduceTree(producedBatch, tree, includeDrafts, makeIdsUnique, realId);
-                            }
-                        }
-                    }
-                } else if (TrackingRecordType.FOR_ORDER.equals(type) && isEnabled("advancedGenealogyForOrders")) {
-                    EntityList genealogyProductInComponents = trackingRecord.getHasManyField("genealogyProductInComponents");
-                    for (Entity genealogyProductInComponent : genealogyProductInComponents) {
-                        EntityList productInBatches = genealogyProductInComponent.getHasManyField("productInBatches");
-                        for (Entity producedInBatch : productInBatches) {
-                            Entity batch = producedInBatch.getBelongsToField(L_BATCH);
-                            if (batch == null) {
-                                continue;
-                            }
-                            if (batch.getId().equals(realParentId)) {
-                                long realId = producedBatch.getId();
-                                boolean addedChild = addChild(tree, producedBatch, parent, makeIdsUnique);
-                                if (addedChild) {
-                                    generateUsedToProduceTree(producedBatch, tree, includeDrafts, makeIdsUnique, realId);
-                                }
-                            }
-                        }
-                    }
+                if (child != null) {
+                    addChild(tree, child.copy(), tree.get(trace.getParentNode(node)), makeIdsUnique);
                 }
             }
         }
+
+        return tree;
     }
 
-    private void generateProducedFromTree(final Entity producedBatch, final List<Entity> tree, final boolean includeDrafts,
-            final boolean makeIdsUnique) {
-        EntityList trackingRecords = producedBatch.getHasManyField(BatchFields.TRACKING_RECORDS);
-        for (Entity trackingRecord : trackingRecords) {
-            String type = trackingRecord.getStringField(TrackingRecordFields.ENTITY_TYPE);
-            if (type == null) {
-                continue;
+    private Map<Long, Entity> getBatches(final Set<Long> batchIds) {
+        Map<Long, Entity> batches = Maps.newHashMapWithExpectedSize(batchIds.size());
+
+        for (List<Long> batchIdsPart : Lists.partition(Lists.newArrayList(batchIds), L_MAX_BATCHES_IN_QUERY)) {
+            for (Entity batch : getDD().find().add(SearchRestrictions.in("id", batchIdsPart)).list().getEntities()) {
+                batches.put(batch.getId(), batch);
             }
+        }
 
-            String state = trackingRecord.getStringField(STATE);
+        return batches;
+    }
 
-            if (!TrackingRecordState.ACCEPTED.getStringValue().equals(state)) {
-                boolean isDraftAndWeIncludeDrafts = TrackingRecordState.DRAFT.getStringValue().equals(state) && includeDrafts;
+    private void addChild(final List<Entity> tree, final Entity child, final boolean makeIdsUnique) {
+        child.setField(PARENT, null);
+        addToList(tree, child, makeIdsUnique);
+    }
 
-                if (!isDraftAndWeIncludeDrafts) {
-                    continue;
-                }
-            }
+    private void addChild(final List<Entity> tree, final Entity child, final Entity parent, final boolean makeIdsUnique) {
+        child.setField(PARENT, parent);
+        addToList(tree, child, makeIdsUnique);
+    }
 
-            if (TrackingRecordType.SIMPLE.equals(type)) {
-                EntityList usedBatches = trackingRecord.getHasManyField(USED_BATCHES_SIMPLE);
-                for (Entity usedBatch : usedBatches) {
-                    Entity batch = usedBatch.getBelongsToField(L_BATCH);
-                    boolean addedChild = addChild(tree, batch, producedBatch, makeIdsUnique);
-                    if (addedChild) {
-                        generateProducedFromTree(batch, tree, includeDrafts, makeIdsUnique);
-                    }
-                }
-            } else if (TrackingRecordType.FOR_ORDER.equals(type) && isEnabled("advancedGenealogyForOrders")) {
-                EntityList genealogyProductInComponents = trackingRecord.getHasManyField("genealogyProductInComponents");
-                for (Entity genealogyProductInComponent : genealogyProductInComponents) {
-                    EntityList productInBatches = genealogyProductInComponent.getHasManyField("productInBatches");
-                    for (Entity producedInBatch : productInBatches) {
-                        Entity batch = producedInBatch.getBelongsToField(L_BATCH);
-                        if (batch == null) {
-                            continue;
-                        }
-                        boolean addedChild = addChild(tree, batch, producedBatch, makeIdsUnique);
-                        if (addedChild) {
-                            generateProducedFromTree(batch, tree, includeDrafts, makeIdsUnique);
-                        }
-                    }
-                }
-            }
+    private void addToList(final List<Entity> tree, final Entity child, final boolean makeIdsUnique) {
+        child.setField(PRIORITY, 1);
+        child.setField(ENTITY_TYPE, L_BATCH);
+
+        if (makeIdsUnique) {
+            child.setId((long) tree.size());
         }
+
+        tree.add(child);
     }
 
     private DataDefinition getDD() {
@@ -232,4 +217,45 @@ public class AdvancedGenealogyTreeService {
     private boolean isEnabled(final String pluginIdentifier) {
         return pluginAccessor.getPlugin(pluginIdentifier) != null;
     }
+
+    private enum Direction {
+
+        PRODUCED_FROM("trackingRecord.producedBatch.id", "trackingRecord.producedBatch.id") {
+
+            @Override
+            Long getNextBatchId(final Long producedBatchId, final Long usedBatchId) {
+                return usedBatchId;
+            }
+
+        },
+
+        USED_TO_PRODUCE("usedBatch.batch.id", "productInBatch.batch.id") {
+
+            @Override
+            Long getNextBatchId(final Long producedBatchId, final Long usedBatchId) {
+                return producedBatchId;
+            }
+
+        };
+
+        private final String simpleBatchIdPath;
+
+        private final String forOrderBatchIdPath;
+
+        Direction(final String simpleBatchIdPath, final String forOrderBatchIdPath) {
+            this.simpleBatchIdPath = simpleBatchIdPath;
+            this.forOrderBatchIdPath = forOrderBatchIdPath;
+        }
+
+        String getSimpleBatchIdPath() {
+            return simpleBatchIdPath;
+        }
+
+        String getForOrderBatchIdPath() {
+            return forOrderBatchIdPath;
+        }
+
+        abstract Long getNextBatchId(final Long producedBatchId, final Long usedBatchId);
+
+    }
 }
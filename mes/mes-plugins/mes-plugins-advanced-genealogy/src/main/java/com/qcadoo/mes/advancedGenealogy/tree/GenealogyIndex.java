@@ -0,0 +1,175 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.advancedGenealogy.tree;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Batch genealogy held as adjacency arrays in both directions: from a produced batch to the batches it was produced from and
+ * from a used batch to the batches it was used to produce.
+ * 
+ * Traces expand the genealogy into a tree the way the genealogy view shows it: a batch reachable through several paths appears
+ * once under each of its parents, but never below itself.
+ */
+final class GenealogyIndex {
+
+    private static final int NO_PARENT = -1;
+
+    private final Map<Long, long[]> usedBatchIds;
+
+    private final Map<Long, long[]> producedBatchIds;
+
+    private GenealogyIndex(final Map<Long, long[]> usedBatchIds, final Map<Long, long[]> producedBatchIds) {
+        this.usedBatchIds = usedBatchIds;
+        this.producedBatchIds = producedBatchIds;
+    }
+
+    Trace traceProducedFrom(final long batchId) {
+        return trace(batchId, usedBatchIds);
+    }
+
+    Trace traceUsedToProduce(final long batchId) {
+        return trace(batchId, producedBatchIds);
+    }
+
+    private static Trace trace(final long rootBatchId, final Map<Long, long[]> adjacentBatchIds) {
+        long[] batchIds = new long[16];
+        int[] parentNodes = new int[16];
+        int size = 1;
+
+        batchIds[0] = rootBatchId;
+        parentNodes[0] = NO_PARENT;
+
+        for (int node = 0; node < size; node++) {
+            long[] childBatchIds = adjacentBatchIds.get(batchIds[node]);
+
+            if (childBatchIds == null) {
+                continue;
+            }
+
+            for (long childBatchId : childBatchIds) {
+                if (isOnPath(batchIds, parentNodes, node, childBatchId)) {
+                    continue;
+                }
+
+                if (size == batchIds.length) {
+                    batchIds = Arrays.copyOf(batchIds, size * 2);
+                    parentNodes = Arrays.copyOf(parentNodes, size * 2);
+                }
+
+                batchIds[size] = childBatchId;
+                parentNodes[size] = node;
+                size++;
+            }
+        }
+
+        return new Trace(Arrays.copyOf(batchIds, size), Arrays.copyOf(parentNodes, size));
+    }
+
+    private static boolean isOnPath(final long[] batchIds, final int[] parentNodes, final int node, final long batchId) {
+        for (int ancestor = node; ancestor != NO_PARENT; ancestor = parentNodes[ancestor]) {
+            if (batchIds[ancestor] == batchId) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+
+        private final Map<Long, Set<Long>> usedBatchIds = Maps.newHashMap();
+
+        private final Map<Long, Set<Long>> producedBatchIds = Maps.newHashMap();
+
+        private Builder() {
+        }
+
+        Builder add(final Long producedBatchId, final Long usedBatchId) {
+            if ((producedBatchId != null) && (usedBatchId != null)) {
+                usedBatchIds.computeIfAbsent(producedBatchId, batchId -> new LinkedHashSet<>()).add(usedBatchId);
+                producedBatchIds.computeIfAbsent(usedBatchId, batchId -> new LinkedHashSet<>()).add(producedBatchId);
+            }
+
+            return this;
+        }
+
+        GenealogyIndex build() {
+            return new GenealogyIndex(toArrays(usedBatchIds), toArrays(producedBatchIds));
+        }
+
+        private static Map<Long, long[]> toArrays(final Map<Long, Set<Long>> adjacentBatchIds) {
+            Map<Long, long[]> arrays = Maps.newHashMapWithExpectedSize(adjacentBatchIds.size());
+
+            adjacentBatchIds.forEach((batchId, batchIds) -> arrays.put(batchId,
+                    batchIds.stream().mapToLong(Long::longValue).toArray()));
+
+            return arrays;
+        }
+
+    }
+
+    /**
+     * Tree nodes in breadth-first order; node 0 is the traced batch and every other node refers to an earlier parent node.
+     */
+    static final class Trace {
+
+        private final long[] batchIds;
+
+        private final int[] parentNodes;
+
+        private Trace(final long[] batchIds, final int[] parentNodes) {
+            this.batchIds = batchIds;
+            this.parentNodes = parentNodes;
+        }
+
+        int size() {
+            return batchIds.length;
+        }
+
+        long getBatchId(final int node) {
+            return batchIds[node];
+        }
+
+        int getParentNode(final int node) {
+            return parentNodes[node];
+        }
+
+        Set<Long> getBatchIds() {
+            return Arrays.stream(batchIds).boxed().collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+    }
+
+}
@@ -25,27 +25,35 @@ package com.qcadoo.mes.advancedGenealogy.tree;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
-import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.Lists;
 import com.qcadoo.mes.advancedGenealogy.constants.AdvancedGenealogyConstants;
 import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordType;
 import com.qcadoo.mes.advancedGenealogy.states.constants.TrackingRecordState;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.EntityList;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchQueryBuilder;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.plugin.api.Plugin;
 import com.qcadoo.plugin.api.PluginAccessor;
@@ -55,31 +63,23 @@ public class AdvancedGenealogyTreeServiceTest {
     AdvancedGenealogyTreeService treeService;
 
     @Mock
-    private Entity batch1, batch2;
+    private Entity batch1, batch2, batch3;
 
     @Mock
     private DataDefinitionService dataDefinitionService;
 
     @Mock
-    private DataDefinition dataDefinition;
+    private DataDefinition dataDefinition, genealogyProductInBatchDD;
 
     @Mock
     private PluginAccessor pluginAccessor;
 
     @Mock
-    private SearchResult searchResult;
+    private SearchResult batchesResult;
 
-    @Mock
-    private Entity batch1Tr;
-
-    @Mock
-    private Entity parent1, parent2;
+    private List<Entity> acceptedSimpleEdges, draftSimpleEdges, draftForOrderEdges;
 
-    private EntityList mockEntityList(List<Entity> list) {
-        EntityList entityList = mock(EntityList.class);
-        when(entityList.iterator()).thenReturn(list.iterator());
-        return entityList;
-    }
+    private List<List<Object>> queriedBatchIds;
 
     @Before
     public void init() {
@@ -94,41 +94,88 @@ public class AdvancedGenealogyTreeServiceTest {
 
         when(dataDefinitionService.get(AdvancedGenealogyConstants.PLUGIN_IDENTIFIER, AdvancedGenealogyConstants.MODEL_BATCH))
                 .thenReturn(dataDefinition);
+        when(dataDefinitionService.get("advancedGenealogyForOrders", "genealogyProductInBatch")).thenReturn(
+                genealogyProductInBatchDD);
 
         when(batch1.getId()).thenReturn(1L);
         when(batch2.getId()).thenReturn(2L);
+        when(batch3.getId()).thenReturn(3L);
+        when(batch1.copy()).thenReturn(batch1);
+        when(batch2.copy()).thenReturn(batch2);
+        when(batch3.copy()).thenReturn(batch3);
+
+        acceptedSimpleEdges = Lists.newArrayList();
+        draftSimpleEdges = Lists.newArrayList(mockEdge(1L, 2L));
+        draftForOrderEdges = Lists.newArrayList();
+
+        queriedBatchIds = Lists.newArrayList();
+
+        stubEdgesQuery(dataDefinition, TrackingRecordType.SIMPLE, acceptedSimpleEdges, draftSimpleEdges);
+        stubEdgesQuery(genealogyProductInBatchDD, TrackingRecordType.FOR_ORDER, Collections.<Entity> emptyList(),
+                draftForOrderEdges);
+
+        SearchCriteriaBuilder batchesCriteriaBuilder = mock(SearchCriteriaBuilder.class);
+        when(dataDefinition.find()).thenReturn(batchesCriteriaBuilder);
+        when(batchesCriteriaBuilder.add(any(SearchCriterion.class))).thenReturn(batchesCriteriaBuilder);
+        when(batchesCriteriaBuilder.list()).thenReturn(batchesResult);
+        when(batchesResult.getEntities()).thenReturn(asList(batch1, batch2, batch3));
+    }
+
+    private void stubEdgesQuery(final DataDefinition edgesDD, final String entityType, final List<Entity> acceptedEdges,
+            final List<Entity> allEdges) {
+        when(edgesDD.find(anyString())).thenAnswer(invocation -> {
+            String query = (String) invocation.getArguments()[0];
+
+            SearchQueryBuilder edgesQuery = mock(SearchQueryBuilder.class);
+            SearchQueryBuilder acceptedEdgesQuery = mockBatchIdsQuery(query, acceptedEdges);
+            SearchQueryBuilder allEdgesQuery = mockBatchIdsQuery(query, allEdges);
+
+            when(edgesQuery.setString("entityType", entityType)).thenReturn(edgesQuery);
+            when(edgesQuery.setParameterList(eq("states"), anyCollection())).thenReturn(allEdgesQuery);
+            when(edgesQuery.setParameterList("states", asList(TrackingRecordState.ACCEPTED.getStringValue()))).thenReturn(
+                    acceptedEdgesQuery);
+
+            return edgesQuery;
+        });
+    }
+
+    private SearchQueryBuilder mockBatchIdsQuery(final String query, final List<Entity> edges) {
+        SearchQueryBuilder statesQuery = mock(SearchQueryBuilder.class);
+        String batchIdField = query.contains("producedBatch.id in") ? "producedBatchId" : "usedBatchId";
+
+        when(statesQuery.setParameterList(eq("batchIds"), anyCollection())).thenAnswer(invocation -> {
+            Collection<?> batchIds = (Collection<?>) invocation.getArguments()[1];
+
+            queriedBatchIds.add(Lists.newArrayList(batchIds));
+
+            SearchQueryBuilder batchIdsQuery = mock(SearchQueryBuilder.class);
+            SearchResult edgesResult = mock(SearchResult.class);
+
+            when(batchIdsQuery.list()).thenReturn(edgesResult);
+            when(edgesResult.getEntities()).thenAnswer(
+                    getEntities -> edges.stream().filter(edge -> batchIds.contains(edge.getField(batchIdField)))
+                            .collect(Collectors.toList()));
+
+            return batchIdsQuery;
+        });
 
-        EntityList batch1Trs = mockEntityList(asList(batch1Tr));
-        when(batch1.getHasManyField("trackingRecords")).thenReturn(batch1Trs);
-        when(batch1Tr.getStringField("entityType")).thenReturn(TrackingRecordType.SIMPLE);
-        when(batch1Tr.getStringField("state")).thenReturn(TrackingRecordState.DRAFT.getStringValue());
-        Entity batch1TrUsedBatch1 = mock(Entity.class);
-        when(batch1TrUsedBatch1.getBelongsToField("batch")).thenReturn(batch2);
-        EntityList batch1TrUsedBatches = mockEntityList(asList(batch1TrUsedBatch1));
-        when(batch1Tr.getHasManyField("usedBatchesSimple")).thenReturn(batch1TrUsedBatches);
+        return statesQuery;
+    }
 
-        EntityList batch2Trs = mockEntityList(new LinkedList<Entity>());
-        when(batch2.getHasManyField("trackingRecords")).thenReturn(batch2Trs);
+    private Entity mockEdge(final Long producedBatchId, final Long usedBatchId) {
+        Entity edge = mock(Entity.class);
 
-        SearchCriteriaBuilder searchCriteriaBuilder = Mockito.mock(SearchCriteriaBuilder.class);
-        when(dataDefinition.find()).thenReturn(searchCriteriaBuilder);
-        when(searchCriteriaBuilder.list()).thenReturn(searchResult);
-        when(searchResult.getEntities()).thenReturn(asList(batch1));
+        when(edge.getField("producedBatchId")).thenReturn(producedBatchId);
+        when(edge.getField("usedBatchId")).thenReturn(usedBatchId);
 
-        String number1 = "QWD33";
-        String number2 = "POS22";
-        when(batch1.getField("parent")).thenReturn(parent1);
-        when(batch2.getField("parent")).thenReturn(parent2);
-        when(batch1.getField("number")).thenReturn(number1);
-        when(batch2.getField("number")).thenReturn(number2);
+        return edge;
     }
 
     @Test
     public void shouldReturnOnlyTheRootIfThereAreNoRelatedBatchesForProducedFromTree() {
         // given
         Entity batch = mock(Entity.class);
-        EntityList trackingRecords = mockEntityList(new LinkedList<Entity>());
-        when(batch.getHasManyField("trackingRecords")).thenReturn(trackingRecords);
+        when(batch.getId()).thenReturn(4L);
 
         // when
         List<Entity> tree = treeService.getProducedFromTree(batch, true, false);
@@ -142,8 +189,7 @@ public class AdvancedGenealogyTreeServiceTest {
     public void shouldReturnOnlyTheRootIfThereAreNoRelatedBatchesForUsedToProduceTree() {
         // given
         Entity batch = mock(Entity.class);
-
-        when(searchResult.getEntities()).thenReturn(new LinkedList<Entity>());
+        when(batch.getId()).thenReturn(4L);
 
         // when
         List<Entity> tree = treeService.getUsedToProduceTree(batch, true, false);
@@ -196,17 +242,8 @@ public class AdvancedGenealogyTreeServiceTest {
         // given
         Plugin plugin = mock(Plugin.class);
         when(pluginAccessor.getPlugin("advancedGenealogyForOrders")).thenReturn(plugin);
-        when(batch1Tr.getStringField("entityType")).thenReturn(TrackingRecordType.FOR_ORDER);
-
-        Entity genProdInComp = mock(Entity.class);
-        EntityList genProdInComps = mockEntityList(asList(genProdInComp));
-
-        Entity prodInBatch = mock(Entity.class);
-        when(prodInBatch.getBelongsToField("batch")).thenReturn(batch2);
-
-        EntityList prodInBatches = mockEntityList(asList(prodInBatch));
-        when(genProdInComp.getHasManyField("productInBatches")).thenReturn(prodInBatches);
-        when(batch1Tr.getHasManyField("genealogyProductInComponents")).thenReturn(genProdInComps);
+        draftSimpleEdges.clear();
+        draftForOrderEdges.add(mockEdge(1L, 2L));
 
         // when
         List<Entity> tree = treeService.getProducedFromTree(batch1, true, false);
@@ -222,17 +259,8 @@ public class AdvancedGenealogyTreeServiceTest {
         // given
         Plugin plugin = mock(Plugin.class);
         when(pluginAccessor.getPlugin("advancedGenealogyForOrders")).thenReturn(plugin);
-        when(batch1Tr.getStringField("entityType")).thenReturn(TrackingRecordType.FOR_ORDER);
-
-        Entity genProdInComp = mock(Entity.class);
-        EntityList genProdInComps = mockEntityList(asList(genProdInComp));
-
-        Entity prodInBatch = mock(Entity.class);
-        when(prodInBatch.getBelongsToField("batch")).thenReturn(batch2);
-
-        EntityList prodInBatches = mockEntityList(asList(prodInBatch));
-        when(genProdInComp.getHasManyField("productInBatches")).thenReturn(prodInBatches);
-        when(batch1Tr.getHasManyField("genealogyProductInComponents")).thenReturn(genProdInComps);
+        draftSimpleEdges.clear();
+        draftForOrderEdges.add(mockEdge(1L, 2L));
 
         // when
         List<Entity> tree = treeService.getUsedToProduceTree(batch2, true, false);
@@ -242,4 +270,73 @@ public class AdvancedGenealogyTreeServiceTest {
         assertEquals(batch2, tree.get(0));
         assertEquals(batch1, tree.get(1));
     }
+
+    @Test
+    public void shouldNotDescendIntoBatchAlreadyOnPath() {
+        // given
+        draftSimpleEdges.add(mockEdge(2L, 3L));
+        draftSimpleEdges.add(mockEdge(3L, 1L));
+
+        // when
+        List<Entity> tree = treeService.getProducedFromTree(batch1, true, false);
+
+        // then
+        assertEquals(asList(batch1, batch2, batch3), tree);
+    }
+
+    @Test
+    public void shouldLoadOnlyEdgesReachableFromBatch() {
+        // given
+        draftSimpleEdges.add(mockEdge(2L, 3L));
+        draftSimpleEdges.add(mockEdge(4L, 5L));
+
+        // when
+        List<Entity> tree = treeService.getProducedFromTree(batch1, true, false);
+
+        // then
+        assertEquals(asList(batch1, batch2, batch3), tree);
+        assertEquals(asList(asList(1L), asList(2L), asList(3L)), queriedBatchIds);
+    }
+
+    @Test
+    public void shouldLoadUsedToProduceEdgesByUsedBatch() {
+        // given
+        draftSimpleEdges.add(mockEdge(3L, 2L));
+
+        // when
+        List<Entity> tree = treeService.getUsedToProduceTree(batch2, true, false);
+
+        // then
+        assertEquals(asList(batch2, batch1, batch3), tree);
+        assertEquals(asList(asList(2L), asList(1L, 3L)), queriedBatchIds);
+    }
+
+    @Test
+    public void shouldTraceBreadthFirstWithEveryPathToSharedBatch() {
+        // given
+        GenealogyIndex genealogyIndex = GenealogyIndex.builder().add(1L, 2L).add(1L, 3L).add(2L, 4L).add(3L, 4L).add(1L, 2L)
+                .build();
+
+        // when
+        GenealogyIndex.Trace producedFrom = genealogyIndex.traceProducedFrom(1L);
+        GenealogyIndex.Trace usedToProduce = genealogyIndex.traceUsedToProduce(4L);
+
+        // then
+        assertEquals(5, producedFrom.size());
+        assertEquals(asList(1L, 2L, 3L, 4L, 4L), asBatchIds(producedFrom));
+        assertEquals(1, producedFrom.getParentNode(3));
+        assertEquals(2, producedFrom.getParentNode(4));
+        assertEquals(asList(4L, 2L, 3L, 1L, 1L), asBatchIds(usedToProduce));
+        assertEquals(-1, usedToProduce.getParentNode(0));
+    }
+
+    private List<Long> asBatchIds(final GenealogyIndex.Trace trace) {
+        List<Long> batchIds = new LinkedList<Long>();
+
+        for (int node = 0; node < trace.size(); node++) {
+            batchIds.add(trace.getBatchId(node));
+        }
+
+        return batchIds;
+    }
 }
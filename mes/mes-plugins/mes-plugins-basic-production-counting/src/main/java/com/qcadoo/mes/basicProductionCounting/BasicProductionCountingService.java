@@ -113,6 +113,22 @@ public interface BasicProductionCountingService {
      */
     DataDefinition getProductionCountingQuantityDD();
 
+    /**
+     * Adds quantities to used and produced quantities of order's basic production countings. Rows of the changed products are
+     * locked and their current quantities are read first, so that concurrent trackings of the same order do not overwrite each
+     * other, then basic production countings are saved together, with their validators and hooks. A change which would make
+     * the quantity negative or too large fails validation and is not saved.
+     * 
+     * @param order
+     *            order
+     * @param usedQuantities
+     *            used quantities to add (may be negative) by product id
+     * @param producedQuantities
+     *            produced quantities to add (may be negative) by product id
+     */
+    void addUsedAndProducedQuantities(final Entity order, final Map<Long, BigDecimal> usedQuantities,
+            final Map<Long, BigDecimal> producedQuantities);
+
     /**
      * Gets produced quantity from basic production countings
      * 
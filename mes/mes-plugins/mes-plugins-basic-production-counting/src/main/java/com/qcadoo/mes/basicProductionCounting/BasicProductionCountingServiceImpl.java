@@ -62,6 +62,8 @@ import com.qcadoo.view.api.components.LookupComponent;
 import com.qcadoo.view.constants.RowStyle;
 
 import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -74,6 +76,9 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import static com.qcadoo.model.api.search.SearchProjections.alias;
 import static com.qcadoo.model.api.search.SearchProjections.list;
@@ -101,9 +106,16 @@ public class BasicProductionCountingServiceImpl implements BasicProductionCounti
     private static final String outComponentHQL = "select opoc from #technologies_operationProductOutComponent opoc "
             + "left join opoc.operationComponent toc " + "left join toc.technology tech " + "where tech.id = :techId";
 
+    private static final String LOCK_QUANTITIES_SQL = "SELECT bpc.id, bpc.product_id, bpc.usedquantity, bpc.producedquantity "
+            + "FROM basicproductioncounting_basicproductioncounting bpc WHERE bpc.order_id = :orderId "
+            + "AND bpc.product_id IN (:productIds) ORDER BY bpc.id FOR UPDATE";
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
     @Autowired
     private NumberService numberService;
 
@@ -557,6 +569,86 @@ public class BasicProductionCountingServiceImpl implements BasicProductionCounti
                 BasicProductionCountingConstants.MODEL_PRODUCTION_COUNTING_OPERATON_RUN);
     }
 
+    @Override
+    public void addUsedAndProducedQuantities(final Entity order, final Map<Long, BigDecimal> usedQuantities,
+            final Map<Long, BigDecimal> producedQuantities) {
+        Set<Long> productIds = Sets.newHashSet();
+
+        productIds.addAll(getProductIdsToChange(usedQuantities));
+        productIds.addAll(getProductIdsToChange(producedQuantities));
+
+        if (productIds.isEmpty()) {
+            return;
+        }
+
+        // values are read from locked rows, not from entities, which could be loaded into the session before other
+        // trackings of the order were accepted
+        final Map<Long, Long> basicProductionCountingIds = Maps.newHashMap();
+        final Map<Long, BigDecimal> currentUsedQuantities = Maps.newHashMap();
+        final Map<Long, BigDecimal> currentProducedQuantities = Maps.newHashMap();
+
+        jdbcTemplate.query(LOCK_QUANTITIES_SQL,
+                new MapSqlParameterSource().addValue("orderId", order.getId()).addValue("productIds", productIds),
+                new RowCallbackHandler() {
+
+                    @Override
+                    public void processRow(final ResultSet resultSet) throws SQLException {
+                        Long productId = resultSet.getLong("product_id");
+
+                        if (!basicProductionCountingIds.containsKey(productId)) {
+                            basicProductionCountingIds.put(productId, resultSet.getLong("id"));
+                            currentUsedQuantities.put(productId, resultSet.getBigDecimal("usedquantity"));
+                            currentProducedQuantities.put(productId, resultSet.getBigDecimal("producedquantity"));
+                        }
+                    }
+
+                });
+
+        if (basicProductionCountingIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Entity> basicProductionCountings = getBasicProductionCountingDD().find()
+                .add(SearchRestrictions.in("id", Lists.newArrayList(basicProductionCountingIds.values()))).list().getEntities()
+                .stream().collect(Collectors.toMap(Entity::getId, basicProductionCounting -> basicProductionCounting));
+
+        List<Entity> basicProductionCountingsToSave = Lists.newArrayList();
+
+        for (Entry<Long, Long> productAndBasicProductionCountingId : basicProductionCountingIds.entrySet()) {
+            Long productId = productAndBasicProductionCountingId.getKey();
+            Entity basicProductionCounting = basicProductionCountings.get(productAndBasicProductionCountingId.getValue());
+
+            if (basicProductionCounting == null) {
+                continue;
+            }
+
+            addQuantity(basicProductionCounting, BasicProductionCountingFields.USED_QUANTITY,
+                    currentUsedQuantities.get(productId), usedQuantities.get(productId));
+            addQuantity(basicProductionCounting, BasicProductionCountingFields.PRODUCED_QUANTITY,
+                    currentProducedQuantities.get(productId), producedQuantities.get(productId));
+
+            basicProductionCountingsToSave.add(basicProductionCounting);
+        }
+
+        getBasicProductionCountingDD().saveAll(basicProductionCountingsToSave);
+    }
+
+    private Set<Long> getProductIdsToChange(final Map<Long, BigDecimal> quantities) {
+        return quantities.entrySet().stream()
+                .filter(productQuantity -> BigDecimal.ZERO.compareTo(productQuantity.getValue()) != 0).map(Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    private void addQuantity(final Entity basicProductionCounting, final String quantityFieldName,
+            final BigDecimal currentQuantity, final BigDecimal quantity) {
+        if ((quantity == null) || (BigDecimal.ZERO.compareTo(quantity) == 0)) {
+            basicProductionCounting.setField(quantityFieldName, currentQuantity);
+        } else {
+            basicProductionCounting.setField(quantityFieldName,
+                    BigDecimalUtils.convertNullToZero(currentQuantity).add(quantity, numberService.getMathContext()));
+        }
+    }
+
     @Override
     public BigDecimal getProducedQuantityFromBasicProductionCountings(final Entity order) {
         Entity entity = dataDefinitionService
@@ -23,18 +23,279 @@
  */
 package com.qcadoo.mes.basicProductionCounting;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.ResultSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
 import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingConstants;
+import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingFields;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
 
 public class BasicProductionCountingServiceTest {
 
+    private static final Long ORDER_ID = 1L;
+
     private BasicProductionCountingService basicProductionCountingService;
 
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private NumberService numberService;
+
+    @Mock
+    private DataDefinition basicProductionCountingDD;
+
+    @Mock
+    private Entity order;
+
+    private final Map<Long, Long> basicProductionCountingIds = Maps.newHashMap();
+
+    private final Map<Long, BigDecimal> usedQuantities = Collections.synchronizedMap(Maps.newHashMap());
+
+    private final Map<Long, BigDecimal> producedQuantities = Collections.synchronizedMap(Maps.newHashMap());
+
+    private final Map<Long, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
 
         basicProductionCountingService = new BasicProductionCountingServiceImpl();
+
+        ReflectionTestUtils.setField(basicProductionCountingService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(basicProductionCountingService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(basicProductionCountingService, "numberService", numberService);
+
+        given(order.getId()).willReturn(ORDER_ID);
+        given(numberService.getMathContext()).willReturn(MathContext.DECIMAL64);
+        given(dataDefinitionService.get(BasicProductionCountingConstants.PLUGIN_IDENTIFIER,
+                BasicProductionCountingConstants.MODEL_BASIC_PRODUCTION_COUNTING)).willReturn(basicProductionCountingDD);
+
+        stubLockingQuery();
+        stubFind();
+        stubSaveAll();
+    }
+
+    private void addBasicProductionCounting(final Long id, final Long productId, final BigDecimal usedQuantity,
+            final BigDecimal producedQuantity) {
+        basicProductionCountingIds.put(productId, id);
+        usedQuantities.put(id, usedQuantity);
+        producedQuantities.put(id, producedQuantity);
+        rowLocks.put(id, new ReentrantLock());
+    }
+
+    private void stubLockingQuery() {
+        Mockito.doAnswer(invocation -> {
+            SqlParameterSource params = (SqlParameterSource) invocation.getArguments()[1];
+            RowCallbackHandler rowCallbackHandler = (RowCallbackHandler) invocation.getArguments()[2];
+
+            Collection<?> productIds = (Collection<?>) params.getValue("productIds");
+
+            List<Long> ids = productIds.stream().map(basicProductionCountingIds::get).filter(id -> id != null).sorted()
+                    .collect(Collectors.toList());
+
+            for (Long id : ids) {
+                // SELECT ... FOR UPDATE - row is locked until transaction ends, which here is saveAll
+                rowLocks.get(id).lock();
+
+                ResultSet resultSet = mock(ResultSet.class);
+
+                given(resultSet.getLong("id")).willReturn(id);
+                given(resultSet.getLong("product_id")).willReturn(getProductId(id));
+                given(resultSet.getBigDecimal("usedquantity")).willReturn(usedQuantities.get(id));
+                given(resultSet.getBigDecimal("producedquantity")).willReturn(producedQuantities.get(id));
+
+                rowCallbackHandler.processRow(resultSet);
+            }
+
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+    }
+
+    private void stubFind() {
+        given(basicProductionCountingDD.find()).willAnswer(findInvocation -> {
+            SearchCriteriaBuilder searchCriteriaBuilder = mock(SearchCriteriaBuilder.class);
+            SearchResult searchResult = mock(SearchResult.class);
+
+            given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+            given(searchCriteriaBuilder.list()).willReturn(searchResult);
+            given(searchResult.getEntities()).willAnswer(invocation -> rowLocks.entrySet().stream()
+                    .filter(rowLock -> rowLock.getValue().isHeldByCurrentThread())
+                    .map(rowLock -> mockBasicProductionCounting(rowLock.getKey())).collect(Collectors.toList()));
+
+            return searchCriteriaBuilder;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubSaveAll() {
+        given(basicProductionCountingDD.saveAll(anyCollectionOf(Entity.class))).willAnswer(invocation -> {
+            Collection<Entity> basicProductionCountings = (Collection<Entity>) invocation.getArguments()[0];
+
+            for (Entity basicProductionCounting : basicProductionCountings) {
+                usedQuantities.put(basicProductionCounting.getId(),
+                        basicProductionCounting.getDecimalField(BasicProductionCountingFields.USED_QUANTITY));
+                producedQuantities.put(basicProductionCounting.getId(),
+                        basicProductionCounting.getDecimalField(BasicProductionCountingFields.PRODUCED_QUANTITY));
+            }
+
+            // transaction commits, so locks are released
+            rowLocks.values().stream().filter(ReentrantLock::isHeldByCurrentThread).forEach(ReentrantLock::unlock);
+
+            return Lists.newArrayList(basicProductionCountings);
+        });
+    }
+
+    private Long getProductId(final Long id) {
+        return basicProductionCountingIds.entrySet().stream().filter(productAndId -> productAndId.getValue().equals(id))
+                .findFirst().get().getKey();
+    }
+
+    private Entity mockBasicProductionCounting(final Long id) {
+        Entity basicProductionCounting = mock(Entity.class);
+        Map<String, Object> fields = Maps.newHashMap();
+
+        given(basicProductionCounting.getId()).willReturn(id);
+
+        Mockito.doAnswer(invocation -> fields.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(basicProductionCounting).setField(anyString(), any());
+        given(basicProductionCounting.getDecimalField(anyString()))
+                .willAnswer(invocation -> fields.get((String) invocation.getArguments()[0]));
+
+        return basicProductionCounting;
+    }
+
+    @Test
+    public void shouldAddQuantitiesToCurrentValuesOfLockedRows() {
+        // given
+        addBasicProductionCounting(100L, 10L, BigDecimal.ONE, null);
+        addBasicProductionCounting(101L, 11L, BigDecimal.TEN, BigDecimal.TEN);
+        addBasicProductionCounting(102L, 12L, BigDecimal.TEN, BigDecimal.ONE);
+        addBasicProductionCounting(200L, 20L, null, BigDecimal.ONE);
+
+        Map<Long, BigDecimal> used = ImmutableMap.of(10L, BigDecimal.TEN, 11L, BigDecimal.ZERO, 12L, BigDecimal.ONE.negate());
+        Map<Long, BigDecimal> produced = ImmutableMap.of(20L, BigDecimal.ONE);
+
+        // when
+        basicProductionCountingService.addUsedAndProducedQuantities(order, used, produced);
+
+        // then
+        verify(basicProductionCountingDD).saveAll(anyCollectionOf(Entity.class));
+
+        assertEquals(new BigDecimal("11"), usedQuantities.get(100L));
+        assertNull(producedQuantities.get(100L));
+        assertEquals(BigDecimal.TEN, usedQuantities.get(101L));
+        assertEquals(new BigDecimal("9"), usedQuantities.get(102L));
+        assertEquals(BigDecimal.ONE, producedQuantities.get(102L));
+        assertNull(usedQuantities.get(200L));
+        assertEquals(new BigDecimal("2"), producedQuantities.get(200L));
+        assertTrue(rowLocks.values().stream().noneMatch(ReentrantLock::isLocked));
+    }
+
+    @Test
+    public void shouldNotUpdateWhenThereIsNothingToAdd() {
+        // when
+        basicProductionCountingService.addUsedAndProducedQuantities(order, ImmutableMap.of(10L, BigDecimal.ZERO),
+                Collections.emptyMap());
+
+        // then
+        verify(jdbcTemplate, never()).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        verify(basicProductionCountingDD, never()).saveAll(anyCollectionOf(Entity.class));
+    }
+
+    @Test
+    public void shouldNotLoseQuantitiesOfConcurrentTrackings() throws Exception {
+        // given
+        addBasicProductionCounting(100L, 10L, BigDecimal.ZERO, BigDecimal.ZERO);
+        addBasicProductionCounting(200L, 20L, BigDecimal.ZERO, BigDecimal.ZERO);
+
+        int threads = 8;
+        int trackingsPerThread = 50;
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = Lists.newArrayList();
+
+        for (int i = 0; i < threads; i++) {
+            futures.add(executorService.submit(() -> {
+                start.await();
+
+                for (int j = 0; j < trackingsPerThread; j++) {
+                    basicProductionCountingService.addUsedAndProducedQuantities(order,
+                            ImmutableMap.of(10L, BigDecimal.ONE, 20L, BigDecimal.ONE),
+                            ImmutableMap.of(20L, new BigDecimal("2")));
+                }
+
+                return null;
+            }));
+        }
+
+        // when
+        start.countDown();
+
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        executorService.shutdown();
+
+        // then
+        BigDecimal trackings = BigDecimal.valueOf(threads * trackingsPerThread);
+
+        assertEquals(0, trackings.compareTo(usedQuantities.get(100L)));
+        assertEquals(0, trackings.compareTo(usedQuantities.get(200L)));
+        assertEquals(0, trackings.multiply(new BigDecimal("2")).compareTo(producedQuantities.get(200L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(producedQuantities.get(100L)));
+        verify(jdbcTemplate, times(threads * trackingsPerThread)).query(anyString(), any(SqlParameterSource.class),
+                any(RowCallbackHandler.class));
+        verify(basicProductionCountingDD, never()).save(any(Entity.class));
     }
 
 }
@@ -1,6 +1,7 @@
 package com.qcadoo.mes.basic;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.qcadoo.commons.dateTime.TimeRange;
 import com.qcadoo.mes.basic.constants.ShiftFields;
 import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
@@ -9,13 +10,16 @@ import com.qcadoo.mes.basic.shift.Shift;
 import com.qcadoo.mes.basic.util.DateTimeRange;
 import com.qcadoo.model.api.Entity;
 import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class ShiftExceptionService {
@@ -34,24 +38,41 @@ public class ShiftExceptionService {
             exceptions = timetableExceptionService.findFor(productionLine, shiftEntity, dateOfDay);
         }
 
-        Shift shiftForDay = new Shift(shiftEntity, new DateTime(dateOfDay), false);
+        return applyExceptions(shiftWorkDateTime, exceptions, shift, dateOfDay);
+    }
 
-        for (Entity exception : exceptions) {
-            if (TimetableExceptionType.FREE_TIME.getStringValue()
-                    .equals(exception.getStringField(ShiftTimetableExceptionFields.TYPE))) {
-                shiftWorkDateTime = removeFreeTimeException(shiftWorkDateTime, exception, shiftForDay);
-            }
+    Map<Long, List<Entity>> getExceptionsByShifts(final Entity productionLine, final List<Shift> shifts) {
+        Map<Long, List<Entity>> exceptionsByShifts = Maps.newHashMap();
 
-            if (TimetableExceptionType.WORK_TIME.getStringValue()
-                    .equals(exception.getStringField(ShiftTimetableExceptionFields.TYPE))) {
-                shiftWorkDateTime = addWorkTimeException(shiftWorkDateTime, exception, shiftForDay);
-            }
+        for (Shift shift : shifts) {
+            exceptionsByShifts.put(shift.getId(), timetableExceptionService.findFor(productionLine, shift.getEntity(), null));
         }
 
-        return shiftWorkDateTime;
+        return exceptionsByShifts;
     }
 
     public List<DateTimeRange> getShiftWorkDateTimes(final Entity productionLine, final Shift shift, DateTime dateOfDay) {
+        List<DateTimeRange> shiftWorkDateTime = getShiftWorkDateTimesWithoutExceptions(shift, dateOfDay);
+
+        shiftWorkDateTime = manageExceptions(shiftWorkDateTime, productionLine, shift, dateOfDay.toDate());
+
+        return shiftWorkDateTime;
+    }
+
+    List<DateTimeRange> getShiftWorkDateTimes(final Shift shift, final DateTime dateOfDay, final List<Entity> exceptionsOfShift) {
+        List<DateTimeRange> shiftWorkDateTime = getShiftWorkDateTimesWithoutExceptions(shift, dateOfDay);
+
+        LocalDate day = dateOfDay.toLocalDate();
+
+        List<Entity> exceptions = exceptionsOfShift.stream()
+                .filter(exception -> !new LocalDate(exception.getDateField(ShiftTimetableExceptionFields.FROM_DATE)).isAfter(day)
+                        && !new LocalDate(exception.getDateField(ShiftTimetableExceptionFields.TO_DATE)).isBefore(day))
+                .collect(Collectors.toList());
+
+        return applyExceptions(shiftWorkDateTime, exceptions, shift, dateOfDay.toDate());
+    }
+
+    private List<DateTimeRange> getShiftWorkDateTimesWithoutExceptions(final Shift shift, final DateTime dateOfDay) {
         List<TimeRange> shiftWorkTime = Lists.newArrayList();
         List<DateTimeRange> shiftWorkDateTime = Lists.newArrayList();
         if (shift.worksAt(dateOfDay.dayOfWeek().get())) {
@@ -61,7 +82,24 @@ public class ShiftExceptionService {
             shiftWorkDateTime.add(new DateTimeRange(dateOfDay, range));
         }
 
-        shiftWorkDateTime = manageExceptions(shiftWorkDateTime, productionLine, shift, dateOfDay.toDate());
+        return shiftWorkDateTime;
+    }
+
+    private List<DateTimeRange> applyExceptions(List<DateTimeRange> shiftWorkDateTime, final List<Entity> exceptions,
+            final Shift shift, final Date dateOfDay) {
+        Shift shiftForDay = new Shift(shift.getEntity(), new DateTime(dateOfDay), false);
+
+        for (Entity exception : exceptions) {
+            if (TimetableExceptionType.FREE_TIME.getStringValue()
+                    .equals(exception.getStringField(ShiftTimetableExceptionFields.TYPE))) {
+                shiftWorkDateTime = removeFreeTimeException(shiftWorkDateTime, exception, shiftForDay);
+            }
+
+            if (TimetableExceptionType.WORK_TIME.getStringValue()
+                    .equals(exception.getStringField(ShiftTimetableExceptionFields.TYPE))) {
+                shiftWorkDateTime = addWorkTimeException(shiftWorkDateTime, exception, shiftForDay);
+            }
+        }
 
         return shiftWorkDateTime;
     }
@@ -25,6 +25,7 @@ package com.qcadoo.mes.basic;
 
 import com.qcadoo.mes.basic.ShiftsServiceImpl.ShiftHour;
 import com.qcadoo.mes.basic.shift.Shift;
+import com.qcadoo.mes.basic.shift.WorkingCalendar;
 import com.qcadoo.model.api.Entity;
 
 import java.util.Date;
@@ -32,6 +33,7 @@ import java.util.List;
 import java.util.Optional;
 
 import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
 
 //FIXME maku: replace bounded time/date ranges with JodaTime's intervals.
@@ -54,6 +56,18 @@ public interface ShiftsService {
 
     Date findDateToForProductionLine(final Date dateFrom, final long seconds, Entity productionLine);
 
+    /**
+     * Returns working calendar of shifts of the production line (all shifts, if the line has none), covering days from the
+     * given one. Calendars are cached and shared, also between threads.
+     * 
+     * @param productionLine
+     *            production line
+     * @param firstDay
+     *            first day which has to be covered by the calendar
+     * @return working calendar of the production line
+     */
+    WorkingCalendar getWorkingCalendar(final Entity productionLine, final LocalDate firstDay);
+
     List<ShiftHour> getHoursForShift(final Entity shift, final Date dateFrom, final Date dateTo);
 
     /**
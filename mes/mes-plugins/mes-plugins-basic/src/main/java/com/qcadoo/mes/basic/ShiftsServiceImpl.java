@@ -30,6 +30,7 @@ import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.basic.constants.ShiftFields;
 import com.qcadoo.mes.basic.constants.TimetableExceptionType;
 import com.qcadoo.mes.basic.shift.Shift;
+import com.qcadoo.mes.basic.shift.WorkingCalendar;
 import com.qcadoo.mes.basic.util.DateTimeRange;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
@@ -50,12 +51,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.IllegalFieldValueException;
 import org.joda.time.Interval;
+import org.joda.time.LocalDate;
 import org.joda.time.LocalTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -96,6 +99,12 @@ public class ShiftsServiceImpl implements ShiftsService {
 
     private static final int MILLS = 1000;
 
+    private static final int MAX_WORKING_CALENDAR_OFFSET = 366;
+
+    private static final long WORKING_CALENDAR_TIME_TO_LIVE = 5 * 60 * 1000L;
+
+    private final ConcurrentMap<Long, WorkingCalendar> workingCalendars = Maps.newConcurrentMap();
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
@@ -339,41 +348,46 @@ public class ShiftsServiceImpl implements ShiftsService {
 
     @Override
     public Date findDateToForProductionLine(final Date dateFrom, final long seconds, final Entity productionLine) {
-        if (getShiftDataDefinition().find().list().getTotalNumberOfEntities() == 0) {
+        if (seconds <= 0L) {
             return Date.from(dateFrom.toInstant().plusSeconds(seconds));
         }
 
         DateTime dateFromDT = new DateTime(dateFrom, DateTimeZone.getDefault());
 
-        List<Shift> shifts = findAll(productionLine);
-        DateTime dateOfDay = new DateTime(dateFrom);
-        dateOfDay = dateOfDay.minusDays(1);
-        dateOfDay = dateOfDay.toLocalDate().toDateTimeAtStartOfDay();
-        long leftMilliseconds = seconds * MILLS;
-        int loopCount = 0;
-        while (leftMilliseconds > 0L) {
-            if (loopCount > MAX_LOOPS) {
-                return Date.from(dateFrom.toInstant().plusSeconds(seconds));
-            }
-            for (Shift shift : shifts) {
-                for (DateTimeRange range : shiftExceptionService.getShiftWorkDateTimes(productionLine, shift, dateOfDay)) {
-                    if (dateFrom.after(dateOfDay.toDate())) {
-                        range = range.trimBefore(dateFromDT);
-                    }
-                    if (range != null) {
-                        if (leftMilliseconds > range.durationMillis()) {
-                            leftMilliseconds = leftMilliseconds - range.durationMillis();
-                        } else {
-                            return range.getFrom().plusMillis((int) leftMilliseconds).toDate();
-                        }
-                    }
-                }
-            }
-            loopCount++;
-            dateOfDay = dateOfDay.plusDays(1);
+        WorkingCalendar workingCalendar = getWorkingCalendar(productionLine, dateFromDT.minusDays(1).toLocalDate());
+
+        return workingCalendar.findDateTo(dateFromDT, seconds * MILLS, MAX_LOOPS)
+                .orElseGet(() -> Date.from(dateFrom.toInstant().plusSeconds(seconds)));
+    }
+
+    @Override
+    public WorkingCalendar getWorkingCalendar(final Entity productionLine, final LocalDate firstDay) {
+        if (Objects.isNull(productionLine.getId())) {
+            return createWorkingCalendar(productionLine, firstDay);
         }
 
-        return Date.from(dateFrom.toInstant().plusSeconds(seconds));
+        long expirationTime = System.currentTimeMillis() - WORKING_CALENDAR_TIME_TO_LIVE;
+
+        return workingCalendars.compute(productionLine.getId(), (productionLineId, workingCalendar) -> {
+            if (Objects.isNull(workingCalendar) || workingCalendar.isCompiledBefore(expirationTime)
+                    || !workingCalendar.covers(firstDay, MAX_WORKING_CALENDAR_OFFSET)) {
+                return createWorkingCalendar(productionLine, firstDay);
+            }
+
+            return workingCalendar;
+        });
+    }
+
+    private WorkingCalendar createWorkingCalendar(final Entity productionLine, final LocalDate firstDay) {
+        List<Shift> shifts = findAll(productionLine);
+        Map<Long, List<Entity>> exceptionsByShifts = shiftExceptionService.getExceptionsByShifts(productionLine, shifts);
+
+        return new WorkingCalendar(firstDay, shifts, (shift, dateOfDay) -> shiftExceptionService.getShiftWorkDateTimes(shift,
+                dateOfDay, exceptionsByShifts.get(shift.getId())));
+    }
+
+    public void invalidateWorkingCalendars(final DataDefinition dataDefinition, final Entity entity) {
+        workingCalendars.clear();
     }
 
     @Override
@@ -1,6 +1,5 @@
 package com.qcadoo.mes.basic.controllers.dataProvider;
 
-import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.controllers.dataProvider.dto.AbstractDTO;
@@ -19,7 +18,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -31,45 +29,10 @@ public class DataProvider {
     @Autowired
     private DictionaryService dictionaryService;
 
-    public static final int MAX_RESULTS = 20;
-
-    private String prepareProductsQuery() {
-        return "SELECT product.id AS id, product.number AS code, product.number AS number, product.name AS name "
-                + "FROM basic_product product WHERE product.active = true AND product.number ilike :query ;";
-    }
-
-    private String prepareProductsQueryWithLimit(int limit) {
-        return "SELECT product.id AS id, product.number AS code, product.number AS number, product.name AS name "
-                + "FROM basic_product product WHERE product.active = true AND product.number ilike :query LIMIT " + limit + ";";
-    }
-
-    private String prepareAdditionalCodeQuery(final String productnumber) {
-        String productNumberCondition = Strings.isNullOrEmpty(productnumber) ? ""
-                : "AND product.number = '" + productnumber + "'";
-
-        return "SELECT additionalcode.id AS id, additionalcode.code AS code, product.number AS productnumber "
-                + "FROM basic_additionalcode additionalcode "
-                + "JOIN basic_product product ON (additionalcode.product_id = product.id " + productNumberCondition + ")"
-                + "WHERE additionalcode.code ilike :query;";
-    }
-
-    private String prepareAdditionalCodeQueryWithLimit(int limit) {
-        return "SELECT additionalcode.id AS id, additionalcode.code AS code, product.number AS productnumber "
-                + "FROM basic_additionalcode additionalcode "
-                + "JOIN basic_product product ON (additionalcode.product_id = product.id AND (product.number = :productnumber OR COALESCE(:productnumber,'')='' ))"
-                + "WHERE additionalcode.code ilike :query LIMIT " + limit + ";";
-    }
-
-    private String preparePalletNumbersQuery() {
-        return "SELECT palletnumber.id AS id, palletnumber.number AS code, palletnumber.number AS number "
-                + "FROM basic_palletnumber palletnumber WHERE palletnumber.active = true AND palletnumber.number ilike :query;";
-    }
+    @Autowired
+    private LookupIndexService lookupIndexService;
 
-    private String preparePalletNumbersQueryWithLimit(int limit) {
-        return "SELECT palletnumber.id AS id, palletnumber.number AS code, palletnumber.number AS number "
-                + "FROM basic_palletnumber palletnumber WHERE palletnumber.active = true AND palletnumber.number ilike :query LIMIT "
-                + limit + ";";
-    }
+    public static final int MAX_RESULTS = 20;
 
     private int countQueryResults(final String preparedQuery, final String query, final Map<String, Object> paramMap) {
         String countQuery = "SELECT count(*) AS cnt FROM (" + preparedQuery.replace(";", "") + ") sq;";
@@ -81,16 +44,24 @@ public class DataProvider {
     }
 
     public DataResponse getProductsResponseByQuery(final String query) {
-        return getDataResponse(query, prepareProductsQuery(), getProductsByQuery(query), Maps.newHashMap());
+        return getDataResponse(lookupIndexService.findProducts(buildConditionParameterForIlike(query), MAX_RESULTS));
     }
 
     public DataResponse getAdditionalCodesResponseByQuery(final String query, final String productnumber) {
-        return getDataResponse(query, prepareAdditionalCodeQuery(productnumber), getAdditionalCodesByQuery(query, productnumber),
-                Maps.newHashMap());
+        return getDataResponse(lookupIndexService.findAdditionalCodes(buildConditionParameterForIlike(query), productnumber,
+                MAX_RESULTS));
     }
 
     public DataResponse getPalletNumbersResponseByQuery(final String query) {
-        return getDataResponse(query, preparePalletNumbersQuery(), getPalletNumbersByQuery(query), Maps.newHashMap());
+        return getDataResponse(lookupIndexService.findPalletNumbers(buildConditionParameterForIlike(query), MAX_RESULTS));
+    }
+
+    private DataResponse getDataResponse(final LookupIndex.Result<? extends AbstractDTO> result) {
+        if (result.getCount() > MAX_RESULTS) {
+            return new DataResponse(Lists.newArrayList(), result.getCount());
+        }
+
+        return new DataResponse(result.getEntries(), result.getCount());
     }
 
     public DataResponse getDataResponse(final String query, final String preparedQuery, final List<? extends AbstractDTO> entities,
@@ -121,18 +92,8 @@ public class DataProvider {
     }
 
     public List<AbstractDTO> getProductsByQuery(final String query) {
-        String _query = prepareProductsQueryWithLimit(MAX_RESULTS);
-
-        Map<String, Object> parameters = Maps.newHashMap();
-
-        String ilikeQuery = buildConditionParameterForIlike(query);
-        parameters.put("query", ilikeQuery);
-
-        SqlParameterSource nParameters = new MapSqlParameterSource(parameters);
-
-        List<AbstractDTO> products = jdbcTemplate.query(_query, nParameters, new BeanPropertyRowMapper(ProductDTO.class));
-
-        return products;
+        return Lists.newArrayList(lookupIndexService.findProducts(buildConditionParameterForIlike(query), MAX_RESULTS)
+                .getEntries());
     }
 
     public List<AdditionalCodeDTO> getAllAdditionalCodes(final String sidx, final String sord) {
@@ -148,18 +109,8 @@ public class DataProvider {
     }
 
     public List<AbstractDTO> getAdditionalCodesByQuery(final String query, final String productnumber) {
-        String _query = prepareAdditionalCodeQueryWithLimit(MAX_RESULTS);
-
-        Map<String, Object> parameters = Maps.newHashMap();
-        String ilikeQuery = buildConditionParameterForIlike(query);
-        parameters.put("query", ilikeQuery);
-        parameters.put("productnumber", productnumber);
-
-        SqlParameterSource nParameters = new MapSqlParameterSource(parameters);
-
-        List<AbstractDTO> codes = jdbcTemplate.query(_query, nParameters, new BeanPropertyRowMapper(AdditionalCodeDTO.class));
-
-        return codes;
+        return Lists.newArrayList(lookupIndexService.findAdditionalCodes(buildConditionParameterForIlike(query), productnumber,
+                MAX_RESULTS).getEntries());
     }
 
     public List<PalletNumberDTO> getAllPalletNumbers(final String sidx, final String sord) {
@@ -173,18 +124,8 @@ public class DataProvider {
     }
 
     public List<AbstractDTO> getPalletNumbersByQuery(final String query) {
-        String _query = preparePalletNumbersQueryWithLimit(MAX_RESULTS);
-
-        Map<String, Object> parameters = Maps.newHashMap();
-
-        String ilikeQuery = buildConditionParameterForIlike(query);
-        parameters.put("query", ilikeQuery);
-
-        SqlParameterSource nParameters = new MapSqlParameterSource(parameters);
-
-        List<AbstractDTO> pallets = jdbcTemplate.query(_query, nParameters, new BeanPropertyRowMapper(PalletNumberDTO.class));
-
-        return pallets;
+        return Lists.newArrayList(lookupIndexService.findPalletNumbers(buildConditionParameterForIlike(query), MAX_RESULTS)
+                .getEntries());
     }
 
     public List<Map<String, String>> getUnits() {
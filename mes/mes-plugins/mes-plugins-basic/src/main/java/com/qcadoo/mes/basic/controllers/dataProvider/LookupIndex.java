@@ -0,0 +1,469 @@
+package com.qcadoo.mes.basic.controllers.dataProvider;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * In-memory trigram index of lookup keys (numbers, codes) answering the same case insensitive patterns as SQL
+ * {@code ilike}: {@code %} matches any sequence, {@code _} any single character and {@code \} escapes the next one.
+ * 
+ * Candidates are the intersection of posting lists of the trigrams found in the literal parts of the pattern, every
+ * candidate is then verified against the whole pattern, so results equal a full scan. Patterns without a literal part of
+ * at least three characters are answered by a scan over all keys.
+ * 
+ * The index is filled with {@link #startLoad()}, {@link #load(Long, String, Object)} and {@link #finishLoad()}. Entries
+ * {@link #put(Long, String, Object) put} or {@link #remove(Long) removed} while loading take precedence over loaded ones;
+ * before loading starts such changes are ignored, because the load will read them anyway.
+ */
+public class LookupIndex<T> {
+
+    private static final int L_GRAM_LENGTH = 3;
+
+    private static final int L_MIN_COMPACTED_SLOTS = 1024;
+
+    private enum State {
+        EMPTY, LOADING, READY;
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private State state = State.EMPTY;
+
+    private Set<Long> changedWhileLoading;
+
+    private final Map<Long, Integer> slotsByIds = Maps.newHashMap();
+
+    private final Map<String, IntList> postings = Maps.newHashMap();
+
+    private final BitSet liveSlots = new BitSet();
+
+    private Long[] ids = new Long[L_MIN_COMPACTED_SLOTS];
+
+    private String[] keys = new String[L_MIN_COMPACTED_SLOTS];
+
+    private Object[] values = new Object[L_MIN_COMPACTED_SLOTS];
+
+    private int size;
+
+    public boolean isReady() {
+        lock.readLock().lock();
+
+        try {
+            return State.READY.equals(state);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void startLoad() {
+        lock.writeLock().lock();
+
+        try {
+            clearSlots();
+
+            state = State.LOADING;
+            changedWhileLoading = Sets.newHashSet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void load(final Long id, final String key, final T value) {
+        lock.writeLock().lock();
+
+        try {
+            if (State.LOADING.equals(state) && !changedWhileLoading.contains(id)) {
+                add(id, key, value);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void finishLoad() {
+        lock.writeLock().lock();
+
+        try {
+            state = State.READY;
+            changedWhileLoading = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+
+        try {
+            clearSlots();
+
+            state = State.EMPTY;
+            changedWhileLoading = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(final Long id, final String key, final T value) {
+        lock.writeLock().lock();
+
+        try {
+            if (State.EMPTY.equals(state)) {
+                return;
+            }
+            if (State.LOADING.equals(state)) {
+                changedWhileLoading.add(id);
+            }
+
+            removeSlot(id);
+            add(id, key, value);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(final Long id) {
+        lock.writeLock().lock();
+
+        try {
+            if (State.EMPTY.equals(state)) {
+                return;
+            }
+            if (State.LOADING.equals(state)) {
+                changedWhileLoading.add(id);
+            }
+
+            removeSlot(id);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+
+        try {
+            return slotsByIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds values whose keys match the given ilike pattern.
+     * 
+     * @param pattern
+     *            ilike pattern, e.g. {@code %abc%}
+     * @param filter
+     *            additional condition for values, may be null
+     * @param limit
+     *            maximum number of returned values
+     * @return first matching values (in order of indexing) and the number of all matching values
+     */
+    @SuppressWarnings("unchecked")
+    public Result<T> search(final String pattern, final Predicate<T> filter, final int limit) {
+        LikePattern likePattern = new LikePattern(pattern);
+
+        lock.readLock().lock();
+
+        try {
+            List<T> entries = Lists.newArrayList();
+            int count = 0;
+
+            int[] candidates = findCandidates(likePattern);
+
+            int candidatesCount = (candidates == null) ? size : candidates.length;
+
+            for (int i = 0; i < candidatesCount; i++) {
+                int slot = (candidates == null) ? i : candidates[i];
+
+                if (liveSlots.get(slot) && likePattern.matches(keys[slot])
+                        && ((filter == null) || filter.test((T) values[slot]))) {
+                    if (entries.size() < limit) {
+                        entries.add((T) values[slot]);
+                    }
+
+                    count++;
+                }
+            }
+
+            return new Result<T>(entries, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] findCandidates(final LikePattern likePattern) {
+        List<IntList> lists = Lists.newArrayList();
+
+        for (String literal : likePattern.getLiterals()) {
+            for (int i = 0; i + L_GRAM_LENGTH <= literal.length(); i++) {
+                IntList list = postings.get(literal.substring(i, i + L_GRAM_LENGTH));
+
+                if (list == null) {
+                    return new int[0];
+                }
+
+                lists.add(list);
+            }
+        }
+
+        if (lists.isEmpty()) {
+            return null;
+        }
+
+        Collections.sort(lists, (first, second) -> Integer.compare(first.size, second.size));
+
+        IntList smallest = lists.get(0);
+
+        int[] candidates = new int[smallest.size];
+        int count = 0;
+
+        for (int i = 0; i < smallest.size; i++) {
+            int slot = smallest.items[i];
+            boolean inAll = true;
+
+            for (int j = 1; inAll && (j < lists.size()); j++) {
+                inAll = lists.get(j).contains(slot);
+            }
+
+            if (inAll) {
+                candidates[count++] = slot;
+            }
+        }
+
+        return Arrays.copyOf(candidates, count);
+    }
+
+    private void add(final Long id, final String key, final T value) {
+        if (key == null) {
+            return;
+        }
+
+        if (size == ids.length) {
+            int capacity = size * 2;
+
+            ids = Arrays.copyOf(ids, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        int slot = size++;
+        String lowerCaseKey = key.toLowerCase(Locale.ROOT);
+
+        ids[slot] = id;
+        keys[slot] = lowerCaseKey;
+        values[slot] = value;
+
+        liveSlots.set(slot);
+        slotsByIds.put(id, slot);
+
+        for (int i = 0; i + L_GRAM_LENGTH <= lowerCaseKey.length(); i++) {
+            String gram = lowerCaseKey.substring(i, i + L_GRAM_LENGTH);
+            IntList list = postings.get(gram);
+
+            if (list == null) {
+                list = new IntList();
+
+                postings.put(gram, list);
+            }
+
+            list.addIfLast(slot);
+        }
+    }
+
+    private void removeSlot(final Long id) {
+        Integer slot = slotsByIds.remove(id);
+
+        if (slot != null) {
+            liveSlots.clear(slot);
+
+            values[slot] = null;
+        }
+    }
+
+    private void compactIfNeeded() {
+        int deadSlots = size - slotsByIds.size();
+
+        if ((deadSlots < L_MIN_COMPACTED_SLOTS) || (deadSlots < slotsByIds.size())) {
+            return;
+        }
+
+        Long[] oldIds = ids;
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldSize = size;
+
+        clearSlots();
+
+        for (int slot = 0; slot < oldSize; slot++) {
+            if (oldValues[slot] != null) {
+                addLoaded(oldIds[slot], oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addLoaded(final Long id, final String key, final Object value) {
+        add(id, key, (T) value);
+    }
+
+    private void clearSlots() {
+        slotsByIds.clear();
+        postings.clear();
+        liveSlots.clear();
+
+        ids = new Long[L_MIN_COMPACTED_SLOTS];
+        keys = new String[L_MIN_COMPACTED_SLOTS];
+        values = new Object[L_MIN_COMPACTED_SLOTS];
+        size = 0;
+    }
+
+    public static final class Result<T> {
+
+        private final List<T> entries;
+
+        private final int count;
+
+        private Result(final List<T> entries, final int count) {
+            this.entries = entries;
+            this.count = count;
+        }
+
+        public List<T> getEntries() {
+            return entries;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+    }
+
+    private static final class IntList {
+
+        private int[] items = new int[4];
+
+        private int size;
+
+        private void addIfLast(final int item) {
+            if ((size > 0) && (items[size - 1] == item)) {
+                return;
+            }
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+
+            items[size++] = item;
+        }
+
+        private boolean contains(final int item) {
+            return Arrays.binarySearch(items, 0, size, item) >= 0;
+        }
+
+    }
+
+    private static final class LikePattern {
+
+        private static final char L_ANY_SEQUENCE = '%';
+
+        private static final char L_ANY_CHARACTER = '_';
+
+        private static final char L_ESCAPE = '\\';
+
+        private final StringBuilder characters = new StringBuilder();
+
+        private final BitSet anySequence = new BitSet();
+
+        private final BitSet anyCharacter = new BitSet();
+
+        private final List<String> literals = Lists.newArrayList();
+
+        private LikePattern(final String pattern) {
+            StringBuilder literal = new StringBuilder();
+            String lowerCasePattern = pattern.toLowerCase(Locale.ROOT);
+
+            for (int i = 0; i < lowerCasePattern.length(); i++) {
+                char character = lowerCasePattern.charAt(i);
+
+                if ((character == L_ESCAPE) && (i + 1 < lowerCasePattern.length())) {
+                    character = lowerCasePattern.charAt(++i);
+                } else if ((character == L_ANY_SEQUENCE) || (character == L_ANY_CHARACTER)) {
+                    if (character == L_ANY_SEQUENCE) {
+                        anySequence.set(characters.length());
+                    } else {
+                        anyCharacter.set(characters.length());
+                    }
+
+                    characters.append(character);
+                    addLiteral(literal);
+
+                    continue;
+                }
+
+                characters.append(character);
+                literal.append(character);
+            }
+
+            addLiteral(literal);
+        }
+
+        private void addLiteral(final StringBuilder literal) {
+            if (literal.length() >= L_GRAM_LENGTH) {
+                literals.add(literal.toString());
+            }
+
+            literal.setLength(0);
+        }
+
+        private List<String> getLiterals() {
+            return literals;
+        }
+
+        private boolean matches(final String text) {
+            int length = characters.length();
+            int textIndex = 0;
+            int patternIndex = 0;
+            int lastSequence = -1;
+            int lastSequenceTextIndex = 0;
+
+            while (textIndex < text.length()) {
+                if ((patternIndex < length) && anySequence.get(patternIndex)) {
+                    lastSequence = patternIndex++;
+                    lastSequenceTextIndex = textIndex;
+                } else if ((patternIndex < length)
+                        && (anyCharacter.get(patternIndex) || (characters.charAt(patternIndex) == text.charAt(textIndex)))) {
+                    patternIndex++;
+                    textIndex++;
+                } else if (lastSequence >= 0) {
+                    patternIndex = lastSequence + 1;
+                    textIndex = ++lastSequenceTextIndex;
+                } else {
+                    return false;
+                }
+            }
+
+            while ((patternIndex < length) && anySequence.get(patternIndex)) {
+                patternIndex++;
+            }
+
+            return patternIndex == length;
+        }
+
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.qcadoo.mes.basic.controllers.dataProvider;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.controllers.dataProvider.dto.AdditionalCodeDTO;
+import com.qcadoo.mes.basic.controllers.dataProvider.dto.PalletNumberDTO;
+import com.qcadoo.mes.basic.controllers.dataProvider.dto.ProductDTO;
+
+/**
+ * Keeps {@link LookupIndex lookup indexes} of active product numbers, active pallet numbers and additional codes.
+ * 
+ * Indexes are loaded on first use. Model hooks report saved and deleted entities, which are read again from the database
+ * once the transaction is committed, so the indexes never contain uncommitted data. Entities created in the transaction
+ * have no id yet when their hooks are called, so they are read by their unique number or code.
+ */
+@Service
+public class LookupIndexService {
+
+    private static final String L_PRODUCTS_QUERY = "SELECT product.id AS id, product.number AS code, product.number AS number, "
+            + "product.name AS name FROM basic_product product WHERE product.active = true";
+
+    private static final String L_PALLET_NUMBERS_QUERY = "SELECT palletnumber.id AS id, palletnumber.number AS code, "
+            + "palletnumber.number AS number FROM basic_palletnumber palletnumber WHERE palletnumber.active = true";
+
+    private static final String L_ADDITIONAL_CODES_QUERY = "SELECT additionalcode.id AS id, additionalcode.code AS code, "
+            + "product.number AS productnumber FROM basic_additionalcode additionalcode "
+            + "JOIN basic_product product ON (additionalcode.product_id = product.id)";
+
+    private static final String L_ORDER_BY_ID = " ORDER BY id";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private final IndexedModel<ProductDTO> products = new IndexedModel<ProductDTO>(L_PRODUCTS_QUERY, ProductDTO.class,
+            ProductDTO::getId, ProductDTO::getNumber);
+
+    private final IndexedModel<PalletNumberDTO> palletNumbers = new IndexedModel<PalletNumberDTO>(L_PALLET_NUMBERS_QUERY,
+            PalletNumberDTO.class, PalletNumberDTO::getId, PalletNumberDTO::getNumber);
+
+    private final IndexedModel<AdditionalCodeDTO> additionalCodes = new IndexedModel<AdditionalCodeDTO>(
+            L_ADDITIONAL_CODES_QUERY, AdditionalCodeDTO.class, AdditionalCodeDTO::getId, AdditionalCodeDTO::getCode);
+
+    public LookupIndex.Result<ProductDTO> findProducts(final String pattern, final int limit) {
+        return getLoadedIndex(products).search(pattern, null, limit);
+    }
+
+    public LookupIndex.Result<PalletNumberDTO> findPalletNumbers(final String pattern, final int limit) {
+        return getLoadedIndex(palletNumbers).search(pattern, null, limit);
+    }
+
+    public LookupIndex.Result<AdditionalCodeDTO> findAdditionalCodes(final String pattern, final String productNumber,
+            final int limit) {
+        return getLoadedIndex(additionalCodes).search(pattern, additionalCode -> Strings.isNullOrEmpty(productNumber)
+                || productNumber.equals(additionalCode.getProductnumber()), limit);
+    }
+
+    public void productSaved(final Long productId, final String number) {
+        afterCommit(() -> {
+            refresh(products, productId, " AND product.id = :value", number, " AND product.number = :value");
+
+            List<AdditionalCodeDTO> productAdditionalCodes = (productId == null) ? query(additionalCodes,
+                    " WHERE product.number = :value", number) : query(additionalCodes, " WHERE product.id = :value", productId);
+
+            for (AdditionalCodeDTO additionalCode : productAdditionalCodes) {
+                additionalCodes.put(additionalCode);
+            }
+        });
+    }
+
+    public void productDeleted(final Long productId) {
+        afterCommit(() -> products.index.remove(productId));
+    }
+
+    public void palletNumberSaved(final Long palletNumberId, final String number) {
+        afterCommit(() -> refresh(palletNumbers, palletNumberId, " AND palletnumber.id = :value", number,
+                " AND palletnumber.number = :value"));
+    }
+
+    public void palletNumberDeleted(final Long palletNumberId) {
+        afterCommit(() -> palletNumbers.index.remove(palletNumberId));
+    }
+
+    public void additionalCodeSaved(final Long additionalCodeId, final String code) {
+        afterCommit(() -> refresh(additionalCodes, additionalCodeId, " WHERE additionalcode.id = :value", code,
+                " WHERE additionalcode.code = :value"));
+    }
+
+    public void additionalCodeDeleted(final Long additionalCodeId) {
+        afterCommit(() -> additionalCodes.index.remove(additionalCodeId));
+    }
+
+    public void clear() {
+        products.index.clear();
+        palletNumbers.index.clear();
+        additionalCodes.index.clear();
+    }
+
+    private <T> LookupIndex<T> getLoadedIndex(final IndexedModel<T> model) {
+        LookupIndex<T> index = model.index;
+
+        if (index.isReady()) {
+            return index;
+        }
+
+        synchronized (model) {
+            if (index.isReady()) {
+                return index;
+            }
+
+            BeanPropertyRowMapper<T> rowMapper = new BeanPropertyRowMapper<T>(model.dtoClass);
+
+            index.startLoad();
+
+            try {
+                jdbcTemplate.query(model.query + L_ORDER_BY_ID, Collections.<String, Object> emptyMap(), new RowCallbackHandler() {
+
+                    @Override
+                    public void processRow(final ResultSet resultSet) throws SQLException {
+                        T dto = rowMapper.mapRow(resultSet, resultSet.getRow());
+
+                        index.load(model.idFunction.apply(dto), model.keyFunction.apply(dto), dto);
+                    }
+                });
+            } catch (RuntimeException e) {
+                index.clear();
+
+                throw e;
+            }
+
+            index.finishLoad();
+        }
+
+        return index;
+    }
+
+    private <T> void refresh(final IndexedModel<T> model, final Long id, final String idCondition, final String key,
+            final String keyCondition) {
+        List<T> dtos;
+
+        if (id == null) {
+            if (key == null) {
+                return;
+            }
+
+            dtos = query(model, keyCondition, key);
+        } else {
+            dtos = query(model, idCondition, id);
+        }
+
+        if (!dtos.isEmpty()) {
+            model.put(dtos.get(0));
+        } else if (id != null) {
+            model.index.remove(id);
+        }
+    }
+
+    private <T> List<T> query(final IndexedModel<T> model, final String condition, final Object value) {
+        Map<String, Object> parameters = Maps.newHashMap();
+
+        parameters.put("value", value);
+
+        return jdbcTemplate.query(model.query + condition, parameters, new BeanPropertyRowMapper<T>(model.dtoClass));
+    }
+
+    private void afterCommit(final Runnable refresh) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    refresh.run();
+                }
+            });
+        } else {
+            refresh.run();
+        }
+    }
+
+    private static final class IndexedModel<T> {
+
+        private final LookupIndex<T> index = new LookupIndex<T>();
+
+        private final String query;
+
+        private final Class<T> dtoClass;
+
+        private final Function<T, Long> idFunction;
+
+        private final Function<T, String> keyFunction;
+
+        private IndexedModel(final String query, final Class<T> dtoClass, final Function<T, Long> idFunction,
+                final Function<T, String> keyFunction) {
+            this.query = query;
+            this.dtoClass = dtoClass;
+            this.idFunction = idFunction;
+            this.keyFunction = keyFunction;
+        }
+
+        private void put(final T dto) {
+            index.put(idFunction.apply(dto), keyFunction.apply(dto), dto);
+        }
+
+    }
+
+}
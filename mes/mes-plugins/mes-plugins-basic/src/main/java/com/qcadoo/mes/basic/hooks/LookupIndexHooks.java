@@ -0,0 +1,65 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.hooks;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.basic.constants.AdditionalCodeFields;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.PalletNumberFields;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.basic.controllers.dataProvider.LookupIndexService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+@Service
+public class LookupIndexHooks {
+
+    @Autowired
+    private LookupIndexService lookupIndexService;
+
+    public void onSave(final DataDefinition dataDefinition, final Entity entity) {
+        if (BasicConstants.MODEL_PRODUCT.equals(dataDefinition.getName())) {
+            lookupIndexService.productSaved(entity.getId(), entity.getStringField(ProductFields.NUMBER));
+        } else if (BasicConstants.MODEL_PALLET_NUMBER.equals(dataDefinition.getName())) {
+            lookupIndexService.palletNumberSaved(entity.getId(), entity.getStringField(PalletNumberFields.NUMBER));
+        } else {
+            lookupIndexService.additionalCodeSaved(entity.getId(), entity.getStringField(AdditionalCodeFields.CODE));
+        }
+    }
+
+    public boolean onDelete(final DataDefinition dataDefinition, final Entity entity) {
+        if (BasicConstants.MODEL_PRODUCT.equals(dataDefinition.getName())) {
+            lookupIndexService.productDeleted(entity.getId());
+        } else if (BasicConstants.MODEL_PALLET_NUMBER.equals(dataDefinition.getName())) {
+            lookupIndexService.palletNumberDeleted(entity.getId());
+        } else {
+            lookupIndexService.additionalCodeDeleted(entity.getId());
+        }
+
+        return true;
+    }
+
+}
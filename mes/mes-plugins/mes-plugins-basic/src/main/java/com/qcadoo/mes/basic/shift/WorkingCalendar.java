@@ -0,0 +1,294 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.util.DateTimeRange;
+
+/**
+ * Work time of a production line compiled day by day into an array of ranges with prefix sums of working milliseconds, so
+ * that the date after given amount of working time can be found by binary search instead of walking through shifts day by
+ * day.
+ * 
+ * Ranges are kept in the same order as they were reported for consecutive days (shift by shift), days are compiled lazily
+ * when they are needed for the first time. Each range remembers its shift, so work times of a single shift in a day can be
+ * read from the calendar too.
+ * 
+ * @since 1.4
+ */
+public class WorkingCalendar {
+
+    private static final int DAYS_IN_CHUNK = 31;
+
+    private final LocalDate firstDay;
+
+    private final List<Shift> shifts;
+
+    private final BiFunction<Shift, DateTime, List<DateTimeRange>> shiftWorkTimesForDay;
+
+    private final long compileTime;
+
+    private long[] rangeFroms = new long[64];
+
+    private long[] rangeTos = new long[64];
+
+    private long[] cumulativeMillis = new long[65];
+
+    private int[] rangeShifts = new int[64];
+
+    private final List<DateTimeRange> ranges = Lists.newArrayList();
+
+    private int size;
+
+    private int[] dayOffsets = new int[DAYS_IN_CHUNK + 1];
+
+    private int compiledDays;
+
+    /**
+     * @param firstDay
+     *            first day covered by the calendar
+     * @param workTimesForDay
+     *            function returning work time ranges for a day, given as its start
+     */
+    public WorkingCalendar(final LocalDate firstDay, final Function<DateTime, List<DateTimeRange>> workTimesForDay) {
+        this(firstDay, Collections.singletonList(null), (shift, dateOfDay) -> workTimesForDay.apply(dateOfDay));
+    }
+
+    /**
+     * @param firstDay
+     *            first day covered by the calendar
+     * @param shifts
+     *            shifts of the calendar, in order in which their work times are compiled
+     * @param shiftWorkTimesForDay
+     *            function returning work time ranges of a shift for a day, given as its start
+     */
+    public WorkingCalendar(final LocalDate firstDay, final List<Shift> shifts,
+            final BiFunction<Shift, DateTime, List<DateTimeRange>> shiftWorkTimesForDay) {
+        this.firstDay = firstDay;
+        this.shifts = shifts;
+        this.shiftWorkTimesForDay = shiftWorkTimesForDay;
+        this.compileTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks if calendar can answer queries starting at given day without compiling more than given number of days.
+     * 
+     * @param day
+     *            day of query start
+     * @param maxDays
+     *            maximal number of compiled days
+     * @return true if given day is covered by this calendar
+     */
+    public boolean covers(final LocalDate day, final int maxDays) {
+        int dayIndex = getDayIndex(day);
+
+        return dayIndex >= 0 && dayIndex <= maxDays;
+    }
+
+    public boolean isCompiledBefore(final long time) {
+        return compileTime < time;
+    }
+
+    /**
+     * Finds date after given amount of working time, counted from given date. Work time of days starting before dateFrom is
+     * trimmed to dateFrom.
+     * 
+     * @param dateFrom
+     *            date from
+     * @param milliseconds
+     *            working time in milliseconds, must be positive
+     * @param maxDays
+     *            number of days (counted from the day before dateFrom) to search in
+     * @return date after given amount of working time, or empty if there is not enough work time in maxDays days
+     */
+    public synchronized Optional<Date> findDateTo(final DateTime dateFrom, final long milliseconds, final int maxDays) {
+        Preconditions.checkArgument(milliseconds > 0, "Working time must be positive.");
+
+        int day = getDayIndex(dateFrom.minusDays(1).toLocalDate());
+
+        Preconditions.checkArgument(day >= 0, "Date is not covered by working calendar.");
+
+        int lastDay = day + maxDays;
+        long from = dateFrom.getMillis();
+        long leftMillis = milliseconds;
+
+        while (day <= lastDay && getDayStart(day).isBefore(from)) {
+            compileTo(day + 1);
+
+            for (int i = dayOffsets[day]; i < dayOffsets[day + 1]; i++) {
+                if (rangeTos[i] <= from) {
+                    continue;
+                }
+
+                long rangeFrom = Math.max(rangeFroms[i], from);
+                long duration = rangeTos[i] - rangeFrom;
+
+                if (leftMillis > duration) {
+                    leftMillis -= duration;
+                } else {
+                    return Optional.of(new Date(rangeFrom + leftMillis));
+                }
+            }
+
+            day++;
+        }
+
+        while (day <= lastDay) {
+            int toDay = Math.min(lastDay + 1, day + DAYS_IN_CHUNK);
+
+            compileTo(toDay);
+
+            int firstRange = dayOffsets[day];
+            int lastRange = dayOffsets[toDay];
+            long base = cumulativeMillis[firstRange];
+
+            if (cumulativeMillis[lastRange] - base >= leftMillis) {
+                int index = findRange(firstRange, lastRange, base + leftMillis);
+
+                return Optional.of(new Date(rangeFroms[index] + base + leftMillis - cumulativeMillis[index]));
+            }
+
+            leftMillis -= cumulativeMillis[lastRange] - base;
+            day = toDay;
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Returns work time ranges of the shift in the given day.
+     * 
+     * @param shift
+     *            shift of the calendar
+     * @param dateOfDay
+     *            start of the day
+     * @return work time ranges of the shift starting in the given day
+     */
+    public synchronized List<DateTimeRange> getShiftWorkDateTimes(final Shift shift, final DateTime dateOfDay) {
+        int shiftIndex = getShiftIndex(shift);
+
+        Preconditions.checkArgument(shiftIndex >= 0, "Shift %s doesn't belong to the working calendar.", shift.getId());
+
+        int day = getDayIndex(dateOfDay.toLocalDate());
+
+        Preconditions.checkArgument(day >= 0, "Date is not covered by working calendar.");
+
+        compileTo(day + 1);
+
+        List<DateTimeRange> shiftRanges = Lists.newArrayList();
+
+        for (int i = dayOffsets[day]; i < dayOffsets[day + 1]; i++) {
+            if (rangeShifts[i] == shiftIndex) {
+                shiftRanges.add(ranges.get(i));
+            }
+        }
+
+        return shiftRanges;
+    }
+
+    private int getShiftIndex(final Shift shift) {
+        for (int i = 0; i < shifts.size(); i++) {
+            if ((shifts.get(i) != null) && shifts.get(i).getId().equals(shift.getId())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int findRange(final int firstRange, final int lastRange, final long millis) {
+        int low = firstRange;
+        int high = lastRange - 1;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (cumulativeMillis[middle + 1] >= millis) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private int getDayIndex(final LocalDate day) {
+        return Days.daysBetween(firstDay, day).getDays();
+    }
+
+    private DateTime getDayStart(final int day) {
+        return firstDay.plusDays(day).toDateTimeAtStartOfDay();
+    }
+
+    private void compileTo(final int days) {
+        while (compiledDays < days) {
+            for (int shiftIndex = 0; shiftIndex < shifts.size(); shiftIndex++) {
+                for (DateTimeRange range : shiftWorkTimesForDay.apply(shifts.get(shiftIndex), getDayStart(compiledDays))) {
+                    addRange(range, shiftIndex);
+                }
+            }
+
+            if (dayOffsets.length < compiledDays + 2) {
+                dayOffsets = Arrays.copyOf(dayOffsets, dayOffsets.length * 2);
+            }
+
+            compiledDays++;
+            dayOffsets[compiledDays] = size;
+        }
+    }
+
+    private void addRange(final DateTimeRange range, final int shiftIndex) {
+        long from = range.getFrom().getMillis();
+        long to = range.getTo().getMillis();
+
+        if (rangeFroms.length == size) {
+            rangeFroms = Arrays.copyOf(rangeFroms, size * 2);
+            rangeTos = Arrays.copyOf(rangeTos, size * 2);
+            rangeShifts = Arrays.copyOf(rangeShifts, size * 2);
+            cumulativeMillis = Arrays.copyOf(cumulativeMillis, size * 2 + 1);
+        }
+
+        rangeFroms[size] = from;
+        rangeTos[size] = to;
+        rangeShifts[size] = shiftIndex;
+        ranges.add(range);
+        cumulativeMillis[size + 1] = cumulativeMillis[size] + (to - from);
+        size++;
+    }
+
+}
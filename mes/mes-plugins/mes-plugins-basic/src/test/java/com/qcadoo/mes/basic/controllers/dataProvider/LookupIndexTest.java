@@ -0,0 +1,141 @@
+package com.qcadoo.mes.basic.controllers.dataProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class LookupIndexTest {
+
+    private LookupIndex<String> lookupIndex;
+
+    @Before
+    public void init() {
+        lookupIndex = new LookupIndex<String>();
+
+        lookupIndex.startLoad();
+        lookupIndex.load(1L, "PRD-0001", "PRD-0001");
+        lookupIndex.load(2L, "prd-0002", "prd-0002");
+        lookupIndex.load(3L, "ABC_100", "ABC_100");
+        lookupIndex.load(4L, "XPRD-10", "XPRD-10");
+        lookupIndex.finishLoad();
+    }
+
+    @Test
+    public void shouldFindSubstringsIgnoringCase() {
+        // when
+        LookupIndex.Result<String> result = lookupIndex.search("%Prd-%", null, 20);
+
+        // then
+        assertEquals(Lists.newArrayList("PRD-0001", "prd-0002", "XPRD-10"), result.getEntries());
+        assertEquals(3, result.getCount());
+    }
+
+    @Test
+    public void shouldSupportWildcardsAndEscapes() {
+        // when
+        LookupIndex.Result<String> anyCharacter = lookupIndex.search("prd-000_", null, 20);
+        LookupIndex.Result<String> anySequence = lookupIndex.search("%prd%1", null, 20);
+        LookupIndex.Result<String> escaped = lookupIndex.search("%c\\_1%", null, 20);
+
+        // then
+        assertEquals(Lists.newArrayList("PRD-0001", "prd-0002"), anyCharacter.getEntries());
+        assertEquals(Lists.newArrayList("PRD-0001"), anySequence.getEntries());
+        assertEquals(Lists.newArrayList("ABC_100"), escaped.getEntries());
+    }
+
+    @Test
+    public void shouldCountAllMatchesBeyondLimit() {
+        // when
+        LookupIndex.Result<String> result = lookupIndex.search("%", value -> !value.startsWith("A"), 2);
+
+        // then
+        assertEquals(Lists.newArrayList("PRD-0001", "prd-0002"), result.getEntries());
+        assertEquals(3, result.getCount());
+    }
+
+    @Test
+    public void shouldReplaceAndRemoveEntries() {
+        // when
+        lookupIndex.put(1L, "NEW-0001", "NEW-0001");
+        lookupIndex.remove(2L);
+
+        // then
+        assertEquals(Lists.newArrayList("XPRD-10"), lookupIndex.search("%prd%", null, 20).getEntries());
+        assertEquals(Lists.newArrayList("NEW-0001"), lookupIndex.search("%new%", null, 20).getEntries());
+        assertEquals(3, lookupIndex.size());
+    }
+
+    @Test
+    public void shouldPreferChangesMadeWhileLoading() {
+        // given
+        lookupIndex.clear();
+        lookupIndex.put(9L, "IGNORED", "IGNORED");
+
+        lookupIndex.startLoad();
+        lookupIndex.put(1L, "CHANGED", "CHANGED");
+        lookupIndex.remove(2L);
+
+        // when
+        lookupIndex.load(1L, "LOADED-1", "LOADED-1");
+        lookupIndex.load(2L, "LOADED-2", "LOADED-2");
+        lookupIndex.load(3L, "LOADED-3", "LOADED-3");
+        lookupIndex.finishLoad();
+
+        // then
+        assertTrue(lookupIndex.isReady());
+        assertEquals(Lists.newArrayList("CHANGED", "LOADED-3"), lookupIndex.search("%", null, 20).getEntries());
+    }
+
+    @Test
+    public void shouldReturnSameResultsAsFullScan() {
+        // given
+        Random random = new Random(7L);
+        List<String> keys = Lists.newArrayList();
+
+        lookupIndex.startLoad();
+
+        for (long id = 0; id < 2000; id++) {
+            String key = randomText(random, 3 + random.nextInt(8));
+
+            keys.add(key);
+            lookupIndex.load(id, key, key);
+        }
+
+        lookupIndex.finishLoad();
+
+        for (int i = 0; i < 500; i++) {
+            String pattern = "%" + randomText(random, 1 + random.nextInt(4)) + (random.nextBoolean() ? "_" : "%")
+                    + randomText(random, random.nextInt(3)) + "%";
+            Pattern regex = Pattern.compile(pattern.replace("%", ".*").replace("_", "."), Pattern.CASE_INSENSITIVE);
+
+            List<String> expected = keys.stream().filter(key -> regex.matcher(key).matches()).collect(Collectors.toList());
+
+            // when
+            LookupIndex.Result<String> result = lookupIndex.search(pattern, null, Integer.MAX_VALUE);
+
+            // then
+            assertEquals(pattern, expected, result.getEntries());
+            assertEquals(pattern, expected.size(), result.getCount());
+        }
+    }
+
+    private String randomText(final Random random, final int length) {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            text.append("abcAB12".charAt(random.nextInt(7)));
+        }
+
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,209 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.commons.dateTime.TimeRange;
+import com.qcadoo.mes.basic.util.DateTimeRange;
+
+public class WorkingCalendarTest {
+
+    private static final int MAX_DAYS = 1000;
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final LocalDate FIRST_DAY = new LocalDate(2018, 1, 1);
+
+    private static final Function<DateTime, List<DateTimeRange>> DAY_SHIFT = dateOfDay -> Lists
+            .newArrayList(new DateTimeRange(dateOfDay, new TimeRange(new LocalTime(8, 0), new LocalTime(16, 0))));
+
+    @Test
+    public final void shouldFindDateToInTheSameDay() {
+        // given
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, DAY_SHIFT);
+
+        // when
+        Optional<Date> dateTo = workingCalendar.findDateTo(new DateTime(2018, 1, 2, 10, 0), 2 * HOUR, MAX_DAYS);
+
+        // then
+        assertEquals(new DateTime(2018, 1, 2, 12, 0).toDate(), dateTo.get());
+    }
+
+    @Test
+    public final void shouldFindDateToInFollowingDays() {
+        // given
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, DAY_SHIFT);
+
+        // when
+        Optional<Date> dateTo = workingCalendar.findDateTo(new DateTime(2018, 1, 2, 10, 0), 6 * HOUR + 8 * HOUR * 40 + HOUR,
+                MAX_DAYS);
+
+        // then
+        assertEquals(new DateTime(2018, 2, 12, 9, 0).toDate(), dateTo.get());
+    }
+
+    @Test
+    public final void shouldFindDateToAtTheEndOfWorkTime() {
+        // given
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, DAY_SHIFT);
+
+        // when
+        Optional<Date> dateTo = workingCalendar.findDateTo(new DateTime(2018, 1, 2, 0, 0), 8 * HOUR, MAX_DAYS);
+
+        // then
+        assertEquals(new DateTime(2018, 1, 2, 16, 0).toDate(), dateTo.get());
+    }
+
+    @Test
+    public final void shouldReturnEmptyWhenThereIsNotEnoughWorkTime() {
+        // given
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, dateOfDay -> Lists.newArrayList());
+
+        // when
+        Optional<Date> dateTo = workingCalendar.findDateTo(new DateTime(2018, 1, 2, 10, 0), HOUR, MAX_DAYS);
+
+        // then
+        assertFalse(dateTo.isPresent());
+    }
+
+    @Test
+    public final void shouldFindTheSameDatesAsWalkingDayByDay() {
+        // given
+        Random random = new Random(7L);
+        Function<DateTime, List<DateTimeRange>> workTimes = dateOfDay -> {
+            List<DateTimeRange> ranges = Lists.newArrayList();
+
+            if (dateOfDay.getDayOfWeek() < 6) {
+                ranges.add(new DateTimeRange(dateOfDay, new TimeRange(new LocalTime(6, 0), new LocalTime(14, 0))));
+                ranges.add(new DateTimeRange(dateOfDay, new TimeRange(new LocalTime(22, 0), new LocalTime(6, 0))));
+            }
+
+            return ranges;
+        };
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, workTimes);
+
+        for (int i = 0; i < 200; i++) {
+            DateTime dateFrom = FIRST_DAY.plusDays(1 + random.nextInt(60)).toDateTimeAtStartOfDay()
+                    .plusMinutes(random.nextInt(24 * 60));
+            long milliseconds = (1 + random.nextInt(24 * 60 * 30)) * 60 * 1000L;
+
+            // when
+            Optional<Date> dateTo = workingCalendar.findDateTo(dateFrom, milliseconds, MAX_DAYS);
+
+            // then
+            assertEquals(findDateToDayByDay(workTimes, dateFrom, milliseconds), dateTo.get());
+        }
+    }
+
+    @Test
+    public final void shouldReturnWorkTimesOfEachShiftCompiledOnce() {
+        // given
+        Shift dayShift = mockShift(1L);
+        Shift nightShift = mockShift(2L);
+        AtomicInteger compilations = new AtomicInteger();
+
+        BiFunction<Shift, DateTime, List<DateTimeRange>> shiftWorkTimes = (shift, dateOfDay) -> {
+            compilations.incrementAndGet();
+
+            if (shift.getId().equals(1L)) {
+                return Lists.newArrayList(new DateTimeRange(dateOfDay, new TimeRange(new LocalTime(6, 0), new LocalTime(14, 0))));
+            }
+
+            return Lists.newArrayList(new DateTimeRange(dateOfDay, new TimeRange(new LocalTime(22, 0), new LocalTime(6, 0))));
+        };
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, Lists.newArrayList(dayShift, nightShift),
+                shiftWorkTimes);
+        DateTime dateOfDay = FIRST_DAY.plusDays(2).toDateTimeAtStartOfDay();
+
+        // when
+        List<DateTimeRange> dayShiftWorkTimes = workingCalendar.getShiftWorkDateTimes(dayShift, dateOfDay);
+        List<DateTimeRange> nightShiftWorkTimes = workingCalendar.getShiftWorkDateTimes(nightShift, dateOfDay);
+        Optional<Date> dateTo = workingCalendar.findDateTo(dateOfDay.plusHours(7), 2 * HOUR, MAX_DAYS);
+
+        // then
+        assertEquals(2 * 3, compilations.get());
+        assertEquals(shiftWorkTimes.apply(dayShift, dateOfDay), dayShiftWorkTimes);
+        assertEquals(shiftWorkTimes.apply(nightShift, dateOfDay), nightShiftWorkTimes);
+        assertEquals(dateOfDay.plusHours(9).toDate(), dateTo.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public final void shouldRejectShiftOutsideOfCalendar() {
+        // given
+        WorkingCalendar workingCalendar = new WorkingCalendar(FIRST_DAY, Lists.newArrayList(mockShift(1L)),
+                (shift, dateOfDay) -> Lists.newArrayList());
+
+        // when
+        workingCalendar.getShiftWorkDateTimes(mockShift(2L), FIRST_DAY.toDateTimeAtStartOfDay());
+    }
+
+    private Shift mockShift(final Long id) {
+        Shift shift = mock(Shift.class);
+
+        given(shift.getId()).willReturn(id);
+
+        return shift;
+    }
+
+    private Date findDateToDayByDay(final Function<DateTime, List<DateTimeRange>> workTimes, final DateTime dateFrom,
+            final long milliseconds) {
+        DateTime dateOfDay = dateFrom.minusDays(1).toLocalDate().toDateTimeAtStartOfDay();
+        long leftMilliseconds = milliseconds;
+
+        while (true) {
+            for (DateTimeRange range : workTimes.apply(dateOfDay)) {
+                if (dateFrom.isAfter(dateOfDay)) {
+                    range = range.trimBefore(dateFrom);
+                }
+                if (range != null) {
+                    if (leftMilliseconds > range.durationMillis()) {
+                        leftMilliseconds = leftMilliseconds - range.durationMillis();
+                    } else {
+                        return range.getFrom().plusMillis((int) leftMilliseconds).toDate();
+                    }
+                }
+            }
+            dateOfDay = dateOfDay.plusDays(1);
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.costCalculation.constants.CostCalculationConstants;
+import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
+import com.qcadoo.mes.costCalculation.domain.CostCalculationBatchResult;
+import com.qcadoo.mes.costNormsForMaterials.domain.ProductsCostContainer;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.tree.ProductStructureTreeService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Calculates cost calculations, one from its details view or many in one transaction from the list. Needed quantities of
+ * technologies, products and their unit costs are computed once for the whole batch and shared by all calculations, so
+ * recalculating costs of many products using the same technologies and materials doesn't repeat the same work for each of
+ * them.
+ */
+@Service
+public class CostCalculationBatchService {
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private CostCalculationService costCalculationService;
+
+    @Autowired
+    private ProductStructureTreeService productStructureTreeService;
+
+    /**
+     * Calculates total costs and sell prices of the given cost calculation. Total costs are saved, sell prices are only set on
+     * the returned entity.
+     * 
+     * @param costCalculation
+     *            cost calculation
+     * 
+     * @return calculated cost calculation
+     */
+    public Entity calculateTotalCost(final Entity costCalculation) {
+        return calculateTotalCost(costCalculation, new ProductsCostContainer(), Sets.newHashSet());
+    }
+
+    /**
+     * Calculates total costs and sell prices of the given cost calculations and saves them. Cost calculations with already
+     * generated documents and those without technology are skipped.
+     * 
+     * @param costCalculationIds
+     *            ids of cost calculations
+     * 
+     * @return saved cost calculations, in order of given ids, and numbers of skipped ones
+     */
+    @Transactional
+    public CostCalculationBatchResult calculateTotalCosts(final Collection<Long> costCalculationIds) {
+        checkNotNull(costCalculationIds, "costCalculationIds is required");
+
+        ProductsCostContainer productsCostContainer = new ProductsCostContainer();
+        Set<Long> technologyIdsWithProductStructureTree = Sets.newHashSet();
+        CostCalculationBatchResult result = new CostCalculationBatchResult();
+
+        for (Long costCalculationId : costCalculationIds) {
+            Entity costCalculation = getCostCalculationDD().get(costCalculationId);
+
+            checkNotNull(costCalculation, "Cost calculation with id = %s doesn't exist", costCalculationId);
+
+            if (costCalculation.getBooleanField(CostCalculationFields.GENERATED)) {
+                result.addGeneratedCostCalculation(costCalculation.getStringField(CostCalculationFields.NUMBER));
+
+                continue;
+            }
+
+            if (costCalculation.getField(CostCalculationFields.TECHNOLOGY) == null) {
+                result.addCostCalculationWithoutTechnology(costCalculation.getStringField(CostCalculationFields.NUMBER));
+
+                continue;
+            }
+
+            costCalculation = calculateTotalCost(costCalculation, productsCostContainer, technologyIdsWithProductStructureTree);
+
+            result.addCalculatedCostCalculation(costCalculation.getDataDefinition().save(costCalculation));
+        }
+
+        return result;
+    }
+
+    private Entity calculateTotalCost(Entity costCalculation, final ProductsCostContainer productsCostContainer,
+            final Set<Long> technologyIdsWithProductStructureTree) {
+        attachBelongsToFields(costCalculation);
+
+        Entity technology = costCalculation.getBelongsToField(CostCalculationFields.TECHNOLOGY);
+
+        if (technologyIdsWithProductStructureTree.add(technology.getId())) {
+            productStructureTreeService.generateProductStructureTree(null, technology);
+        }
+
+        costCalculation = costCalculationService.calculateTotalCost(costCalculation, productsCostContainer);
+
+        costCalculationService.calculateSellPriceOverhead(costCalculation);
+        costCalculationService.calculateSellPrice(costCalculation);
+
+        return costCalculation;
+    }
+
+    private void attachBelongsToFields(final Entity costCalculation) {
+        final Map<String, DataDefinition> belongsToFieldDDs = Maps.newHashMap();
+
+        belongsToFieldDDs.put(CostCalculationFields.ORDER,
+                dataDefinitionService.get(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER));
+        belongsToFieldDDs.put(CostCalculationFields.TECHNOLOGY,
+                dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY));
+        belongsToFieldDDs.put(CostCalculationFields.DEFAULT_TECHNOLOGY,
+                dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY));
+        belongsToFieldDDs.put(CostCalculationFields.PRODUCT,
+                dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT));
+
+        for (Map.Entry<String, DataDefinition> belongsToFieldDD : belongsToFieldDDs.entrySet()) {
+            Object fieldValue = costCalculation.getField(belongsToFieldDD.getKey());
+
+            if (!(fieldValue instanceof Long)) {
+                continue;
+            }
+
+            Entity fieldEntity = belongsToFieldDD.getValue().get((Long) fieldValue);
+            costCalculation.setField(belongsToFieldDD.getKey(), fieldEntity);
+        }
+    }
+
+    private DataDefinition getCostCalculationDD() {
+        return dataDefinitionService.get(CostCalculationConstants.PLUGIN_IDENTIFIER,
+                CostCalculationConstants.MODEL_COST_CALCULATION);
+    }
+
+}
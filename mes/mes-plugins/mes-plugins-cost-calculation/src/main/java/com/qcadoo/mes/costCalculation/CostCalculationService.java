@@ -25,6 +25,7 @@ package com.qcadoo.mes.costCalculation;
 
 import java.math.BigDecimal;
 
+import com.qcadoo.mes.costNormsForMaterials.domain.ProductsCostContainer;
 import com.qcadoo.model.api.Entity;
 
 public interface CostCalculationService {
@@ -39,6 +40,18 @@ public interface CostCalculationService {
      */
     Entity calculateTotalCost(final Entity entity);
 
+    /**
+     * Calculates total cost, reusing intermediate results of products cost calculation kept in the given container
+     * 
+     * @param entity
+     *            entity
+     * @param productsCostContainer
+     *            container shared by cost calculations made in one transaction
+     * 
+     * @return entity
+     */
+    Entity calculateTotalCost(final Entity entity, final ProductsCostContainer productsCostContainer);
+
     /**
      * Calculates operations and products costs
      * 
@@ -47,6 +60,17 @@ public interface CostCalculationService {
      */
     void calculateOperationsAndProductsCosts(final Entity entity);
 
+    /**
+     * Calculates operations and products costs, reusing intermediate results of products cost calculation kept in the given
+     * container
+     * 
+     * @param entity
+     *            entity
+     * @param productsCostContainer
+     *            container shared by cost calculations made in one transaction
+     */
+    void calculateOperationsAndProductsCosts(final Entity entity, final ProductsCostContainer productsCostContainer);
+
     /**
      * Calculates total costs
      * 
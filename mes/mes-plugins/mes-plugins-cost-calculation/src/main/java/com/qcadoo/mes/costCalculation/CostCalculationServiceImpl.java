@@ -35,6 +35,7 @@ import org.springframework.stereotype.Service;
 import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
 import com.qcadoo.mes.costCalculation.constants.SourceOfOperationCosts;
 import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationService;
+import com.qcadoo.mes.costNormsForMaterials.domain.ProductsCostContainer;
 import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationService;
 import com.qcadoo.mes.technologies.constants.OperationProductOutComponentFields;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
@@ -60,9 +61,14 @@ public class CostCalculationServiceImpl implements CostCalculationService {
 
     @Override
     public Entity calculateTotalCost(final Entity entity) {
+        return calculateTotalCost(entity, new ProductsCostContainer());
+    }
+
+    @Override
+    public Entity calculateTotalCost(final Entity entity, final ProductsCostContainer productsCostContainer) {
         entity.setField(CostCalculationFields.DATE, new Date());
         // FIXME MAKU beware of side effects - order of computations matter!
-        calculateOperationsAndProductsCosts(entity);
+        calculateOperationsAndProductsCosts(entity, productsCostContainer);
         final BigDecimal productionCosts = calculateProductionCost(entity);
         calculateMarginsAndOverheads(entity, productionCosts);
         final BigDecimal effectiveQuantity = getEffectiveQuantity(entity);
@@ -74,6 +80,11 @@ public class CostCalculationServiceImpl implements CostCalculationService {
 
     @Override
     public void calculateOperationsAndProductsCosts(final Entity entity) {
+        calculateOperationsAndProductsCosts(entity, new ProductsCostContainer());
+    }
+
+    @Override
+    public void calculateOperationsAndProductsCosts(final Entity entity, final ProductsCostContainer productsCostContainer) {
         boolean hourlyCostFromOperation = true;
         String sourceOfOperationCosts = entity.getStringField("sourceOfOperationCosts");
         if (sourceOfOperationCosts != null
@@ -84,7 +95,7 @@ public class CostCalculationServiceImpl implements CostCalculationService {
 
         final String sourceOfMaterialCosts = entity.getStringField(CostCalculationFields.SOURCE_OF_MATERIAL_COSTS);
 
-        productsCostCalculationService.calculateTotalProductsCost(entity, sourceOfMaterialCosts);
+        productsCostCalculationService.calculateTotalProductsCost(entity, sourceOfMaterialCosts, productsCostContainer);
     }
 
     @Override
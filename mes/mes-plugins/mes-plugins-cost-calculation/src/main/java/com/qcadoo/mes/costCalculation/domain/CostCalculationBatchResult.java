@@ -0,0 +1,63 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.domain;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.model.api.Entity;
+
+public class CostCalculationBatchResult {
+
+    private final List<Entity> calculatedCostCalculations = Lists.newArrayList();
+
+    private final List<String> generatedCostCalculations = Lists.newArrayList();
+
+    private final List<String> costCalculationsWithoutTechnology = Lists.newArrayList();
+
+    public void addCalculatedCostCalculation(final Entity costCalculation) {
+        calculatedCostCalculations.add(costCalculation);
+    }
+
+    public void addGeneratedCostCalculation(final String costCalculationNumber) {
+        generatedCostCalculations.add(costCalculationNumber);
+    }
+
+    public void addCostCalculationWithoutTechnology(final String costCalculationNumber) {
+        costCalculationsWithoutTechnology.add(costCalculationNumber);
+    }
+
+    public List<Entity> getCalculatedCostCalculations() {
+        return calculatedCostCalculations;
+    }
+
+    public List<String> getGeneratedCostCalculations() {
+        return generatedCostCalculations;
+    }
+
+    public List<String> getCostCalculationsWithoutTechnology() {
+        return costCalculationsWithoutTechnology;
+    }
+
+}
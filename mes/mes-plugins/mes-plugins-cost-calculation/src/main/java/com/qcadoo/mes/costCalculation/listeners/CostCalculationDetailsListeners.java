@@ -23,10 +23,9 @@
  */
 package com.qcadoo.mes.costCalculation.listeners;
 
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.qcadoo.mes.basic.constants.BasicConstants;
-import com.qcadoo.mes.costCalculation.CostCalculationService;
+import com.qcadoo.mes.costCalculation.CostCalculationBatchService;
 import com.qcadoo.mes.costCalculation.constants.CalculateMaterialCostsMode;
 import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
 import com.qcadoo.mes.costCalculation.constants.SourceOfMaterialCosts;
@@ -34,10 +33,8 @@ import com.qcadoo.mes.costCalculation.hooks.CostCalculationDetailsHooks;
 import com.qcadoo.mes.costCalculation.print.CostCalculationReportService;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.constants.OrderType;
-import com.qcadoo.mes.orders.constants.OrdersConstants;
 import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
-import com.qcadoo.mes.technologies.tree.ProductStructureTreeService;
 import com.qcadoo.model.api.BigDecimalUtils;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
@@ -53,7 +50,6 @@ import com.qcadoo.view.api.components.FormComponent;
 import com.qcadoo.view.api.components.LookupComponent;
 
 import java.math.BigDecimal;
-import java.util.Map;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -78,7 +74,7 @@ public class CostCalculationDetailsListeners {
     private NumberService numberService;
 
     @Autowired
-    private CostCalculationService costCalculationService;
+    private CostCalculationBatchService costCalculationBatchService;
 
     @Autowired
     private CostCalculationReportService costCalculationReportService;
@@ -86,9 +82,6 @@ public class CostCalculationDetailsListeners {
     @Autowired
     private CostCalculationDetailsHooks costCalculationDetailsHooks;
 
-    @Autowired
-    private ProductStructureTreeService productStructureTreeService;
-
     public void generateCostCalculation(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         state.performEvent(view, "save", new String[0]);
 
@@ -96,14 +89,7 @@ public class CostCalculationDetailsListeners {
             return;
         }
 
-        Entity costCalculation = getEntityFromForm(view);
-        attachBelongsToFields(costCalculation);
-        LookupComponent technologyLookup = (LookupComponent) view.getComponentByReference(CostCalculationFields.TECHNOLOGY);
-        productStructureTreeService.generateProductStructureTree(null, technologyLookup.getEntity());
-        costCalculation = costCalculationService.calculateTotalCost(costCalculation);
-
-        costCalculationService.calculateSellPriceOverhead(costCalculation);
-        costCalculationService.calculateSellPrice(costCalculation);
+        Entity costCalculation = costCalculationBatchService.calculateTotalCost(getEntityFromForm(view));
 
         fillFields(view, costCalculation);
 
@@ -123,30 +109,6 @@ public class CostCalculationDetailsListeners {
         return costCalculationForm.getEntity().getDataDefinition().get(costCalculationId);
     }
 
-    private void attachBelongsToFields(final Entity costCalculation) {
-        final Map<String, DataDefinition> belongsToFieldDDs = Maps.newHashMap();
-
-        belongsToFieldDDs.put(CostCalculationFields.ORDER,
-                dataDefinitionService.get(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER));
-        belongsToFieldDDs.put(CostCalculationFields.TECHNOLOGY,
-                dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY));
-        belongsToFieldDDs.put(CostCalculationFields.DEFAULT_TECHNOLOGY,
-                dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY));
-        belongsToFieldDDs.put(CostCalculationFields.PRODUCT,
-                dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT));
-
-        for (Map.Entry<String, DataDefinition> belongsToFieldDD : belongsToFieldDDs.entrySet()) {
-            Object fieldValue = costCalculation.getField(belongsToFieldDD.getKey());
-
-            if (!(fieldValue instanceof Long)) {
-                continue;
-            }
-
-            Entity fieldEntity = belongsToFieldDD.getValue().get((Long) fieldValue);
-            costCalculation.setField(belongsToFieldDD.getKey(), fieldEntity);
-        }
-    }
-
     private void fillFields(final ViewDefinitionState view, final Entity costCalculation) {
         final Set<String> costFields = Sets.newHashSet(CostCalculationFields.PRODUCTION_COST_MARGIN_VALUE,
                 CostCalculationFields.MATERIAL_COST_MARGIN_VALUE, CostCalculationFields.TOTAL_OVERHEAD,
@@ -0,0 +1,66 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation.listeners;
+
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.costCalculation.CostCalculationBatchService;
+import com.qcadoo.mes.costCalculation.domain.CostCalculationBatchResult;
+import com.qcadoo.view.api.ComponentState;
+import com.qcadoo.view.api.ComponentState.MessageType;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.GridComponent;
+
+@Service
+public class CostCalculationListListeners {
+
+    @Autowired
+    private CostCalculationBatchService costCalculationBatchService;
+
+    public void calculateTotalCosts(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        GridComponent costCalculationsGrid = (GridComponent) state;
+
+        Set<Long> costCalculationIds = costCalculationsGrid.getSelectedEntitiesIds();
+
+        CostCalculationBatchResult result = costCalculationBatchService.calculateTotalCosts(costCalculationIds);
+
+        costCalculationsGrid.addMessage("costCalculation.costCalculationList.messages.success.calculationComplete",
+                MessageType.SUCCESS, String.valueOf(result.getCalculatedCostCalculations().size()));
+
+        if (!result.getGeneratedCostCalculations().isEmpty()) {
+            costCalculationsGrid.addMessage("costCalculation.costCalculationList.messages.info.generatedCalculationsSkipped",
+                    MessageType.INFO, String.join(", ", result.getGeneratedCostCalculations()));
+        }
+
+        if (!result.getCostCalculationsWithoutTechnology().isEmpty()) {
+            costCalculationsGrid.addMessage(
+                    "costCalculation.costCalculationList.messages.info.calculationsWithoutTechnologySkipped", MessageType.INFO,
+                    String.join(", ", result.getCostCalculationsWithoutTechnology()));
+        }
+    }
+
+}
@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
 import com.qcadoo.mes.costCalculation.print.utils.CostCalculationMaterial;
 import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationService;
@@ -114,6 +115,7 @@ public class CostCalculationComponentsService {
             final Map<Long, ComponentsCalculationHolder> basicComponentsMap,
             final Map<Long, ComponentsCalculationHolder> allOperationsMap, final BigDecimal quantity) {
         Map<Long, Entity> entitiesById = new LinkedHashMap<Long, Entity>();
+        Map<Long, ComponentsCalculationHolder> subtreeCostsByIds = Maps.newHashMap();
         MathContext mathContext = numberService.getMathContext();
 
         for (Entity entity : operationComponents) {
@@ -124,7 +126,7 @@ public class CostCalculationComponentsService {
             ComponentsCalculationHolder component = entry.getValue();
             component.setMaterialCost(allOperationsMap.get(entry.getKey()).getMaterialCost());
             component.setLaborCost(allOperationsMap.get(entry.getKey()).getLaborCost());
-            addChildCost(component, null, allOperationsMap, entitiesById, mathContext);
+            addChildrenCosts(component, allOperationsMap, entitiesById, subtreeCostsByIds, mathContext);
             BigDecimal sumOfCost = BigDecimalUtils.convertNullToZero(component.getLaborCost()).add(
                     BigDecimalUtils.convertNullToZero(component.getMaterialCost()), mathContext);
             BigDecimal costPerUnit = sumOfCost.divide(quantity, mathContext);
@@ -134,24 +136,40 @@ public class CostCalculationComponentsService {
 
     }
 
-    private void addChildCost(ComponentsCalculationHolder component, ComponentsCalculationHolder child,
-            Map<Long, ComponentsCalculationHolder> allOperationsMap, Map<Long, Entity> entitiesById, MathContext mathContext) {
-        ComponentsCalculationHolder _component = component;
+    private void addChildrenCosts(final ComponentsCalculationHolder component,
+            final Map<Long, ComponentsCalculationHolder> allOperationsMap, final Map<Long, Entity> entitiesById,
+            final Map<Long, ComponentsCalculationHolder> subtreeCostsByIds, final MathContext mathContext) {
+        for (Entity toc : entitiesById.get(component.getToc().getId()).getHasManyField(
+                TechnologyOperationComponentFields.CHILDREN)) {
+            ComponentsCalculationHolder childSubtreeCosts = getSubtreeCosts(toc.getId(), allOperationsMap, entitiesById,
+                    subtreeCostsByIds, mathContext);
 
-        if (child != null) {
             BigDecimal materialCost = BigDecimalUtils.convertNullToZero(component.getMaterialCost()).add(
-                    BigDecimalUtils.convertNullToZero(child.getMaterialCost()), mathContext);
+                    childSubtreeCosts.getMaterialCost(), mathContext);
             BigDecimal laborCost = BigDecimalUtils.convertNullToZero(component.getLaborCost()).add(
-                    BigDecimalUtils.convertNullToZero(child.getLaborCost()), mathContext);
+                    childSubtreeCosts.getLaborCost(), mathContext);
             component.setLaborCost(numberService.setScaleWithDefaultMathContext(laborCost, 2));
             component.setMaterialCost(numberService.setScaleWithDefaultMathContext(materialCost, 2));
-            _component = child;
         }
+    }
 
-        for (Entity toc : entitiesById.get(_component.getToc().getId()).getHasManyField(
-                TechnologyOperationComponentFields.CHILDREN)) {
-            ComponentsCalculationHolder nextChild = allOperationsMap.get(toc.getId());
-            addChildCost(component, nextChild, allOperationsMap, entitiesById, mathContext);
+    private ComponentsCalculationHolder getSubtreeCosts(final Long tocId,
+            final Map<Long, ComponentsCalculationHolder> allOperationsMap, final Map<Long, Entity> entitiesById,
+            final Map<Long, ComponentsCalculationHolder> subtreeCostsByIds, final MathContext mathContext) {
+        ComponentsCalculationHolder subtreeCosts = subtreeCostsByIds.get(tocId);
+
+        if (subtreeCosts == null) {
+            ComponentsCalculationHolder operation = allOperationsMap.get(tocId);
+
+            subtreeCosts = new ComponentsCalculationHolder(operation.getToc(), operation.getProduct());
+            subtreeCosts.setMaterialCost(BigDecimalUtils.convertNullToZero(operation.getMaterialCost()));
+            subtreeCosts.setLaborCost(BigDecimalUtils.convertNullToZero(operation.getLaborCost()));
+
+            addChildrenCosts(subtreeCosts, allOperationsMap, entitiesById, subtreeCostsByIds, mathContext);
+
+            subtreeCostsByIds.put(tocId, subtreeCosts);
         }
+
+        return subtreeCosts;
     }
 }
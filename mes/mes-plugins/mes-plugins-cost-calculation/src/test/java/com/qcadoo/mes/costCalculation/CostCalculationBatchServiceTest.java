@@ -0,0 +1,342 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costCalculation;
+
+import static com.qcadoo.testing.model.EntityTestUtils.mockEntity;
+import static com.qcadoo.testing.model.EntityTestUtils.stubBooleanField;
+import static com.qcadoo.testing.model.EntityTestUtils.stubDecimalField;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.costCalculation.constants.CostCalculationConstants;
+import com.qcadoo.mes.costCalculation.constants.CostCalculationFields;
+import com.qcadoo.mes.costCalculation.domain.CostCalculationBatchResult;
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationService;
+import com.qcadoo.mes.costNormsForMaterials.ProductsCostCalculationServiceImpl;
+import com.qcadoo.mes.costNormsForProduct.constants.ProductFieldsCNFP;
+import com.qcadoo.mes.operationCostCalculations.OperationsCostCalculationService;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.tree.ProductStructureTreeService;
+import com.qcadoo.mes.timeNormsForOperations.constants.TechnologyOperationComponentFieldsTNFO;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityTree;
+import com.qcadoo.model.api.EntityTreeNode;
+import com.qcadoo.testing.model.NumberServiceMock;
+
+public class CostCalculationBatchServiceTest {
+
+    private static final Long L_TECHNOLOGY_ID = 7L;
+
+    private static final List<String> L_CALCULATED_FIELDS = Lists.newArrayList(CostCalculationFields.TOTAL_MATERIAL_COSTS,
+            CostCalculationFields.TOTAL_MACHINE_HOURLY_COSTS, CostCalculationFields.TOTAL_LABOR_HOURLY_COSTS,
+            CostCalculationFields.TOTAL_OVERHEAD, CostCalculationFields.TOTAL_TECHNICAL_PRODUCTION_COSTS,
+            CostCalculationFields.TOTAL_COSTS, CostCalculationFields.TOTAL_COST_PER_UNIT,
+            CostCalculationFields.REGISTRATION_PRICE_OVERHEAD_VALUE, CostCalculationFields.PROFIT_VALUE,
+            CostCalculationFields.TECHNICAL_PRODUCTION_COSTS, CostCalculationFields.SELL_PRICE_VALUE);
+
+    private CostCalculationBatchService costCalculationBatchService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private ProductStructureTreeService productStructureTreeService;
+
+    @Mock
+    private OperationsCostCalculationService operationsCostCalculationService;
+
+    @Mock
+    private ProductQuantitiesService productQuantitiesService;
+
+    @Mock
+    private DataDefinition costCalculationDD, technologyDD, productDD;
+
+    private Entity technology;
+
+    private final Map<Long, Map<String, Object>> costCalculationRows = Maps.newLinkedHashMap();
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        ProductsCostCalculationService productsCostCalculationService = new ProductsCostCalculationServiceImpl();
+
+        ReflectionTestUtils.setField(productsCostCalculationService, "productQuantitiesService", productQuantitiesService);
+        ReflectionTestUtils.setField(productsCostCalculationService, "numberService", NumberServiceMock.scaleAware());
+
+        CostCalculationService costCalculationService = new CostCalculationServiceImpl();
+
+        ReflectionTestUtils.setField(costCalculationService, "operationsCostCalculationService",
+                operationsCostCalculationService);
+        ReflectionTestUtils.setField(costCalculationService, "productsCostCalculationService", productsCostCalculationService);
+        ReflectionTestUtils.setField(costCalculationService, "numberService", NumberServiceMock.scaleAware());
+
+        costCalculationBatchService = new CostCalculationBatchService();
+
+        ReflectionTestUtils.setField(costCalculationBatchService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(costCalculationBatchService, "costCalculationService", costCalculationService);
+        ReflectionTestUtils.setField(costCalculationBatchService, "productStructureTreeService", productStructureTreeService);
+
+        given(dataDefinitionService.get(anyString(), anyString())).willReturn(mock(DataDefinition.class));
+        given(dataDefinitionService.get(CostCalculationConstants.PLUGIN_IDENTIFIER,
+                CostCalculationConstants.MODEL_COST_CALCULATION)).willReturn(costCalculationDD);
+        given(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_TECHNOLOGY))
+                .willReturn(technologyDD);
+
+        technology = mockTechnology();
+
+        given(technologyDD.get(L_TECHNOLOGY_ID)).willReturn(technology);
+        given(costCalculationDD.get(anyLong())).willAnswer(
+                invocation -> mockCostCalculation((Long) invocation.getArguments()[0]));
+        given(costCalculationDD.save(any(Entity.class))).willAnswer(invocation -> {
+            Entity costCalculation = (Entity) invocation.getArguments()[0];
+
+            for (String fieldName : L_CALCULATED_FIELDS) {
+                costCalculationRows.get(costCalculation.getId()).put(fieldName, costCalculation.getField(fieldName));
+            }
+
+            return costCalculation;
+        });
+
+        stubOperationsCosts();
+        stubNeededProductQuantities();
+        stubProducts();
+    }
+
+    private Entity mockTechnology() {
+        EntityTreeNode rootOperation = mock(EntityTreeNode.class);
+        EntityTree operationComponents = mock(EntityTree.class);
+        Entity technology = mockEntity(L_TECHNOLOGY_ID, technologyDD);
+
+        stubBooleanField(rootOperation, TechnologyOperationComponentFieldsTNFO.ARE_PRODUCT_QUANTITIES_DIVISIBLE, true);
+        given(operationComponents.getRoot()).willReturn(rootOperation);
+        given(technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS)).willReturn(operationComponents);
+
+        return technology;
+    }
+
+    private void stubOperationsCosts() {
+        Mockito.doAnswer(invocation -> {
+            Entity costCalculation = (Entity) invocation.getArguments()[0];
+            BigDecimal quantity = costCalculation.getDecimalField(CostCalculationFields.QUANTITY);
+
+            costCalculation.setField(CostCalculationFields.TOTAL_MACHINE_HOURLY_COSTS, quantity.multiply(BigDecimal.valueOf(3L)));
+            costCalculation.setField(CostCalculationFields.TOTAL_LABOR_HOURLY_COSTS, quantity.multiply(BigDecimal.valueOf(2L)));
+
+            return null;
+        }).when(operationsCostCalculationService).calculateOperationsCost(any(Entity.class), anyBoolean());
+    }
+
+    private void stubNeededProductQuantities() {
+        given(productQuantitiesService.getNeededProductQuantities(any(Entity.class), any(BigDecimal.class),
+                eq(MrpAlgorithm.ONLY_COMPONENTS))).willAnswer(invocation -> {
+                    BigDecimal quantity = (BigDecimal) invocation.getArguments()[1];
+
+                    return ImmutableMap.of(1L, quantity, 2L, quantity.multiply(BigDecimal.TEN));
+                });
+    }
+
+    private void stubProducts() {
+        given(productDD.getName()).willReturn("product");
+        given(productQuantitiesService.getProduct(anyLong())).willAnswer(invocation -> {
+            Long productId = (Long) invocation.getArguments()[0];
+            Entity product = mockEntity(productId, productDD);
+
+            stubDecimalField(product, ProductFieldsCNFP.AVERAGE_COST, BigDecimal.valueOf(productId * 100L));
+            stubDecimalField(product, ProductFieldsCNFP.COST_FOR_NUMBER, BigDecimal.valueOf(productId * 4L));
+            given(product.getField(ProductFieldsCNFP.AVERAGE_COST)).willReturn(BigDecimal.valueOf(productId * 100L));
+
+            return product;
+        });
+    }
+
+    private void addCostCalculation(final Long id, final BigDecimal quantity, final BigDecimal margin, final boolean generated) {
+        Map<String, Object> row = Maps.newHashMap();
+
+        row.put(CostCalculationFields.NUMBER, "CC" + id);
+        row.put(CostCalculationFields.TECHNOLOGY, L_TECHNOLOGY_ID);
+        row.put(CostCalculationFields.QUANTITY, quantity);
+        row.put(CostCalculationFields.CALCULATE_MATERIAL_COSTS_MODE, "02average");
+        row.put(CostCalculationFields.SOURCE_OF_MATERIAL_COSTS, "01currentGlobalDefinitionsInProduct");
+        row.put(CostCalculationFields.MATERIAL_COST_MARGIN, margin);
+        row.put(CostCalculationFields.PRODUCTION_COST_MARGIN, margin);
+        row.put(CostCalculationFields.ADDITIONAL_OVERHEAD, BigDecimal.ONE);
+        row.put(CostCalculationFields.REGISTRATION_PRICE_OVERHEAD, BigDecimal.valueOf(5L));
+        row.put(CostCalculationFields.PROFIT, BigDecimal.TEN);
+        row.put(CostCalculationFields.GENERATED, generated);
+
+        costCalculationRows.put(id, row);
+    }
+
+    private Entity mockCostCalculation(final Long id) {
+        Map<String, Object> fields = Maps.newHashMap(costCalculationRows.get(id));
+        Entity costCalculation = mockEntity(id, costCalculationDD);
+
+        Mockito.doAnswer(invocation -> fields.put((String) invocation.getArguments()[0], invocation.getArguments()[1]))
+                .when(costCalculation).setField(anyString(), any());
+        given(costCalculation.getField(anyString())).willAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        given(costCalculation.getDecimalField(anyString())).willAnswer(
+                invocation -> fields.get(invocation.getArguments()[0]));
+        given(costCalculation.getStringField(anyString())).willAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        given(costCalculation.getBooleanField(anyString())).willAnswer(
+                invocation -> Boolean.TRUE.equals(fields.get(invocation.getArguments()[0])));
+        given(costCalculation.getBelongsToField(anyString())).willAnswer(invocation -> {
+            Object value = fields.get(invocation.getArguments()[0]);
+
+            return (value instanceof Entity) ? value : null;
+        });
+
+        return costCalculation;
+    }
+
+    @Test
+    public void shouldCalculateSameTotalsInBatchAsOneByOne() {
+        // given
+        addCostCalculation(1L, BigDecimal.valueOf(10L), BigDecimal.valueOf(5L), false);
+        addCostCalculation(2L, BigDecimal.valueOf(10L), BigDecimal.valueOf(20L), false);
+        addCostCalculation(3L, BigDecimal.valueOf(25L), BigDecimal.valueOf(5L), false);
+
+        Map<Long, Entity> calculatedOneByOne = Maps.newHashMap();
+
+        for (Long id : costCalculationRows.keySet()) {
+            calculatedOneByOne.put(id, costCalculationBatchService.calculateTotalCost(costCalculationDD.get(id)));
+        }
+
+        // when
+        List<Entity> calculatedInBatch = costCalculationBatchService.calculateTotalCosts(costCalculationRows.keySet())
+                .getCalculatedCostCalculations();
+
+        // then
+        assertEquals(3, calculatedInBatch.size());
+
+        for (Entity costCalculation : calculatedInBatch) {
+            Entity costCalculationCalculatedAlone = calculatedOneByOne.get(costCalculation.getId());
+
+            for (String fieldName : L_CALCULATED_FIELDS) {
+                BigDecimal expected = costCalculationCalculatedAlone.getDecimalField(fieldName);
+                BigDecimal actual = costCalculation.getDecimalField(fieldName);
+
+                assertNotNull(fieldName, actual);
+                assertEquals(fieldName + " of cost calculation " + costCalculation.getId(), 0, expected.compareTo(actual));
+            }
+        }
+
+        // 10 * 100 / 4 + 100 * 200 / 8 = 2750 of materials, 50 of operations, 5% of margins and 1 of additional overhead
+        assertEquals(0, new BigDecimal("2941.00").compareTo(calculatedInBatch.get(0).getDecimalField(
+                CostCalculationFields.TOTAL_COSTS)));
+    }
+
+    @Test
+    public void shouldShareIntermediateResultsInBatch() {
+        // given
+        addCostCalculation(1L, BigDecimal.valueOf(10L), BigDecimal.valueOf(5L), false);
+        addCostCalculation(2L, BigDecimal.valueOf(10L), BigDecimal.valueOf(20L), false);
+        addCostCalculation(3L, BigDecimal.valueOf(25L), BigDecimal.valueOf(5L), false);
+
+        // when
+        costCalculationBatchService.calculateTotalCosts(costCalculationRows.keySet());
+
+        // then
+        verify(productStructureTreeService, times(1)).generateProductStructureTree(null, technology);
+        verify(productQuantitiesService, times(1)).getNeededProductQuantities(technology, BigDecimal.valueOf(10L),
+                MrpAlgorithm.ONLY_COMPONENTS);
+        verify(productQuantitiesService, times(1)).getNeededProductQuantities(technology, BigDecimal.valueOf(25L),
+                MrpAlgorithm.ONLY_COMPONENTS);
+        verify(productQuantitiesService, times(1)).getProduct(1L);
+        verify(productQuantitiesService, times(1)).getProduct(2L);
+        // total costs and then sell prices of each cost calculation
+        verify(costCalculationDD, times(6)).save(any(Entity.class));
+    }
+
+    @Test
+    public void shouldNotCalculateCostCalculationsWithGeneratedReport() {
+        // given
+        addCostCalculation(1L, BigDecimal.valueOf(10L), BigDecimal.valueOf(5L), true);
+        addCostCalculation(2L, BigDecimal.valueOf(10L), BigDecimal.valueOf(5L), false);
+
+        // when
+        CostCalculationBatchResult result = costCalculationBatchService.calculateTotalCosts(costCalculationRows.keySet());
+
+        // then
+        List<Entity> calculated = result.getCalculatedCostCalculations();
+
+        assertEquals(1, calculated.size());
+        assertEquals(Long.valueOf(2L), calculated.get(0).getId());
+        assertEquals(Lists.newArrayList("CC1"), result.getGeneratedCostCalculations());
+        assertNull(costCalculationRows.get(1L).get(CostCalculationFields.TOTAL_COSTS));
+        verify(costCalculationDD, times(2)).save(any(Entity.class));
+        verify(operationsCostCalculationService, times(1)).calculateOperationsCost(any(Entity.class), anyBoolean());
+        verify(productStructureTreeService, times(1)).generateProductStructureTree(null, technology);
+    }
+
+    @Test
+    public void shouldNotCalculateCostCalculationsWithoutTechnology() {
+        // given
+        addCostCalculation(1L, BigDecimal.valueOf(10L), BigDecimal.valueOf(5L), false);
+        addCostCalculation(2L, BigDecimal.valueOf(10L), BigDecimal.valueOf(5L), false);
+        costCalculationRows.get(1L).remove(CostCalculationFields.TECHNOLOGY);
+
+        // when
+        CostCalculationBatchResult result = costCalculationBatchService.calculateTotalCosts(costCalculationRows.keySet());
+
+        // then
+        assertEquals(1, result.getCalculatedCostCalculations().size());
+        assertEquals(Long.valueOf(2L), result.getCalculatedCostCalculations().get(0).getId());
+        assertEquals(Lists.newArrayList("CC1"), result.getCostCalculationsWithoutTechnology());
+        assertTrue(result.getGeneratedCostCalculations().isEmpty());
+        assertNull(costCalculationRows.get(1L).get(CostCalculationFields.TOTAL_COSTS));
+        verify(costCalculationDD, times(2)).save(any(Entity.class));
+    }
+
+}
@@ -25,12 +25,16 @@ package com.qcadoo.mes.costNormsForMaterials;
 
 import java.math.BigDecimal;
 
+import com.qcadoo.mes.costNormsForMaterials.domain.ProductsCostContainer;
 import com.qcadoo.model.api.Entity;
 
 public interface ProductsCostCalculationService {
 
     void calculateTotalProductsCost(final Entity costCalculation, final String sourceOfMaterialCosts);
 
+    void calculateTotalProductsCost(final Entity costCalculation, final String sourceOfMaterialCosts,
+            final ProductsCostContainer productsCostContainer);
+
     BigDecimal calculateProductCostForGivenQuantity(final Entity product, final BigDecimal quantity,
             final String calculateMaterialCostsMode);
 
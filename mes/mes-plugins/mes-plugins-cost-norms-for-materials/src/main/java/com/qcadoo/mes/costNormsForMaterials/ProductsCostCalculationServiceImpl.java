@@ -44,6 +44,7 @@ import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuanti
 import com.qcadoo.mes.costNormsForMaterials.constants.OrderFieldsCNFM;
 import com.qcadoo.mes.costNormsForMaterials.constants.ProductsCostFields;
 import com.qcadoo.mes.costNormsForMaterials.constants.TechnologyInstOperProductInCompFields;
+import com.qcadoo.mes.costNormsForMaterials.domain.ProductsCostContainer;
 import com.qcadoo.mes.costNormsForMaterials.orderRawMaterialCosts.dataProvider.OrderMaterialCostsDataProvider;
 import com.qcadoo.mes.orders.states.constants.OrderState;
 import com.qcadoo.mes.technologies.ProductQuantitiesService;
@@ -69,7 +70,14 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
 
     @Override
     public void calculateTotalProductsCost(final Entity entity, final String sourceOfMaterialCosts) {
-        Map<Entity, BigDecimal> listProductWithCost = calculateListProductsCostForPlannedQuantity(entity, sourceOfMaterialCosts);
+        calculateTotalProductsCost(entity, sourceOfMaterialCosts, new ProductsCostContainer());
+    }
+
+    @Override
+    public void calculateTotalProductsCost(final Entity entity, final String sourceOfMaterialCosts,
+            final ProductsCostContainer productsCostContainer) {
+        Map<Entity, BigDecimal> listProductWithCost = calculateListProductsCostForPlannedQuantity(entity, sourceOfMaterialCosts,
+                productsCostContainer);
         BigDecimal result = BigDecimal.ZERO;
         for (Entry<Entity, BigDecimal> productWithCost : listProductWithCost.entrySet()) {
             result = result.add(productWithCost.getValue(), numberService.getMathContext());
@@ -78,7 +86,7 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
     }
 
     private Map<Entity, BigDecimal> calculateListProductsCostForPlannedQuantity(final Entity entity,
-            final String sourceOfMaterialCosts) {
+            final String sourceOfMaterialCosts, final ProductsCostContainer productsCostContainer) {
         checkArgument(entity != null);
         BigDecimal quantity = BigDecimalUtils.convertNullToZero(entity.getDecimalField("quantity"));
 
@@ -91,9 +99,11 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
         Entity order = entity.getBelongsToField("order");
 
         if ("02fromOrdersMaterialCosts".equals(sourceOfMaterialCosts)) {
-            return getProductWithCostForPlannedQuantities(technology, quantity, calculateMaterialCostsMode, order);
+            return getProductWithCostForPlannedQuantities(technology, quantity, calculateMaterialCostsMode, order,
+                    productsCostContainer);
         } else if ("01currentGlobalDefinitionsInProduct".equals(sourceOfMaterialCosts)) {
-            return getProductWithCostForPlannedQuantities(entity, technology, quantity, calculateMaterialCostsMode);
+            return getProductWithCostForPlannedQuantities(entity, technology, quantity, calculateMaterialCostsMode,
+                    productsCostContainer);
         }
 
         throw new IllegalStateException("sourceOfProductCosts is neither FROM_ORDER nor GLOBAL");
@@ -102,48 +112,60 @@ public class ProductsCostCalculationServiceImpl implements ProductsCostCalculati
     @Override
     public BigDecimal calculateProductCostForGivenQuantity(final Entity product, final BigDecimal quantity,
             final String calculateMaterialCostsMode) {
+        return calculateCostPerUnit(product, calculateMaterialCostsMode).multiply(quantity, numberService.getMathContext());
+    }
+
+    private BigDecimal calculateProductCostForGivenQuantity(final Entity product, final BigDecimal quantity,
+            final String calculateMaterialCostsMode, final ProductsCostContainer productsCostContainer) {
+        BigDecimal costPerUnit = productsCostContainer.getCostPerUnit(product, calculateMaterialCostsMode,
+                () -> calculateCostPerUnit(product, calculateMaterialCostsMode));
+
+        return costPerUnit.multiply(quantity, numberService.getMathContext());
+    }
+
+    private BigDecimal calculateCostPerUnit(final Entity product, final String calculateMaterialCostsMode) {
         BigDecimal cost = BigDecimalUtils.convertNullToZero(product.getField(ProductsCostFields.forMode(
                 calculateMaterialCostsMode).getStrValue()));
         BigDecimal costForNumber = BigDecimalUtils.convertNullToOne(product.getDecimalField("costForNumber"));
         if (BigDecimalUtils.valueEquals(costForNumber, BigDecimal.ZERO)) {
             costForNumber = BigDecimal.ONE;
         }
-        BigDecimal costPerUnit = cost.divide(costForNumber, numberService.getMathContext());
 
-        return costPerUnit.multiply(quantity, numberService.getMathContext());
+        return cost.divide(costForNumber, numberService.getMathContext());
     }
 
     private Map<Entity, BigDecimal> getProductWithCostForPlannedQuantities(final Entity entity, final Entity technology,
-                                                                           final BigDecimal quantity, final String calculateMaterialCostsMode) {
-        Map<Long, BigDecimal> neededProductQuantities = getNeededProductQuantities(entity, technology, quantity,
-                MrpAlgorithm.ONLY_COMPONENTS);
+            final BigDecimal quantity, final String calculateMaterialCostsMode, final ProductsCostContainer productsCostContainer) {
+        Map<Long, BigDecimal> neededProductQuantities = getNeededProductQuantities(technology, quantity,
+                MrpAlgorithm.ONLY_COMPONENTS, productsCostContainer);
         Map<Entity, BigDecimal> results = new HashMap<>();
         for (Entry<Long, BigDecimal> productQuantity : neededProductQuantities.entrySet()) {
-            Entity product = productQuantitiesService.getProduct(productQuantity.getKey());
+            Entity product = productsCostContainer.getProduct(productQuantity.getKey(), productQuantitiesService::getProduct);
             BigDecimal thisProductsCost = calculateProductCostForGivenQuantity(product, productQuantity.getValue(),
-                    calculateMaterialCostsMode);
+                    calculateMaterialCostsMode, productsCostContainer);
             results.put(product, thisProductsCost);
         }
         return results;
     }
 
-    private Map<Long, BigDecimal> getNeededProductQuantities(final Entity entity, final Entity technology,
-            final BigDecimal quantity, final MrpAlgorithm algorithm) {
-        return productQuantitiesService.getNeededProductQuantities(technology, quantity, algorithm);
+    private Map<Long, BigDecimal> getNeededProductQuantities(final Entity technology, final BigDecimal quantity,
+            final MrpAlgorithm algorithm, final ProductsCostContainer productsCostContainer) {
+        return productsCostContainer.getNeededProductQuantities(technology, quantity, algorithm,
+                () -> productQuantitiesService.getNeededProductQuantities(technology, quantity, algorithm));
     }
 
     private Map<Entity, BigDecimal> getProductWithCostForPlannedQuantities(final Entity technology, final BigDecimal quantity,
-                                                                           final String calculateMaterialCostsMode, final Entity order) {
+            final String calculateMaterialCostsMode, final Entity order, final ProductsCostContainer productsCostContainer) {
         Map<Entity, BigDecimal> results = Maps.newHashMap();
         if (OrderState.PENDING.equals(OrderState.of(order))) {
-            Map<Long, BigDecimal> neededProductQuantities = productQuantitiesService.getNeededProductQuantities(technology,
-                    quantity, MrpAlgorithm.ONLY_COMPONENTS);
+            Map<Long, BigDecimal> neededProductQuantities = getNeededProductQuantities(technology, quantity,
+                    MrpAlgorithm.ONLY_COMPONENTS, productsCostContainer);
 
             for (Entry<Long, BigDecimal> productQuantity : neededProductQuantities.entrySet()) {
-                Entity product = productQuantitiesService.getProduct(productQuantity.getKey());
+                Entity product = productsCostContainer.getProduct(productQuantity.getKey(), productQuantitiesService::getProduct);
                 for (Entity orderMaterialCosts : findOrderMaterialCosts(order, product).asSet()) {
                     BigDecimal thisProductsCost = calculateProductCostForGivenQuantity(orderMaterialCosts,
-                            productQuantity.getValue(), calculateMaterialCostsMode);
+                            productQuantity.getValue(), calculateMaterialCostsMode, productsCostContainer);
                     results.put(product, thisProductsCost);
                 }
             }
@@ -0,0 +1,78 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.costNormsForMaterials.domain;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.technologies.constants.MrpAlgorithm;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Memoizes intermediate results of products cost calculation - needed quantities of technologies, products and unit costs of
+ * products - so they are computed once for many cost calculations made in one transaction. Not thread safe.
+ */
+public class ProductsCostContainer {
+
+    private final Map<List<Object>, Map<Long, BigDecimal>> neededProductQuantities = Maps.newHashMap();
+
+    private final Map<Long, Entity> products = Maps.newHashMap();
+
+    private final Map<List<Object>, BigDecimal> costsPerUnit = Maps.newHashMap();
+
+    public Map<Long, BigDecimal> getNeededProductQuantities(final Entity technology, final BigDecimal quantity,
+            final MrpAlgorithm algorithm, final Supplier<Map<Long, BigDecimal>> calculation) {
+        if (technology.getId() == null) {
+            return calculation.get();
+        }
+
+        List<Object> key = Arrays.<Object> asList(technology.getId(), quantity.stripTrailingZeros(), algorithm);
+
+        return neededProductQuantities.computeIfAbsent(key, k -> calculation.get());
+    }
+
+    public Entity getProduct(final Long productId, final Function<Long, Entity> loader) {
+        return products.computeIfAbsent(productId, loader);
+    }
+
+    public BigDecimal getCostPerUnit(final Entity costsHolder, final String calculateMaterialCostsMode,
+            final Supplier<BigDecimal> calculation) {
+        DataDefinition costsHolderDD = costsHolder.getDataDefinition();
+
+        if ((costsHolder.getId() == null) || (costsHolderDD == null)) {
+            return calculation.get();
+        }
+
+        List<Object> key = Arrays.<Object> asList(costsHolderDD.getName(), costsHolder.getId(), calculateMaterialCostsMode);
+
+        return costsPerUnit.computeIfAbsent(key, k -> calculation.get());
+    }
+
+}
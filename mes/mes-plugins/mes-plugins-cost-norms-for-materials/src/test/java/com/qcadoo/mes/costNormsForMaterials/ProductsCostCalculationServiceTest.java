@@ -33,6 +33,7 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.math.BigDecimal;
@@ -50,6 +51,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.qcadoo.mes.costNormsForMaterials.constants.ProductsCostFields;
+import com.qcadoo.mes.costNormsForMaterials.domain.ProductsCostContainer;
 import com.qcadoo.mes.costNormsForMaterials.orderRawMaterialCosts.dataProvider.OrderMaterialCostsDataProvider;
 import com.qcadoo.mes.costNormsForProduct.constants.ProductFieldsCNFP;
 import com.qcadoo.mes.orders.constants.OrderFields;
@@ -78,7 +80,7 @@ public class ProductsCostCalculationServiceTest {
     private OrderMaterialCostsDataProvider orderMaterialCostsDataProvider;
 
     @Mock
-    private DataDefinition technologyInstanceDD;
+    private DataDefinition technologyInstanceDD, productDD;
 
     @Before
     public void init() {
@@ -210,6 +212,49 @@ public class ProductsCostCalculationServiceTest {
         verifySetDecimalField(costCalculation, "totalMaterialCosts", BigDecimal.valueOf(255));
     }
 
+    @Test
+    public void shouldReuseNeededQuantitiesProductsAndUnitCostsOfSharedContainer() throws Exception {
+        // given
+        String sourceOfMaterialCosts = "01currentGlobalDefinitionsInProduct";
+        String calculateMaterialCostsMode = "02average";
+
+        Entity technology = mockEntity(7L);
+        Entity otherCostCalculation = mockEntity();
+
+        for (Entity calculation : new Entity[] { costCalculation, otherCostCalculation }) {
+            stubBelongsToField(calculation, "technology", technology);
+            stubStringField(calculation, "calculateMaterialCostsMode", calculateMaterialCostsMode);
+            stubDecimalField(calculation, "quantity", BigDecimal.valueOf(5L));
+        }
+
+        Map<Long, BigDecimal> neededProductQuantities = ImmutableMap.of(1L, BigDecimal.ONE, 2L, BigDecimal.valueOf(10L));
+        stubNeededProductQuantities(neededProductQuantities);
+
+        Entity firstProduct = mockCostsHolder(1L, calculateMaterialCostsMode, BigDecimal.valueOf(100L), BigDecimal.valueOf(20));
+        Entity secondProduct = mockCostsHolder(2L, calculateMaterialCostsMode, BigDecimal.valueOf(75L), BigDecimal.valueOf(3L));
+        given(firstProduct.getDataDefinition()).willReturn(productDD);
+        given(secondProduct.getDataDefinition()).willReturn(productDD);
+        given(productDD.getName()).willReturn("product");
+        stubProductLookupResults(ImmutableMap.of(1L, firstProduct, 2L, secondProduct));
+
+        ProductsCostContainer productsCostContainer = new ProductsCostContainer();
+
+        // when
+        productsCostCalculationService.calculateTotalProductsCost(costCalculation, sourceOfMaterialCosts, productsCostContainer);
+        productsCostCalculationService.calculateTotalProductsCost(otherCostCalculation, sourceOfMaterialCosts,
+                productsCostContainer);
+
+        // then
+        verifySetDecimalField(costCalculation, "totalMaterialCosts", BigDecimal.valueOf(255));
+        verifySetDecimalField(otherCostCalculation, "totalMaterialCosts", BigDecimal.valueOf(255));
+        verify(productQuantitiesService, times(1)).getNeededProductQuantities(technology, BigDecimal.valueOf(5L),
+                MrpAlgorithm.ONLY_COMPONENTS);
+        verify(productQuantitiesService, times(1)).getProduct(1L);
+        verify(productQuantitiesService, times(1)).getProduct(2L);
+        verify(firstProduct, times(1)).getDecimalField("costForNumber");
+        verify(secondProduct, times(1)).getDecimalField("costForNumber");
+    }
+
     @Test
     public void shouldThrowExceptionWhenCalculateTotalProductsCostForIncorrectSource() throws Exception {
         // given
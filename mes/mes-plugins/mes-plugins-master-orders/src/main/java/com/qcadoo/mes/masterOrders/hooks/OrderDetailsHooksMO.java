@@ -151,7 +151,7 @@ public class OrderDetailsHooksMO {
             if (parameter.getBooleanField(ParameterFieldsMO.SAME_ORDER_NUMBER)) {
                 generatedNumber = masterOrderNumber;
             } else {
-                generatedNumber = numberGeneratorService.generateNumberWithPrefix(OrdersConstants.PLUGIN_IDENTIFIER,
+                generatedNumber = numberGeneratorService.proposeNumberWithPrefix(OrdersConstants.PLUGIN_IDENTIFIER,
                         OrdersConstants.MODEL_ORDER, 3, masterOrderNumber + "-");
             }
 
@@ -26,10 +26,12 @@ package com.qcadoo.mes.materialFlowResources.service;
 import static com.qcadoo.mes.materialFlowResources.constants.ResourceFields.QUANTITY;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.exception.LockAcquisitionException;
@@ -42,6 +44,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.qcadoo.mes.basic.CalculationQuantityService;
 import com.qcadoo.mes.basic.ParameterService;
@@ -82,6 +85,11 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
     private static final String L_LAST_NAME = "lastName";
 
+    private static final int L_MAX_PRODUCTS_IN_QUERY = 500;
+
+    private static final List<String> L_RESOURCE_QUANTITY_FIELDS = Lists.newArrayList(ResourceFields.QUANTITY,
+            ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, ResourceFields.AVAILABLE_QUANTITY, ResourceFields.RESERVED_QUANTITY);
+
     private static final Logger logger = LoggerFactory.getLogger(ResourceManagementServiceImpl.class);
 
     @Autowired
@@ -93,9 +101,6 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
     @Autowired
     private PalletNumberDisposalService palletNumberDisposalService;
 
-    @Autowired
-    private ResourceStockService resourceStockService;
-
     @Autowired
     private ReservationsService reservationsService;
 
@@ -191,8 +196,6 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             resource.setField(ResourceFields.CONVERSION, position.getField(PositionFields.CONVERSION));
         }
 
-        resourceStockService.createResourceStock(resource);
-
         resource = resourceDD.save(resource);
 
         if (!resource.isValid()) {
@@ -202,8 +205,10 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         position.setField("resourceReceiptDocument", resource.getId().toString());
     }
 
-    private Entity createResource(final Entity position, final Entity warehouse, final Entity resource, final BigDecimal quantity,
-                                  Object date) {
+    private Entity createResource(final Entity position, final ResourcesTransfer resourcesTransfer, final Entity resource,
+                                  final BigDecimal quantity) {
+        Entity warehouse = resourcesTransfer.getWarehouseTo();
+        Entity product = resource.getBelongsToField(ResourceFields.PRODUCT);
         Entity newResource = resource.getDataDefinition().create();
 
         if (position != null) {
@@ -217,7 +222,11 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             }
         }
 
-        newResource.setField(ResourceFields.TIME, date);
+        if (!resourcesTransfer.hasStorageLocation(product)) {
+            resourcesTransfer.putStorageLocation(product, findStorageLocationForProduct(warehouse, product));
+        }
+
+        newResource.setField(ResourceFields.TIME, resourcesTransfer.getDate());
         newResource.setField(ResourceFields.LOCATION, warehouse);
         newResource.setField(ResourceFields.PRODUCT, resource.getBelongsToField(PositionFields.PRODUCT));
         newResource.setField(ResourceFields.QUANTITY, quantity);
@@ -227,8 +236,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         newResource.setField(ResourceFields.BATCH, resource.getField(PositionFields.BATCH));
         newResource.setField(ResourceFields.EXPIRATION_DATE, resource.getField(PositionFields.EXPIRATION_DATE));
         newResource.setField(ResourceFields.PRODUCTION_DATE, resource.getField(PositionFields.PRODUCTION_DATE));
-        newResource.setField(ResourceFields.STORAGE_LOCATION,
-                findStorageLocationForProduct(warehouse, resource.getBelongsToField(ResourceFields.PRODUCT)));
+        newResource.setField(ResourceFields.STORAGE_LOCATION, resourcesTransfer.getStorageLocation(product));
         newResource.setField(ResourceFields.PALLET_NUMBER, null);
         newResource.setField(ResourceFields.TYPE_OF_PALLET, null);
         newResource.setField(ResourceFields.ADDITIONAL_CODE, resource.getField(ResourceFields.ADDITIONAL_CODE));
@@ -241,9 +249,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
         newResource.setField(ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, quantityInAdditionalUnit);
 
-        resourceStockService.createResourceStock(newResource);
-
-        return resource.getDataDefinition().save(newResource);
+        return newResource;
     }
 
     private Entity findStorageLocationForProduct(final Entity warehouse, final Entity product) {
@@ -269,79 +275,55 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
     }
 
-    public Multimap<Long, BigDecimal> getQuantitiesInWarehouse(final Entity warehouse,
-                                                               final Multimap<Entity, Entity> productsAndPositions) {
-        Multimap<Long, BigDecimal> result = ArrayListMultimap.create();
-
-        for (Map.Entry<Entity, Entity> productAndPosition : productsAndPositions.entries()) {
-            Entity additionalCode = productAndPosition.getValue().getBelongsToField(PositionFields.ADDITIONAL_CODE);
-            BigDecimal conversion = productAndPosition.getValue().getDecimalField(PositionFields.CONVERSION);
-
-            List<Entity> resources = Lists.newArrayList();
-
-            if (additionalCode != null) {
-                SearchCriteriaBuilder scb = getSearchCriteriaForResourceForProductAndWarehouse(productAndPosition.getKey(),
-                        warehouse);
+    private WarehouseResources getWarehouseResources(final Entity warehouse, final Collection<Entity> products) {
+        DataDefinition resourceDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_RESOURCE);
 
-                if (!StringUtils.isEmpty(productAndPosition.getKey().getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, conversion));
-                } else {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                }
+        WarehouseAlgorithm warehouseAlgorithm = WarehouseAlgorithm
+                .parseString(warehouse.getStringField(LocationFieldsMFR.ALGORITHM));
 
-                resources = scb.add(SearchRestrictions.belongsTo(ResourceFields.ADDITIONAL_CODE, additionalCode)).list()
-                        .getEntities();
+        List<Long> productIds = products.stream().map(Entity::getId).distinct().collect(Collectors.toList());
 
-                scb = getSearchCriteriaForResourceForProductAndWarehouse(productAndPosition.getKey(), warehouse);
+        List<Entity> resources = Lists.newArrayList();
 
-                if (!StringUtils.isEmpty(productAndPosition.getKey().getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, conversion));
-                } else {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                }
+        for (List<Long> productIdsPartition : Lists.partition(productIds, L_MAX_PRODUCTS_IN_QUERY)) {
+            resources.addAll(resourceDD.find().add(SearchRestrictions.belongsTo(ResourceFields.LOCATION, warehouse))
+                    .add(SearchRestrictions.in(ResourceFields.PRODUCT + ".id", productIdsPartition))
+                    .add(SearchRestrictions.gt(ResourceFields.AVAILABLE_QUANTITY, BigDecimal.ZERO)).list().getEntities());
+        }
 
-                resources
-                        .addAll(scb
-                                .add(SearchRestrictions.or(SearchRestrictions.isNull(ResourceFields.ADDITIONAL_CODE),
-                                        SearchRestrictions.ne("additionalCode.id", additionalCode.getId())))
-                                .list().getEntities());
-            }
+        return new WarehouseResources(warehouseAlgorithm, resources);
+    }
 
-            if (resources.isEmpty()) {
-                SearchCriteriaBuilder scb = getSearchCriteriaForResourceForProductAndWarehouse(productAndPosition.getKey(),
-                        warehouse);
+    public Multimap<Long, BigDecimal> getQuantitiesInWarehouse(final Entity warehouse,
+                                                               final Multimap<Entity, Entity> productsAndPositions) {
+        return getQuantitiesInWarehouse(getWarehouseResources(warehouse, productsAndPositions.keySet()), productsAndPositions);
+    }
 
-                if (!StringUtils.isEmpty(productAndPosition.getKey().getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, conversion));
-                } else {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                }
+    private Multimap<Long, BigDecimal> getQuantitiesInWarehouse(final WarehouseResources warehouseResources,
+                                                                final Multimap<Entity, Entity> productsAndPositions) {
+        Multimap<Long, BigDecimal> result = ArrayListMultimap.create();
 
-                resources = scb.list().getEntities();
-            }
+        for (Map.Entry<Entity, Entity> productAndPosition : productsAndPositions.entries()) {
+            BigDecimal availableQuantity = warehouseResources.getAvailableQuantity(productAndPosition.getKey(),
+                    productAndPosition.getValue());
 
             if (result.containsKey(productAndPosition.getKey().getId())) {
                 BigDecimal currentQuantity = result.get(productAndPosition.getKey().getId()).stream().reduce(BigDecimal.ZERO,
                         BigDecimal::add);
 
-                result.put(productAndPosition.getKey().getId(),
-                        (resources.stream().map(res -> res.getDecimalField(ResourceFields.AVAILABLE_QUANTITY))
-                                .reduce(BigDecimal.ZERO, BigDecimal::add)).add(currentQuantity));
+                result.put(productAndPosition.getKey().getId(), availableQuantity.add(currentQuantity));
             } else {
-                result.put(productAndPosition.getKey().getId(),
-                        resources.stream().map(res -> res.getDecimalField(ResourceFields.AVAILABLE_QUANTITY))
-                                .reduce(BigDecimal.ZERO, BigDecimal::add));
+                result.put(productAndPosition.getKey().getId(), availableQuantity);
             }
         }
 
         return result;
     }
 
-    private Multimap<Entity, Entity> getProductsAndPositionsFromDocument(final Entity document) {
+    private Multimap<Entity, Entity> getProductsAndPositionsFromDocument(final List<Entity> positions) {
         Multimap<Entity, Entity> map = ArrayListMultimap.create();
 
-        List<Entity> positions = document.getHasManyField(DocumentFields.POSITIONS);
-
         positions.forEach(position -> map.put(position.getBelongsToField(PositionFields.PRODUCT), position));
 
         return map;
@@ -357,20 +339,24 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
     private void updateResourcesForReleaseDocuments(final Entity document) {
         Entity warehouse = document.getBelongsToField(DocumentFields.LOCATION_FROM);
 
-        WarehouseAlgorithm warehouseAlgorithm = WarehouseAlgorithm
-                .parseString(warehouse.getStringField(LocationFieldsMFR.ALGORITHM));
-
         boolean enoughResources = true;
 
         NotEnoughResourcesErrorMessageHolder errorMessageHolder = notEnoughResourcesErrorMessageHolderFactory.create();
 
-        Multimap<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouse,
-                getProductsAndPositionsFromDocument(document));
+        List<Entity> positions = document.getHasManyField(DocumentFields.POSITIONS);
+        Multimap<Entity, Entity> productsAndPositions = getProductsAndPositionsFromDocument(positions);
+
+        WarehouseResources warehouseResources = getWarehouseResources(warehouse, productsAndPositions.keySet());
 
-        for (Entity position : document.getHasManyField(DocumentFields.POSITIONS)) {
+        Multimap<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouseResources, productsAndPositions);
+
+        List<Long> positionIdsToDelete = Lists.newArrayList();
+        List<Entity> positionsToSave = Lists.newArrayList();
+
+        for (Entity position : positions) {
             Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-            List<Entity> generatedPositions = updateResources(warehouse, position, warehouseAlgorithm);
+            List<Entity> generatedPositions = updateResources(warehouse, position, warehouseResources);
 
             enoughResources = enoughResources && position.isValid();
 
@@ -383,26 +369,98 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             } else {
                 if (generatedPositions.size() > 1) {
                     if (Objects.nonNull(position.getId())) {
-                        position.getDataDefinition().delete(position.getId());
-                    }
-                    for (Entity newPosition : generatedPositions) {
-                        newPosition.setField(PositionFields.DOCUMENT, document);
-                        Entity saved = newPosition.getDataDefinition().save(newPosition);
-                        addPositionErrors(document, saved);
+                        positionIdsToDelete.add(position.getId());
                     }
+                    generatedPositions.forEach(newPosition -> newPosition.setField(PositionFields.DOCUMENT, document));
+
+                    positionsToSave.addAll(generatedPositions);
                 } else {
                     copyPositionValues(position, generatedPositions.get(0));
-                    Entity saved = position.getDataDefinition().save(position);
-                    addPositionErrors(document, saved);
+
+                    positionsToSave.add(position);
                 }
             }
         }
 
+        saveResources(warehouseResources);
+        savePositions(document, positionIdsToDelete, positionsToSave);
+
         if (!enoughResources) {
             NotEnoughResourcesErrorMessageCopyToEntityHelper.addError(document, warehouse, errorMessageHolder);
         }
     }
 
+    private void saveResources(final WarehouseResources warehouseResources) {
+        DataDefinition resourceDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_RESOURCE);
+
+        List<Entity> updatedResources = reloadWithQuantities(resourceDD, warehouseResources.getUpdatedResources());
+
+        if (!updatedResources.isEmpty()) {
+            for (Entity savedResource : resourceDD.saveAll(updatedResources)) {
+                if (!savedResource.isValid()) {
+                    throw new InvalidResourceException(savedResource);
+                }
+            }
+        }
+
+        List<Entity> deletedResources = warehouseResources.getDeletedResources();
+
+        if (!deletedResources.isEmpty()) {
+            resourceDD.delete(deletedResources.stream().map(Entity::getId).toArray(Long[]::new));
+
+            Map<Long, Entity> palletNumbersToDispose = Maps.newLinkedHashMap();
+
+            deletedResources.stream().map(resource -> resource.getBelongsToField(ResourceFields.PALLET_NUMBER))
+                    .filter(Objects::nonNull).forEach(palletNumber -> palletNumbersToDispose.put(palletNumber.getId(), palletNumber));
+
+            palletNumbersToDispose.values().forEach(palletNumberDisposalService::tryToDispose);
+        }
+    }
+
+    /**
+     * Resources in the index were loaded before reservations of the document were deleted, so they are reloaded and only their
+     * quantities are taken from the index - changes made to other columns in the meantime are not overwritten.
+     */
+    private List<Entity> reloadWithQuantities(final DataDefinition resourceDD, final List<Entity> resources) {
+        Map<Long, Entity> resourcesById = Maps.newLinkedHashMap();
+
+        resources.forEach(resource -> resourcesById.put(resource.getId(), resource));
+
+        List<Entity> reloadedResources = Lists.newArrayList();
+
+        for (List<Long> resourceIdsPartition : Lists.partition(Lists.newArrayList(resourcesById.keySet()),
+                L_MAX_PRODUCTS_IN_QUERY)) {
+            for (Entity reloadedResource : resourceDD.find().add(SearchRestrictions.in("id", resourceIdsPartition)).list()
+                    .getEntities()) {
+                Entity resource = resourcesById.get(reloadedResource.getId());
+
+                for (String quantityField : L_RESOURCE_QUANTITY_FIELDS) {
+                    reloadedResource.setField(quantityField, resource.getField(quantityField));
+                }
+
+                reloadedResources.add(reloadedResource);
+            }
+        }
+
+        return reloadedResources;
+    }
+
+    private void savePositions(final Entity document, final List<Long> positionIdsToDelete, final List<Entity> positionsToSave) {
+        DataDefinition positionDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_POSITION);
+
+        if (!positionIdsToDelete.isEmpty()) {
+            positionDD.delete(positionIdsToDelete.toArray(new Long[positionIdsToDelete.size()]));
+        }
+
+        if (!positionsToSave.isEmpty()) {
+            for (Entity saved : positionDD.saveAll(positionsToSave)) {
+                addPositionErrors(document, saved);
+            }
+        }
+    }
+
     private void addPositionErrors(final Entity document, final Entity saved) {
         if (!saved.isValid()) {
             document.setNotValid();
@@ -435,12 +493,12 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
     }
 
     private List<Entity> updateResources(final Entity warehouse, final Entity position,
-                                         final WarehouseAlgorithm warehouseAlgorithm) {
+                                         final WarehouseResources warehouseResources) {
         List<Entity> newPositions = Lists.newArrayList();
 
         Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouse, product, position, warehouseAlgorithm);
+        List<Entity> resources = getResourcesForPosition(product, position, warehouseResources);
 
         reservationsService.deleteReservationFromDocumentPosition(position);
 
@@ -473,11 +531,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 quantity = quantity.subtract(resourceAvailableQuantity, numberService.getMathContext());
 
                 if (resourceQuantity.compareTo(resourceAvailableQuantity) <= 0) {
-                    Entity palletNumberToDispose = resource.getBelongsToField(ResourceFields.PALLET_NUMBER);
-
-                    resource.getDataDefinition().delete(resource.getId());
-
-                    palletNumberDisposalService.tryToDispose(palletNumberToDispose);
+                    warehouseResources.delete(resource);
                 } else {
                     BigDecimal newResourceQuantity = resourceQuantity.subtract(resourceAvailableQuantity);
                     BigDecimal quantityInAdditionalUnit = calculationQuantityService
@@ -487,11 +541,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                     resource.setField(ResourceFields.QUANTITY, newResourceQuantity);
                     resource.setField(ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, quantityInAdditionalUnit);
 
-                    Entity savedResource = resource.getDataDefinition().save(resource);
-
-                    if (!savedResource.isValid()) {
-                        throw new InvalidResourceException(savedResource);
-                    }
+                    warehouseResources.update(resource);
                 }
 
                 newPosition.setField(PositionFields.QUANTITY,
@@ -516,11 +566,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 resource.setField(ResourceFields.QUANTITY, numberService.setScaleWithDefaultMathContext(resourceQuantity));
                 resource.setField(ResourceFields.AVAILABLE_QUANTITY, resourceAvailableQuantity);
 
-                Entity savedResource = resource.getDataDefinition().save(resource);
-
-                if (!savedResource.isValid()) {
-                    throw new InvalidResourceException(savedResource);
-                }
+                warehouseResources.update(resource);
 
                 newPosition.setField(PositionFields.QUANTITY, numberService.setScaleWithDefaultMathContext(quantity));
 
@@ -544,20 +590,27 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
         Object date = document.getField(DocumentFields.TIME);
 
-        WarehouseAlgorithm warehouseAlgorithm = WarehouseAlgorithm
-                .parseString(warehouseFrom.getStringField(LocationFieldsMFR.ALGORITHM));
-
         boolean enoughResources = true;
 
         NotEnoughResourcesErrorMessageHolder errorMessageHolder = notEnoughResourcesErrorMessageHolderFactory.create();
 
-        Multimap<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouseFrom,
-                getProductsAndPositionsFromDocument(document));
+        List<Entity> positions = document.getHasManyField(DocumentFields.POSITIONS);
+        Multimap<Entity, Entity> productsAndPositions = getProductsAndPositionsFromDocument(positions);
 
-        for (Entity position : document.getHasManyField(DocumentFields.POSITIONS)) {
+        WarehouseResources warehouseResources = getWarehouseResources(warehouseFrom, productsAndPositions.keySet());
+
+        Multimap<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouseResources, productsAndPositions);
+
+        ResourcesTransfer resourcesTransfer = new ResourcesTransfer(warehouseTo, date);
+
+        List<Long> positionIdsToDelete = Lists.newArrayList();
+        List<Entity> positionsToSave = Lists.newArrayList();
+        Map<Entity, Entity> positionsWithErrorsFrom = Maps.newIdentityHashMap();
+
+        for (Entity position : positions) {
             Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-            List<Entity> generatedPositions = moveResources(warehouseFrom, warehouseTo, position, date, warehouseAlgorithm);
+            List<Entity> generatedPositions = moveResources(warehouseFrom, position, warehouseResources, resourcesTransfer);
 
             enoughResources = enoughResources && position.isValid();
 
@@ -570,41 +623,67 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             } else {
                 if (generatedPositions.size() > 1) {
                     if (Objects.nonNull(position.getId())) {
-                        position.getDataDefinition().delete(position.getId());
-                    }
-                    for (Entity newPosition : generatedPositions) {
-                        newPosition.setField(PositionFields.DOCUMENT, document);
-                        Entity saved = newPosition.getDataDefinition().save(newPosition);
-                        addPositionErrors(document, saved);
+                        positionIdsToDelete.add(position.getId());
                     }
+                    generatedPositions.forEach(newPosition -> newPosition.setField(PositionFields.DOCUMENT, document));
+
+                    positionsToSave.addAll(generatedPositions);
                 } else {
                     copyPositionValues(position, generatedPositions.get(0));
-                    copyPositionErrors(position, generatedPositions.get(0));
-                    Entity saved = position.getDataDefinition().save(position);
-                    addPositionErrors(document, saved);
+
+                    positionsWithErrorsFrom.put(generatedPositions.get(0), position);
+                    positionsToSave.add(position);
                 }
             }
         }
 
+        saveResources(warehouseResources);
+        saveTransferredResources(resourcesTransfer);
+
+        positionsWithErrorsFrom.forEach((newPosition, position) -> copyPositionErrors(position, newPosition));
+
+        savePositions(document, positionIdsToDelete, positionsToSave);
+
         if (!enoughResources) {
             NotEnoughResourcesErrorMessageCopyToEntityHelper.addError(document, warehouseFrom, errorMessageHolder);
         }
     }
 
+    private void saveTransferredResources(final ResourcesTransfer resourcesTransfer) {
+        List<Entity> newResources = resourcesTransfer.getNewResources();
+
+        if (newResources.isEmpty()) {
+            return;
+        }
+
+        DataDefinition resourceDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_RESOURCE);
+
+        List<Entity> savedResources = resourceDD.saveAll(newResources);
+
+        for (int i = 0; i < savedResources.size(); i++) {
+            Entity newResource = savedResources.get(i);
+            Entity newPosition = resourcesTransfer.getPositionForErrors(newResources.get(i));
+
+            if (newPosition != null && !newResource.isValid()) {
+                copyResourceErrorsToPosition(newPosition, newResource);
+            }
+        }
+    }
+
     private void copyPositionErrors(final Entity position, final Entity newPosition) {
         for (Map.Entry<String, ErrorMessage> error : newPosition.getErrors().entrySet()) {
             position.addError(position.getDataDefinition().getField(error.getKey()), error.getValue().getMessage());
         }
     }
 
-    private List<Entity> moveResources(final Entity warehouseFrom, final Entity warehouseTo, final Entity position,
-                                       final Object date, final WarehouseAlgorithm warehouseAlgorithm) {
+    private List<Entity> moveResources(final Entity warehouseFrom, final Entity position,
+                                       final WarehouseResources warehouseResources, final ResourcesTransfer resourcesTransfer) {
         List<Entity> newPositions = Lists.newArrayList();
 
         Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouseFrom, product, position,
-                warehouseAlgorithm);
+        List<Entity> resources = getResourcesForPosition(product, position, warehouseResources);
 
         reservationsService.deleteReservationFromDocumentPosition(position);
 
@@ -636,12 +715,10 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                     || givenQuantity.compareTo(givenResourceAvailableQuantity) == 0) {
                 quantity = quantity.subtract(resourceAvailableQuantity, numberService.getMathContext());
 
-                if (resourceQuantity.compareTo(resourceAvailableQuantity) <= 0) {
-                    Entity palletNumberToDispose = resource.getBelongsToField(ResourceFields.PALLET_NUMBER);
-
-                    resource.getDataDefinition().delete(resource.getId());
+                Entity newResource = createResource(position, resourcesTransfer, resource, resourceAvailableQuantity);
 
-                    palletNumberDisposalService.tryToDispose(palletNumberToDispose);
+                if (resourceQuantity.compareTo(resourceAvailableQuantity) <= 0) {
+                    warehouseResources.delete(resource);
                 } else {
                     BigDecimal newResourceQuantity = resourceQuantity.subtract(resourceAvailableQuantity);
 
@@ -652,15 +729,9 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                     resource.setField(ResourceFields.QUANTITY, newResourceQuantity);
                     resource.setField(ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, quantityInAdditionalUnit);
 
-                    Entity savedResource = resource.getDataDefinition().save(resource);
-
-                    if (!savedResource.isValid()) {
-                        throw new InvalidResourceException(savedResource);
-                    }
+                    warehouseResources.update(resource);
                 }
 
-                Entity newResource = createResource(position, warehouseTo, resource, resourceAvailableQuantity, date);
-
                 newPosition.setField(PositionFields.QUANTITY,
                         numberService.setScaleWithDefaultMathContext(resourceAvailableQuantity));
 
@@ -668,12 +739,11 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
                 if (BigDecimal.ZERO.compareTo(quantity) == 0 || BigDecimal.ZERO.compareTo(
                         calculationQuantityService.calculateAdditionalQuantity(quantity, conversion, givenUnit)) == 0) {
-                    if (!newResource.isValid()) {
-                        copyResourceErrorsToPosition(newPosition, newResource);
-                    }
+                    resourcesTransfer.add(newResource, newPosition);
                     newPositions.add(newPosition);
                     return newPositions;
                 } else {
+                    resourcesTransfer.add(newResource, null);
                     newPositions.add(newPosition);
                 }
             } else {
@@ -687,21 +757,15 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 resource.setField(ResourceFields.QUANTITY, numberService.setScaleWithDefaultMathContext(resourceQuantity));
                 resource.setField(ResourceFields.AVAILABLE_QUANTITY, resourceAvailableQuantity);
 
-                Entity savedResource = resource.getDataDefinition().save(resource);
-
-                if (!savedResource.isValid()) {
-                    throw new InvalidResourceException(savedResource);
-                }
+                warehouseResources.update(resource);
 
-                Entity newResource = createResource(position, warehouseTo, resource, quantity, date);
+                Entity newResource = createResource(position, resourcesTransfer, resource, quantity);
 
                 newPosition.setField(PositionFields.QUANTITY, numberService.setScaleWithDefaultMathContext(quantity));
 
                 newPosition.setField(PositionFields.GIVEN_QUANTITY, givenQuantity);
 
-                if (!newResource.isValid()) {
-                    copyResourceErrorsToPosition(newPosition, newResource);
-                }
+                resourcesTransfer.add(newResource, newPosition);
                 newPositions.add(newPosition);
                 return newPositions;
             }
@@ -724,6 +788,52 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         }
     }
 
+    private List<Entity> getResourcesForPosition(final Entity product, final Entity position,
+                                                 final WarehouseResources warehouseResources) {
+        Entity resource = position.getBelongsToField(PositionFields.RESOURCE);
+
+        if (resource != null && resource.getId() != null) {
+            resource = warehouseResources.get(resource.getId()).orElseGet(() -> getResource(position, warehouseResources));
+        }
+
+        if (resource != null) {
+            Entity reservation = reservationsService.getReservationForPosition(position);
+
+            if (reservation != null) {
+                BigDecimal reservationQuantity = reservation.getDecimalField(ReservationFields.QUANTITY);
+                BigDecimal resourceAvailableQuantity = resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY);
+
+                resource.setField(ResourceFields.AVAILABLE_QUANTITY, resourceAvailableQuantity.add(reservationQuantity));
+            }
+
+            return Lists.newArrayList(resource);
+        }
+
+        Entity documentPositionParameters = parameterService.getParameter()
+                .getBelongsToField(ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
+
+        return warehouseResources.getResourcesForPosition(product, position,
+                documentPositionParameters.getBooleanField("fillResourceIrrespectiveOfConversion"));
+    }
+
+    private Entity getResource(final Entity position, final WarehouseResources warehouseResources) {
+        Long resourceId = position.getBelongsToField(PositionFields.RESOURCE).getId();
+
+        if (warehouseResources.isDeleted(resourceId)) {
+            return null;
+        }
+
+        Entity resource = dataDefinitionService
+                .get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER, MaterialFlowResourcesConstants.MODEL_RESOURCE)
+                .get(resourceId);
+
+        if (resource != null) {
+            warehouseResources.add(resource);
+        }
+
+        return resource;
+    }
+
     private List<Entity> getResourcesForWarehouseProductAndAlgorithm(final Entity warehouse, final Entity product,
                                                                      final Entity position, final WarehouseAlgorithm warehouseAlgorithm) {
         List<Entity> resources = Lists.newArrayList();
@@ -1013,4 +1123,59 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         return newPosition;
     }
 
+    private static final class ResourcesTransfer {
+
+        private final Entity warehouseTo;
+
+        private final Object date;
+
+        private final Map<Long, Entity> storageLocations = Maps.newHashMap();
+
+        private final List<Entity> newResources = Lists.newArrayList();
+
+        private final Map<Entity, Entity> positionsForErrors = Maps.newIdentityHashMap();
+
+        private ResourcesTransfer(final Entity warehouseTo, final Object date) {
+            this.warehouseTo = warehouseTo;
+            this.date = date;
+        }
+
+        private Entity getWarehouseTo() {
+            return warehouseTo;
+        }
+
+        private Object getDate() {
+            return date;
+        }
+
+        private boolean hasStorageLocation(final Entity product) {
+            return storageLocations.containsKey(product.getId());
+        }
+
+        private Entity getStorageLocation(final Entity product) {
+            return storageLocations.get(product.getId());
+        }
+
+        private void putStorageLocation(final Entity product, final Entity storageLocation) {
+            storageLocations.put(product.getId(), storageLocation);
+        }
+
+        private void add(final Entity newResource, final Entity newPosition) {
+            newResources.add(newResource);
+
+            if (newPosition != null) {
+                positionsForErrors.put(newResource, newPosition);
+            }
+        }
+
+        private List<Entity> getNewResources() {
+            return newResources;
+        }
+
+        private Entity getPositionForErrors(final Entity newResource) {
+            return positionsForErrors.get(newResource);
+        }
+
+    }
+
 }
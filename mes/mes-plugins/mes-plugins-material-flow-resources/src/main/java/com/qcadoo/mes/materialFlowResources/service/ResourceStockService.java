@@ -1,16 +1,27 @@
 package com.qcadoo.mes.materialFlowResources.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
 
 import com.qcadoo.model.api.Entity;
 
 public interface ResourceStockService {
 
-    void createResourceStock(final Entity resource);
-
     BigDecimal getResourceStockAvailableQuantity(final Entity product, final Entity location);
 
     BigDecimal getResourceStockQuantity(Entity product, Entity location);
 
+    /**
+     * Returns available quantities of given products in given location, read in one query from resource stock ledger.
+     * 
+     * @param productIds
+     *            ids of products
+     * @param locationId
+     *            id of location
+     * @return available quantity for each of given products, zero when product has no stock in location
+     */
+    Map<Long, BigDecimal> getResourceStockAvailableQuantities(Collection<Long> productIds, Long locationId);
+
     void checkResourcesStock(Entity document);
 }
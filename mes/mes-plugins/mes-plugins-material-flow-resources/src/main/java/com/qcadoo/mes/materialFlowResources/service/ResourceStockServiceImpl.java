@@ -2,6 +2,7 @@ package com.qcadoo.mes.materialFlowResources.service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -9,47 +10,24 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.materialFlow.constants.LocationFields;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
-import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
 import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
-import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
-import com.qcadoo.mes.materialFlowResources.constants.ResourceStockFields;
 import com.qcadoo.mes.materialFlowResources.dto.ResourceStockDto;
-import com.qcadoo.model.api.DataDefinition;
-import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 
 @Service
 public class ResourceStockServiceImpl implements ResourceStockService {
 
-    @Autowired
-    private DataDefinitionService dataDefinitionService;
-
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
-    @Override
-    public void createResourceStock(final Entity resource) {
-        Entity product = resource.getBelongsToField(ResourceFields.PRODUCT);
-        Entity location = resource.getBelongsToField(ResourceFields.LOCATION);
-        Optional<ResourceStockDto> maybeStock = getResourceStockForProductAndLocation(product, location);
-        if (!maybeStock.isPresent()) {
-            DataDefinition resourceStockDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
-                    MaterialFlowResourcesConstants.MODEL_RESOURCE_STOCK);
-            Entity stock = resourceStockDD.create();
-            stock.setField(ResourceStockFields.LOCATION, location);
-            stock.setField(ResourceStockFields.PRODUCT, product);
-            resourceStockDD.save(stock);
-        }
-    }
-
     @Override
     public BigDecimal getResourceStockAvailableQuantity(final Entity product, final Entity location) {
         BigDecimal availableQuantity = BigDecimal.ZERO;
@@ -70,16 +48,43 @@ public class ResourceStockServiceImpl implements ResourceStockService {
         return quantity;
     }
 
+    @Override
+    public Map<Long, BigDecimal> getResourceStockAvailableQuantities(final Collection<Long> productIds, final Long locationId) {
+        Map<Long, BigDecimal> availableQuantities = Maps.newHashMap();
+
+        if (productIds.isEmpty()) {
+            return availableQuantities;
+        }
+
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT rs.product_id AS productId, (rs.quantity - rs.reservedquantity) AS availableQuantity ");
+        query.append("FROM materialflowresources_resourcestock rs ");
+        query.append("WHERE rs.location_id = :locationId AND rs.product_id IN (:productIds)");
+
+        Map<String, Object> params = Maps.newHashMap();
+        params.put("locationId", locationId);
+        params.put("productIds", productIds);
+
+        RowCallbackHandler availableQuantityHandler = resultSet -> availableQuantities.merge(resultSet.getLong("productId"),
+                resultSet.getBigDecimal("availableQuantity"), BigDecimal::add);
+
+        jdbcTemplate.query(query.toString(), params, availableQuantityHandler);
+
+        productIds.forEach(productId -> availableQuantities.putIfAbsent(productId, BigDecimal.ZERO));
+
+        return availableQuantities;
+    }
+
     private Optional<ResourceStockDto> getResourceStockForProductAndLocation(Entity product, Entity location) {
         StringBuilder query = new StringBuilder();
-        query.append("SELECT rs.* ");
-        query.append("FROM materialflowresources_resourcestockdto rs ");
+        query.append("SELECT rs.quantity, (rs.quantity - rs.reservedquantity) AS availableQuantity ");
+        query.append("FROM materialflowresources_resourcestock rs ");
         query.append("WHERE rs.location_id = :locationId AND rs.product_id = :productId ");
         query.append("LIMIT 1");
 
         Map<String, Object> params = Maps.newHashMap();
-        params.put("locationId", location.getId().intValue());
-        params.put("productId", product.getId().intValue());
+        params.put("locationId", location.getId());
+        params.put("productId", product.getId());
         List<ResourceStockDto> resourceStock = jdbcTemplate.query(query.toString(), params,
                 BeanPropertyRowMapper.newInstance(ResourceStockDto.class));
         if (resourceStock.isEmpty()) {
@@ -92,11 +97,14 @@ public class ResourceStockServiceImpl implements ResourceStockService {
     @Override
     public void checkResourcesStock(Entity document) {
         List<String> invalidProducts = new ArrayList<>();
-        List<Entity> mergedPositions = mergePositionsBeforeValidation(document.getHasManyField(DocumentFields.POSITIONS));
-        for (Entity position : mergedPositions) {
-            if ((position.getDecimalField(PositionFields.QUANTITY)
-                    .compareTo(getResourceStockAvailableQuantity(position.getBelongsToField(PositionFields.PRODUCT),
-                            document.getBelongsToField(DocumentFields.LOCATION_FROM))) > 0)) {
+        Map<Long, Entity> mergedPositions = mergePositionsBeforeValidation(document.getHasManyField(DocumentFields.POSITIONS));
+        Entity location = document.getBelongsToField(DocumentFields.LOCATION_FROM);
+        Map<Long, BigDecimal> availableQuantities = getResourceStockAvailableQuantities(mergedPositions.keySet(),
+                location.getId());
+        for (Map.Entry<Long, Entity> mergedPosition : mergedPositions.entrySet()) {
+            Entity position = mergedPosition.getValue();
+            if (position.getDecimalField(PositionFields.QUANTITY)
+                    .compareTo(availableQuantities.get(mergedPosition.getKey())) > 0) {
                 Entity product = position.getBelongsToField(PositionFields.PRODUCT);
                 invalidProducts.add(product.getStringField(ProductFields.NUMBER));
             }
@@ -106,18 +114,16 @@ public class ResourceStockServiceImpl implements ResourceStockService {
         }
     }
 
-    private List<Entity> mergePositionsBeforeValidation(final List<Entity> positions) {
-        List<Entity> mergedPositions = Lists.newArrayList();
+    private Map<Long, Entity> mergePositionsBeforeValidation(final List<Entity> positions) {
+        Map<Long, Entity> mergedPositions = Maps.newLinkedHashMap();
         for (Entity position : positions) {
-            Optional<Entity> mergedPosition = mergedPositions.stream()
-                    .filter(merged -> merged.getBelongsToField(PositionFields.PRODUCT).getId()
-                            .equals(position.getBelongsToField(PositionFields.PRODUCT).getId()))
-                    .findAny();
-            if (mergedPosition.isPresent()) {
-                mergedPosition.get().setField(PositionFields.QUANTITY, mergedPosition.get()
-                        .getDecimalField(PositionFields.QUANTITY).add(position.getDecimalField(PositionFields.QUANTITY)));
+            Long productId = position.getBelongsToField(PositionFields.PRODUCT).getId();
+            Entity mergedPosition = mergedPositions.get(productId);
+            if (mergedPosition != null) {
+                mergedPosition.setField(PositionFields.QUANTITY, mergedPosition.getDecimalField(PositionFields.QUANTITY)
+                        .add(position.getDecimalField(PositionFields.QUANTITY)));
             } else {
-                mergedPositions.add(position.copy());
+                mergedPositions.put(productId, position.copy());
             }
         }
         return mergedPositions;
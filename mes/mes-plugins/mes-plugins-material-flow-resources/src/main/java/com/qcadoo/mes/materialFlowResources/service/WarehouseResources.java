@@ -0,0 +1,205 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ * <p>
+ * This file is part of Qcadoo.
+ * <p>
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ * <p>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * In-memory index of resources available in one warehouse, used to allocate resources to all positions of a document without
+ * querying resources for each position. Resources are ordered according to warehouse algorithm, changes are collected and have
+ * to be flushed by the caller.
+ */
+final class WarehouseResources {
+
+    private final Comparator<Entity> resourcesOrder;
+
+    private final ListMultimap<Long, Entity> resourcesByProduct = ArrayListMultimap.create();
+
+    private final Map<Long, Entity> resourcesById = Maps.newHashMap();
+
+    private final Map<Long, Entity> updatedResources = Maps.newLinkedHashMap();
+
+    private final Map<Long, Entity> deletedResources = Maps.newLinkedHashMap();
+
+    WarehouseResources(final WarehouseAlgorithm warehouseAlgorithm, final Collection<Entity> resources) {
+        this.resourcesOrder = getResourcesOrder(warehouseAlgorithm);
+
+        resources.forEach(this::add);
+    }
+
+    static Comparator<Entity> getResourcesOrder(final WarehouseAlgorithm warehouseAlgorithm) {
+        Comparator<Entity> byTime = Comparator.comparing(resource -> resource.getDateField(ResourceFields.TIME),
+                Comparator.nullsLast(Comparator.<Date> naturalOrder()));
+        Comparator<Entity> byExpirationDate = Comparator.comparing(
+                resource -> resource.getDateField(ResourceFields.EXPIRATION_DATE),
+                Comparator.nullsLast(Comparator.<Date> naturalOrder()));
+        Comparator<Entity> byAvailableQuantity = Comparator.comparing(
+                resource -> resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY),
+                Comparator.nullsLast(Comparator.<BigDecimal> naturalOrder()));
+        Comparator<Entity> byId = Comparator.comparing(Entity::getId, Comparator.nullsLast(Comparator.<Long> naturalOrder()));
+
+        // nulls are ordered like in database - last in ascending and first in descending order
+        switch (warehouseAlgorithm) {
+            case LIFO:
+                return byTime.reversed().thenComparing(byId);
+            case FEFO:
+                return byExpirationDate.thenComparing(byAvailableQuantity).thenComparing(byId);
+            case LEFO:
+                return byExpirationDate.reversed().thenComparing(byAvailableQuantity).thenComparing(byId);
+            default:
+                return byTime.thenComparing(byId);
+        }
+    }
+
+    void add(final Entity resource) {
+        if (!resourcesById.containsKey(resource.getId())) {
+            resourcesById.put(resource.getId(), resource);
+            resourcesByProduct.put(resource.getBelongsToField(ResourceFields.PRODUCT).getId(), resource);
+        }
+    }
+
+    Optional<Entity> get(final Long resourceId) {
+        if (isDeleted(resourceId)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(resourcesById.get(resourceId));
+    }
+
+    boolean isDeleted(final Long resourceId) {
+        return deletedResources.containsKey(resourceId);
+    }
+
+    /**
+     * Returns resources which can be used for given position, in the same order as previously used resource queries: resources
+     * with position's conversion (and additional code first), then - if fillResourceIrrespectiveOfConversion - resources with
+     * other conversions.
+     */
+    List<Entity> getResourcesForPosition(final Entity product, final Entity position,
+            final boolean fillResourceIrrespectiveOfConversion) {
+        List<Entity> resources = getResourcesForConversion(product, position, false);
+
+        if (fillResourceIrrespectiveOfConversion) {
+            resources.addAll(getResourcesForConversion(product, position, true));
+        }
+
+        return resources;
+    }
+
+    private List<Entity> getResourcesForConversion(final Entity product, final Entity position,
+            final boolean resourceIrrespectiveOfConversion) {
+        Entity additionalCode = position.getBelongsToField(PositionFields.ADDITIONAL_CODE);
+        BigDecimal conversion = getConversion(product, position);
+
+        List<Entity> resources = getAvailableResources(product,
+                resource -> hasConversion(resource, conversion) != resourceIrrespectiveOfConversion);
+
+        if (additionalCode != null) {
+            List<Entity> resourcesWithAdditionalCode = resources.stream()
+                    .filter(resource -> hasAdditionalCode(resource, additionalCode)).collect(Collectors.toList());
+
+            resources.removeAll(resourcesWithAdditionalCode);
+            resourcesWithAdditionalCode.addAll(resources);
+
+            return resourcesWithAdditionalCode;
+        }
+
+        return resources;
+    }
+
+    /**
+     * Returns available quantity of resources with position's conversion.
+     */
+    BigDecimal getAvailableQuantity(final Entity product, final Entity position) {
+        BigDecimal conversion = getConversion(product, position);
+
+        return getAvailableResources(product, resource -> hasConversion(resource, conversion)).stream()
+                .map(resource -> resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private List<Entity> getAvailableResources(final Entity product, final Predicate<Entity> filter) {
+        return resourcesByProduct.get(product.getId()).stream()
+                .filter(resource -> !isDeleted(resource.getId()))
+                .filter(resource -> BigDecimal.ZERO.compareTo(resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY)) < 0)
+                .filter(filter).sorted(resourcesOrder).collect(Collectors.toList());
+    }
+
+    private BigDecimal getConversion(final Entity product, final Entity position) {
+        if (StringUtils.isNotEmpty(product.getStringField(ProductFields.ADDITIONAL_UNIT))) {
+            return position.getDecimalField(PositionFields.CONVERSION);
+        }
+        return BigDecimal.ONE;
+    }
+
+    private boolean hasConversion(final Entity resource, final BigDecimal conversion) {
+        BigDecimal resourceConversion = resource.getDecimalField(ResourceFields.CONVERSION);
+
+        return Objects.nonNull(conversion) && Objects.nonNull(resourceConversion) && conversion.compareTo(resourceConversion) == 0;
+    }
+
+    private boolean hasAdditionalCode(final Entity resource, final Entity additionalCode) {
+        Entity resourceAdditionalCode = resource.getBelongsToField(ResourceFields.ADDITIONAL_CODE);
+
+        return Objects.nonNull(resourceAdditionalCode) && additionalCode.getId().equals(resourceAdditionalCode.getId());
+    }
+
+    void update(final Entity resource) {
+        updatedResources.put(resource.getId(), resource);
+    }
+
+    void delete(final Entity resource) {
+        updatedResources.remove(resource.getId());
+        deletedResources.put(resource.getId(), resource);
+    }
+
+    List<Entity> getUpdatedResources() {
+        return Lists.newArrayList(updatedResources.values());
+    }
+
+    List<Entity> getDeletedResources() {
+        return Lists.newArrayList(deletedResources.values());
+    }
+
+}
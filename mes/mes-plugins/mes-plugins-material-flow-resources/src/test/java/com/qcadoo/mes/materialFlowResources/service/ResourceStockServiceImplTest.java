@@ -0,0 +1,153 @@
+package com.qcadoo.mes.materialFlowResources.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.materialFlow.constants.LocationFields;
+import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
+import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityList;
+
+public class ResourceStockServiceImplTest {
+
+    private static final Long LOCATION_ID = 10L;
+
+    private static final Long FIRST_PRODUCT_ID = 1L;
+
+    private static final Long SECOND_PRODUCT_ID = 2L;
+
+    private ResourceStockService resourceStockService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private Entity document, location, firstProduct, secondProduct;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        resourceStockService = new ResourceStockServiceImpl();
+
+        ReflectionTestUtils.setField(resourceStockService, "jdbcTemplate", jdbcTemplate);
+
+        given(location.getId()).willReturn(LOCATION_ID);
+        given(location.getStringField(LocationFields.NUMBER)).willReturn("L1");
+        given(firstProduct.getId()).willReturn(FIRST_PRODUCT_ID);
+        given(firstProduct.getStringField(ProductFields.NUMBER)).willReturn("P1");
+        given(secondProduct.getId()).willReturn(SECOND_PRODUCT_ID);
+        given(secondProduct.getStringField(ProductFields.NUMBER)).willReturn("P2");
+        given(document.getBelongsToField(DocumentFields.LOCATION_FROM)).willReturn(location);
+    }
+
+    @Test
+    public void shouldReturnZeroForProductsWithoutStock() {
+        // given
+        stubAvailableQuantities(new Object[] { FIRST_PRODUCT_ID, BigDecimal.TEN });
+
+        // when
+        Map<Long, BigDecimal> availableQuantities = resourceStockService
+                .getResourceStockAvailableQuantities(Lists.newArrayList(FIRST_PRODUCT_ID, SECOND_PRODUCT_ID), LOCATION_ID);
+
+        // then
+        assertEquals(BigDecimal.TEN, availableQuantities.get(FIRST_PRODUCT_ID));
+        assertEquals(BigDecimal.ZERO, availableQuantities.get(SECOND_PRODUCT_ID));
+    }
+
+    @Test
+    public void shouldCheckMergedPositionsWithOneQuery() {
+        // given
+        Entity firstPosition = mockPosition(firstProduct, new BigDecimal(3), new BigDecimal(7));
+        Entity secondPosition = mockPosition(secondProduct, new BigDecimal(5), new BigDecimal(5));
+        Entity thirdPosition = mockPosition(firstProduct, new BigDecimal(4), new BigDecimal(4));
+
+        EntityList positions = mock(EntityList.class);
+        given(positions.iterator()).willReturn(Lists.newArrayList(firstPosition, secondPosition, thirdPosition).iterator());
+        given(document.getHasManyField(DocumentFields.POSITIONS)).willReturn(positions);
+
+        stubAvailableQuantities(new Object[] { FIRST_PRODUCT_ID, new BigDecimal(6) },
+                new Object[] { SECOND_PRODUCT_ID, new BigDecimal(5) });
+
+        // when
+        resourceStockService.checkResourcesStock(document);
+
+        // then
+        verify(jdbcTemplate, times(1)).query(anyString(), anyMapOf(String.class, Object.class), any(RowCallbackHandler.class));
+        verify(firstPosition.copy()).setField(PositionFields.QUANTITY, new BigDecimal(7));
+        verify(document).addGlobalError("materialFlow.error.position.quantity.notEnoughResources", false, "P1 ", "L1");
+    }
+
+    @Test
+    public void shouldNotAddErrorWhenStockIsSufficient() {
+        // given
+        Entity position = mockPosition(firstProduct, new BigDecimal(3), new BigDecimal(3));
+
+        EntityList positions = mock(EntityList.class);
+        given(positions.iterator()).willReturn(Lists.newArrayList(position).iterator());
+        given(document.getHasManyField(DocumentFields.POSITIONS)).willReturn(positions);
+
+        stubAvailableQuantities(new Object[] { FIRST_PRODUCT_ID, new BigDecimal(3) });
+
+        // when
+        resourceStockService.checkResourcesStock(document);
+
+        // then
+        verify(document, never()).addGlobalError(anyString(), eq(false), anyString(), anyString());
+    }
+
+    private Entity mockPosition(final Entity product, final BigDecimal quantity, final BigDecimal mergedQuantity) {
+        Entity position = mock(Entity.class);
+        Entity copy = mock(Entity.class);
+
+        given(position.getBelongsToField(PositionFields.PRODUCT)).willReturn(product);
+        given(position.getDecimalField(PositionFields.QUANTITY)).willReturn(quantity);
+        given(position.copy()).willReturn(copy);
+        given(copy.getBelongsToField(PositionFields.PRODUCT)).willReturn(product);
+        given(copy.getDecimalField(PositionFields.QUANTITY)).willReturn(quantity, mergedQuantity);
+
+        return position;
+    }
+
+    private void stubAvailableQuantities(final Object[]... rows) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = (RowCallbackHandler) invocation.getArguments()[2];
+
+            for (Object[] row : rows) {
+                ResultSet resultSet = mock(ResultSet.class);
+
+                given(resultSet.getLong("productId")).willReturn((Long) row[0]);
+                given(resultSet.getBigDecimal("availableQuantity")).willReturn((BigDecimal) row[1]);
+
+                handler.processRow(resultSet);
+            }
+
+            return null;
+        }).when(jdbcTemplate).query(anyString(), anyMapOf(String.class, Object.class), any(RowCallbackHandler.class));
+    }
+
+}
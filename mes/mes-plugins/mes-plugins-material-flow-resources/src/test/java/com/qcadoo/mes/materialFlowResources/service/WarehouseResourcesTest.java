@@ -0,0 +1,177 @@
+package com.qcadoo.mes.materialFlowResources.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.model.api.Entity;
+
+public class WarehouseResourcesTest {
+
+    private static final Long PRODUCT_ID = 1L;
+
+    @Mock
+    private Entity product, position;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        given(product.getId()).willReturn(PRODUCT_ID);
+        given(position.getDecimalField(PositionFields.CONVERSION)).willReturn(BigDecimal.ONE);
+    }
+
+    @Test
+    public void shouldOrderResourcesByTimeForFifo() {
+        // given
+        Entity older = mockResource(1L, new Date(1000L), null, BigDecimal.TEN);
+        Entity newer = mockResource(2L, new Date(2000L), null, BigDecimal.TEN);
+        Entity withoutTime = mockResource(3L, null, null, BigDecimal.TEN);
+
+        WarehouseResources warehouseResources = new WarehouseResources(WarehouseAlgorithm.FIFO,
+                Lists.newArrayList(withoutTime, newer, older));
+
+        // when
+        List<Entity> resources = warehouseResources.getResourcesForPosition(product, position, false);
+
+        // then
+        assertEquals(Lists.newArrayList(older, newer, withoutTime), resources);
+    }
+
+    @Test
+    public void shouldOrderResourcesByTimeForLifo() {
+        // given
+        Entity older = mockResource(1L, new Date(1000L), null, BigDecimal.TEN);
+        Entity newer = mockResource(2L, new Date(2000L), null, BigDecimal.TEN);
+        Entity withoutTime = mockResource(3L, null, null, BigDecimal.TEN);
+
+        WarehouseResources warehouseResources = new WarehouseResources(WarehouseAlgorithm.LIFO,
+                Lists.newArrayList(older, newer, withoutTime));
+
+        // when
+        List<Entity> resources = warehouseResources.getResourcesForPosition(product, position, false);
+
+        // then
+        assertEquals(Lists.newArrayList(withoutTime, newer, older), resources);
+    }
+
+    @Test
+    public void shouldOrderResourcesByExpirationDateAndAvailableQuantityForFefo() {
+        // given
+        Entity expiringLarge = mockResource(1L, null, new Date(1000L), BigDecimal.TEN);
+        Entity expiringSmall = mockResource(2L, null, new Date(1000L), BigDecimal.ONE);
+        Entity expiringLater = mockResource(3L, null, new Date(2000L), BigDecimal.ONE);
+
+        WarehouseResources warehouseResources = new WarehouseResources(WarehouseAlgorithm.FEFO,
+                Lists.newArrayList(expiringLater, expiringLarge, expiringSmall));
+
+        // when
+        List<Entity> resources = warehouseResources.getResourcesForPosition(product, position, false);
+
+        // then
+        assertEquals(Lists.newArrayList(expiringSmall, expiringLarge, expiringLater), resources);
+    }
+
+    @Test
+    public void shouldReturnResourcesWithPositionAdditionalCodeFirst() {
+        // given
+        Entity additionalCode = mock(Entity.class);
+        given(additionalCode.getId()).willReturn(7L);
+        given(position.getBelongsToField(PositionFields.ADDITIONAL_CODE)).willReturn(additionalCode);
+
+        Entity older = mockResource(1L, new Date(1000L), null, BigDecimal.TEN);
+        Entity newerWithCode = mockResource(2L, new Date(2000L), null, BigDecimal.TEN);
+        given(newerWithCode.getBelongsToField(ResourceFields.ADDITIONAL_CODE)).willReturn(additionalCode);
+
+        WarehouseResources warehouseResources = new WarehouseResources(WarehouseAlgorithm.FIFO,
+                Lists.newArrayList(older, newerWithCode));
+
+        // when
+        List<Entity> resources = warehouseResources.getResourcesForPosition(product, position, false);
+
+        // then
+        assertEquals(Lists.newArrayList(newerWithCode, older), resources);
+    }
+
+    @Test
+    public void shouldFilterResourcesByConversionOfPosition() {
+        // given
+        BigDecimal conversion = new BigDecimal("2.00");
+        given(product.getStringField(ProductFields.ADDITIONAL_UNIT)).willReturn("box");
+        given(position.getDecimalField(PositionFields.CONVERSION)).willReturn(new BigDecimal("2"));
+
+        Entity sameConversion = mockResource(1L, new Date(2000L), null, BigDecimal.TEN);
+        given(sameConversion.getDecimalField(ResourceFields.CONVERSION)).willReturn(conversion);
+        Entity otherConversion = mockResource(2L, new Date(1000L), null, BigDecimal.ONE);
+
+        WarehouseResources warehouseResources = new WarehouseResources(WarehouseAlgorithm.FIFO,
+                Lists.newArrayList(otherConversion, sameConversion));
+
+        // when
+        List<Entity> resources = warehouseResources.getResourcesForPosition(product, position, false);
+        List<Entity> allResources = warehouseResources.getResourcesForPosition(product, position, true);
+        BigDecimal availableQuantity = warehouseResources.getAvailableQuantity(product, position);
+
+        // then
+        assertEquals(Lists.newArrayList(sameConversion), resources);
+        assertEquals(Lists.newArrayList(sameConversion, otherConversion), allResources);
+        assertEquals(0, BigDecimal.TEN.compareTo(availableQuantity));
+    }
+
+    @Test
+    public void shouldSkipDeletedAndUsedUpResources() {
+        // given
+        Entity deleted = mockResource(1L, new Date(1000L), null, BigDecimal.TEN);
+        Entity usedUp = mockResource(2L, new Date(2000L), null, BigDecimal.TEN);
+        Entity available = mockResource(3L, new Date(3000L), null, BigDecimal.ONE);
+
+        WarehouseResources warehouseResources = new WarehouseResources(WarehouseAlgorithm.FIFO,
+                Lists.newArrayList(deleted, usedUp, available));
+
+        given(usedUp.getDecimalField(ResourceFields.AVAILABLE_QUANTITY)).willReturn(BigDecimal.ZERO);
+
+        // when
+        warehouseResources.update(usedUp);
+        warehouseResources.delete(deleted);
+
+        List<Entity> resources = warehouseResources.getResourcesForPosition(product, position, false);
+
+        // then
+        assertEquals(Lists.newArrayList(available), resources);
+        assertEquals(Lists.newArrayList(usedUp), warehouseResources.getUpdatedResources());
+        assertEquals(Lists.newArrayList(deleted), warehouseResources.getDeletedResources());
+        assertTrue(warehouseResources.isDeleted(1L));
+        assertFalse(warehouseResources.get(1L).isPresent());
+        assertTrue(warehouseResources.get(3L).isPresent());
+    }
+
+    private Entity mockResource(final Long id, final Date time, final Date expirationDate, final BigDecimal availableQuantity) {
+        Entity resource = mock(Entity.class);
+
+        given(resource.getId()).willReturn(id);
+        given(resource.getBelongsToField(ResourceFields.PRODUCT)).willReturn(product);
+        given(resource.getDateField(ResourceFields.TIME)).willReturn(time);
+        given(resource.getDateField(ResourceFields.EXPIRATION_DATE)).willReturn(expirationDate);
+        given(resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY)).willReturn(availableQuantity);
+        given(resource.getDecimalField(ResourceFields.CONVERSION)).willReturn(BigDecimal.ONE);
+
+        return resource;
+    }
+
+}
@@ -0,0 +1,513 @@
+package com.qcadoo.mes.orders.schedule;
+
+import static java.util.Map.Entry.comparingByValue;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.StaffSkillsFields;
+import com.qcadoo.mes.orders.constants.ScheduleFields;
+import com.qcadoo.mes.orders.constants.SchedulePositionFields;
+import com.qcadoo.mes.orders.constants.ScheduleSortOrder;
+import com.qcadoo.mes.orders.constants.ScheduleWorkerAssignCriterion;
+import com.qcadoo.mes.orders.constants.ScheduleWorkstationAssignCriterion;
+import com.qcadoo.mes.productionLines.constants.WorkstationFieldsPL;
+import com.qcadoo.mes.technologies.constants.OperationFields;
+import com.qcadoo.mes.technologies.constants.OperationSkillFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.JoinType;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.SearchProjections;
+import com.qcadoo.model.api.search.SearchRestrictions;
+import com.qcadoo.model.api.search.SearchSubqueries;
+
+/**
+ * Assigns workstations and workers to schedule positions. Positions, workstation candidates and the horizons of existing
+ * operational tasks are loaded up front, the assignment heuristics run in memory and the positions are saved together at the
+ * end. Time spent loading, scheduling and saving is logged for each run.
+ */
+@Service
+public class ScheduleEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScheduleEngine.class);
+
+    private static final String L_SCHEDULE_ID = "scheduleId";
+
+    private static final String L_WORKSTATION_IDS = "workstationIds";
+
+    private static final String L_STAFF_IDS = "staffIds";
+
+    private static final String L_START_TIME = "startTime";
+
+    private static final int L_MAX_IDS_IN_QUERY = 1000;
+
+    private static final String L_POSITIONS_QUERY = "SELECT sp.id, sp.order_id, toc.id AS tocid, toc.parent_id AS parenttocid, "
+            + "sp.machineworktime, sp.additionaltime, sp.endtime FROM orders_scheduleposition sp "
+            + "JOIN technologies_technologyoperationcomponent toc ON sp.technologyoperationcomponent_id = toc.id "
+            + "WHERE sp.schedule_id = :scheduleId ORDER BY "
+            + "string_to_array(regexp_replace(rtrim(toc.nodenumber, '.'), '[^0-9.]', '0', 'g'), '.')::int[] desc, ";
+
+    private static final String L_WORKSTATIONS_QUERY = "SELECT DISTINCT tw.technologyoperationcomponent_id, tw.workstation_id "
+            + "FROM jointable_technologyoperationcomponent_workstation tw JOIN orders_scheduleposition sp "
+            + "ON sp.technologyoperationcomponent_id = tw.technologyoperationcomponent_id WHERE sp.schedule_id = :scheduleId";
+
+    private static final String L_WORKSTATIONS_FINISH_DATES_QUERY = "SELECT workstation_id, max(finishdate) AS finishdate "
+            + "FROM orders_operationaltask WHERE workstation_id IN (:workstationIds) AND state <> '04rejected' "
+            + "AND finishdate > :startTime GROUP BY workstation_id";
+
+    private static final String L_WORKERS_FINISH_DATES_QUERY = "SELECT staff_id, max(finishdate) AS finishdate "
+            + "FROM orders_operationaltask WHERE staff_id IN (:staffIds) AND state <> '04rejected' GROUP BY staff_id";
+
+    private static final String L_WORKSTATIONS_LAST_WORKERS_QUERY = "SELECT DISTINCT ON (workstation_id) workstation_id, staff_id "
+            + "FROM orders_operationaltask WHERE workstation_id IN (:workstationIds) AND staff_id IS NOT NULL "
+            + "AND state <> '04rejected' ORDER BY workstation_id, finishdate DESC";
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private ShiftsService shiftsService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void assignOperationsToWorkstations(final Entity schedule) {
+        long startTime = System.currentTimeMillis();
+
+        Date scheduleStartTime = schedule.getDateField(ScheduleFields.START_TIME);
+        List<PositionNode> nodes = getPositionNodes(schedule);
+        Map<Long, Entity> positions = getPositions(schedule);
+        Multimap<Long, Long> technologyOperationComponentsWorkstations = getTechnologyOperationComponentsWorkstations(schedule);
+        Set<Long> workstationIds = Sets.newHashSet(technologyOperationComponentsWorkstations.values());
+        Map<Long, Entity> workstationsProductionLines = getWorkstationsProductionLines(workstationIds);
+        Map<Long, Date> workstationsFinishDates = getOperationalTasksMaxFinishDatesForWorkstations(workstationIds,
+                scheduleStartTime);
+
+        long scheduleTime = System.currentTimeMillis();
+
+        List<Entity> positionsToSave = assignWorkstations(nodes, positions, technologyOperationComponentsWorkstations,
+                workstationsProductionLines, workstationsFinishDates, scheduleStartTime, ScheduleWorkstationAssignCriterion.SHORTEST_TIME
+                        .getStringValue().equals(schedule.getStringField(ScheduleFields.WORKSTATION_ASSIGN_CRITERION)));
+
+        long saveTime = System.currentTimeMillis();
+
+        savePositions(positionsToSave);
+
+        LOG.info(String.format("Schedule %d: workstations assigned to %d of %d positions, load %d ms, schedule %d ms, save %d ms",
+                schedule.getId(), positionsToSave.size(), nodes.size(), scheduleTime - startTime, saveTime - scheduleTime,
+                System.currentTimeMillis() - saveTime));
+    }
+
+    List<Entity> assignWorkstations(final List<PositionNode> nodes, final Map<Long, Entity> positions,
+            final Multimap<Long, Long> technologyOperationComponentsWorkstations,
+            final Map<Long, Entity> workstationsProductionLines, final Map<Long, Date> workstationsFinishDates,
+            final Date scheduleStartTime, final boolean shortestTime) {
+        Multimap<List<Long>, PositionNode> children = ArrayListMultimap.create();
+
+        for (PositionNode node : nodes) {
+            children.put(Arrays.asList(node.orderId, node.parentTechnologyOperationComponentId), node);
+        }
+
+        Map<List<Object>, Date> nearestWorkingDates = Maps.newHashMap();
+        Set<Long> ordersToAvoid = Sets.newHashSet();
+        List<Entity> positionsToSave = Lists.newArrayList();
+
+        for (PositionNode node : nodes) {
+            if (ordersToAvoid.contains(node.orderId)) {
+                continue;
+            }
+
+            Collection<Long> workstationIds = technologyOperationComponentsWorkstations.get(node.technologyOperationComponentId);
+
+            if (workstationIds.isEmpty() || (node.machineWorkTime == 0)) {
+                ordersToAvoid.add(node.orderId);
+
+                continue;
+            }
+
+            Date childrenFinishDate = getChildrenFinishDate(
+                    children.get(Arrays.asList(node.orderId, node.technologyOperationComponentId)));
+
+            Map<Long, Date> operationWorkstationsFinishDates = Maps.newHashMap();
+            Map<Long, Date> operationWorkstationsStartDates = Maps.newHashMap();
+
+            for (Long workstationId : workstationIds) {
+                Date finishDate = workstationsFinishDates.get(workstationId);
+
+                if (finishDate == null) {
+                    finishDate = scheduleStartTime;
+                }
+
+                if ((childrenFinishDate != null) && childrenFinishDate.after(finishDate)) {
+                    finishDate = childrenFinishDate;
+                }
+
+                Entity productionLine = workstationsProductionLines.get(workstationId);
+                Date newStartDate = getNearestWorkingDate(nearestWorkingDates, finishDate, productionLine);
+                Date newFinishDate = shiftsService.findDateToForProductionLine(newStartDate, node.machineWorkTime,
+                        productionLine);
+
+                operationWorkstationsStartDates.put(workstationId, newStartDate);
+                operationWorkstationsFinishDates.put(workstationId, newFinishDate);
+            }
+
+            Entry<Long, Date> chosenEntry;
+
+            if (shortestTime) {
+                chosenEntry = operationWorkstationsFinishDates.entrySet().stream().min(comparingByValue()).get();
+            } else {
+                chosenEntry = operationWorkstationsFinishDates.entrySet().stream()
+                        .filter(entry -> workstationsFinishDates.containsKey(entry.getKey())).findFirst()
+                        .orElse(operationWorkstationsFinishDates.entrySet().iterator().next());
+            }
+
+            workstationsFinishDates.put(chosenEntry.getKey(), chosenEntry.getValue());
+            node.endTime = chosenEntry.getValue();
+
+            Entity position = positions.get(node.id);
+
+            position.setField(SchedulePositionFields.WORKSTATION, chosenEntry.getKey());
+            position.setField(SchedulePositionFields.START_TIME, operationWorkstationsStartDates.get(chosenEntry.getKey()));
+            position.setField(SchedulePositionFields.END_TIME, chosenEntry.getValue());
+            position.setField(SchedulePositionFields.STAFF, null);
+
+            positionsToSave.add(position);
+        }
+
+        return positionsToSave;
+    }
+
+    private Date getChildrenFinishDate(final Collection<PositionNode> children) {
+        Date finishDate = null;
+
+        for (PositionNode child : children) {
+            if (child.endTime != null) {
+                Date childEndTimeWithAdditionalTime = Date.from(child.endTime.toInstant().plusSeconds(child.additionalTime));
+
+                if ((finishDate == null) || childEndTimeWithAdditionalTime.after(finishDate)) {
+                    finishDate = childEndTimeWithAdditionalTime;
+                }
+            }
+        }
+
+        return finishDate;
+    }
+
+    private Date getNearestWorkingDate(final Map<List<Object>, Date> nearestWorkingDates, final Date finishDate,
+            final Entity productionLine) {
+        List<Object> key = Arrays.asList(productionLine == null ? null : productionLine.getId(), finishDate.getTime());
+
+        return nearestWorkingDates.computeIfAbsent(key, k -> {
+            DateTime finishDateTime = new DateTime(finishDate);
+
+            return shiftsService.getNearestWorkingDate(finishDateTime, productionLine).orElse(finishDateTime).toDate();
+        });
+    }
+
+    @Transactional
+    public void assignWorkersToOperations(final Entity schedule) {
+        long startTime = System.currentTimeMillis();
+
+        Date scheduleStartTime = schedule.getDateField(ScheduleFields.START_TIME);
+        List<Entity> positions = schedule.getHasManyField(ScheduleFields.POSITIONS).find()
+                .addOrder(SearchOrders.asc(SchedulePositionFields.START_TIME)).list().getEntities();
+
+        Map<Long, List<Long>> operationsWorkers = Maps.newHashMap();
+        Map<Long, List<Long>> positionsWorkers = Maps.newHashMap();
+        Set<Long> workstationIds = Sets.newHashSet();
+
+        for (Entity position : positions) {
+            Entity workstation = position.getBelongsToField(SchedulePositionFields.WORKSTATION);
+
+            if ((position.getIntegerField(SchedulePositionFields.MACHINE_WORK_TIME) == 0) || (workstation == null)) {
+                continue;
+            }
+
+            Entity operation = position.getBelongsToField(SchedulePositionFields.TECHNOLOGY_OPERATION_COMPONENT)
+                    .getBelongsToField(TechnologyOperationComponentFields.OPERATION);
+
+            positionsWorkers.put(position.getId(),
+                    operationsWorkers.computeIfAbsent(operation.getId(), operationId -> getWorkers(operation)));
+            workstationIds.add(workstation.getId());
+        }
+
+        Set<Long> workerIds = Sets.newHashSet();
+
+        positionsWorkers.values().forEach(workerIds::addAll);
+
+        Map<Long, Date> workersFinishDates = getOperationalTasksMaxFinishDatesForWorkers(workerIds);
+        Map<Long, Long> workstationLastWorkers = getOperationalTasksLastWorkersForWorkstations(workstationIds);
+
+        long scheduleTime = System.currentTimeMillis();
+
+        List<Entity> positionsToSave = Lists.newArrayList();
+
+        for (Entity position : positions) {
+            List<Long> workers = positionsWorkers.get(position.getId());
+
+            if (workers == null) {
+                continue;
+            }
+
+            Long workstationId = position.getBelongsToField(SchedulePositionFields.WORKSTATION).getId();
+
+            Map<Long, Date> operationWorkersFinishDates = Maps.newHashMap();
+
+            for (Long workerId : workers) {
+                Date finishDate = workersFinishDates.get(workerId);
+
+                if (finishDate == null) {
+                    finishDate = scheduleStartTime;
+                }
+
+                if (finishDate.compareTo(position.getDateField(SchedulePositionFields.START_TIME)) <= 0) {
+                    operationWorkersFinishDates.put(workerId, finishDate);
+                }
+            }
+
+            Long workstationLastWorkerId = workstationLastWorkers.get(workstationId);
+
+            Optional<Entry<Long, Date>> chosenEntry = operationWorkersFinishDates.entrySet().stream()
+                    .filter(entry -> entry.getKey().equals(workstationLastWorkerId)).findFirst();
+
+            if (!chosenEntry.isPresent()) {
+                if (ScheduleWorkerAssignCriterion.WORKSTATION_LAST_OPERATOR_LATEST_FINISHED.getStringValue()
+                        .equals(schedule.getStringField(ScheduleFields.WORKER_ASSIGN_CRITERION))) {
+                    chosenEntry = operationWorkersFinishDates.entrySet().stream().max(comparingByValue());
+                } else {
+                    chosenEntry = operationWorkersFinishDates.entrySet().stream().min(comparingByValue());
+                }
+            }
+
+            position.setField(SchedulePositionFields.STAFF, null);
+
+            chosenEntry.ifPresent(entry -> {
+                workersFinishDates.put(entry.getKey(), position.getDateField(SchedulePositionFields.END_TIME));
+                workstationLastWorkers.put(workstationId, entry.getKey());
+                position.setField(SchedulePositionFields.STAFF, entry.getKey());
+            });
+
+            positionsToSave.add(position);
+        }
+
+        long saveTime = System.currentTimeMillis();
+
+        savePositions(positionsToSave);
+
+        LOG.info(String.format("Schedule %d: workers assigned to %d positions, load %d ms, schedule %d ms, save %d ms",
+                schedule.getId(), positionsToSave.size(), scheduleTime - startTime, saveTime - scheduleTime,
+                System.currentTimeMillis() - saveTime));
+    }
+
+    private List<PositionNode> getPositionNodes(final Entity schedule) {
+        StringBuilder query = new StringBuilder(L_POSITIONS_QUERY);
+
+        if (ScheduleSortOrder.DESCENDING.getStringValue().equals(schedule.getStringField(ScheduleFields.SORT_ORDER))) {
+            query.append("sp.machineworktime desc");
+        } else {
+            query.append("sp.machineworktime asc");
+        }
+
+        return jdbcTemplate.query(query.toString(), Collections.singletonMap(L_SCHEDULE_ID, schedule.getId()),
+                (resultSet, rowNum) -> new PositionNode(resultSet.getLong("id"), getLong(resultSet, "order_id"),
+                        resultSet.getLong("tocid"), getLong(resultSet, "parenttocid"), resultSet.getInt("machineworktime"),
+                        resultSet.getInt("additionaltime"), getDate(resultSet, "endtime")));
+    }
+
+    private Map<Long, Entity> getPositions(final Entity schedule) {
+        Map<Long, Entity> positions = Maps.newLinkedHashMap();
+
+        for (Entity position : schedule.getHasManyField(ScheduleFields.POSITIONS)) {
+            positions.put(position.getId(), position);
+        }
+
+        return positions;
+    }
+
+    private void savePositions(final List<Entity> positions) {
+        if (!positions.isEmpty()) {
+            positions.get(0).getDataDefinition().saveAll(positions);
+        }
+    }
+
+    private Multimap<Long, Long> getTechnologyOperationComponentsWorkstations(final Entity schedule) {
+        Multimap<Long, Long> technologyOperationComponentsWorkstations = ArrayListMultimap.create();
+
+        RowCallbackHandler rowCallbackHandler = resultSet -> technologyOperationComponentsWorkstations
+                .put(resultSet.getLong("technologyoperationcomponent_id"), resultSet.getLong("workstation_id"));
+
+        jdbcTemplate.query(L_WORKSTATIONS_QUERY, Collections.singletonMap(L_SCHEDULE_ID, schedule.getId()), rowCallbackHandler);
+
+        return technologyOperationComponentsWorkstations;
+    }
+
+    private Map<Long, Entity> getWorkstationsProductionLines(final Set<Long> workstationIds) {
+        Map<Long, Entity> workstationsProductionLines = Maps.newHashMap();
+
+        for (List<Long> ids : Lists.partition(Lists.newArrayList(workstationIds), L_MAX_IDS_IN_QUERY)) {
+            List<Entity> workstations = dataDefinitionService
+                    .get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_WORKSTATION).find()
+                    .add(SearchRestrictions.in("id", ids)).list().getEntities();
+
+            for (Entity workstation : workstations) {
+                workstationsProductionLines.put(workstation.getId(),
+                        workstation.getBelongsToField(WorkstationFieldsPL.PRODUCTION_LINE));
+            }
+        }
+
+        return workstationsProductionLines;
+    }
+
+    private Map<Long, Date> getOperationalTasksMaxFinishDatesForWorkstations(final Set<Long> workstationIds,
+            final Date scheduleStartTime) {
+        Map<Long, Date> finishDates = Maps.newHashMap();
+
+        for (List<Long> ids : Lists.partition(Lists.newArrayList(workstationIds), L_MAX_IDS_IN_QUERY)) {
+            Map<String, Object> parameters = Maps.newHashMap();
+
+            parameters.put(L_WORKSTATION_IDS, ids);
+            parameters.put(L_START_TIME, scheduleStartTime);
+
+            RowCallbackHandler rowCallbackHandler = resultSet -> finishDates.put(resultSet.getLong("workstation_id"),
+                    getDate(resultSet, "finishdate"));
+
+            jdbcTemplate.query(L_WORKSTATIONS_FINISH_DATES_QUERY, parameters, rowCallbackHandler);
+        }
+
+        return finishDates;
+    }
+
+    private Map<Long, Date> getOperationalTasksMaxFinishDatesForWorkers(final Set<Long> workerIds) {
+        Map<Long, Date> finishDates = Maps.newHashMap();
+
+        for (List<Long> ids : Lists.partition(Lists.newArrayList(workerIds), L_MAX_IDS_IN_QUERY)) {
+            RowCallbackHandler rowCallbackHandler = resultSet -> {
+                Date finishDate = getDate(resultSet, "finishdate");
+
+                if (finishDate != null) {
+                    finishDates.put(resultSet.getLong("staff_id"), finishDate);
+                }
+            };
+
+            jdbcTemplate.query(L_WORKERS_FINISH_DATES_QUERY, Collections.singletonMap(L_STAFF_IDS, ids), rowCallbackHandler);
+        }
+
+        return finishDates;
+    }
+
+    private Map<Long, Long> getOperationalTasksLastWorkersForWorkstations(final Set<Long> workstationIds) {
+        Map<Long, Long> lastWorkers = Maps.newHashMap();
+
+        for (List<Long> ids : Lists.partition(Lists.newArrayList(workstationIds), L_MAX_IDS_IN_QUERY)) {
+            RowCallbackHandler rowCallbackHandler = resultSet -> lastWorkers.put(resultSet.getLong("workstation_id"),
+                    resultSet.getLong("staff_id"));
+
+            jdbcTemplate.query(L_WORKSTATIONS_LAST_WORKERS_QUERY, Collections.singletonMap(L_WORKSTATION_IDS, ids),
+                    rowCallbackHandler);
+        }
+
+        return lastWorkers;
+    }
+
+    private List<Long> getWorkers(final Entity operation) {
+        List<Entity> operationSkills = operation.getManyToManyField(OperationFields.OPERATION_SKILLS);
+        SearchCriteriaBuilder staffScb = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_STAFF)
+                .find();
+
+        for (Entity operationSkill : operationSkills) {
+            SearchCriteriaBuilder subCriteria = dataDefinitionService
+                    .get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_STAFF_SKILL)
+                    .findWithAlias(BasicConstants.MODEL_STAFF_SKILL)
+                    .createAlias(StaffSkillsFields.STAFF, StaffSkillsFields.STAFF, JoinType.INNER)
+                    .add(SearchRestrictions.eqField(StaffSkillsFields.STAFF + ".id", "this.id"))
+                    .add(SearchRestrictions.belongsTo(StaffSkillsFields.SKILL,
+                            operationSkill.getBelongsToField(OperationSkillFields.SKILL)))
+                    .add(SearchRestrictions.ge(StaffSkillsFields.LEVEL,
+                            operationSkill.getIntegerField(OperationSkillFields.REQUIRED_LEVEL)))
+                    .setProjection(SearchProjections.id());
+
+            staffScb.add(SearchSubqueries.exists(subCriteria));
+        }
+
+        List<Long> workerIds = Lists.newArrayList();
+
+        for (Entity worker : staffScb.list().getEntities()) {
+            workerIds.add(worker.getId());
+        }
+
+        return workerIds;
+    }
+
+    private static Long getLong(final ResultSet resultSet, final String columnLabel) throws SQLException {
+        long value = resultSet.getLong(columnLabel);
+
+        return resultSet.wasNull() ? null : value;
+    }
+
+    private static Date getDate(final ResultSet resultSet, final String columnLabel) throws SQLException {
+        Timestamp timestamp = resultSet.getTimestamp(columnLabel);
+
+        return timestamp == null ? null : new Date(timestamp.getTime());
+    }
+
+    static final class PositionNode {
+
+        private final long id;
+
+        private final Long orderId;
+
+        private final long technologyOperationComponentId;
+
+        private final Long parentTechnologyOperationComponentId;
+
+        private final int machineWorkTime;
+
+        private final int additionalTime;
+
+        private Date endTime;
+
+        PositionNode(final long id, final Long orderId, final long technologyOperationComponentId,
+                final Long parentTechnologyOperationComponentId, final int machineWorkTime, final int additionalTime,
+                final Date endTime) {
+            this.id = id;
+            this.orderId = orderId;
+            this.technologyOperationComponentId = technologyOperationComponentId;
+            this.parentTechnologyOperationComponentId = parentTechnologyOperationComponentId;
+            this.machineWorkTime = machineWorkTime;
+            this.additionalTime = additionalTime;
+            this.endTime = endTime;
+        }
+
+    }
+
+}
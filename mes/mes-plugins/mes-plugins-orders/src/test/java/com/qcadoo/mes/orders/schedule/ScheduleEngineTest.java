@@ -0,0 +1,170 @@
+package com.qcadoo.mes.orders.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.orders.constants.SchedulePositionFields;
+import com.qcadoo.mes.orders.schedule.ScheduleEngine.PositionNode;
+import com.qcadoo.model.api.Entity;
+
+public class ScheduleEngineTest {
+
+    private static final Date START = new Date(1000000L);
+
+    private static final Long ORDER_ID = 1L;
+
+    private static final Long FIRST_WORKSTATION_ID = 11L;
+
+    private static final Long SECOND_WORKSTATION_ID = 12L;
+
+    private ScheduleEngine scheduleEngine;
+
+    @Mock
+    private ShiftsService shiftsService;
+
+    @Mock
+    private Entity productionLine;
+
+    private Map<Long, Entity> positions;
+
+    private Multimap<Long, Long> technologyOperationComponentsWorkstations;
+
+    private Map<Long, Entity> workstationsProductionLines;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        scheduleEngine = new ScheduleEngine();
+
+        ReflectionTestUtils.setField(scheduleEngine, "shiftsService", shiftsService);
+
+        given(shiftsService.getNearestWorkingDate(any(DateTime.class), any(Entity.class))).willReturn(Optional.empty());
+        given(shiftsService.findDateToForProductionLine(any(Date.class), anyLong(), any(Entity.class))).willAnswer(
+                invocation -> new Date(((Date) invocation.getArguments()[0]).getTime() + (Long) invocation.getArguments()[1] * 1000));
+
+        positions = Maps.newHashMap();
+        technologyOperationComponentsWorkstations = ArrayListMultimap.create();
+        workstationsProductionLines = Maps.newHashMap();
+        workstationsProductionLines.put(FIRST_WORKSTATION_ID, productionLine);
+        workstationsProductionLines.put(SECOND_WORKSTATION_ID, productionLine);
+    }
+
+    @Test
+    public void shouldStartParentAfterChildrenWithAdditionalTime() {
+        // given
+        PositionNode child = mockPosition(1L, ORDER_ID, 100L, 200L, 60, 30);
+        PositionNode parent = mockPosition(2L, ORDER_ID, 200L, null, 120, 0);
+
+        technologyOperationComponentsWorkstations.put(100L, FIRST_WORKSTATION_ID);
+        technologyOperationComponentsWorkstations.put(200L, SECOND_WORKSTATION_ID);
+
+        // when
+        List<Entity> assignedPositions = scheduleEngine.assignWorkstations(Lists.newArrayList(child, parent), positions,
+                technologyOperationComponentsWorkstations, workstationsProductionLines, Maps.newHashMap(), START, true);
+
+        // then
+        assertEquals(2, assignedPositions.size());
+        verify(positions.get(1L)).setField(SchedulePositionFields.END_TIME, seconds(60));
+        verify(positions.get(2L)).setField(SchedulePositionFields.WORKSTATION, SECOND_WORKSTATION_ID);
+        verify(positions.get(2L)).setField(SchedulePositionFields.START_TIME, seconds(90));
+        verify(positions.get(2L)).setField(SchedulePositionFields.END_TIME, seconds(210));
+    }
+
+    @Test
+    public void shouldChooseWorkstationFinishingFirstForShortestTime() {
+        // given
+        PositionNode first = mockPosition(1L, ORDER_ID, 100L, null, 60, 0);
+        PositionNode second = mockPosition(2L, 2L, 100L, null, 60, 0);
+
+        technologyOperationComponentsWorkstations.put(100L, FIRST_WORKSTATION_ID);
+        technologyOperationComponentsWorkstations.put(100L, SECOND_WORKSTATION_ID);
+
+        Map<Long, Date> workstationsFinishDates = Maps.newHashMap();
+        workstationsFinishDates.put(FIRST_WORKSTATION_ID, seconds(30));
+
+        // when
+        scheduleEngine.assignWorkstations(Lists.newArrayList(first, second), positions, technologyOperationComponentsWorkstations,
+                workstationsProductionLines, workstationsFinishDates, START, true);
+
+        // then
+        verify(positions.get(1L)).setField(SchedulePositionFields.WORKSTATION, SECOND_WORKSTATION_ID);
+        verify(positions.get(2L)).setField(SchedulePositionFields.WORKSTATION, FIRST_WORKSTATION_ID);
+        assertEquals(seconds(60), workstationsFinishDates.get(SECOND_WORKSTATION_ID));
+        assertEquals(seconds(90), workstationsFinishDates.get(FIRST_WORKSTATION_ID));
+    }
+
+    @Test
+    public void shouldSkipRemainingPositionsOfOrderWithoutWorkTime() {
+        // given
+        PositionNode withoutWorkTime = mockPosition(1L, ORDER_ID, 100L, 200L, 0, 0);
+        PositionNode parent = mockPosition(2L, ORDER_ID, 200L, null, 60, 0);
+
+        technologyOperationComponentsWorkstations.put(100L, FIRST_WORKSTATION_ID);
+        technologyOperationComponentsWorkstations.put(200L, FIRST_WORKSTATION_ID);
+
+        // when
+        List<Entity> assignedPositions = scheduleEngine.assignWorkstations(Lists.newArrayList(withoutWorkTime, parent),
+                positions, technologyOperationComponentsWorkstations, workstationsProductionLines, Maps.newHashMap(), START,
+                true);
+
+        // then
+        assertEquals(0, assignedPositions.size());
+    }
+
+    @Test
+    public void shouldLookUpNearestWorkingDateOncePerStartDate() {
+        // given
+        PositionNode first = mockPosition(1L, ORDER_ID, 100L, null, 60, 0);
+        PositionNode second = mockPosition(2L, 2L, 100L, null, 60, 0);
+
+        technologyOperationComponentsWorkstations.put(100L, FIRST_WORKSTATION_ID);
+        technologyOperationComponentsWorkstations.put(100L, SECOND_WORKSTATION_ID);
+
+        // when
+        scheduleEngine.assignWorkstations(Lists.newArrayList(first, second), positions, technologyOperationComponentsWorkstations,
+                workstationsProductionLines, Maps.newHashMap(), START, true);
+
+        // then
+        verify(shiftsService, times(2)).getNearestWorkingDate(any(DateTime.class), any(Entity.class));
+    }
+
+    private PositionNode mockPosition(final long id, final Long orderId, final long technologyOperationComponentId,
+            final Long parentTechnologyOperationComponentId, final int machineWorkTime, final int additionalTime) {
+        Entity position = mock(Entity.class);
+
+        given(position.getId()).willReturn(id);
+
+        positions.put(id, position);
+
+        return new PositionNode(id, orderId, technologyOperationComponentId, parentTechnologyOperationComponentId,
+                machineWorkTime, additionalTime, null);
+    }
+
+    private Date seconds(final long seconds) {
+        return new Date(START.getTime() + seconds * 1000);
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.qcadoo.mes.productionCounting;
 
+import com.qcadoo.mes.productionCounting.dtos.KanbanSnapshot;
 import com.qcadoo.mes.productionCounting.dtos.ProducedOrder;
 import com.qcadoo.mes.productionCounting.dtos.ProductionOrder;
 import com.qcadoo.mes.productionCounting.dtos.ShippedOrder;
@@ -47,5 +48,7 @@ public interface KanbanService {
 
     List getProductionOrderList();//获取实时生产订单
 
+    KanbanSnapshot computeSnapshot();//一次查询计算所有看板指标
+
 
 }
@@ -1,6 +1,7 @@
 package com.qcadoo.mes.productionCounting;
 
 
+import com.qcadoo.mes.productionCounting.dtos.KanbanSnapshot;
 import com.qcadoo.mes.productionCounting.dtos.ProducedOrder;
 import com.qcadoo.mes.productionCounting.dtos.ProductionOrder;
 import com.qcadoo.mes.productionCounting.dtos.ShippedOrder;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class KanbanServiceImpl implements KanbanService {
@@ -269,4 +271,92 @@ public class KanbanServiceImpl implements KanbanService {
         return list;
     }
 
+    @Override
+    public KanbanSnapshot computeSnapshot() {
+        StringBuilder queryBuilder = new StringBuilder();
+
+        queryBuilder.append("WITH products AS (SELECT count(CASE WHEN globaltypeofmaterial is not null THEN 1 END) AS totalproduct, " +
+                "count(CASE WHEN globaltypeofmaterial is null THEN 1 END) AS totalmachine FROM basic_product WHERE active=true), ");
+        queryBuilder.append("stocks AS (SELECT SUM(CASE WHEN product.globaltypeofmaterial='01component' THEN quantity END) AS totalmaterial, " +
+                "SUM(CASE WHEN product.globaltypeofmaterial='02intermediate' THEN quantity END) AS totalmiddleware, " +
+                "SUM(CASE WHEN product.globaltypeofmaterial='03finalProduct' THEN quantity END) AS totalfinalproduct " +
+                "FROM materialflowresources_resourcestockdto as resource " +
+                "LEFT JOIN basic_product as product ON resource.product_id = product.id " +
+                "WHERE product.globaltypeofmaterial IN ('01component', '02intermediate', '03finalProduct')), ");
+        queryBuilder.append("orders AS (SELECT count(*) AS totalproductionorder, SUM(plannedquantity) AS plannedquantity, " +
+                "SUM(donequantity) AS donequantity, SUM(CASE WHEN state='03inProgress' THEN plannedquantity END) AS inprogressquantity " +
+                "FROM orders_order WHERE active=true) ");
+        queryBuilder.append("SELECT products.*, stocks.*, orders.*, ");
+        queryBuilder.append("(SELECT count(*) FROM technologies_technology WHERE state='02accepted' AND active=true) AS totaltechnology, ");
+        queryBuilder.append("(SELECT count(*) FROM basic_staff WHERE active=true) AS totalstaff, ");
+        queryBuilder.append("(SELECT count(*) FROM productionlines_productionline WHERE active=true) AS totalproductionline, ");
+        queryBuilder.append("(SELECT count(*) FROM materialflow_location) AS totalwarehouse, ");
+        queryBuilder.append("(SELECT count(*) FROM masterorders_masterorder WHERE active=true) AS totalmasterorder, ");
+        queryBuilder.append("(SELECT count(*) FROM cmmsmachineparts_maintenanceevent) AS totalrepairtime, ");
+        queryBuilder.append("(SELECT SUM(givenquantity) FROM materialflowresources_document as document " +
+                "LEFT JOIN materialflowresources_position as position ON position.document_id = document.id " +
+                "WHERE active=true AND document.masterorder_id is not null) AS givenquantity ");
+        queryBuilder.append("FROM products, stocks, orders");
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(queryBuilder.toString(), Collections.emptyMap());
+
+        KanbanSnapshot snapshot = new KanbanSnapshot(System.currentTimeMillis());
+
+        snapshot.setTotalProduct(getCount(row, "totalproduct"));
+        snapshot.setTotalTechnology(getCount(row, "totaltechnology"));
+        snapshot.setTotalStaff(getCount(row, "totalstaff"));
+        snapshot.setTotalProductionLine(getCount(row, "totalproductionline"));
+        snapshot.setTotalWarehouse(getCount(row, "totalwarehouse"));
+        snapshot.setTotalMaterial(getQuantity(row, "totalmaterial"));
+        snapshot.setTotalMiddleware(getQuantity(row, "totalmiddleware"));
+        snapshot.setTotalFinalProduct(getQuantity(row, "totalfinalproduct"));
+        snapshot.setTotalMasterOrder(getCount(row, "totalmasterorder"));
+        snapshot.setTotalProductionOrder(getCount(row, "totalproductionorder"));
+        snapshot.setTotalMachine(getCount(row, "totalmachine"));
+        snapshot.setTotalRepairTime(getCount(row, "totalrepairtime"));
+
+        int plannedquantity = getQuantity(row, "plannedquantity");
+
+        TotalPlannedProductionOrder totalPlannedProductionOrder = new TotalPlannedProductionOrder();
+        totalPlannedProductionOrder.setQuantity(plannedquantity);
+        snapshot.setTotalPlannedProductionOrder(totalPlannedProductionOrder);
+
+        ProducedOrder producedOrder = new ProducedOrder();
+        producedOrder.setQuantity(getQuantity(row, "donequantity"));
+        producedOrder.setPercentage(getPercentage(row, "donequantity", plannedquantity));
+        snapshot.setProducedOrder(producedOrder);
+
+        ShippedOrder shippedOrder = new ShippedOrder();
+        shippedOrder.setQuantity(getQuantity(row, "givenquantity"));
+        shippedOrder.setPercentage(getPercentage(row, "givenquantity", plannedquantity));
+        snapshot.setShippedOrder(shippedOrder);
+
+        ProductionOrder productionOrder = new ProductionOrder();
+        productionOrder.setQuantity(getQuantity(row, "inprogressquantity"));
+        productionOrder.setPercentage(getPercentage(row, "inprogressquantity", plannedquantity));
+        snapshot.setProductionOrder(productionOrder);
+
+        return snapshot;
+    }
+
+    private long getCount(final Map<String, Object> row, final String column) {
+        Number count = (Number) row.get(column);
+
+        return count == null ? 0L : count.longValue();
+    }
+
+    private double getValue(final Map<String, Object> row, final String column) {
+        Number value = (Number) row.get(column);
+
+        return value == null ? 0D : value.doubleValue();
+    }
+
+    private int getQuantity(final Map<String, Object> row, final String column) {
+        return Double.valueOf(getValue(row, column)).intValue();
+    }
+
+    private int getPercentage(final Map<String, Object> row, final String column, final int plannedquantity) {
+        return Double.valueOf(getValue(row, column) / (double) plannedquantity * 100).intValue();
+    }
+
 }
@@ -0,0 +1,79 @@
+package com.qcadoo.mes.productionCounting;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.productionCounting.dtos.KanbanSnapshot;
+
+/**
+ * Serves Kanban and dashboard counters from a shared snapshot. A snapshot older than {@code kanbanSnapshotTtl} seconds, or one
+ * invalidated by a save of an order, document or resource, is still returned while a single background refresh replaces it.
+ */
+@Service
+public class KanbanSnapshotService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KanbanSnapshotService.class);
+
+    @Value("${kanbanSnapshotTtl:60}")
+    private int ttlInSeconds;
+
+    @Autowired
+    private KanbanService kanbanService;
+
+    private volatile KanbanSnapshot snapshot;
+
+    private volatile boolean invalidated;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public KanbanSnapshot getSnapshot() {
+        KanbanSnapshot currentSnapshot = snapshot;
+
+        if (currentSnapshot == null) {
+            return computeSnapshot();
+        }
+
+        if ((invalidated || isExpired(currentSnapshot)) && refreshing.compareAndSet(false, true)) {
+            refreshSnapshot();
+        }
+
+        return currentSnapshot;
+    }
+
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    @Async
+    public void refreshSnapshot() {
+        try {
+            computeSnapshot();
+        } catch (RuntimeException e) {
+            LOG.warn("Kanban snapshot refresh failed", e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    private synchronized KanbanSnapshot computeSnapshot() {
+        if ((snapshot != null) && !invalidated && !isExpired(snapshot)) {
+            return snapshot;
+        }
+
+        invalidated = false;
+        snapshot = kanbanService.computeSnapshot();
+
+        return snapshot;
+    }
+
+    private boolean isExpired(final KanbanSnapshot currentSnapshot) {
+        return System.currentTimeMillis() - currentSnapshot.getComputedAt() >= ttlInSeconds * 1000L;
+    }
+
+}
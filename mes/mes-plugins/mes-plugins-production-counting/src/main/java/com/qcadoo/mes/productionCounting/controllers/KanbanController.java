@@ -3,6 +3,8 @@ package com.qcadoo.mes.productionCounting.controllers;
 
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.mes.productionCounting.KanbanService;
+import com.qcadoo.mes.productionCounting.KanbanSnapshotService;
+import com.qcadoo.mes.productionCounting.dtos.KanbanSnapshot;
 import com.qcadoo.mes.productionCounting.response.ListResponse;
 import com.qcadoo.security.api.SecurityService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +35,9 @@ public final class KanbanController {
     @Autowired
     private KanbanService kanbanService;
 
+    @Autowired
+    private KanbanSnapshotService kanbanSnapshotService;
+
 
     @RequestMapping(value = "dataCountKanban", method = RequestMethod.GET)
     public ModelAndView getDataCountKanbanbanView(@RequestParam final Map<String, String> arguments, final Locale locale) {
@@ -42,18 +47,20 @@ public final class KanbanController {
 
         mav.addObject("translationsMap", translationService.getMessagesGroup("dashboard", locale));
 
-        mav.addObject("totalProduct", kanbanService.totalProduct());
-        mav.addObject("totalTechnology", kanbanService.totalTechnology());
-        mav.addObject("totalStaff", kanbanService.totalStaff());
-        mav.addObject("totalProductionLine", kanbanService.totalProductionLine());
-        mav.addObject("totalWarehouse", kanbanService.totalWarehouse());
-        mav.addObject("totalFinalProduct", kanbanService.totalFinalProduct());
-        mav.addObject("totalMaterial", kanbanService.totalMaterial());
-        mav.addObject("totalMiddleware", kanbanService.totalMiddleware());
-        mav.addObject("totalMasterOrder", kanbanService.totalMasterOrder());
-        mav.addObject("totalProductionOrder", kanbanService.totalProductionOrder());
-        mav.addObject("totalMachine", kanbanService.totalMachine());
-        mav.addObject("totalRepairTime", kanbanService.totalRepairTime());
+        KanbanSnapshot snapshot = kanbanSnapshotService.getSnapshot();
+
+        mav.addObject("totalProduct", snapshot.getTotalProduct());
+        mav.addObject("totalTechnology", snapshot.getTotalTechnology());
+        mav.addObject("totalStaff", snapshot.getTotalStaff());
+        mav.addObject("totalProductionLine", snapshot.getTotalProductionLine());
+        mav.addObject("totalWarehouse", snapshot.getTotalWarehouse());
+        mav.addObject("totalFinalProduct", snapshot.getTotalFinalProduct());
+        mav.addObject("totalMaterial", snapshot.getTotalMaterial());
+        mav.addObject("totalMiddleware", snapshot.getTotalMiddleware());
+        mav.addObject("totalMasterOrder", snapshot.getTotalMasterOrder());
+        mav.addObject("totalProductionOrder", snapshot.getTotalProductionOrder());
+        mav.addObject("totalMachine", snapshot.getTotalMachine());
+        mav.addObject("totalRepairTime", snapshot.getTotalRepairTime());
 
         mav.setViewName("productionCounting/dataCountKanban");
         mav.addObject("useCompressedStaticResources", useCompressedStaticResources);
@@ -69,10 +76,12 @@ public final class KanbanController {
 
         mav.addObject("translationsMap", translationService.getMessagesGroup("dashboard", locale));
 
-        mav.addObject("totalPlannedProductionOrder", kanbanService.totalPlannedProductionOrder());
-        mav.addObject("producedOrder", kanbanService.producedOrder());
-        mav.addObject("shippedOrder", kanbanService.shippedOrder());
-        mav.addObject("productionOrder", kanbanService.productionOrder());
+        KanbanSnapshot snapshot = kanbanSnapshotService.getSnapshot();
+
+        mav.addObject("totalPlannedProductionOrder", snapshot.getTotalPlannedProductionOrder());
+        mav.addObject("producedOrder", snapshot.getProducedOrder());
+        mav.addObject("shippedOrder", snapshot.getShippedOrder());
+        mav.addObject("productionOrder", snapshot.getProductionOrder());
 
         mav.setViewName("productionCounting/productionKanban");
         mav.addObject("useCompressedStaticResources", useCompressedStaticResources);
@@ -89,10 +98,12 @@ public final class KanbanController {
 
         mav.addObject("translationsMap", translationService.getMessagesGroup("dashboard", locale));
 
-        mav.addObject("totalPlannedProductionOrder", kanbanService.totalPlannedProductionOrder());
-        mav.addObject("producedOrder", kanbanService.producedOrder());
-        mav.addObject("shippedOrder", kanbanService.shippedOrder());
-        mav.addObject("productionOrder", kanbanService.productionOrder());
+        KanbanSnapshot snapshot = kanbanSnapshotService.getSnapshot();
+
+        mav.addObject("totalPlannedProductionOrder", snapshot.getTotalPlannedProductionOrder());
+        mav.addObject("producedOrder", snapshot.getProducedOrder());
+        mav.addObject("shippedOrder", snapshot.getShippedOrder());
+        mav.addObject("productionOrder", snapshot.getProductionOrder());
 
         mav.setViewName("productionCounting/productionKanban");
         mav.addObject("useCompressedStaticResources", useCompressedStaticResources);
@@ -0,0 +1,174 @@
+package com.qcadoo.mes.productionCounting.dtos;
+
+public class KanbanSnapshot {
+
+    private final long computedAt; //计算时间
+
+    private long totalProduct; //产品总数
+
+    private long totalTechnology; //工艺总数
+
+    private long totalStaff; //工人总数
+
+    private long totalProductionLine; //生产线总数
+
+    private long totalWarehouse; //仓库总数
+
+    private int totalMaterial; //原材料总数
+
+    private int totalMiddleware; //中间件总数
+
+    private int totalFinalProduct; //成品总数
+
+    private long totalMasterOrder; //主订单总数
+
+    private long totalProductionOrder; //生产订单总数
+
+    private long totalMachine; //机器机台总数
+
+    private long totalRepairTime; //维修次数总数
+
+    private TotalPlannedProductionOrder totalPlannedProductionOrder; //生产订单计划数量
+
+    private ProducedOrder producedOrder; //已生产订单数量
+
+    private ShippedOrder shippedOrder; //已发货订单数量
+
+    private ProductionOrder productionOrder; //正在生产订单数量
+
+    public KanbanSnapshot(final long computedAt) {
+        this.computedAt = computedAt;
+    }
+
+    public long getComputedAt() {
+        return computedAt;
+    }
+
+    public long getTotalProduct() {
+        return totalProduct;
+    }
+
+    public void setTotalProduct(long totalProduct) {
+        this.totalProduct = totalProduct;
+    }
+
+    public long getTotalTechnology() {
+        return totalTechnology;
+    }
+
+    public void setTotalTechnology(long totalTechnology) {
+        this.totalTechnology = totalTechnology;
+    }
+
+    public long getTotalStaff() {
+        return totalStaff;
+    }
+
+    public void setTotalStaff(long totalStaff) {
+        this.totalStaff = totalStaff;
+    }
+
+    public long getTotalProductionLine() {
+        return totalProductionLine;
+    }
+
+    public void setTotalProductionLine(long totalProductionLine) {
+        this.totalProductionLine = totalProductionLine;
+    }
+
+    public long getTotalWarehouse() {
+        return totalWarehouse;
+    }
+
+    public void setTotalWarehouse(long totalWarehouse) {
+        this.totalWarehouse = totalWarehouse;
+    }
+
+    public int getTotalMaterial() {
+        return totalMaterial;
+    }
+
+    public void setTotalMaterial(int totalMaterial) {
+        this.totalMaterial = totalMaterial;
+    }
+
+    public int getTotalMiddleware() {
+        return totalMiddleware;
+    }
+
+    public void setTotalMiddleware(int totalMiddleware) {
+        this.totalMiddleware = totalMiddleware;
+    }
+
+    public int getTotalFinalProduct() {
+        return totalFinalProduct;
+    }
+
+    public void setTotalFinalProduct(int totalFinalProduct) {
+        this.totalFinalProduct = totalFinalProduct;
+    }
+
+    public long getTotalMasterOrder() {
+        return totalMasterOrder;
+    }
+
+    public void setTotalMasterOrder(long totalMasterOrder) {
+        this.totalMasterOrder = totalMasterOrder;
+    }
+
+    public long getTotalProductionOrder() {
+        return totalProductionOrder;
+    }
+
+    public void setTotalProductionOrder(long totalProductionOrder) {
+        this.totalProductionOrder = totalProductionOrder;
+    }
+
+    public long getTotalMachine() {
+        return totalMachine;
+    }
+
+    public void setTotalMachine(long totalMachine) {
+        this.totalMachine = totalMachine;
+    }
+
+    public long getTotalRepairTime() {
+        return totalRepairTime;
+    }
+
+    public void setTotalRepairTime(long totalRepairTime) {
+        this.totalRepairTime = totalRepairTime;
+    }
+
+    public TotalPlannedProductionOrder getTotalPlannedProductionOrder() {
+        return totalPlannedProductionOrder;
+    }
+
+    public void setTotalPlannedProductionOrder(TotalPlannedProductionOrder totalPlannedProductionOrder) {
+        this.totalPlannedProductionOrder = totalPlannedProductionOrder;
+    }
+
+    public ProducedOrder getProducedOrder() {
+        return producedOrder;
+    }
+
+    public void setProducedOrder(ProducedOrder producedOrder) {
+        this.producedOrder = producedOrder;
+    }
+
+    public ShippedOrder getShippedOrder() {
+        return shippedOrder;
+    }
+
+    public void setShippedOrder(ShippedOrder shippedOrder) {
+        this.shippedOrder = shippedOrder;
+    }
+
+    public ProductionOrder getProductionOrder() {
+        return productionOrder;
+    }
+
+    public void setProductionOrder(ProductionOrder productionOrder) {
+        this.productionOrder = productionOrder;
+    }
+}
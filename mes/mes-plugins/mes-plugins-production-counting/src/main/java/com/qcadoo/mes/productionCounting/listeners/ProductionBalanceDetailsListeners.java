@@ -23,10 +23,12 @@
  */
 package com.qcadoo.mes.productionCounting.listeners;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -43,6 +45,8 @@ import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.file.FileService;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.report.api.ReportService;
+import com.qcadoo.report.api.jobs.ReportJobPriority;
+import com.qcadoo.report.api.jobs.ReportJobService;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.ComponentState;
 import com.qcadoo.view.api.ComponentState.MessageType;
@@ -68,6 +72,9 @@ public class ProductionBalanceDetailsListeners {
     @Autowired
     private ProductionBalanceXlsService productionBalanceXlsService;
 
+    @Autowired
+    private ReportJobService reportJobService;
+
     @Transactional
     public void generateProductionBalance(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         state.performEvent(view, "save");
@@ -87,22 +94,34 @@ public class ProductionBalanceDetailsListeners {
                 return;
             }
 
-            if (!productionBalance.getBooleanField(ProductionBalanceFields.GENERATED)) {
-                fillReportValues(productionBalance);
+            if (productionBalance.getHasManyField(ProductionBalanceFields.ORDERS).isEmpty()) {
+                state.addMessage("productionCounting.productionBalance.report.error.noOrders", MessageType.FAILURE);
+
+                return;
             }
 
-            if (!productionBalance.getHasManyField(ProductionBalanceFields.ORDERS).isEmpty()) {
-                generateProductionBalanceDocumentXls(productionBalance, state.getLocale());
-            } else {
-                state.addMessage("productionCounting.productionBalance.report.error.noOrders", MessageType.FAILURE);
+            Locale locale = state.getLocale();
+
+            try {
+                reportJobService.submit(ProductionCountingConstants.PLUGIN_IDENTIFIER,
+                        ProductionCountingConstants.MODEL_PRODUCTION_BALANCE, productionBalanceId, null,
+                        ReportJobPriority.INTERACTIVE, context -> generateProductionBalanceDocumentXls(productionBalanceId, locale));
+            } catch (RejectedExecutionException e) {
+                state.addMessage("productionCounting.productionBalance.report.error.reportQueueFull", MessageType.FAILURE);
 
                 return;
             }
+
+            if (!productionBalance.getBooleanField(ProductionBalanceFields.GENERATED)) {
+                fillReportValues(productionBalance);
+            }
+
+            fileService.updateReportFileName(productionBalance, ProductionBalanceFields.DATE,
+                    "productionCounting.productionBalance.report.fileName");
+
             state.performEvent(view, "reset");
 
-            state.addMessage(
-                    "productionCounting.productionBalanceDetails.window.mainTab.productionBalanceDetails.generatedMessage",
-                    MessageType.SUCCESS);
+            state.addMessage("productionCounting.productionBalance.report.info.generationQueued", MessageType.INFO);
         }
     }
 
@@ -112,23 +131,45 @@ public class ProductionBalanceDetailsListeners {
         productionBalance.setField(ProductionBalanceFields.WORKER, securityService.getCurrentUserName());
     }
 
-    private void generateProductionBalanceDocumentXls(final Entity productionBalance, final Locale locale) {
-        String localePrefix = "productionCounting.productionBalance.report.fileName";
-
-        Entity productionBalanceWithFileName = fileService.updateReportFileName(productionBalance, ProductionBalanceFields.DATE,
-                localePrefix);
+    private void generateProductionBalanceDocumentXls(final Long productionBalanceId, final Locale locale) {
+        Entity productionBalance = productionCountingService.getProductionBalance(productionBalanceId);
 
         try {
-            productionBalanceXlsService.generateDocument(productionBalanceWithFileName, locale);
+            productionBalanceXlsService.generateDocument(productionBalance, locale);
+        } catch (IOException | RuntimeException e) {
+            productionBalance.setField(ProductionBalanceFields.FILE_NAME, null);
+            productionBalance.getDataDefinition().save(productionBalance);
 
-        } catch (IOException e) {
             throw new IllegalStateException("Problem with saving productionBalance report", e);
         }
     }
 
     public void printProductionBalance(final ViewDefinitionState view, final ComponentState state, final String[] args) {
-        reportService.printGeneratedReport(view, state, new String[] { args[0], ProductionCountingConstants.PLUGIN_IDENTIFIER,
-                ProductionCountingConstants.MODEL_PRODUCTION_BALANCE });
+        reportService.printGeneratedReport(view, state, new String[] { getReportExtension((FormComponent) state, args[0]),
+                ProductionCountingConstants.PLUGIN_IDENTIFIER, ProductionCountingConstants.MODEL_PRODUCTION_BALANCE });
+    }
+
+    private String getReportExtension(final FormComponent productionBalanceForm, final String extension) {
+        String xlsExtension = ReportService.ReportType.XLS.getExtension();
+
+        if (!ReportService.ReportType.XLSX.getExtension().equals(extension) || (productionBalanceForm.getEntityId() == null)) {
+            return extension;
+        }
+
+        String fileName = productionBalanceForm.getPersistedEntityWithIncludedFormValues().getStringField(
+                ProductionBalanceFields.FILE_NAME);
+
+        if (StringUtils.isEmpty(fileName)) {
+            return extension;
+        }
+
+        String reportFileName = fileName.split(",")[0];
+
+        if (!new File(reportFileName + "." + extension).exists() && new File(reportFileName + "." + xlsExtension).exists()) {
+            return xlsExtension;
+        }
+
+        return extension;
     }
 
     public final void addAllRelatedOrders(final ViewDefinitionState view, final ComponentState state, final String[] args) {
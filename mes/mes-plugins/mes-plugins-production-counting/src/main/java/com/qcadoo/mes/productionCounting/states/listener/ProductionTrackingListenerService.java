@@ -27,8 +27,6 @@ import com.google.common.collect.Lists;
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
-import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingFields;
-import com.qcadoo.mes.basicProductionCounting.constants.OrderFieldsBPC;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.states.aop.OrderStateChangeAspect;
 import com.qcadoo.mes.orders.states.constants.OrderState;
@@ -52,7 +50,9 @@ import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.validators.ErrorMessage;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -295,38 +295,20 @@ public final class ProductionTrackingListenerService {
         final List<Entity> trackingOperationProductOutComponents = productionTracking
                 .getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_OUT_COMPONENTS);
 
-        trackingOperationProductInComponents.forEach(trackingOperationProductInComponent -> {
-            Entity basicProductionCounting = getBasicProductionCounting(trackingOperationProductInComponent, order);
-
-            if (basicProductionCounting == null) {
-                return;
-            }
-
-            final BigDecimal usedQuantity = basicProductionCounting.getDecimalField(BasicProductionCountingFields.USED_QUANTITY);
-            final BigDecimal productQuantity = trackingOperationProductInComponent
-                    .getDecimalField(TrackingOperationProductInComponentFields.USED_QUANTITY);
-            final BigDecimal result = operation.perform(usedQuantity, productQuantity);
-
-            basicProductionCounting.setField(BasicProductionCountingFields.USED_QUANTITY, result);
-            basicProductionCounting.getDataDefinition().save(basicProductionCounting);
-        });
-
-        trackingOperationProductOutComponents.forEach(trackingOperationProductOutComponent -> {
-            Entity basicProductionCounting = getBasicProductionCounting(trackingOperationProductOutComponent, order);
-
-            if (basicProductionCounting == null) {
-                return;
-            }
-
-            final BigDecimal usedQuantity = basicProductionCounting
-                    .getDecimalField(BasicProductionCountingFields.PRODUCED_QUANTITY);
-            final BigDecimal productQuantity = trackingOperationProductOutComponent
-                    .getDecimalField(TrackingOperationProductOutComponentFields.USED_QUANTITY);
-            final BigDecimal result = operation.perform(usedQuantity, productQuantity);
+        basicProductionCountingService.addUsedAndProducedQuantities(order,
+                getQuantitiesByProduct(trackingOperationProductInComponents,
+                        TrackingOperationProductInComponentFields.USED_QUANTITY, operation),
+                getQuantitiesByProduct(trackingOperationProductOutComponents,
+                        TrackingOperationProductOutComponentFields.USED_QUANTITY, operation));
+    }
 
-            basicProductionCounting.setField(BasicProductionCountingFields.PRODUCED_QUANTITY, result);
-            basicProductionCounting.getDataDefinition().save(basicProductionCounting);
-        });
+    private Map<Long, BigDecimal> getQuantitiesByProduct(final List<Entity> trackingOperationProductComponents,
+            final String quantityFieldName, final Operation operation) {
+        return trackingOperationProductComponents.stream().collect(Collectors.toMap(
+                trackingOperationProductComponent -> trackingOperationProductComponent.getBelongsToField(L_PRODUCT).getId(),
+                trackingOperationProductComponent -> operation.perform(BigDecimal.ZERO,
+                        trackingOperationProductComponent.getDecimalField(quantityFieldName)),
+                (quantity, otherQuantity) -> quantity.add(otherQuantity, numberService.getMathContext()), LinkedHashMap::new));
     }
 
     private void checkIfTimesIsSet(final Entity productionTracking) {
@@ -362,14 +344,6 @@ public final class ProductionTrackingListenerService {
         }
     }
 
-    private Entity getBasicProductionCounting(final Entity trackingOperationProductComponent, final Entity order) {
-        Entity product = trackingOperationProductComponent.getBelongsToField(L_PRODUCT);
-
-        return order.getHasManyField(OrderFieldsBPC.BASIC_PRODUCTION_COUNTINGS).find()
-                .add(SearchRestrictions.belongsTo(BasicProductionCountingFields.PRODUCT, product)).setMaxResults(1)
-                .uniqueResult();
-    }
-
     public void onCorrected(final Entity productionTracking) {
         updateBasicProductionCounting(productionTracking, new Substraction());
         setOrderDoneAndWastesQuantity(productionTracking, new Substraction());
@@ -12,7 +12,8 @@ import com.qcadoo.mes.productionCounting.xls.dto.ProducedQuantity;
 import com.qcadoo.mes.productionCounting.xls.dto.ProductionCost;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
-import com.qcadoo.report.api.xls.XlsDocumentService;
+import com.qcadoo.report.api.xls.XlsStylesContainer;
+import com.qcadoo.report.api.xls.XlsxDocumentService;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -20,20 +21,19 @@ import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
 
-import org.apache.poi.hssf.usermodel.HSSFCell;
-import org.apache.poi.hssf.usermodel.HSSFCellStyle;
-import org.apache.poi.hssf.usermodel.HSSFRow;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
-public class ProductionBalanceXlsService extends XlsDocumentService {
+public class ProductionBalanceXlsService extends XlsxDocumentService {
 
     @Autowired
     private TranslationService translationService;
@@ -48,26 +48,24 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             "productName", "plannedQuantity", "producedQuantity", "wastesQuantity", "producedWastes", "deviation", "productUnit");
 
     @Override
-    protected void addHeader(HSSFSheet sheet, Locale locale, Entity entity) {
+    protected void addHeader(Sheet sheet, Locale locale, Entity entity) {
 
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        HSSFRow headerRow = sheet.createRow(0);
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
+        Row headerRow = sheet.createRow(0);
         int columnIndex = 0;
         for (String key : PRODUCTION_QUANTITIES_HEADERS) {
             createHeaderCell(stylesContainer, headerRow,
                     translationService.translate("productionCounting.productionBalance.report.xls.header." + key, locale),
-                    columnIndex, HSSFCellStyle.ALIGN_LEFT);
+                    columnIndex, CellStyle.ALIGN_LEFT);
             columnIndex++;
         }
     }
 
     @Override
-    protected void addSeries(HSSFSheet sheet, Entity entity) {
+    protected void addSeries(Sheet sheet, Entity entity) {
         List<Long> ordersIds = getOrdersIds(entity);
 
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         createProducedQuantitiesSheet(sheet, ordersIds, stylesContainer);
     }
 
@@ -77,7 +75,7 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
     }
 
     @Override
-    protected void addExtraSheets(final HSSFWorkbook workbook, Entity entity, Locale locale) {
+    protected void addExtraSheets(final Workbook workbook, Entity entity, Locale locale) {
         List<Long> ordersIds = getOrdersIds(entity);
         List<MaterialCost> materialCosts = productionBalanceRepository.getMaterialCosts(entity, ordersIds);
         createMaterialCostsSheet(materialCosts, createSheet(workbook,
@@ -116,11 +114,11 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         return orders.stream().map(Entity::getId).collect(Collectors.toList());
     }
 
-    private void createProducedQuantitiesSheet(HSSFSheet sheet, List<Long> ordersIds, StylesContainer stylesContainer) {
+    private void createProducedQuantitiesSheet(Sheet sheet, List<Long> ordersIds, StylesContainer stylesContainer) {
         List<ProducedQuantity> producedQuantities = productionBalanceRepository.getProducedQuantities(ordersIds);
         int rowIndex = 1;
         for (ProducedQuantity producedQuantity : producedQuantities) {
-            HSSFRow row = sheet.createRow(rowIndex);
+            Row row = sheet.createRow(rowIndex);
             createRegularCell(stylesContainer, row, 0, producedQuantity.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, producedQuantity.getProductNumber());
             createRegularCell(stylesContainer, row, 2, producedQuantity.getProductName());
@@ -138,11 +136,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createMaterialCostsSheet(List<MaterialCost> materialCosts, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createMaterialCostsSheet(List<MaterialCost> materialCosts, Sheet sheet, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer,
                 row, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.orderNumber", locale),
@@ -222,11 +219,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createPieceworkSheet(HSSFSheet sheet, List<Long> ordersIds, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createPieceworkSheet(Sheet sheet, List<Long> ordersIds, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer, row, translationService.translate(PieceworkSheetConstants.ORDER_NUMBER, locale), 0,
                 CellStyle.ALIGN_LEFT);
         createHeaderCell(stylesContainer, row, translationService.translate(PieceworkSheetConstants.OPERATION_NUMBER, locale), 1,
@@ -249,11 +245,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createLaborTimeSheet(HSSFSheet sheet, List<Long> ordersIds, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createLaborTimeSheet(Sheet sheet, List<Long> ordersIds, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.ORDER_NUMBER, locale), 0,
                 CellStyle.ALIGN_LEFT);
         createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.OPERATION_NUMBER, locale), 1,
@@ -290,11 +285,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createLaborTimeDetailsSheet(List<LaborTimeDetails> laborTimeDetailsList, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createLaborTimeDetailsSheet(List<LaborTimeDetails> laborTimeDetailsList, Sheet sheet, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer, row,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.divisionNumber", locale),
@@ -437,11 +431,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createProductionCostsSheet(List<ProductionCost> productionCosts, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createProductionCostsSheet(List<ProductionCost> productionCosts, Sheet sheet, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer,
                 row, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.productionCosts.orderNumber", locale),
@@ -538,11 +531,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createOrdersBalanceSheet(List<OrderBalance> ordersBalance, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createOrdersBalanceSheet(List<OrderBalance> ordersBalance, Sheet sheet, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer,
                 row, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.orderNumber", locale),
@@ -662,11 +654,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void createProductsBalanceSheet(List<OrderBalance> productsBalance, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+    private void createProductsBalanceSheet(List<OrderBalance> productsBalance, Sheet sheet, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(getStylesContainer(sheet.getWorkbook()));
         final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+        Row row = sheet.createRow(0);
         createHeaderCell(stylesContainer,
                 row, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productNumber", locale),
@@ -781,122 +772,125 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private HSSFCell createRegularCell(StylesContainer stylesContainer, HSSFRow row, int column, String content) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createRegularCell(StylesContainer stylesContainer, Row row, int column, String content) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(content);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.regularStyle, HSSFCellStyle.ALIGN_LEFT));
+        cell.setCellStyle(stylesContainer.aligned(StylesContainer.REGULAR, CellStyle.ALIGN_LEFT));
         return cell;
     }
 
-    private HSSFCell createNumericCell(StylesContainer stylesContainer, HSSFRow row, int column, BigDecimal value, boolean bold) {
-        HSSFCell cell = row.createCell(column, HSSFCell.CELL_TYPE_NUMERIC);
+    private Cell createNumericCell(StylesContainer stylesContainer, Row row, int column, BigDecimal value, boolean bold) {
+        Cell cell = row.createCell(column, Cell.CELL_TYPE_NUMERIC);
         cell.setCellValue(numberService.setScaleWithDefaultMathContext(value, 2).doubleValue());
         if (bold) {
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.numberBoldStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.aligned(StylesContainer.NUMBER_BOLD, CellStyle.ALIGN_RIGHT));
         } else {
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.numberStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.aligned(StylesContainer.NUMBER, CellStyle.ALIGN_RIGHT));
         }
         return cell;
     }
 
-    private HSSFCell createTimeCell(StylesContainer stylesContainer, HSSFRow row, int column, Integer value, boolean bold) {
-        HSSFCell cell = row.createCell(column, HSSFCell.CELL_TYPE_NUMERIC);
+    private Cell createTimeCell(StylesContainer stylesContainer, Row row, int column, Integer value, boolean bold) {
+        Cell cell = row.createCell(column, Cell.CELL_TYPE_NUMERIC);
         if (value == null) {
             value = 0;
         }
         cell.setCellValue(Math.abs(value) / 86400d);
         if (value >= 0) {
             if (bold) {
-                cell.setCellStyle(StylesContainer.aligned(stylesContainer.timeBoldStyle, HSSFCellStyle.ALIGN_RIGHT));
+                cell.setCellStyle(stylesContainer.aligned(StylesContainer.TIME_BOLD, CellStyle.ALIGN_RIGHT));
             } else {
-                cell.setCellStyle(StylesContainer.aligned(stylesContainer.timeStyle, HSSFCellStyle.ALIGN_RIGHT));
+                cell.setCellStyle(stylesContainer.aligned(StylesContainer.TIME, CellStyle.ALIGN_RIGHT));
             }
         } else {
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.negativeTimeStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.aligned(StylesContainer.NEGATIVE_TIME, CellStyle.ALIGN_RIGHT));
         }
         return cell;
     }
 
-    private HSSFCell createDateTimeCell(StylesContainer stylesContainer, HSSFRow row, int column, Date value) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createDateTimeCell(StylesContainer stylesContainer, Row row, int column, Date value) {
+        Cell cell = row.createCell(column);
         if (value != null) {
             cell.setCellValue(value);
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.dateTimeStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.aligned(StylesContainer.DATE_TIME, CellStyle.ALIGN_RIGHT));
         }
         return cell;
     }
 
-    private HSSFCell createHeaderCell(StylesContainer stylesContainer, HSSFRow row, String content, int column, short align) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createHeaderCell(StylesContainer stylesContainer, Row row, String content, int column, short align) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(content);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.headerStyle, align));
+        cell.setCellStyle(stylesContainer.aligned(StylesContainer.HEADER, align));
         return cell;
     }
 
     private static class StylesContainer {
 
-        private final HSSFCellStyle regularStyle;
+        private static final String REGULAR = "regular";
 
-        private final HSSFCellStyle headerStyle;
+        private static final String HEADER = "header";
 
-        private final HSSFCellStyle timeStyle;
+        private static final String TIME = "time";
 
-        private final HSSFCellStyle timeBoldStyle;
+        private static final String TIME_BOLD = "timeBold";
 
-        private final HSSFCellStyle negativeTimeStyle;
+        private static final String NEGATIVE_TIME = "negativeTime";
 
-        private final HSSFCellStyle numberStyle;
+        private static final String NUMBER = "number";
 
-        private final HSSFCellStyle numberBoldStyle;
+        private static final String NUMBER_BOLD = "numberBold";
 
-        private final HSSFCellStyle dateTimeStyle;
+        private static final String DATE_TIME = "dateTime";
 
-        StylesContainer(HSSFWorkbook workbook, FontsContainer fontsContainer) {
-            regularStyle = workbook.createCellStyle();
-            regularStyle.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
+        private static final String BOLD_FONT = "bold";
 
-            headerStyle = workbook.createCellStyle();
-            headerStyle.setFont(fontsContainer.boldFont);
-            headerStyle.setFillPattern(XSSFCellStyle.SOLID_FOREGROUND);
-            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-            headerStyle.setBorderBottom(XSSFCellStyle.BORDER_MEDIUM);
-            headerStyle.setWrapText(true);
+        private final XlsStylesContainer container;
 
-            timeStyle = workbook.createCellStyle();
-            timeStyle.setDataFormat(workbook.createDataFormat().getFormat("[HH]:MM:SS"));
+        StylesContainer(XlsStylesContainer container) {
+            this.container = container;
 
-            timeBoldStyle = workbook.createCellStyle();
-            timeBoldStyle.setDataFormat(workbook.createDataFormat().getFormat("[HH]:MM:SS"));
-            timeBoldStyle.setFont(fontsContainer.boldFont);
+            if (!container.containsStyle(REGULAR)) {
+                createStyles(container);
+            }
+        }
 
-            negativeTimeStyle = workbook.createCellStyle();
-            negativeTimeStyle.setDataFormat(workbook.createDataFormat().getFormat("-[HH]:MM:SS"));
+        private static void createStyles(XlsStylesContainer container) {
+            Workbook workbook = container.getWorkbook();
+            DataFormat dataFormat = workbook.createDataFormat();
 
-            numberStyle = workbook.createCellStyle();
-            numberStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00###"));
+            Font bold = container.addFont(BOLD_FONT);
+            bold.setBoldweight(Font.BOLDWEIGHT_BOLD);
 
-            numberBoldStyle = workbook.createCellStyle();
-            numberBoldStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00###"));
-            numberBoldStyle.setFont(fontsContainer.boldFont);
+            CellStyle regular = container.addStyle(REGULAR);
+            regular.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
 
-            dateTimeStyle = workbook.createCellStyle();
-            dateTimeStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
-        }
+            CellStyle header = container.addStyle(HEADER);
+            header.setFont(bold);
+            header.setFillPattern(CellStyle.SOLID_FOREGROUND);
+            header.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+            header.setBorderBottom(CellStyle.BORDER_MEDIUM);
+            header.setWrapText(true);
 
-        private static HSSFCellStyle aligned(HSSFCellStyle style, short align) {
-            style.setAlignment(align);
-            return style;
-        }
+            container.addStyle(TIME).setDataFormat(dataFormat.getFormat("[HH]:MM:SS"));
 
-    }
+            CellStyle timeBold = container.addStyle(TIME_BOLD);
+            timeBold.setDataFormat(dataFormat.getFormat("[HH]:MM:SS"));
+            timeBold.setFont(bold);
 
-    private static class FontsContainer {
+            container.addStyle(NEGATIVE_TIME).setDataFormat(dataFormat.getFormat("-[HH]:MM:SS"));
 
-        private final Font boldFont;
+            container.addStyle(NUMBER).setDataFormat(dataFormat.getFormat("0.00###"));
 
-        FontsContainer(HSSFWorkbook workbook) {
-            boldFont = workbook.createFont();
-            boldFont.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            CellStyle numberBold = container.addStyle(NUMBER_BOLD);
+            numberBold.setDataFormat(dataFormat.getFormat("0.00###"));
+            numberBold.setFont(bold);
+
+            container.addStyle(DATE_TIME).setDataFormat(dataFormat.getFormat("yyyy-mm-dd hh:mm"));
+        }
+
+        private CellStyle aligned(String style, short align) {
+            return container.getStyle(style, align);
         }
+
     }
 }
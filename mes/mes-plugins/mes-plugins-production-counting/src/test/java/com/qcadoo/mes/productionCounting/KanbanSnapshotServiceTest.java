@@ -0,0 +1,83 @@
+package com.qcadoo.mes.productionCounting;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.qcadoo.mes.productionCounting.dtos.KanbanSnapshot;
+
+public class KanbanSnapshotServiceTest {
+
+    private KanbanSnapshotService kanbanSnapshotService;
+
+    @Mock
+    private KanbanService kanbanService;
+
+    private KanbanSnapshot firstSnapshot, secondSnapshot;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        kanbanSnapshotService = new KanbanSnapshotService();
+
+        ReflectionTestUtils.setField(kanbanSnapshotService, "kanbanService", kanbanService);
+        ReflectionTestUtils.setField(kanbanSnapshotService, "ttlInSeconds", 60);
+
+        firstSnapshot = new KanbanSnapshot(System.currentTimeMillis());
+        secondSnapshot = new KanbanSnapshot(System.currentTimeMillis());
+
+        given(kanbanService.computeSnapshot()).willReturn(firstSnapshot, secondSnapshot);
+    }
+
+    @Test
+    public void shouldComputeSnapshotOnceWithinTtl() {
+        // when
+        KanbanSnapshot first = kanbanSnapshotService.getSnapshot();
+        KanbanSnapshot second = kanbanSnapshotService.getSnapshot();
+
+        // then
+        assertSame(firstSnapshot, first);
+        assertSame(firstSnapshot, second);
+        verify(kanbanService, times(1)).computeSnapshot();
+    }
+
+    @Test
+    public void shouldServePreviousSnapshotWhileRefreshingInvalidatedOne() {
+        // given
+        kanbanSnapshotService.getSnapshot();
+
+        // when
+        kanbanSnapshotService.invalidate();
+
+        KanbanSnapshot duringRefresh = kanbanSnapshotService.getSnapshot();
+        KanbanSnapshot afterRefresh = kanbanSnapshotService.getSnapshot();
+
+        // then
+        assertSame(firstSnapshot, duringRefresh);
+        assertSame(secondSnapshot, afterRefresh);
+        verify(kanbanService, times(2)).computeSnapshot();
+    }
+
+    @Test
+    public void shouldRefreshExpiredSnapshot() {
+        // given
+        ReflectionTestUtils.setField(kanbanSnapshotService, "ttlInSeconds", 0);
+
+        kanbanSnapshotService.getSnapshot();
+
+        // when
+        kanbanSnapshotService.getSnapshot();
+
+        // then
+        verify(kanbanService, times(2)).computeSnapshot();
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.qcadoo.mes.productionPerShift.domain;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+public class PpsRegenerationResult {
+
+    private final List<String> regeneratedOrders = Lists.newArrayList();
+
+    private final List<String> skippedOrders = Lists.newArrayList();
+
+    private final List<String> failedOrders = Lists.newArrayList();
+
+    public void addRegeneratedOrder(final String orderNumber) {
+        regeneratedOrders.add(orderNumber);
+    }
+
+    public void addSkippedOrder(final String orderNumber) {
+        skippedOrders.add(orderNumber);
+    }
+
+    public void addFailedOrder(final String orderNumber) {
+        failedOrders.add(orderNumber);
+    }
+
+    public List<String> getRegeneratedOrders() {
+        return regeneratedOrders;
+    }
+
+    public List<String> getSkippedOrders() {
+        return skippedOrders;
+    }
+
+    public List<String> getFailedOrders() {
+        return failedOrders;
+    }
+
+}
@@ -7,6 +7,7 @@ import org.joda.time.DateTime;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 public class ProgressForDaysContainer {
 
@@ -34,6 +35,8 @@ public class ProgressForDaysContainer {
 
     private BigDecimal alreadyRegisteredQuantity = BigDecimal.ZERO;
 
+    private Map<DailyProgressKey, Entity> dailyProgressesWithTrackingRecords;
+
     public void addError(ErrorMessage errorMessage) {
         errors.add(errorMessage);
     }
@@ -133,4 +136,12 @@ public class ProgressForDaysContainer {
     public void setPlanForOrderCompleted(boolean planForOrderCompleted) {
         this.planForOrderCompleted = planForOrderCompleted;
     }
+
+    public Map<DailyProgressKey, Entity> getDailyProgressesWithTrackingRecords() {
+        return dailyProgressesWithTrackingRecords;
+    }
+
+    public void setDailyProgressesWithTrackingRecords(Map<DailyProgressKey, Entity> dailyProgressesWithTrackingRecords) {
+        this.dailyProgressesWithTrackingRecords = dailyProgressesWithTrackingRecords;
+    }
 }
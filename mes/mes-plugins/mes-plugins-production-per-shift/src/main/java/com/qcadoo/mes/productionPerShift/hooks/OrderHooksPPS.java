@@ -28,14 +28,13 @@ import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.states.constants.OrderState;
-import com.qcadoo.mes.productionPerShift.PpsTimeHelper;
 import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftConstants;
 import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftFields;
-import com.qcadoo.mes.productionPerShift.constants.ProgressForDayFields;
 import com.qcadoo.mes.productionPerShift.dates.ProgressDatesService;
 import com.qcadoo.mes.productionPerShift.domain.ProgressForDaysContainer;
 import com.qcadoo.mes.productionPerShift.services.AutomaticPpsExecutorService;
 import com.qcadoo.mes.productionPerShift.services.AutomaticPpsParametersService;
+import com.qcadoo.mes.productionPerShift.services.PpsRegenerationService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -45,9 +44,7 @@ import com.qcadoo.model.api.validators.ErrorMessage;
 
 import java.math.BigDecimal;
 import java.util.Date;
-import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -74,7 +71,7 @@ public class OrderHooksPPS {
     private AutomaticPpsExecutorService automaticPpsExecutorService;
 
     @Autowired
-    private PpsTimeHelper ppsTimeHelper;
+    private PpsRegenerationService ppsRegenerationService;
 
     @Autowired
     private AutomaticPpsParametersService automaticPpsParametersService;
@@ -134,37 +131,13 @@ public class OrderHooksPPS {
                         }
                         return;
                     }
-                    List<Entity> progressForDays = progressForDaysContainer.getProgressForDays();
                     if (progressForDaysContainer.isCalculationError()) {
                         productionPerShift.getGlobalErrors()
                                 .forEach(error -> order.addGlobalError(error.getMessage(), false, error.getVars()));
                         return;
                     }
 
-                    if (!progressForDaysContainer.isPartCalculation()) {
-                        Date finishDate = ppsTimeHelper.calculateOrderFinishDate(order, progressForDays);
-
-                        order.setField(OrderFields.FINISH_DATE, finishDate);
-
-                        if (shouldBeCorrected) {
-                            order.setField(OrderFields.CORRECTED_DATE_TO, finishDate);
-                        } else {
-                            order.setField(OrderFields.DATE_TO, finishDate);
-                        }
-                    }
-                    productionPerShift.setField(ProductionPerShiftFields.PLANNED_PROGRESS_TYPE, "01planned");
-
-                    if (shouldBeCorrected) {
-                        productionPerShift.setField(ProductionPerShiftFields.PLANNED_PROGRESS_TYPE, "02corrected");
-
-                        progressForDays
-                                .addAll(productionPerShift.getHasManyField(ProductionPerShiftFields.PROGRES_FOR_DAYS).stream()
-                                        .filter(progressForDay -> !progressForDay.getBooleanField(ProgressForDayFields.CORRECTED))
-                                        .collect(Collectors.toList()));
-                    }
-
-                    productionPerShift.setField(ProductionPerShiftFields.PROGRES_FOR_DAYS, progressForDays);
-                    productionPerShift.getDataDefinition().save(productionPerShift);
+                    ppsRegenerationService.applyProgressForDays(order, productionPerShift, progressForDaysContainer);
                 }
             }
 
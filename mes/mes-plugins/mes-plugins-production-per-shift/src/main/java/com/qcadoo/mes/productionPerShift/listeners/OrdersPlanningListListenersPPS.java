@@ -0,0 +1,70 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionPerShift.listeners;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.productionPerShift.domain.PpsRegenerationResult;
+import com.qcadoo.mes.productionPerShift.services.AutomaticPpsParametersService;
+import com.qcadoo.mes.productionPerShift.services.PpsRegenerationService;
+import com.qcadoo.model.api.validators.ErrorMessage;
+import com.qcadoo.view.api.ComponentState;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.GridComponent;
+
+@Service
+public class OrdersPlanningListListenersPPS {
+
+    @Autowired
+    private PpsRegenerationService ppsRegenerationService;
+
+    @Autowired
+    private AutomaticPpsParametersService automaticPpsParametersService;
+
+    public void regenerateProductionPerShift(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        if (!automaticPpsParametersService.isAutomaticPlanForShiftOn()) {
+            view.addMessage(new ErrorMessage("productionPerShift.automaticAlgorithm.error.ppsOff", false));
+            return;
+        }
+
+        GridComponent ordersGrid = (GridComponent) state;
+
+        PpsRegenerationResult result = ppsRegenerationService.regenerate(ordersGrid.getSelectedEntitiesIds());
+
+        if (!result.getRegeneratedOrders().isEmpty()) {
+            view.addMessage("productionPerShift.ordersPlanningList.regenerate.regenerated", ComponentState.MessageType.SUCCESS,
+                    false, String.join(", ", result.getRegeneratedOrders()));
+        }
+        if (!result.getSkippedOrders().isEmpty()) {
+            view.addMessage("productionPerShift.ordersPlanningList.regenerate.skipped", ComponentState.MessageType.INFO, false,
+                    String.join(", ", result.getSkippedOrders()));
+        }
+        if (!result.getFailedOrders().isEmpty()) {
+            view.addMessage("productionPerShift.ordersPlanningList.regenerate.failed", ComponentState.MessageType.FAILURE, false,
+                    String.join(", ", result.getFailedOrders()));
+        }
+    }
+
+}
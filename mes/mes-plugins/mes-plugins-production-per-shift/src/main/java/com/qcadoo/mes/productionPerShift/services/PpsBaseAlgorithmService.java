@@ -15,8 +15,9 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Lists;
 import com.qcadoo.localization.api.utils.DateUtils;
 import com.qcadoo.mes.basic.ParameterService;
-import com.qcadoo.mes.basic.ShiftExceptionService;
+import com.qcadoo.mes.basic.ShiftsService;
 import com.qcadoo.mes.basic.shift.Shift;
+import com.qcadoo.mes.basic.shift.WorkingCalendar;
 import com.qcadoo.mes.basic.util.DateTimeRange;
 import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
 import com.qcadoo.mes.orders.constants.OrderFields;
@@ -50,13 +51,11 @@ public abstract class PpsBaseAlgorithmService {
     private DataDefinitionService dataDefinitionService;
 
     @Autowired
-    private ShiftExceptionService shiftExceptionService;
+    private ShiftsService shiftsService;
 
     @Autowired
     private ParameterService parameterService;
 
-    private Map<DailyProgressKey, Entity> dailyProgressesWithTrackingRecords;
-
     public void generateProgressForDays(ProgressForDaysContainer progressForDaysContainer, Entity productionPerShift) {
         Entity order = productionPerShift.getBelongsToField(ProductionPerShiftFields.ORDER);
         if (progressForDaysContainer.getOrder() != null) {
@@ -99,14 +98,15 @@ public abstract class PpsBaseAlgorithmService {
         DateTime currentDate = new DateTime(orderStartDate);
         currentDate = currentDate.minusDays(1);
         currentDate = currentDate.toLocalDate().toDateTimeAtStartOfDay();
+        WorkingCalendar workingCalendar = shiftsService.getWorkingCalendar(productionLine, currentDate.toLocalDate());
         boolean shouldBeCorrected = progressForDaysContainer.isShouldBeCorrected();
         int realizationDayNumber = 0;
         while (progressForDaysContainer.getPlannedQuantity().compareTo(BigDecimal.ZERO) > 0
                 || progressForDaysContainer.getAlreadyRegisteredQuantity().compareTo(BigDecimal.ZERO) > 0) {
 
             DailyProgressContainer dailyProgressContainer = fillDailyProgressWithShifts(progressForDaysContainer,
-                    productionPerShift, order, shifts, currentDate, orderStartDate, shouldBeCorrected, progressForDays.size(),
-                    alreadyPlannedQuantity, allowIncompleteUnits);
+                    productionPerShift, order, shifts, workingCalendar, currentDate, orderStartDate, shouldBeCorrected,
+                    progressForDays.size(), alreadyPlannedQuantity, allowIncompleteUnits);
             if (dailyProgressContainer.isCalculationError()) {
                 progressForDaysContainer.setCalculationError(true);
                 return;
@@ -125,11 +125,13 @@ public abstract class PpsBaseAlgorithmService {
     }
 
     private DailyProgressContainer fillDailyProgressWithShifts(ProgressForDaysContainer progressForDaysContainer,
-            Entity productionPerShift, Entity order, List<Shift> shifts, DateTime dateOfDay, Date orderStartDate,
-            boolean shouldBeCorrected, int progressForDayQuantity, BigDecimal alreadyPlannedQuantity,
+            Entity productionPerShift, Entity order, List<Shift> shifts, WorkingCalendar workingCalendar, DateTime dateOfDay,
+            Date orderStartDate, boolean shouldBeCorrected, int progressForDayQuantity, BigDecimal alreadyPlannedQuantity,
             boolean allowIncompleteUnits) {
         DailyProgressContainer dailyProgressContainer = new DailyProgressContainer();
         List<Entity> dailyProgressWithShifts = Lists.newLinkedList();
+        Map<DailyProgressKey, Entity> dailyProgressesWithTrackingRecords = progressForDaysContainer
+                .getDailyProgressesWithTrackingRecords();
 
         for (Shift shift : shifts) {
             Entity dailyProgress = null;
@@ -156,8 +158,7 @@ public abstract class PpsBaseAlgorithmService {
                 DateTime orderStartDateDT = new DateTime(orderStartDate, DateTimeZone.getDefault());
                 BigDecimal shiftEfficiency = BigDecimal.ZERO;
                 int time = 0;
-                for (DateTimeRange range : shiftExceptionService
-                        .getShiftWorkDateTimes(order.getBelongsToField(OrderFields.PRODUCTION_LINE), shift, dateOfDay)) {
+                for (DateTimeRange range : workingCalendar.getShiftWorkDateTimes(shift, dateOfDay)) {
                     if (orderStartDate.after(dateOfDay.toDate())) {
                         range = range.trimBefore(orderStartDateDT);
                     }
@@ -226,14 +227,16 @@ public abstract class PpsBaseAlgorithmService {
             final Entity pps, BigDecimal plannedQuantity) {
         BigDecimal alreadyRegisteredQuantity = progressForDaysContainer.getAlreadyRegisteredQuantity();
         if (pps != null) {
-            dailyProgressesWithTrackingRecords = dailyProgressService.getDailyProgressesWithTrackingRecords(pps);
+            Map<DailyProgressKey, Entity> dailyProgressesWithTrackingRecords = dailyProgressService
+                    .getDailyProgressesWithTrackingRecords(pps);
 
             for (Map.Entry<DailyProgressKey, Entity> entry : dailyProgressesWithTrackingRecords.entrySet()) {
                 alreadyRegisteredQuantity = alreadyRegisteredQuantity.add(entry.getKey().getQuantity());
             }
             progressForDaysContainer.setAlreadyRegisteredQuantity(alreadyRegisteredQuantity);
+            progressForDaysContainer.setDailyProgressesWithTrackingRecords(dailyProgressesWithTrackingRecords);
         } else {
-            dailyProgressesWithTrackingRecords = null;
+            progressForDaysContainer.setDailyProgressesWithTrackingRecords(null);
         }
         progressForDaysContainer
                 .setPlannedQuantity(plannedQuantity.subtract(alreadyRegisteredQuantity, numberService.getMathContext()));
@@ -0,0 +1,298 @@
+package com.qcadoo.mes.productionPerShift.services;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.mes.orders.states.constants.OrderState;
+import com.qcadoo.mes.productionPerShift.PpsTimeHelper;
+import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftConstants;
+import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftFields;
+import com.qcadoo.mes.productionPerShift.constants.ProgressForDayFields;
+import com.qcadoo.mes.productionPerShift.domain.PpsRegenerationResult;
+import com.qcadoo.mes.productionPerShift.domain.ProgressForDaysContainer;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Regenerates production per shift of many orders at once. Progress for days of each order is calculated by a bounded pool of
+ * workers, each in its own read only transaction. The results are written back by the calling thread in its transaction:
+ * productions per shift are saved in one batch, and only the orders whose finish dates have changed are saved. If any of them
+ * can't be saved, the transaction is rolled back and all calculated orders are reported as failed.
+ */
+@Service
+public class PpsRegenerationService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PpsRegenerationService.class);
+
+    @Value("${ppsRegenerationPoolSize:4}")
+    private int poolSize;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private AutomaticPpsExecutorService automaticPpsExecutorService;
+
+    @Autowired
+    private AutomaticPpsParametersService automaticPpsParametersService;
+
+    @Autowired
+    private PpsTimeHelper ppsTimeHelper;
+
+    private ExecutorService executor;
+
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    @Autowired
+    public void setTransactionManager(@Qualifier("transactionManager") final PlatformTransactionManager transactionManager) {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("ppsRegeneration-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Transactional
+    public PpsRegenerationResult regenerate(final Collection<Long> orderIds) {
+        checkState(automaticPpsParametersService.isAutomaticPlanForShiftOn(), "Automatic plan for shift is disabled");
+
+        PpsRegenerationResult result = new PpsRegenerationResult();
+
+        Map<Entity, Entity> productionPerShifts = Maps.newLinkedHashMap();
+        Map<Entity, Future<ProgressForDaysContainer>> calculations = Maps.newHashMap();
+
+        for (Long orderId : orderIds) {
+            Entity order = getOrderDD().get(orderId);
+
+            if (order == null) {
+                continue;
+            }
+
+            Entity productionLine = order.getBelongsToField(OrderFields.PRODUCTION_LINE);
+            Entity productionPerShift = getProductionPerShift(order);
+
+            if ((productionLine == null) || (productionPerShift == null)) {
+                result.addSkippedOrder(order.getStringField(OrderFields.NUMBER));
+
+                continue;
+            }
+
+            productionPerShifts.put(order, productionPerShift);
+            calculations.put(order, executor.submit(() -> calculateProgressForDays(orderId)));
+        }
+
+        List<Entity> calculatedOrders = Lists.newArrayList();
+        List<Entity> calculatedProductionPerShifts = Lists.newArrayList();
+        List<Entity> changedOrders = Lists.newArrayList();
+
+        for (Map.Entry<Entity, Entity> orderAndProductionPerShift : productionPerShifts.entrySet()) {
+            Entity order = orderAndProductionPerShift.getKey();
+            Entity productionPerShift = orderAndProductionPerShift.getValue();
+            String orderNumber = order.getStringField(OrderFields.NUMBER);
+
+            ProgressForDaysContainer progressForDaysContainer = getCalculation(calculations.get(order), orderNumber);
+
+            if ((progressForDaysContainer == null) || progressForDaysContainer.isCalculationError()) {
+                result.addFailedOrder(orderNumber);
+
+                continue;
+            }
+
+            if (setProgressForDays(order, productionPerShift, progressForDaysContainer)) {
+                changedOrders.add(order);
+            }
+
+            calculatedOrders.add(order);
+            calculatedProductionPerShifts.add(productionPerShift);
+        }
+
+        boolean saved = getProductionPerShiftDD().saveAll(calculatedProductionPerShifts).stream().allMatch(Entity::isValid);
+
+        if (saved && !changedOrders.isEmpty()) {
+            saved = getOrderDD().saveAll(changedOrders).stream().allMatch(Entity::isValid);
+        }
+
+        if (!saved) {
+            // an invalid production per shift or order doesn't roll back the others on its own, but a regenerated plan must not
+            // be kept without the dates of its order, so none of the regenerations is persisted
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        }
+
+        for (Entity order : calculatedOrders) {
+            if (saved) {
+                result.addRegeneratedOrder(order.getStringField(OrderFields.NUMBER));
+            } else {
+                result.addFailedOrder(order.getStringField(OrderFields.NUMBER));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets calculated progress for days in production per shift and saves it, updates finish dates of the order when the
+     * whole plan was calculated.
+     * 
+     * @param order
+     *            order
+     * @param productionPerShift
+     *            production per shift of the order
+     * @param progressForDaysContainer
+     *            result of the calculation
+     */
+    public void applyProgressForDays(final Entity order, final Entity productionPerShift,
+            final ProgressForDaysContainer progressForDaysContainer) {
+        setProgressForDays(order, productionPerShift, progressForDaysContainer);
+
+        productionPerShift.getDataDefinition().save(productionPerShift);
+    }
+
+    private boolean setProgressForDays(final Entity order, final Entity productionPerShift,
+            final ProgressForDaysContainer progressForDaysContainer) {
+        boolean shouldBeCorrected = progressForDaysContainer.isShouldBeCorrected();
+        List<Entity> progressForDays = progressForDaysContainer.getProgressForDays();
+        boolean orderChanged = false;
+
+        if (!progressForDaysContainer.isPartCalculation()) {
+            Date finishDate = ppsTimeHelper.calculateOrderFinishDate(order, progressForDays);
+
+            orderChanged |= setDateField(order, OrderFields.FINISH_DATE, finishDate);
+
+            if (shouldBeCorrected) {
+                orderChanged |= setDateField(order, OrderFields.CORRECTED_DATE_TO, finishDate);
+            } else {
+                orderChanged |= setDateField(order, OrderFields.DATE_TO, finishDate);
+            }
+        }
+        productionPerShift.setField(ProductionPerShiftFields.PLANNED_PROGRESS_TYPE, "01planned");
+
+        if (shouldBeCorrected) {
+            productionPerShift.setField(ProductionPerShiftFields.PLANNED_PROGRESS_TYPE, "02corrected");
+
+            progressForDays.addAll(productionPerShift.getHasManyField(ProductionPerShiftFields.PROGRES_FOR_DAYS).stream()
+                    .filter(progressForDay -> !progressForDay.getBooleanField(ProgressForDayFields.CORRECTED))
+                    .collect(Collectors.toList()));
+        }
+
+        productionPerShift.setField(ProductionPerShiftFields.PROGRES_FOR_DAYS, progressForDays);
+
+        return orderChanged;
+    }
+
+    private boolean setDateField(final Entity order, final String fieldName, final Date date) {
+        Date currentDate = order.getDateField(fieldName);
+
+        order.setField(fieldName, date);
+
+        return !Objects.equals(getTime(currentDate), getTime(date));
+    }
+
+    private Long getTime(final Date date) {
+        if (date == null) {
+            return null;
+        }
+
+        return date.getTime();
+    }
+
+    private ProgressForDaysContainer calculateProgressForDays(final Long orderId) {
+        return readOnlyTransactionTemplate.execute(new TransactionCallback<ProgressForDaysContainer>() {
+
+            @Override
+            public ProgressForDaysContainer doInTransaction(final TransactionStatus status) {
+                return calculateProgressForDaysInTransaction(orderId);
+            }
+
+        });
+    }
+
+    private ProgressForDaysContainer calculateProgressForDaysInTransaction(final Long orderId) {
+        Entity order = getOrderDD().get(orderId);
+
+        ProgressForDaysContainer progressForDaysContainer = new ProgressForDaysContainer();
+
+        progressForDaysContainer.setShouldBeCorrected(OrderState.of(order).compareTo(OrderState.PENDING) != 0);
+        progressForDaysContainer.setOrder(order);
+
+        try {
+            automaticPpsExecutorService.generateProgressForDays(progressForDaysContainer, getProductionPerShift(order));
+        } catch (RuntimeException e) {
+            LOG.warn(String.format("Production per shift of order %s couldn't be calculated", order.getStringField(OrderFields.NUMBER)), e);
+
+            progressForDaysContainer.setCalculationError(true);
+        }
+
+        return progressForDaysContainer;
+    }
+
+    private ProgressForDaysContainer getCalculation(final Future<ProgressForDaysContainer> calculation, final String orderNumber) {
+        try {
+            return calculation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException("Production per shift regeneration was interrupted", e);
+        } catch (ExecutionException e) {
+            LOG.warn(String.format("Production per shift of order %s couldn't be calculated", orderNumber), e.getCause());
+
+            return null;
+        }
+    }
+
+    private Entity getProductionPerShift(final Entity order) {
+        return getProductionPerShiftDD().find().add(SearchRestrictions.belongsTo(ProductionPerShiftFields.ORDER, order)).setMaxResults(1)
+                .uniqueResult();
+    }
+
+    private DataDefinition getProductionPerShiftDD() {
+        return dataDefinitionService.get(ProductionPerShiftConstants.PLUGIN_IDENTIFIER,
+                ProductionPerShiftConstants.MODEL_PRODUCTION_PER_SHIFT);
+    }
+
+    private DataDefinition getOrderDD() {
+        return dataDefinitionService.get(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER);
+    }
+
+}
@@ -0,0 +1,215 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionPerShift.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.aspectj.AnnotationTransactionAspect;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.mes.orders.states.constants.OrderStateStringValues;
+import com.qcadoo.mes.productionPerShift.PpsTimeHelper;
+import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftConstants;
+import com.qcadoo.mes.productionPerShift.constants.ProductionPerShiftFields;
+import com.qcadoo.mes.productionPerShift.domain.PpsRegenerationResult;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(SearchRestrictions.class)
+public class PpsRegenerationServiceTest {
+
+    private static final Long L_ORDER_ID_1 = 1L;
+
+    private static final Long L_ORDER_ID_2 = 2L;
+
+    private PpsRegenerationService ppsRegenerationService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private AutomaticPpsExecutorService automaticPpsExecutorService;
+
+    @Mock
+    private AutomaticPpsParametersService automaticPpsParametersService;
+
+    @Mock
+    private PpsTimeHelper ppsTimeHelper;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @Mock
+    private DataDefinition orderDD, productionPerShiftDD;
+
+    @Mock
+    private Entity order1, order2, productionLine, productionPerShift1, productionPerShift2;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    private final Date finishDate = new Date();
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        ppsRegenerationService = new PpsRegenerationService();
+
+        setField(ppsRegenerationService, "poolSize", 2);
+        setField(ppsRegenerationService, "dataDefinitionService", dataDefinitionService);
+        setField(ppsRegenerationService, "automaticPpsExecutorService", automaticPpsExecutorService);
+        setField(ppsRegenerationService, "automaticPpsParametersService", automaticPpsParametersService);
+        setField(ppsRegenerationService, "ppsTimeHelper", ppsTimeHelper);
+        ppsRegenerationService.setTransactionManager(transactionManager);
+        ppsRegenerationService.init();
+
+        PowerMockito.mockStatic(SearchRestrictions.class);
+
+        // regenerate() runs in a transaction of the woven transaction aspect, bound to the thread with this status
+        given(transactionManager.getTransaction(any(TransactionDefinition.class))).willReturn(transactionStatus);
+        AnnotationTransactionAspect.aspectOf().setTransactionManager(transactionManager);
+
+        given(automaticPpsParametersService.isAutomaticPlanForShiftOn()).willReturn(true);
+        given(dataDefinitionService.get(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER)).willReturn(orderDD);
+        given(
+                dataDefinitionService.get(ProductionPerShiftConstants.PLUGIN_IDENTIFIER,
+                        ProductionPerShiftConstants.MODEL_PRODUCTION_PER_SHIFT)).willReturn(productionPerShiftDD);
+        given(productionPerShiftDD.find()).willReturn(searchCriteriaBuilder);
+        given(ppsTimeHelper.calculateOrderFinishDate(any(Entity.class), anyListOf(Entity.class))).willReturn(finishDate);
+
+        stubOrder(L_ORDER_ID_1, order1, "O1", productionPerShift1);
+        stubOrder(L_ORDER_ID_2, order2, "O2", productionPerShift2);
+    }
+
+    @After
+    public void destroy() {
+        AnnotationTransactionAspect.aspectOf().setTransactionManager(null);
+        ppsRegenerationService.destroy();
+    }
+
+    private void stubOrder(final Long orderId, final Entity order, final String number, final Entity productionPerShift) {
+        given(orderDD.get(orderId)).willReturn(order);
+        given(order.getId()).willReturn(orderId);
+        given(order.getStringField(OrderFields.NUMBER)).willReturn(number);
+        given(order.getStringField(OrderFields.STATE)).willReturn(OrderStateStringValues.PENDING);
+        given(order.getBelongsToField(OrderFields.PRODUCTION_LINE)).willReturn(productionLine);
+
+        SearchCriterion criterion = mock(SearchCriterion.class);
+        SearchCriteriaBuilder productionPerShiftSearch = mock(SearchCriteriaBuilder.class, RETURNS_DEEP_STUBS);
+
+        given(SearchRestrictions.belongsTo(ProductionPerShiftFields.ORDER, order)).willReturn(criterion);
+        given(searchCriteriaBuilder.add(criterion)).willReturn(productionPerShiftSearch);
+        given(productionPerShiftSearch.setMaxResults(1).uniqueResult()).willReturn(productionPerShift);
+    }
+
+    private List<Entity> savedEntities(final boolean... valid) {
+        List<Entity> entities = Lists.newArrayList();
+        for (boolean isValid : valid) {
+            Entity entity = mock(Entity.class);
+            given(entity.isValid()).willReturn(isValid);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    @Test
+    public void shouldSaveRegeneratedProductionPerShiftsAndChangedOrdersInBatches() {
+        // given
+        given(order2.getDateField(OrderFields.FINISH_DATE)).willReturn(new Date(finishDate.getTime()));
+        given(order2.getDateField(OrderFields.DATE_TO)).willReturn(new Date(finishDate.getTime()));
+
+        List<Entity> savedProductionPerShifts = savedEntities(true, true);
+        List<Entity> savedOrders = savedEntities(true);
+
+        given(productionPerShiftDD.saveAll(Lists.newArrayList(productionPerShift1, productionPerShift2))).willReturn(
+                savedProductionPerShifts);
+        given(orderDD.saveAll(Lists.<Entity> newArrayList(order1))).willReturn(savedOrders);
+
+        // when
+        PpsRegenerationResult result = ppsRegenerationService.regenerate(Lists.newArrayList(L_ORDER_ID_1, L_ORDER_ID_2));
+
+        // then
+        assertEquals(Lists.newArrayList("O1", "O2"), result.getRegeneratedOrders());
+        assertTrue(result.getFailedOrders().isEmpty());
+        verify(orderDD).saveAll(Lists.<Entity> newArrayList(order1));
+        verify(orderDD, never()).save(any(Entity.class));
+        verify(productionPerShiftDD, never()).save(any(Entity.class));
+        verify(transactionStatus, never()).setRollbackOnly();
+    }
+
+    @Test
+    public void shouldRollBackAllRegenerationsWhenOneOrderIsInvalid() {
+        // given
+        List<Entity> savedProductionPerShifts = savedEntities(true, true);
+        List<Entity> savedOrders = savedEntities(true, false);
+
+        given(productionPerShiftDD.saveAll(Lists.newArrayList(productionPerShift1, productionPerShift2))).willReturn(
+                savedProductionPerShifts);
+        given(orderDD.saveAll(Lists.newArrayList(order1, order2))).willReturn(savedOrders);
+
+        // when
+        PpsRegenerationResult result = ppsRegenerationService.regenerate(Lists.newArrayList(L_ORDER_ID_1, L_ORDER_ID_2));
+
+        // then
+        assertTrue(result.getRegeneratedOrders().isEmpty());
+        assertEquals(Lists.newArrayList("O1", "O2"), result.getFailedOrders());
+        verify(transactionStatus).setRollbackOnly();
+    }
+
+}
@@ -0,0 +1,360 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.graph;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentEntityType;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentHolder;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+
+/**
+ * Immutable, flattened operation tree of a technology used for product quantities calculation.
+ * 
+ * Operations and operation product components are indexed once, products of an operation are matched with products of its
+ * parent when the graph is built, so calculating quantities for a given quantity is only arithmetic over arrays. Components
+ * with the same product, operation and type share one quantity slot, as they share one key of
+ * {@link OperationProductComponentWithQuantityContainer}.
+ */
+public final class TechnologyGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Long technologyId;
+
+    private final Long[] operationComponentIds;
+
+    private final boolean[] areProductQuantitiesDivisible;
+
+    private final boolean[] isTjDivisible;
+
+    private final int[][] children;
+
+    private final int[][] inSlots;
+
+    private final int[][] outSlots;
+
+    private final int[][] parentInSlots;
+
+    private final int[][] matchedOutSlots;
+
+    private final OperationProductComponentHolder[] holders;
+
+    private final BigDecimal[] quantities;
+
+    private final int root;
+
+    private final int rootOutSlot;
+
+    private TechnologyGraph(final Builder builder) {
+        int size = builder.operationComponentIds.size();
+
+        technologyId = builder.technologyId;
+        operationComponentIds = builder.operationComponentIds.toArray(new Long[size]);
+        areProductQuantitiesDivisible = new boolean[size];
+        isTjDivisible = new boolean[size];
+        children = new int[size][];
+        inSlots = new int[size][];
+        outSlots = new int[size][];
+        parentInSlots = new int[size][];
+        matchedOutSlots = new int[size][];
+        holders = builder.holders.toArray(new OperationProductComponentHolder[builder.holders.size()]);
+        quantities = builder.quantities.toArray(new BigDecimal[builder.quantities.size()]);
+
+        int rootIndex = -1;
+
+        for (int index = 0; index < size; index++) {
+            areProductQuantitiesDivisible[index] = builder.areProductQuantitiesDivisible.get(index);
+            isTjDivisible[index] = builder.isTjDivisible.get(index);
+            children[index] = toArray(builder.children.get(index));
+            inSlots[index] = toArray(builder.inSlots.get(index));
+            outSlots[index] = toArray(builder.outSlots.get(index));
+
+            Integer parent = builder.indexes.get(builder.parentIds.get(index));
+
+            if (parent == null) {
+                if (rootIndex < 0) {
+                    rootIndex = index;
+                }
+
+                parentInSlots[index] = EMPTY;
+                matchedOutSlots[index] = EMPTY;
+            } else {
+                matchParentProducts(builder, index, parent);
+            }
+        }
+
+        root = rootIndex;
+        rootOutSlot = (rootIndex < 0) ? -1 : findOutSlot(outSlots[rootIndex], builder.technologyProductId);
+    }
+
+    private void matchParentProducts(final Builder builder, final int index, final int parent) {
+        List<Integer> parentIns = Lists.newArrayList();
+        List<Integer> matchedOuts = Lists.newArrayList();
+
+        for (Integer parentInSlot : builder.inSlots.get(parent)) {
+            int outSlot = findOutSlot(outSlots[index], holders[parentInSlot].getProductId());
+
+            if (outSlot >= 0) {
+                parentIns.add(parentInSlot);
+                matchedOuts.add(outSlot);
+            }
+        }
+
+        parentInSlots[index] = toArray(parentIns);
+        matchedOutSlots[index] = toArray(matchedOuts);
+    }
+
+    private int findOutSlot(final int[] slots, final Long productId) {
+        for (int slot : slots) {
+            if (holders[slot].getProductId().equals(productId)) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int[] toArray(final List<Integer> values) {
+        int[] array = new int[values.size()];
+
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+
+        return array;
+    }
+
+    public Long getTechnologyId() {
+        return technologyId;
+    }
+
+    public boolean isEmpty() {
+        return root < 0;
+    }
+
+    /**
+     * Calculates quantities of operation product components and operation runs needed to produce given quantity of technology
+     * product, the same way as ProductQuantitiesService.traverseProductQuantitiesAndOperationRuns does.
+     * 
+     * @param givenQuantity
+     *            quantity of technology product
+     * @param mathContext
+     *            math context of divisions and multiplications
+     * @param operationProductComponentWithQuantityContainer
+     *            container filled with quantities of all operation product components
+     * @param nonComponents
+     *            set filled with input components produced by child operations
+     * @param operationRuns
+     *            map filled with runs of all operations
+     */
+    public void computeQuantities(final BigDecimal givenQuantity, final MathContext mathContext,
+            final OperationProductComponentWithQuantityContainer operationProductComponentWithQuantityContainer,
+            final Set<OperationProductComponentHolder> nonComponents, final Map<Long, BigDecimal> operationRuns) {
+        if (isEmpty()) {
+            return;
+        }
+
+        BigDecimal[] slotQuantities = quantities.clone();
+        BigDecimal[] runs = new BigDecimal[operationComponentIds.length];
+
+        if (rootOutSlot >= 0) {
+            multiply(root, givenQuantity, slotQuantities[rootOutSlot], slotQuantities, runs, mathContext);
+        }
+
+        int[] stack = new int[operationComponentIds.length];
+        int top = 0;
+
+        for (int i = children[root].length - 1; i >= 0; i--) {
+            stack[top++] = children[root][i];
+        }
+
+        while (top > 0) {
+            int index = stack[--top];
+
+            for (int i = 0; i < parentInSlots[index].length; i++) {
+                int parentInSlot = parentInSlots[index][i];
+
+                multiply(index, slotQuantities[parentInSlot], slotQuantities[matchedOutSlots[index][i]], slotQuantities, runs,
+                        mathContext);
+
+                nonComponents.add(holders[parentInSlot]);
+            }
+
+            for (int i = children[index].length - 1; i >= 0; i--) {
+                stack[top++] = children[index][i];
+            }
+        }
+
+        for (int slot = 0; slot < holders.length; slot++) {
+            operationProductComponentWithQuantityContainer.put(holders[slot], slotQuantities[slot]);
+        }
+        for (int index = 0; index < operationComponentIds.length; index++) {
+            operationRuns.put(operationComponentIds[index], (runs[index] == null) ? BigDecimal.ONE : runs[index]);
+        }
+    }
+
+    private void multiply(final int index, final BigDecimal needed, final BigDecimal actual, final BigDecimal[] slotQuantities,
+            final BigDecimal[] runs, final MathContext mathContext) {
+        BigDecimal multiplier = needed.divide(actual, mathContext);
+
+        if (!areProductQuantitiesDivisible[index]) {
+            // It's intentional to round up the operation runs
+            multiplier = multiplier.setScale(0, RoundingMode.CEILING);
+        }
+
+        runs[index] = isTjDivisible[index] ? multiplier : multiplier.setScale(0, RoundingMode.CEILING);
+
+        multiplySlots(inSlots[index], multiplier, slotQuantities, mathContext);
+        multiplySlots(outSlots[index], multiplier, slotQuantities, mathContext);
+    }
+
+    private void multiplySlots(final int[] slots, final BigDecimal multiplier, final BigDecimal[] slotQuantities,
+            final MathContext mathContext) {
+        for (int slot : slots) {
+            slotQuantities[slot] = slotQuantities[slot].multiply(multiplier, mathContext).setScale(5, RoundingMode.CEILING);
+        }
+    }
+
+    public static final class Builder {
+
+        private final Long technologyId;
+
+        private final Long technologyProductId;
+
+        private final List<Long> operationComponentIds = Lists.newArrayList();
+
+        private final List<Long> parentIds = Lists.newArrayList();
+
+        private final List<Boolean> areProductQuantitiesDivisible = Lists.newArrayList();
+
+        private final List<Boolean> isTjDivisible = Lists.newArrayList();
+
+        private final List<List<Integer>> children = Lists.newArrayList();
+
+        private final List<List<Integer>> inSlots = Lists.newArrayList();
+
+        private final List<List<Integer>> outSlots = Lists.newArrayList();
+
+        private final Map<Long, Integer> indexes = Maps.newHashMap();
+
+        private final Map<OperationProductComponentHolder, Integer> slots = Maps.newHashMap();
+
+        private final List<OperationProductComponentHolder> holders = Lists.newArrayList();
+
+        private final List<BigDecimal> quantities = Lists.newArrayList();
+
+        private boolean childrenLinked;
+
+        public Builder(final Long technologyId, final Long technologyProductId) {
+            this.technologyId = technologyId;
+            this.technologyProductId = technologyProductId;
+        }
+
+        /**
+         * Adds operation, all operations have to be added before their product components.
+         */
+        public Builder addOperationComponent(final Long operationComponentId, final Long parentId,
+                final boolean areProductQuantitiesDivisible, final boolean isTjDivisible) {
+            checkNotNull(operationComponentId);
+            checkArgument(!childrenLinked, "Operation components have to be added before operation product components");
+
+            indexes.put(operationComponentId, operationComponentIds.size());
+            operationComponentIds.add(operationComponentId);
+            parentIds.add(parentId);
+            this.areProductQuantitiesDivisible.add(areProductQuantitiesDivisible);
+            this.isTjDivisible.add(isTjDivisible);
+            children.add(Lists.<Integer> newArrayList());
+            inSlots.add(Lists.<Integer> newArrayList());
+            outSlots.add(Lists.<Integer> newArrayList());
+
+            return this;
+        }
+
+        /**
+         * Adds operation product component, components of an operation have to be added in the order of its has many field.
+         */
+        public Builder addOperationProductComponent(final OperationProductComponentHolder holder, final BigDecimal quantity) {
+            linkChildren();
+
+            Integer index = indexes.get(holder.getTechnologyOperationComponentId());
+
+            checkArgument(index != null, "Operation component %s doesn't belong to technology %s",
+                    holder.getTechnologyOperationComponentId(), technologyId);
+
+            Integer slot = slots.get(holder);
+
+            if (slot == null) {
+                slot = holders.size();
+                slots.put(holder, slot);
+                holders.add(holder);
+                quantities.add(quantity);
+            } else {
+                quantities.set(slot, quantity);
+            }
+
+            if (OperationProductComponentEntityType.OPERATION_PRODUCT_IN_COMPONENT.equals(holder.getEntityType())) {
+                inSlots.get(index).add(slot);
+            } else {
+                outSlots.get(index).add(slot);
+            }
+
+            return this;
+        }
+
+        public TechnologyGraph build() {
+            linkChildren();
+
+            return new TechnologyGraph(this);
+        }
+
+        private void linkChildren() {
+            if (childrenLinked) {
+                return;
+            }
+
+            for (int index = 0; index < parentIds.size(); index++) {
+                Integer parent = indexes.get(parentIds.get(index));
+
+                if (parent != null) {
+                    children.get(parent).add(index);
+                }
+            }
+
+            childrenLinked = true;
+        }
+
+    }
+
+}
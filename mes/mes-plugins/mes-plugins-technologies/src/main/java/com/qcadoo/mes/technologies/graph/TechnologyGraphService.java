@@ -0,0 +1,158 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.graph;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentEntityType;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentHolder;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.JoinType;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Builds {@link TechnologyGraph} of saved technologies and keeps the most recently used ones in memory.
+ * 
+ * Graphs are dropped by model hooks of technology, operation component and operation product components, once when the
+ * entity is saved or deleted and once more when the transaction completes. A graph loaded concurrently with an eviction is
+ * never stored.
+ */
+@Service
+public class TechnologyGraphService {
+
+    private static final String L_OPERATION_COMPONENT_ALIAS = "toc";
+
+    private static final long L_MAX_CACHED_GRAPHS = 1000;
+
+    private final Cache<Long, TechnologyGraph> graphs = CacheBuilder.newBuilder().maximumSize(L_MAX_CACHED_GRAPHS).build();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    public TechnologyGraph getGraph(final Entity technology) {
+        Long technologyId = technology.getId();
+
+        TechnologyGraph graph = graphs.getIfPresent(technologyId);
+
+        if (graph == null) {
+            long loadedInGeneration = generation.get();
+
+            graph = buildGraph(technology);
+
+            if (generation.get() == loadedInGeneration) {
+                graphs.asMap().putIfAbsent(technologyId, graph);
+            }
+        }
+
+        return graph;
+    }
+
+    public void evict(final Long technologyId) {
+        if (technologyId == null) {
+            return;
+        }
+
+        remove(technologyId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    remove(technologyId);
+                }
+            });
+        }
+    }
+
+    private void remove(final Long technologyId) {
+        generation.incrementAndGet();
+        graphs.invalidate(technologyId);
+    }
+
+    private TechnologyGraph buildGraph(final Entity technology) {
+        Entity technologyProduct = technology.getBelongsToField(TechnologyFields.PRODUCT);
+
+        TechnologyGraph.Builder builder = new TechnologyGraph.Builder(technology.getId(), (technologyProduct == null) ? null
+                : technologyProduct.getId());
+
+        for (Entity operationComponent : technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS)) {
+            Entity parent = operationComponent.getBelongsToField(TechnologyOperationComponentFields.PARENT);
+
+            builder.addOperationComponent(operationComponent.getId(), (parent == null) ? null : parent.getId(),
+                    operationComponent.getBooleanField(TechnologyOperationComponentFields.ARE_PRODUCT_QUANTITIES_DIVISIBLE),
+                    operationComponent.getBooleanField(TechnologyOperationComponentFields.IS_TJ_DIVISIBLE));
+        }
+
+        addOperationProductComponents(builder, technology.getId(), TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT);
+        addOperationProductComponents(builder, technology.getId(), TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT);
+
+        return builder.build();
+    }
+
+    private void addOperationProductComponents(final TechnologyGraph.Builder builder, final Long technologyId,
+            final String modelName) {
+        DataDefinition productDD = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT);
+        DataDefinition technologyOperationComponentDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT);
+        OperationProductComponentEntityType entityType = OperationProductComponentEntityType.parseString(modelName);
+
+        List<Entity> operationProductComponents = dataDefinitionService
+                .get(TechnologiesConstants.PLUGIN_IDENTIFIER, modelName)
+                .find()
+                .createAlias(OperationProductInComponentFields.OPERATION_COMPONENT, L_OPERATION_COMPONENT_ALIAS, JoinType.INNER)
+                .add(SearchRestrictions.eq(L_OPERATION_COMPONENT_ALIAS + "." + TechnologyOperationComponentFields.TECHNOLOGY
+                        + ".id", technologyId)).addOrder(SearchOrders.asc("id")).list().getEntities();
+
+        for (Entity operationProductComponent : operationProductComponents) {
+            Entity product = operationProductComponent.getBelongsToField(OperationProductInComponentFields.PRODUCT);
+            Entity operationComponent = operationProductComponent
+                    .getBelongsToField(OperationProductInComponentFields.OPERATION_COMPONENT);
+            BigDecimal quantity = operationProductComponent.getDecimalField(OperationProductInComponentFields.QUANTITY);
+
+            builder.addOperationProductComponent(new OperationProductComponentHolder(product.getId(), operationComponent.getId(),
+                    operationProductComponent.getId(), productDD, technologyOperationComponentDD, entityType), quantity);
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.hooks;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.graph.TechnologyGraphService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+@Service
+public class TechnologyGraphHooks {
+
+    @Autowired
+    private TechnologyGraphService technologyGraphService;
+
+    public void onSave(final DataDefinition dataDefinition, final Entity entity) {
+        technologyGraphService.evict(getTechnologyId(dataDefinition, entity));
+    }
+
+    public boolean onDelete(final DataDefinition dataDefinition, final Entity entity) {
+        technologyGraphService.evict(getTechnologyId(dataDefinition, entity));
+
+        return true;
+    }
+
+    private Long getTechnologyId(final DataDefinition dataDefinition, final Entity entity) {
+        Entity operationComponent;
+
+        if (TechnologiesConstants.MODEL_TECHNOLOGY.equals(dataDefinition.getName())) {
+            return entity.getId();
+        } else if (TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT.equals(dataDefinition.getName())) {
+            operationComponent = entity;
+        } else {
+            operationComponent = entity.getBelongsToField(OperationProductInComponentFields.OPERATION_COMPONENT);
+        }
+
+        if (operationComponent == null) {
+            return null;
+        }
+
+        Entity technology = operationComponent.getBelongsToField(TechnologyOperationComponentFields.TECHNOLOGY);
+
+        return (technology == null) ? null : technology.getId();
+    }
+
+}
@@ -0,0 +1,204 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentEntityType;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentHolder;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+
+public class TechnologyGraphTest {
+
+    private static final Long TECHNOLOGY_ID = 1L;
+
+    private static final Long ROOT_ID = 10L;
+
+    private static final Long CHILD_ID = 11L;
+
+    private static final Long GRANDCHILD_ID = 12L;
+
+    private static final Long SIBLING_ID = 13L;
+
+    private static final Long FINAL_PRODUCT_ID = 100L;
+
+    private static final Long INTERMEDIATE_PRODUCT_ID = 101L;
+
+    private static final Long COMPONENT_ID = 102L;
+
+    private static final Long MATERIAL_ID = 103L;
+
+    private static final Long SUBASSEMBLY_ID = 104L;
+
+    private static final Long WASTE_ID = 105L;
+
+    private OperationProductComponentWithQuantityContainer container;
+
+    private Set<OperationProductComponentHolder> nonComponents;
+
+    private Map<Long, BigDecimal> operationRuns;
+
+    @Before
+    public void init() {
+        container = new OperationProductComponentWithQuantityContainer();
+        nonComponents = Sets.newHashSet();
+        operationRuns = Maps.newHashMap();
+    }
+
+    @Test
+    public void shouldMultiplyQuantitiesAndRoundUpIndivisibleOperations() {
+        // given
+        TechnologyGraph graph = buildGraph(false);
+
+        // when
+        graph.computeQuantities(new BigDecimal(10), MathContext.DECIMAL64, container, nonComponents, operationRuns);
+
+        // then
+        assertQuantity("10", out(ROOT_ID, FINAL_PRODUCT_ID));
+        assertQuantity("20", in(ROOT_ID, INTERMEDIATE_PRODUCT_ID));
+        assertQuantity("10", in(ROOT_ID, COMPONENT_ID));
+        assertQuantity("21", out(CHILD_ID, INTERMEDIATE_PRODUCT_ID));
+        assertQuantity("7", in(CHILD_ID, MATERIAL_ID));
+        assertQuantity("10", operationRuns.get(ROOT_ID));
+        assertQuantity("7", operationRuns.get(CHILD_ID));
+        assertEquals(Sets.newHashSet(in(ROOT_ID, INTERMEDIATE_PRODUCT_ID)), nonComponents);
+    }
+
+    @Test
+    public void shouldKeepFractionsOfDivisibleOperations() {
+        // given
+        TechnologyGraph graph = buildGraph(true);
+
+        // when
+        graph.computeQuantities(new BigDecimal(10), MathContext.DECIMAL64, container, nonComponents, operationRuns);
+
+        // then
+        assertQuantity("6.66667", in(CHILD_ID, MATERIAL_ID));
+        assertQuantity("20.00000", out(CHILD_ID, INTERMEDIATE_PRODUCT_ID));
+        assertQuantity("7", operationRuns.get(CHILD_ID));
+    }
+
+    @Test
+    public void shouldNotChangeGraphBetweenCalculations() {
+        // given
+        TechnologyGraph graph = buildGraph(false);
+
+        graph.computeQuantities(new BigDecimal(10), MathContext.DECIMAL64, container, nonComponents, operationRuns);
+
+        OperationProductComponentWithQuantityContainer secondContainer = new OperationProductComponentWithQuantityContainer();
+
+        // when
+        graph.computeQuantities(BigDecimal.ONE, MathContext.DECIMAL64, secondContainer, nonComponents, operationRuns);
+
+        // then
+        assertQuantity("1", secondContainer.get(out(ROOT_ID, FINAL_PRODUCT_ID)));
+        assertQuantity("1", secondContainer.get(in(CHILD_ID, MATERIAL_ID)));
+        assertQuantity("1", operationRuns.get(CHILD_ID));
+    }
+
+    @Test
+    public void shouldCollectOnlyInputsProducedByChildOperationsAsNonComponents() {
+        // given
+        TechnologyGraph graph = new TechnologyGraph.Builder(TECHNOLOGY_ID, FINAL_PRODUCT_ID)
+                .addOperationComponent(ROOT_ID, null, false, false)
+                .addOperationComponent(CHILD_ID, ROOT_ID, false, false)
+                .addOperationComponent(GRANDCHILD_ID, CHILD_ID, false, false)
+                .addOperationComponent(SIBLING_ID, ROOT_ID, false, false)
+                .addOperationProductComponent(in(ROOT_ID, INTERMEDIATE_PRODUCT_ID), new BigDecimal(2))
+                .addOperationProductComponent(in(ROOT_ID, COMPONENT_ID), BigDecimal.ONE)
+                .addOperationProductComponent(out(ROOT_ID, FINAL_PRODUCT_ID), BigDecimal.ONE)
+                .addOperationProductComponent(in(CHILD_ID, SUBASSEMBLY_ID), BigDecimal.ONE)
+                .addOperationProductComponent(in(CHILD_ID, MATERIAL_ID), BigDecimal.ONE)
+                .addOperationProductComponent(out(CHILD_ID, INTERMEDIATE_PRODUCT_ID), new BigDecimal(3))
+                .addOperationProductComponent(in(GRANDCHILD_ID, MATERIAL_ID), BigDecimal.ONE)
+                .addOperationProductComponent(out(GRANDCHILD_ID, SUBASSEMBLY_ID), new BigDecimal(2))
+                .addOperationProductComponent(in(SIBLING_ID, MATERIAL_ID), BigDecimal.ONE)
+                .addOperationProductComponent(out(SIBLING_ID, WASTE_ID), BigDecimal.ONE).build();
+
+        // when
+        graph.computeQuantities(new BigDecimal(10), MathContext.DECIMAL64, container, nonComponents, operationRuns);
+
+        // then
+        assertEquals(Sets.newHashSet(in(ROOT_ID, INTERMEDIATE_PRODUCT_ID), in(CHILD_ID, SUBASSEMBLY_ID)), nonComponents);
+        assertQuantity("7", in(CHILD_ID, SUBASSEMBLY_ID));
+        assertQuantity("8", out(GRANDCHILD_ID, SUBASSEMBLY_ID));
+        assertQuantity("4", in(GRANDCHILD_ID, MATERIAL_ID));
+        assertQuantity("1", operationRuns.get(SIBLING_ID));
+    }
+
+    @Test
+    public void shouldBeEmptyWithoutOperations() {
+        // given
+        TechnologyGraph graph = new TechnologyGraph.Builder(TECHNOLOGY_ID, FINAL_PRODUCT_ID).build();
+
+        // when
+        graph.computeQuantities(BigDecimal.ONE, MathContext.DECIMAL64, container, nonComponents, operationRuns);
+
+        // then
+        assertTrue(graph.isEmpty());
+        assertTrue(container.asMap().isEmpty());
+        assertTrue(operationRuns.isEmpty());
+    }
+
+    private TechnologyGraph buildGraph(final boolean childDivisible) {
+        return new TechnologyGraph.Builder(TECHNOLOGY_ID, FINAL_PRODUCT_ID)
+                .addOperationComponent(ROOT_ID, null, false, false)
+                .addOperationComponent(CHILD_ID, ROOT_ID, childDivisible, false)
+                .addOperationProductComponent(in(ROOT_ID, INTERMEDIATE_PRODUCT_ID), new BigDecimal(2))
+                .addOperationProductComponent(in(ROOT_ID, COMPONENT_ID), BigDecimal.ONE)
+                .addOperationProductComponent(in(CHILD_ID, MATERIAL_ID), BigDecimal.ONE)
+                .addOperationProductComponent(out(ROOT_ID, FINAL_PRODUCT_ID), BigDecimal.ONE)
+                .addOperationProductComponent(out(CHILD_ID, INTERMEDIATE_PRODUCT_ID), new BigDecimal(3)).build();
+    }
+
+    private void assertQuantity(final String expected, final OperationProductComponentHolder holder) {
+        assertQuantity(expected, container.get(holder));
+    }
+
+    private void assertQuantity(final String expected, final BigDecimal actual) {
+        assertEquals(0, new BigDecimal(expected).compareTo(actual));
+    }
+
+    private OperationProductComponentHolder in(final Long operationComponentId, final Long productId) {
+        return new OperationProductComponentHolder(productId, operationComponentId, null, null,
+                OperationProductComponentEntityType.OPERATION_PRODUCT_IN_COMPONENT);
+    }
+
+    private OperationProductComponentHolder out(final Long operationComponentId, final Long productId) {
+        return new OperationProductComponentHolder(productId, operationComponentId, null, null,
+                OperationProductComponentEntityType.OPERATION_PRODUCT_OUT_COMPONENT);
+    }
+
+}
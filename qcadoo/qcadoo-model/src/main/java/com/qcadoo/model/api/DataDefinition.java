@@ -27,6 +27,7 @@ import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.model.api.search.SearchQueryBuilder;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -123,6 +124,30 @@ public interface DataDefinition {
      */
     Entity fastSave(final Entity entity);
 
+    /**
+     * Save the entities related with this data definition in one batch. Existing entities are fetched at once and inserts are
+     * sent to the database using JDBC batching.
+     * 
+     * All entities are saved in one transaction. If saving any of them marks the transaction as rollback-only, none of the
+     * entities is persisted, so all returned entities are marked as not valid; only the entities which failed on their own
+     * contain validation errors.
+     * 
+     * @param entities
+     *            entities to save
+     * @return saved entities, in the same order as given, each one containing its own validation errors
+     */
+    List<Entity> saveAll(final Collection<Entity> entities);
+
+    /**
+     * Save the entities related with this data definition in one batch without invoke hooks.
+     * 
+     * @param entities
+     *            entities to save
+     * @return saved entities, in the same order as given
+     * @see #saveAll(Collection)
+     */
+    List<Entity> fastSaveAll(final Collection<Entity> entities);
+
     /**
      * Create search criteria builder for this data definition.
      * 
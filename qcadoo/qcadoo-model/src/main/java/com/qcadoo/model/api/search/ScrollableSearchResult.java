@@ -0,0 +1,55 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.api.search;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import com.qcadoo.model.api.Entity;
+
+/**
+ * ScrollableSearchResult iterates over entities matching the search criteria without loading all of them into memory. Entities
+ * are fetched from the database in batches and are detached from the session after conversion.
+ * 
+ * It must be used within the transaction in which it was created and should be closed when no longer needed, it's closed
+ * automatically after reaching the last entity.
+ * 
+ * @since 1.5
+ */
+public interface ScrollableSearchResult extends Iterator<Entity>, AutoCloseable {
+
+    /**
+     * Returns sequential stream of remaining entities, closing the stream closes this result.
+     * 
+     * @return stream of entities
+     */
+    Stream<Entity> stream();
+
+    /**
+     * Releases the underlying database cursor.
+     */
+    @Override
+    void close();
+
+}
@@ -0,0 +1,64 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.api.search;
+
+/**
+ * Strategies of computing {@link SearchResult#getTotalNumberOfEntities()} for the {@link SearchCriteriaBuilder}.
+ * 
+ * @since 1.5
+ */
+public enum SearchCountMode {
+    /**
+     * Counts all entities matching criteria. This is the default mode.
+     */
+    EXACT,
+
+    /**
+     * Counts entities matching criteria, but not more than first result plus the count limit. For large tables it allows to
+     * page forward without scanning the whole table - the total grows while moving to the next pages.
+     */
+    CAPPED,
+
+    /**
+     * Uses the database planner's estimate of the number of entities matching criteria. If the estimate is not available or it
+     * is lower than the count limit the {@link #CAPPED} count is used.
+     */
+    ESTIMATED,
+
+    /**
+     * Doesn't run any count query, {@link SearchResult#getTotalNumberOfEntities()} returns -1 if the number of entities isn't
+     * known without counting. Use it when only the entities are needed, e.g. when processing large tables page by page.
+     */
+    NONE;
+
+    public static SearchCountMode parseString(final String stringValue) {
+        for (SearchCountMode value : SearchCountMode.values()) {
+            if (value.name().equalsIgnoreCase(stringValue)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Can't parse SearchCountMode from string '%s'", stringValue));
+    }
+
+}
@@ -23,6 +23,8 @@
  */
 package com.qcadoo.model.api.search;
 
+import java.util.stream.Stream;
+
 import com.qcadoo.model.api.Entity;
 
 /**
@@ -66,6 +68,27 @@ public interface SearchCriteriaBuilder {
      */
     Entity uniqueResult();
 
+    /**
+     * Iterates over entities using this criteria, fetching them from the database in batches of given size. Total number of
+     * entities isn't computed. Have to be called within the transaction.
+     * 
+     * @param fetchSize
+     *            number of entities fetched from the database at once
+     * @return scrollable search result, should be closed after use
+     * @since 1.5
+     */
+    ScrollableSearchResult scroll(final int fetchSize);
+
+    /**
+     * Streams entities using this criteria, fetching them from the database in batches. Have to be called within the
+     * transaction.
+     * 
+     * @return stream of entities, should be closed after use
+     * @see #scroll(int)
+     * @since 1.5
+     */
+    Stream<Entity> stream();
+
     /**
      * Sets the ascending order by given field, by default there is an order by id.
      * 
@@ -197,6 +220,68 @@ public interface SearchCriteriaBuilder {
      */
     SearchCriteriaBuilder setCacheable(final boolean cacheable);
 
+    /**
+     * Sets the strategy of computing the total number of entities, by default all matching entities are counted.
+     * 
+     * @param countMode
+     *            count mode
+     * @return this search builder
+     * @see SearchCountMode
+     * @since 1.5
+     */
+    SearchCriteriaBuilder setCountMode(final SearchCountMode countMode);
+
+    /**
+     * Sets the count limit used by {@link SearchCountMode#CAPPED} and {@link SearchCountMode#ESTIMATED} count modes, by default
+     * there are 1000 entities counted beyond the first result.
+     * 
+     * @param countLimit
+     *            count limit
+     * @return this search builder
+     * @since 1.5
+     */
+    SearchCriteriaBuilder setCountLimit(final int countLimit);
+
+    /**
+     * Enables keyset pagination - only entities with id greater than the given one will be returned ordered by id, the first
+     * result and added orders will be ignored. Total number of entities is computed without this restriction.
+     * 
+     * @param lastId
+     *            id of the last entity from the previous page
+     * @return this search builder
+     * @since 1.5
+     */
+    SearchCriteriaBuilder seekAfter(final Long lastId);
+
+    /**
+     * Enables keyset pagination - only entities placed after the given sort key in the order of given field (and the id as a
+     * tie-breaker) will be returned and the first result will be ignored. Given field should be used in the first added order and
+     * shouldn't contain null values. Total number of entities is computed without this restriction.
+     * 
+     * @param fieldName
+     *            field's name, the same as used in the first order
+     * @param lastValue
+     *            value of the field of the last entity from the previous page
+     * @param lastId
+     *            id of the last entity from the previous page
+     * @return this search builder
+     * @since 1.5
+     */
+    SearchCriteriaBuilder seekAfter(final String fieldName, final Object lastValue, final Long lastId);
+
+    /**
+     * Loads given association path together with found entities (using join fetch), e.g. "product" or
+     * "technology.operationComponents". Fetched belongsTo and hasMany fields are filled with already loaded entities instead of
+     * lazy proxies. HasMany fields of paged criteria are fetched by second query for found page. Fetch plan is ignored by
+     * {@link #scroll(int)} and for criteria with projection.
+     * 
+     * @param associationPath
+     *            dot separated names of belongsTo or hasMany fields
+     * @return this search builder
+     * @since 1.5
+     */
+    SearchCriteriaBuilder fetch(final String associationPath);
+
     /**
      * Adds the "equals to" restriction. If field has string type and value contains "%", "*", "_" or "?" the "like" restriction
      * will be used.
@@ -106,6 +106,18 @@ public interface SearchQueryBuilder {
      */
     SearchQueryBuilder setFirstResult(int firstResult);
 
+    /**
+     * Sets the strategy of computing the total number of entities, by default all matching entities are counted. Only
+     * {@link SearchCountMode#EXACT} and {@link SearchCountMode#NONE} are supported by queries, other modes are treated as
+     * {@link SearchCountMode#EXACT}.
+     * 
+     * @param countMode
+     *            count mode
+     * @return this query builder
+     * @since 1.5
+     */
+    SearchQueryBuilder setCountMode(SearchCountMode countMode);
+
     /**
      * Sets the "string" parameter for given placeholder.
      * 
@@ -44,7 +44,7 @@ public interface SearchResult {
     /**
      * Returns total number of matching entities.
      * 
-     * @return total number of matching entities
+     * @return total number of matching entities or -1 if it wasn't computed, see {@link SearchCountMode#NONE}
      */
     int getTotalNumberOfEntities();
 
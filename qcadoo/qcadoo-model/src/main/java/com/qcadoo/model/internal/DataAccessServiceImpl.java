@@ -23,8 +23,10 @@
  */
 package com.qcadoo.model.internal;
 
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.model.api.CopyException;
@@ -38,6 +40,8 @@ import com.qcadoo.model.api.ExpressionService;
 import com.qcadoo.model.api.FieldDefinition;
 import com.qcadoo.model.api.aop.Auditable;
 import com.qcadoo.model.api.aop.Monitorable;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.api.types.Cascadeable;
@@ -59,6 +63,7 @@ import com.qcadoo.model.internal.api.InternalDataDefinition;
 import com.qcadoo.model.internal.api.InternalFieldDefinition;
 import com.qcadoo.model.internal.api.PriorityService;
 import com.qcadoo.model.internal.api.ValidationService;
+import com.qcadoo.model.internal.search.ScrollableSearchResultImpl;
 import com.qcadoo.model.internal.search.SearchCriteria;
 import com.qcadoo.model.internal.search.SearchQuery;
 import com.qcadoo.model.internal.search.SearchResultImpl;
@@ -78,7 +83,10 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.HibernateException;
 import org.hibernate.Query;
+import org.hibernate.criterion.Restrictions;
 import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,6 +94,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -99,6 +108,10 @@ public class DataAccessServiceImpl implements DataAccessService {
 
     private static final String L_DATA_DEFINITION_MUST_BE_GIVEN = "DataDefinition must be given";
 
+    private static final String L_ID = "id";
+
+    private static final int MAX_NUMBER_OF_FETCHED_ENTITIES = 500;
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
@@ -138,6 +151,22 @@ public class DataAccessServiceImpl implements DataAccessService {
         return save(dataDefinition, genericEntity, false);
     }
 
+    @Auditable
+    @Override
+    @Transactional
+    @Monitorable
+    public List<Entity> fastSaveAll(final InternalDataDefinition dataDefinition, final Collection<Entity> genericEntities) {
+        return saveAll(dataDefinition, genericEntities, true);
+    }
+
+    @Auditable
+    @Override
+    @Transactional
+    @Monitorable
+    public List<Entity> saveAll(final InternalDataDefinition dataDefinition, final Collection<Entity> genericEntities) {
+        return saveAll(dataDefinition, genericEntities, false);
+    }
+
     @Override
     public Entity validate(DataDefinitionImpl dataDefinition, Entity genericEntity) {
         checkNotNull(dataDefinition, L_DATA_DEFINITION_MUST_BE_GIVEN);
@@ -177,6 +206,64 @@ public class DataAccessServiceImpl implements DataAccessService {
         }
         return resultEntity;
     }
+
+    private List<Entity> saveAll(final InternalDataDefinition dataDefinition, final Collection<Entity> genericEntities,
+            final boolean fast) {
+        checkNotNull(dataDefinition, L_DATA_DEFINITION_MUST_BE_GIVEN);
+        checkState(dataDefinition.isEnabled(), L_DATA_DEFINITION_BELONGS_TO_DISABLED_PLUGIN);
+        checkNotNull(genericEntities, "Entities must be given");
+
+        fetchExistingDatabaseEntities(dataDefinition, genericEntities);
+
+        Set<Entity> newlySavedEntities = new HashSet<Entity>();
+        List<Entity> resultEntities = Lists.newArrayListWithCapacity(genericEntities.size());
+        List<Long> previousVersions = Lists.newArrayListWithCapacity(genericEntities.size());
+
+        for (Entity genericEntity : genericEntities) {
+            if (dataDefinition.isVersionable()) {
+                previousVersions.add(genericEntity.getLongField(VersionableConstants.VERSION_FIELD_NAME));
+            }
+
+            resultEntities.add(performSave(dataDefinition, genericEntity, new HashSet<Entity>(), newlySavedEntities, fast));
+        }
+
+        try {
+            if (TransactionAspectSupport.currentTransactionStatus().isRollbackOnly()) {
+                for (int i = 0; i < resultEntities.size(); i++) {
+                    resultEntities.get(i).setNotValid();
+
+                    if (dataDefinition.isVersionable()) {
+                        resultEntities.get(i).setField(VersionableConstants.VERSION_FIELD_NAME, previousVersions.get(i));
+                    }
+                }
+                for (Entity e : newlySavedEntities) {
+                    e.setId(null);
+                }
+            }
+        } catch (NoTransactionException e) {
+            LOG.error(e.getMessage(), e);
+        }
+        return resultEntities;
+    }
+
+    private void fetchExistingDatabaseEntities(final InternalDataDefinition dataDefinition,
+            final Collection<Entity> genericEntities) {
+        List<Long> ids = Lists.newArrayList();
+
+        for (Entity genericEntity : genericEntities) {
+            if (genericEntity.getId() != null) {
+                ids.add(genericEntity.getId());
+            }
+        }
+
+        // the result is not used, loading the entities puts them in the session, so the session.get() of each save below
+        // doesn't hit the database
+        for (List<Long> idsPartition : Lists.partition(ids, MAX_NUMBER_OF_FETCHED_ENTITIES)) {
+            hibernateService.list(hibernateService.getCurrentSession().createCriteria(dataDefinition.getClassForEntity())
+                    .add(Restrictions.in(L_ID, idsPartition)));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private Entity performSave(final InternalDataDefinition dataDefinition, final Entity genericEntity,
             final Set<Entity> alreadySavedEntities, final Set<Entity> newlySavedEntities) {
@@ -743,7 +830,9 @@ public class DataAccessServiceImpl implements DataAccessService {
         int totalNumberOfEntities = -1;
 
         if (searchQuery.hasFirstAndMaxResults()) {
-            totalNumberOfEntities = hibernateService.list(query).size();
+            if (SearchCountMode.NONE != searchQuery.getCountMode()) {
+                totalNumberOfEntities = getTotalNumberOfEntities(searchQuery, query);
+            }
             searchQuery.addFirstAndMaxResults(query);
         }
 
@@ -756,7 +845,7 @@ public class DataAccessServiceImpl implements DataAccessService {
 
         List<?> results = hibernateService.list(query);
 
-        if (totalNumberOfEntities == -1) {
+        if (totalNumberOfEntities == -1 && !searchQuery.hasFirstAndMaxResults()) {
             totalNumberOfEntities = results.size();
 
             if (totalNumberOfEntities == 0) {
@@ -788,16 +877,18 @@ public class DataAccessServiceImpl implements DataAccessService {
 
         Criteria criteria = searchCriteria.createCriteria(hibernateService.getCurrentSession());
 
-        int totalNumberOfEntities = hibernateService.getTotalNumberOfEntities(criteria);
+        int totalNumberOfEntities = getTotalNumberOfEntities(searchCriteria, criteria);
 
         if (totalNumberOfEntities == 0) {
             LOG.debug("There is no entity matching criteria " + searchCriteria);
             return getResultSet(null, totalNumberOfEntities, Collections.emptyList());
         }
 
+        searchCriteria.addSeekRestriction(criteria);
         searchCriteria.addFirstAndMaxResults(criteria);
         searchCriteria.addOrders(criteria);
         searchCriteria.addCacheable(criteria);
+        searchCriteria.addFetches(criteria);
 
         List<?> results = hibernateService.list(criteria);
 
@@ -811,7 +902,109 @@ public class DataAccessServiceImpl implements DataAccessService {
             searchQueryDataDefinition = hibernateService.resolveDataDefinition(criteria);
         }
 
-        return getResultSet(searchQueryDataDefinition, totalNumberOfEntities, results);
+        fetchDeferredAssociations(searchQueryDataDefinition, searchCriteria.getDeferredFetchPaths(), results);
+
+        return getResultSet(searchQueryDataDefinition, totalNumberOfEntities, results, searchCriteria.getFetchPaths());
+    }
+
+    private void fetchDeferredAssociations(final InternalDataDefinition dataDefinition, final Set<String> fetchPaths,
+            final List<?> databaseEntities) {
+        if (fetchPaths.isEmpty() || databaseEntities.isEmpty()) {
+            return;
+        }
+
+        List<Long> ids = Lists.newArrayListWithCapacity(databaseEntities.size());
+
+        for (Object databaseEntity : databaseEntities) {
+            ids.add(entityService.getId(databaseEntity));
+        }
+
+        for (List<Long> idsPartition : Lists.partition(ids, MAX_NUMBER_OF_FETCHED_ENTITIES)) {
+            Criteria criteria = hibernateService.getCurrentSession().createCriteria(dataDefinition.getClassForEntity())
+                    .add(Restrictions.in(L_ID, idsPartition)).setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+
+            for (String fetchPath : fetchPaths) {
+                criteria.setFetchMode(fetchPath, FetchMode.JOIN);
+            }
+
+            hibernateService.list(criteria);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    @Monitorable
+    public ScrollableSearchResult scroll(final SearchCriteria searchCriteria, final int fetchSize) {
+        checkArgument(searchCriteria != null, "SearchCriteria must be given");
+
+        Criteria criteria = searchCriteria.createCriteria(hibernateService.getCurrentSession());
+
+        searchCriteria.addSeekRestriction(criteria);
+        searchCriteria.addFirstAndMaxResults(criteria);
+        searchCriteria.addOrders(criteria);
+
+        InternalDataDefinition searchQueryDataDefinition = (InternalDataDefinition) searchCriteria.getDataDefinition();
+
+        if (searchQueryDataDefinition == null) {
+            searchQueryDataDefinition = hibernateService.resolveDataDefinition(criteria);
+        }
+
+        final InternalDataDefinition dataDefinition = searchQueryDataDefinition;
+
+        return new ScrollableSearchResultImpl(hibernateService.scroll(criteria, fetchSize), hibernateService.getCurrentSession(),
+                new Function<Object, Entity>() {
+
+                    @Override
+                    public Entity apply(final Object databaseEntity) {
+                        return entityService.convertToGenericEntity(dataDefinition, databaseEntity);
+                    }
+
+                });
+    }
+
+    private int getTotalNumberOfEntities(final SearchQuery searchQuery, final Query query) {
+        Query countQuery = null;
+
+        try {
+            countQuery = searchQuery.createCountQuery(hibernateService.getCurrentSession());
+
+            if (countQuery != null) {
+                searchQuery.addParameters(countQuery);
+            }
+        } catch (HibernateException e) {
+            LOG.debug("Cannot derive count query from " + searchQuery + ", counting entities using scrollable results", e);
+
+            countQuery = null;
+        }
+
+        if (countQuery == null) {
+            return hibernateService.getTotalNumberOfEntities(query);
+        }
+
+        return ((Number) countQuery.uniqueResult()).intValue();
+    }
+
+    private int getTotalNumberOfEntities(final SearchCriteria searchCriteria, final Criteria criteria) {
+        switch (searchCriteria.getCountMode()) {
+            case CAPPED:
+                return hibernateService.getTotalNumberOfEntities(criteria, searchCriteria.getMaxNumberOfEntitiesToCount());
+
+            case ESTIMATED:
+                int maxNumberOfEntitiesToCount = searchCriteria.getMaxNumberOfEntitiesToCount();
+                int estimatedNumberOfEntities = hibernateService.getEstimatedNumberOfEntities(criteria);
+
+                if (estimatedNumberOfEntities < maxNumberOfEntitiesToCount) {
+                    return hibernateService.getTotalNumberOfEntities(criteria, maxNumberOfEntitiesToCount);
+                }
+
+                return estimatedNumberOfEntities;
+
+            case NONE:
+                return -1;
+
+            default:
+                return hibernateService.getTotalNumberOfEntities(criteria);
+        }
     }
 
     @Override
@@ -990,14 +1183,13 @@ public class DataAccessServiceImpl implements DataAccessService {
 
     private SearchResultImpl getResultSet(final InternalDataDefinition dataDefinition, final int totalNumberOfEntities,
             final List<?> results) {
-        List<Entity> genericResults = new ArrayList<Entity>();
-
-        for (Object databaseEntity : results) {
-            genericResults.add(entityService.convertToGenericEntity(dataDefinition, databaseEntity));
-        }
+        return getResultSet(dataDefinition, totalNumberOfEntities, results, Collections.<String> emptySet());
+    }
 
+    private SearchResultImpl getResultSet(final InternalDataDefinition dataDefinition, final int totalNumberOfEntities,
+            final List<?> results, final Set<String> fetchPaths) {
         SearchResultImpl resultSet = new SearchResultImpl();
-        resultSet.setResults(genericResults);
+        resultSet.setResults(entityService.convertToGenericEntities(dataDefinition, results, fetchPaths));
         resultSet.setTotalNumberOfEntities(totalNumberOfEntities);
 
         return resultSet;
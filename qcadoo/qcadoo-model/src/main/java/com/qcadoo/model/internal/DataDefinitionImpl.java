@@ -28,6 +28,7 @@ import com.google.common.collect.ListMultimap;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityOpResult;
 import com.qcadoo.model.api.FieldDefinition;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.model.api.search.SearchQueryBuilder;
@@ -36,11 +37,14 @@ import com.qcadoo.model.internal.AbstractModelXmlConverter.HooksTag;
 import com.qcadoo.model.internal.api.DataAccessService;
 import com.qcadoo.model.internal.api.EntityHookDefinition;
 import com.qcadoo.model.internal.api.InternalDataDefinition;
+import com.qcadoo.model.internal.hooks.HookProfiler;
 import com.qcadoo.model.internal.search.SearchCriteria;
 import com.qcadoo.model.internal.search.SearchCriteriaImpl;
 import com.qcadoo.model.internal.search.SearchQueryImpl;
 import com.qcadoo.model.internal.types.PriorityType;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -71,6 +75,10 @@ public final class DataDefinitionImpl implements InternalDataDefinition {
 
     private FieldDefinition priorityField;
 
+    private volatile FieldSlots fieldSlots = FieldSlots.EMPTY;
+
+    private volatile int fieldSlotsSourceSize;
+
     private final Map<String, EntityHookDefinition> hooksByMethodPath = new HashMap<>();
 
     private final ListMultimap<HooksTag, EntityHookDefinition> entityHooks = LinkedListMultimap.create();
@@ -95,6 +103,8 @@ public final class DataDefinitionImpl implements InternalDataDefinition {
 
     private MasterModel masterModel;
 
+    private HookProfiler hookProfiler;
+
     public DataDefinitionImpl(final String pluginIdentifier, final String name, final DataAccessService dataAccessService) {
         this.pluginIdentifier = pluginIdentifier;
         this.name = name;
@@ -140,6 +150,26 @@ public final class DataDefinitionImpl implements InternalDataDefinition {
         return dataAccessService.fastSave(this, entity);
     }
 
+    @Override
+    public List<Entity> saveAll(final Collection<Entity> entities) {
+        checkCompatibleTypes(entities);
+        return dataAccessService.saveAll(this, entities);
+    }
+
+    @Override
+    public List<Entity> fastSaveAll(final Collection<Entity> entities) {
+        checkCompatibleTypes(entities);
+        return dataAccessService.fastSaveAll(this, entities);
+    }
+
+    private void checkCompatibleTypes(final Collection<Entity> entities) {
+        for (Entity entity : entities) {
+            if (!this.equals(entity.getDataDefinition())) {
+                throw new IllegalStateException("Incompatible types");
+            }
+        }
+    }
+
     @Override
     public SearchQueryBuilder find(final String queryString) {
         checkArgument(queryString != null, "HQL query string must be given");
@@ -180,6 +210,11 @@ public final class DataDefinitionImpl implements InternalDataDefinition {
         return dataAccessService.find(searchCriteria);
     }
 
+    @Override
+    public ScrollableSearchResult scroll(final SearchCriteria searchCriteria, final int fetchSize) {
+        return dataAccessService.scroll(searchCriteria, fetchSize);
+    }
+
     @Override
     public void move(final Long id, final int offset) {
         dataAccessService.move(this, id, offset);
@@ -238,6 +273,32 @@ public final class DataDefinitionImpl implements InternalDataDefinition {
         fields.put(field.getName(), field);
     }
 
+    /**
+     * Returns slots of fields of this definition (including priority field). Slots of fields never change, fields added later
+     * get next slots.
+     * 
+     * @return field slots
+     */
+    FieldSlots getFieldSlots() {
+        if (fieldSlotsSourceSize != getFieldSlotsSourceSize()) {
+            synchronized (this) {
+                if (fieldSlotsSourceSize != getFieldSlotsSourceSize()) {
+                    List<String> fieldNames = new ArrayList<>(fields.keySet());
+                    if (priorityField != null) {
+                        fieldNames.add(priorityField.getName());
+                    }
+                    fieldSlots = fieldSlots.extend(fieldNames);
+                    fieldSlotsSourceSize = fieldNames.size();
+                }
+            }
+        }
+        return fieldSlots;
+    }
+
+    private int getFieldSlotsSourceSize() {
+        return fields.size() + (priorityField == null ? 0 : 1);
+    }
+
     @Override
     public FieldDefinition getField(final String fieldName) {
         if (fields.containsKey(fieldName)) {
@@ -328,50 +389,67 @@ public final class DataDefinitionImpl implements InternalDataDefinition {
         return identifierExpression;
     }
 
+    public void setHookProfiler(final HookProfiler hookProfiler) {
+        this.hookProfiler = hookProfiler;
+    }
+
     @Override
     public boolean callViewHook(final Entity entity) {
-        return callHooks(entity, getViewHooks());
+        return callHooks(entity, HooksTag.ONVIEW);
     }
 
     @Override
     public boolean callCreateHook(final Entity entity) {
-        return callHooks(entity, getCreateHooks());
+        return callHooks(entity, HooksTag.ONCREATE);
     }
 
     @Override
     public boolean callUpdateHook(final Entity entity) {
-        return entity.isValid() && callHooks(entity, getUpdateHooks());
+        return entity.isValid() && callHooks(entity, HooksTag.ONUPDATE);
     }
 
     @Override
     public boolean callSaveHook(final Entity entity) {
-        return entity.isValid() && callHooks(entity, getSaveHooks());
+        return entity.isValid() && callHooks(entity, HooksTag.ONSAVE);
     }
 
     @Override
     public boolean callCopyHook(final Entity entity) {
-        return callHooks(entity, getCopyHooks());
+        return callHooks(entity, HooksTag.ONCOPY);
     }
 
     @Override
     public boolean callValidators(final Entity entity) {
-        return callHooks(entity, getValidators());
+        return callHooks(entity, HooksTag.VALIDATESWITH);
     }
 
     @Override
     public boolean callDeleteHook(final Entity entity) {
-        return callHooks(entity, getDeleteHooks());
+        return callHooks(entity, HooksTag.ONDELETE);
     }
 
-    private boolean callHooks(final Entity entity, final List<EntityHookDefinition> hooksToCall) {
-        for (EntityHookDefinition hook : hooksToCall) {
-            if (hook.isEnabled() && !hook.call(entity)) {
+    private boolean callHooks(final Entity entity, final HooksTag tag) {
+        for (EntityHookDefinition hook : entityHooks.get(tag)) {
+            if (hook.isEnabled() && !callHook(entity, tag, hook)) {
                 return false;
             }
         }
         return true;
     }
 
+    private boolean callHook(final Entity entity, final HooksTag tag, final EntityHookDefinition hook) {
+        if (hookProfiler == null || !hookProfiler.isEnabled()) {
+            return hook.call(entity);
+        }
+        long startTime = System.nanoTime();
+        try {
+            return hook.call(entity);
+        } finally {
+            String hookPluginIdentifier = hook.getPluginIdentifier() == null ? pluginIdentifier : hook.getPluginIdentifier();
+            hookProfiler.record(hookPluginIdentifier, toString(), tag.toString(), hook.getName(), System.nanoTime() - startTime);
+        }
+    }
+
     @Override
     public Class<?> getClassForEntity() {
         return classForEntity;
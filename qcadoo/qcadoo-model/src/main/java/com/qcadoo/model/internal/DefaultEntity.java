@@ -38,19 +38,26 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import com.qcadoo.model.api.validators.GlobalMessage;
 
+/**
+ * Entity which keeps values of fields of its data definition in slots of an array (see {@link DataDefinitionImpl#getFieldSlots()}
+ * and {@link SlotFieldsMap}) and creates its messages holder only when the first message is added.
+ */
 public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, EntityAwareEqualsPerformers {
 
     private Long id;
 
     private final DataDefinition dataDefinition;
 
-    private final Map<String, Object> fields;
+    private final SlotFieldsMap fields;
 
-    private final EntityMessagesHolder messagesHolder = new EntityMessagesHolderImpl();
+    private Map<String, Supplier<Object>> lazyFields;
+
+    private EntityMessagesHolder messagesHolder;
 
     private boolean notValidFlag = false;
 
@@ -59,15 +66,32 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
     public DefaultEntity(final DataDefinition dataDefinition, final Long id, final Map<String, Object> fields) {
         this.dataDefinition = dataDefinition;
         this.id = id;
-        this.fields = fields;
+        this.fields = new SlotFieldsMap(getFieldSlots(dataDefinition));
+        this.fields.putAll(fields);
     }
 
     public DefaultEntity(final DataDefinition dataDefinition, final Long id) {
-        this(dataDefinition, id, new HashMap<>());
+        this.dataDefinition = dataDefinition;
+        this.id = id;
+        this.fields = new SlotFieldsMap(getFieldSlots(dataDefinition));
     }
 
     public DefaultEntity(final DataDefinition dataDefinition) {
-        this(dataDefinition, null, new HashMap<>());
+        this(dataDefinition, null);
+    }
+
+    private static FieldSlots getFieldSlots(final DataDefinition dataDefinition) {
+        if (dataDefinition instanceof DataDefinitionImpl) {
+            return ((DataDefinitionImpl) dataDefinition).getFieldSlots();
+        }
+        return FieldSlots.EMPTY;
+    }
+
+    private EntityMessagesHolder getMessagesHolder() {
+        if (messagesHolder == null) {
+            messagesHolder = new EntityMessagesHolderImpl();
+        }
+        return messagesHolder;
     }
 
     @Override
@@ -87,61 +111,109 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
 
     @Override
     public void setField(final String fieldName, final Object fieldValue) {
+        if (lazyFields != null) {
+            lazyFields.remove(fieldName);
+        }
         fields.put(fieldName, fieldValue);
     }
 
+    /**
+     * Sets field which value will be computed when the field is read for the first time, e.g. by {@link #getField(String)} or
+     * {@link #getFields()}. Setting the field before that discards the supplier.
+     * 
+     * @param fieldName
+     *            field's name
+     * @param valueSupplier
+     *            supplier of field's value
+     */
+    void setLazyField(final String fieldName, final Supplier<Object> valueSupplier) {
+        if (lazyFields == null) {
+            lazyFields = new LinkedHashMap<>();
+        }
+        fields.put(fieldName, null);
+        lazyFields.put(fieldName, valueSupplier);
+    }
+
+    private void resolveLazyField(final String fieldName) {
+        if (lazyFields != null) {
+            Supplier<Object> valueSupplier = lazyFields.remove(fieldName);
+            if (valueSupplier != null) {
+                fields.put(fieldName, valueSupplier.get());
+            }
+        }
+    }
+
+    private void resolveLazyFields() {
+        while (lazyFields != null && !lazyFields.isEmpty()) {
+            resolveLazyField(lazyFields.keySet().iterator().next());
+        }
+    }
+
     @Override
     public Map<String, Object> getFields() {
+        resolveLazyFields();
         return fields;
     }
 
     @Override
     public void addGlobalError(final String message, final String... vars) {
-        messagesHolder.addGlobalError(message, vars);
+        getMessagesHolder().addGlobalError(message, vars);
     }
 
     @Override
     public void addGlobalMessage(final String message, final String... vars) {
-        messagesHolder.addGlobalMessage(message, vars);
+        getMessagesHolder().addGlobalMessage(message, vars);
     }
 
     @Override
     public void addGlobalMessage(String message, boolean autoClose, final boolean extraLarge, String... vars) {
-        messagesHolder.addGlobalMessage(message, autoClose, extraLarge, vars);
+        getMessagesHolder().addGlobalMessage(message, autoClose, extraLarge, vars);
     }
 
     @Override
     public void addGlobalError(String message, boolean autoClose, String... vars) {
-        messagesHolder.addGlobalError(message, autoClose, vars);
+        getMessagesHolder().addGlobalError(message, autoClose, vars);
     }
 
     @Override
     public void addGlobalError(String message, boolean autoClose, final boolean extraLarge, String... vars) {
-        messagesHolder.addGlobalError(message, autoClose, extraLarge, vars);
+        getMessagesHolder().addGlobalError(message, autoClose, extraLarge, vars);
     }
 
     @Override
     public void addError(final FieldDefinition fieldDefinition, final String message, final String... vars) {
-        messagesHolder.addError(fieldDefinition, message, vars);
+        getMessagesHolder().addError(fieldDefinition, message, vars);
     }
 
     @Override
     public List<ErrorMessage> getGlobalErrors() {
+        if (messagesHolder == null) {
+            return Collections.emptyList();
+        }
         return messagesHolder.getGlobalErrors();
     }
 
     @Override
     public List<GlobalMessage> getGlobalMessages() {
+        if (messagesHolder == null) {
+            return Collections.emptyList();
+        }
         return messagesHolder.getGlobalMessages();
     }
 
     @Override
     public Map<String, ErrorMessage> getErrors() {
+        if (messagesHolder == null) {
+            return Collections.emptyMap();
+        }
         return messagesHolder.getErrors();
     }
 
     @Override
     public ErrorMessage getError(final String fieldName) {
+        if (messagesHolder == null) {
+            return null;
+        }
         return messagesHolder.getError(fieldName);
     }
 
@@ -152,7 +224,7 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
 
     @Override
     public boolean isFieldValid(final String fieldName) {
-        return messagesHolder.getError(fieldName) == null;
+        return getError(fieldName) == null;
     }
 
     @Override
@@ -162,6 +234,7 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
 
     @Override
     public int hashCode() {
+        resolveLazyFields();
         HashCodeBuilder hcb = new HashCodeBuilder(23, 41).append(id).append(dataDefinition);
 
         for (Map.Entry<String, Object> field : fields.entrySet()) {
@@ -213,6 +286,7 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
     }
 
     private boolean fieldsAreEquals(final Entity otherEntity, final PerformerEntitiesChain performersChain, final boolean flat) {
+        resolveLazyFields();
         for (String fieldName : dataDefinition.getFields().keySet()) {
             final Object fieldValue = fields.get(fieldName);
             final Object otherFieldValue = otherEntity.getField(fieldName);
@@ -258,6 +332,7 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
     @Override
     public DefaultEntity copy(final PerformerEntitiesChain performersChain) {
         DefaultEntity entity = new DefaultEntity(dataDefinition, id);
+        resolveLazyFields();
         for (Map.Entry<String, Object> field : fields.entrySet()) {
             Object fieldValueCopy = null;
             if (field.getValue() instanceof Entity) {
@@ -286,6 +361,7 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
 
     @Override
     public Object getField(final String fieldName) {
+        resolveLazyField(fieldName);
         return fields.get(fieldName);
     }
 
@@ -438,6 +514,7 @@ public final class DefaultEntity implements Entity, EntityAwareCopyPerformers, E
 
     @Override
     public String toString() {
+        resolveLazyFields();
         StringBuilder entity = new StringBuilder("Entity[" + dataDefinition + "][id=" + id + ",active=" + active);
         for (Map.Entry<String, Object> field : fields.entrySet()) {
 
@@ -26,6 +26,7 @@ package com.qcadoo.model.internal;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityOpResult;
 import com.qcadoo.model.api.FieldDefinition;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.model.api.search.SearchQueryBuilder;
@@ -36,6 +37,7 @@ import com.qcadoo.model.internal.api.InternalDataDefinition;
 import com.qcadoo.model.internal.search.SearchCriteria;
 
 import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -101,6 +103,16 @@ public class DynamicDataDefinitionImpl implements InternalDataDefinition {
         throw new UnsupportedOperationException("Cannot save entity for dynamic data definition");
     }
 
+    @Override
+    public List<Entity> saveAll(final Collection<Entity> entities) {
+        throw new UnsupportedOperationException("Cannot save entity for dynamic data definition");
+    }
+
+    @Override
+    public List<Entity> fastSaveAll(final Collection<Entity> entities) {
+        throw new UnsupportedOperationException("Cannot save entity for dynamic data definition");
+    }
+
     @Override
     public SearchCriteriaBuilder find() {
         throw new UnsupportedOperationException(L_CANNOT_FIND_ENTITY_FOR_DYNAMIC_DATA_DEFINITION);
@@ -180,6 +192,11 @@ public class DynamicDataDefinitionImpl implements InternalDataDefinition {
         throw new UnsupportedOperationException(L_CANNOT_FIND_ENTITY_FOR_DYNAMIC_DATA_DEFINITION);
     }
 
+    @Override
+    public ScrollableSearchResult scroll(final SearchCriteria searchCriteria, final int fetchSize) {
+        throw new UnsupportedOperationException(L_CANNOT_FIND_ENTITY_FOR_DYNAMIC_DATA_DEFINITION);
+    }
+
     @Override
     public String getFullyQualifiedClassName() {
         throw new UnsupportedOperationException("Cannot get class for dynamic data definition");
@@ -56,6 +56,15 @@ public final class EntityListImpl extends AbstractList<Entity> implements Entity
         }
     }
 
+    EntityListImpl(final DataDefinition dataDefinition, final String joinFieldName, final Long parentId,
+            final List<Entity> entities) {
+        this(dataDefinition, joinFieldName, parentId);
+
+        if (this.parentId != null) {
+            this.entities = entities;
+        }
+    }
+
     private void loadEntities() {
         if (entities == null) {
             entities = find().list().getEntities();
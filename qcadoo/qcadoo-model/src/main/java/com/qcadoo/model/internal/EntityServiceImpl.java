@@ -39,11 +39,16 @@ import com.qcadoo.model.internal.api.InternalDataDefinition;
 import com.qcadoo.model.internal.api.InternalFieldDefinition;
 import com.qcadoo.model.internal.types.PasswordType;
 import org.apache.commons.beanutils.PropertyUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.hibernate.Hibernate;
 import org.hibernate.proxy.HibernateProxy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
@@ -121,17 +126,22 @@ public final class EntityServiceImpl implements EntityService {
     }
 
     public Object getField(final Object databaseEntity, final FieldDefinition fieldDefinition, final Entity performer) {
+        return getField(databaseEntity, fieldDefinition, performer, null, Collections.<String> emptySet());
+    }
+
+    private Object getField(final Object databaseEntity, final FieldDefinition fieldDefinition, final Entity performer,
+            final ProxyEntityBatch batch, final Set<String> fetchPaths) {
         if (!((InternalFieldDefinition) fieldDefinition).isEnabled()) {
             return null;
         }
         if (fieldDefinition.getType() instanceof BelongsToType) {
-            return getBelongsToField(databaseEntity, fieldDefinition, performer);
+            return getBelongsToField(databaseEntity, fieldDefinition, performer, batch, fetchPaths);
         }
         if (fieldDefinition.getType() instanceof HasManyType) {
-            return getHasManyField(databaseEntity, fieldDefinition);
+            return getHasManyField(databaseEntity, fieldDefinition, batch, fetchPaths);
         }
         if (fieldDefinition.getType() instanceof ManyToManyType) {
-            return getManyToManyField(databaseEntity, fieldDefinition, performer);
+            return getManyToManyField(databaseEntity, fieldDefinition, performer, batch);
         }
         if (fieldDefinition.getType() instanceof TreeType) {
             return getTreeField(databaseEntity, fieldDefinition);
@@ -145,8 +155,31 @@ public final class EntityServiceImpl implements EntityService {
         return convertToGenericEntity(dataDefinition, databaseEntity, null);
     }
 
+    @Override
+    public List<Entity> convertToGenericEntities(final InternalDataDefinition dataDefinition, final List<?> databaseEntities) {
+        return convertToGenericEntities(dataDefinition, databaseEntities, Collections.<String> emptySet());
+    }
+
+    @Override
+    public List<Entity> convertToGenericEntities(final InternalDataDefinition dataDefinition, final List<?> databaseEntities,
+            final Set<String> fetchPaths) {
+        List<Entity> genericEntities = Lists.newArrayListWithCapacity(databaseEntities.size());
+        ProxyEntityBatch batch = new ProxyEntityBatch();
+
+        for (Object databaseEntity : databaseEntities) {
+            genericEntities.add(convertToGenericEntity(dataDefinition, databaseEntity, null, batch, fetchPaths));
+        }
+
+        return genericEntities;
+    }
+
     public Entity convertToGenericEntity(final InternalDataDefinition dataDefinition, final Object databaseEntity,
             final Entity performer) {
+        return convertToGenericEntity(dataDefinition, databaseEntity, performer, null, Collections.<String> emptySet());
+    }
+
+    private Entity convertToGenericEntity(final InternalDataDefinition dataDefinition, final Object databaseEntity,
+            final Entity performer, final ProxyEntityBatch batch, final Set<String> fetchPaths) {
         Entity genericEntity = null;
 
         if (databaseEntity instanceof Object[]) {
@@ -159,7 +192,9 @@ public final class EntityServiceImpl implements EntityService {
                 if (dataDefinition.getField(fields.get(i)).getType() instanceof BelongsToType) {
                     InternalDataDefinition referencedDataDefinition = (InternalDataDefinition) ((BelongsToType) dataDefinition
                             .getField(fields.get(i)).getType()).getDataDefinition();
-                    genericEntity.setField(fields.get(i), convertToGenericEntity(referencedDataDefinition, databaseArray[i]));
+                    genericEntity.setField(fields.get(i),
+                            convertToGenericEntity(referencedDataDefinition, databaseArray[i], null, batch,
+                                    Collections.<String> emptySet()));
                 } else {
                     genericEntity.setField(fields.get(i), databaseArray[i]);
                 }
@@ -179,7 +214,7 @@ public final class EntityServiceImpl implements EntityService {
                         currentPerformer = genericEntity;
                     }
                     genericEntity.setField(fieldDefinitionEntry.getKey(),
-                            getField(databaseEntity, fieldDefinitionEntry.getValue(), currentPerformer));
+                            getField(databaseEntity, fieldDefinitionEntry.getValue(), currentPerformer, batch, fetchPaths));
                 }
             }
 
@@ -191,8 +226,8 @@ public final class EntityServiceImpl implements EntityService {
             for (Entry<String, FieldDefinition> fieldDefinitionEntry : dataDefinition.getFields().entrySet()) {
                 if (fieldDefinitionEntry.getValue().getExpression() != null
                         && ((InternalFieldDefinition) fieldDefinitionEntry.getValue()).isEnabled()) {
-                    genericEntity.setField(fieldDefinitionEntry.getKey(), expressionService.getValue(genericEntity,
-                            fieldDefinitionEntry.getValue().getExpression(), Locale.ENGLISH));
+                    setExpressionField(genericEntity, fieldDefinitionEntry.getKey(), fieldDefinitionEntry.getValue()
+                            .getExpression());
                 }
             }
 
@@ -205,6 +240,15 @@ public final class EntityServiceImpl implements EntityService {
         return genericEntity;
     }
 
+    private void setExpressionField(final Entity genericEntity, final String fieldName, final String expression) {
+        if (genericEntity instanceof DefaultEntity) {
+            ((DefaultEntity) genericEntity).setLazyField(fieldName,
+                    () -> expressionService.getValue(genericEntity, expression, Locale.ENGLISH));
+        } else {
+            genericEntity.setField(fieldName, expressionService.getValue(genericEntity, expression, Locale.ENGLISH));
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public Object convertToDatabaseEntity(final InternalDataDefinition dataDefinition, final Entity genericEntity,
@@ -263,15 +307,77 @@ public final class EntityServiceImpl implements EntityService {
         return getField(databaseEntity, fieldDefinition.getName());
     }
 
-    private Object getHasManyField(final Object databaseEntity, final FieldDefinition fieldDefinition) {
+    private Object getHasManyField(final Object databaseEntity, final FieldDefinition fieldDefinition,
+            final ProxyEntityBatch batch, final Set<String> fetchPaths) {
         Long parentId = getId(databaseEntity);
         HasManyType hasManyFieldType = (HasManyType) fieldDefinition.getType();
         InternalDataDefinition referencedDataDefinition = (InternalDataDefinition) hasManyFieldType.getDataDefinition();
 
+        if (fetchPaths.contains(fieldDefinition.getName())) {
+            Object value = getField(databaseEntity, fieldDefinition.getName());
+
+            if (value instanceof Collection && Hibernate.isInitialized(value)) {
+                Set<String> innerFetchPaths = getInnerFetchPaths(fetchPaths, fieldDefinition.getName());
+                List<Entity> genericEntities = Lists.newArrayListWithCapacity(((Collection<?>) value).size());
+
+                for (Object innerDatabaseEntity : (Collection<?>) value) {
+                    genericEntities.add(convertToGenericEntity(referencedDataDefinition, innerDatabaseEntity, null, batch,
+                            innerFetchPaths));
+                }
+
+                Collections.sort(genericEntities, getDefaultOrderComparator(referencedDataDefinition));
+
+                return new EntityListImpl(referencedDataDefinition, hasManyFieldType.getJoinFieldName(), parentId,
+                        genericEntities);
+            }
+        }
+
         return new EntityListImpl(referencedDataDefinition, hasManyFieldType.getJoinFieldName(), parentId);
     }
 
-    private Object getManyToManyField(final Object databaseEntity, final FieldDefinition fieldDefinition, final Entity performer) {
+    private Comparator<Entity> getDefaultOrderComparator(final InternalDataDefinition dataDefinition) {
+        if (!dataDefinition.isPrioritizable()) {
+            return new Comparator<Entity>() {
+
+                @Override
+                public int compare(final Entity first, final Entity second) {
+                    return ObjectUtils.compare(first.getId(), second.getId());
+                }
+
+            };
+        }
+
+        final String priorityFieldName = dataDefinition.getPriorityField().getName();
+
+        return new Comparator<Entity>() {
+
+            @Override
+            public int compare(final Entity first, final Entity second) {
+                return ObjectUtils.compare(first.getIntegerField(priorityFieldName), second.getIntegerField(priorityFieldName));
+            }
+
+        };
+    }
+
+    private Set<String> getInnerFetchPaths(final Set<String> fetchPaths, final String fieldName) {
+        if (fetchPaths.isEmpty()) {
+            return fetchPaths;
+        }
+
+        String prefix = fieldName + ".";
+        Set<String> innerFetchPaths = Sets.newHashSet();
+
+        for (String fetchPath : fetchPaths) {
+            if (fetchPath.startsWith(prefix)) {
+                innerFetchPaths.add(fetchPath.substring(prefix.length()));
+            }
+        }
+
+        return innerFetchPaths;
+    }
+
+    private Object getManyToManyField(final Object databaseEntity, final FieldDefinition fieldDefinition, final Entity performer,
+            final ProxyEntityBatch batch) {
         ManyToManyType manyToManyType = (ManyToManyType) fieldDefinition.getType();
         InternalDataDefinition referencedDataDefinition = (InternalDataDefinition) manyToManyType.getDataDefinition();
 
@@ -294,7 +400,7 @@ public final class EntityServiceImpl implements EntityService {
                 if (id == null) {
                     innerEntity = convertToGenericEntity(referencedDataDefinition, innerDatabaseEntity);
                 } else {
-                    innerEntity = new ProxyEntity(referencedDataDefinition, id);
+                    innerEntity = new ProxyEntity(referencedDataDefinition, id, batch);
                 }
                 genericEntities.add(innerEntity);
             }
@@ -310,7 +416,8 @@ public final class EntityServiceImpl implements EntityService {
         return new EntityTreeImpl(referencedDataDefinition, treeFieldType.getJoinFieldName(), parentId);
     }
 
-    private Object getBelongsToField(final Object databaseEntity, final FieldDefinition fieldDefinition, final Entity performer) {
+    private Object getBelongsToField(final Object databaseEntity, final FieldDefinition fieldDefinition, final Entity performer,
+            final ProxyEntityBatch batch, final Set<String> fetchPaths) {
         BelongsToType belongsToFieldType = (BelongsToType) fieldDefinition.getType();
         InternalDataDefinition referencedDataDefinition = (InternalDataDefinition) belongsToFieldType.getDataDefinition();
 
@@ -325,7 +432,9 @@ public final class EntityServiceImpl implements EntityService {
             return performer;
         }
 
-        if (belongsToFieldType.isLazyLoading()) {
+        boolean fetched = fetchPaths.contains(fieldDefinition.getName()) && Hibernate.isInitialized(value);
+
+        if (belongsToFieldType.isLazyLoading() && !fetched) {
             Long id = null;
 
             if (value instanceof HibernateProxy) {
@@ -338,13 +447,14 @@ public final class EntityServiceImpl implements EntityService {
                 return null;
             }
 
-            return new ProxyEntity(referencedDataDefinition, id);
+            return new ProxyEntity(referencedDataDefinition, id, batch);
         } else {
             Entity currentPerformer = performer;
             if (performer == null || performer.getId() == null && referencedDataDefinition.equals(performer.getDataDefinition())) {
                 currentPerformer = new ProxyEntity(referencedDataDefinition, getId(value));
             }
-            return convertToGenericEntity(referencedDataDefinition, value, currentPerformer);
+            return convertToGenericEntity(referencedDataDefinition, value, currentPerformer, batch,
+                    getInnerFetchPaths(fetchPaths, fieldDefinition.getName()));
         }
     }
 
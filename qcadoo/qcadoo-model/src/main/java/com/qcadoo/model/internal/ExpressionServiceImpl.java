@@ -44,11 +44,17 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Helper class that contains methods to evaluate expression value.
+ * 
+ * Parsed expressions are kept in a bounded cache keyed by the expression string, so each expression is parsed once and then
+ * only evaluated against the values of the given entity. Values of the entity are resolved when the expression refers to them,
+ * so fields which the expression doesn't use (e.g. other, lazily computed expression fields) aren't read.
  */
 @Component
 public final class ExpressionServiceImpl implements ExpressionService {
@@ -65,8 +71,14 @@ public final class ExpressionServiceImpl implements ExpressionService {
 
     private static final String EVALUATION_ERROR_MESSAGE = "Error while calculating value of expression \"%s\" for \"%s\".";
 
+    private static final int MAX_CACHED_EXPRESSIONS = 1000;
+
     private static ExpressionService instance = null;
 
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private final ConcurrentMap<String, Expression> expressions = new ConcurrentHashMap<String, Expression>();
+
     @Autowired
     private TranslationService translationService;
 
@@ -126,8 +138,7 @@ public final class ExpressionServiceImpl implements ExpressionService {
     }
 
     private String evaluateExpression(final String expression, final Entity entity, final Locale locale) {
-        ExpressionParser parser = new SpelExpressionParser();
-        Expression exp = parser.parseExpression(expression);
+        Expression exp = getParsedExpression(expression);
         EvaluationContext evaluationContext = getEvaluationContext(entity, locale);
         try {
             String value = String.valueOf(exp.getValue(evaluationContext));
@@ -144,16 +155,33 @@ public final class ExpressionServiceImpl implements ExpressionService {
         }
     }
 
+    private Expression getParsedExpression(final String expression) {
+        Expression exp = expressions.get(expression);
+        if (exp == null) {
+            exp = parser.parseExpression(expression);
+            if (expressions.size() >= MAX_CACHED_EXPRESSIONS) {
+                expressions.clear();
+            }
+            expressions.put(expression, exp);
+        }
+        return exp;
+    }
+
     private EvaluationContext getEvaluationContext(final Entity entity, final Locale locale) {
-        EvaluationContext context = new StandardEvaluationContext();
-        if (entity != null) {
-            Map<String, Object> values = getValuesForEntity(entity, locale, ENTITY_FLATTENING_DEPTH);
+        if (entity == null) {
+            return new StandardEvaluationContext();
+        }
 
-            for (Map.Entry<String, Object> entry : values.entrySet()) {
-                context.setVariable(entry.getKey(), entry.getValue());
+        final Map<String, Object> values = new EntityValues(entity, locale, ENTITY_FLATTENING_DEPTH);
+
+        return new StandardEvaluationContext() {
+
+            @Override
+            public Object lookupVariable(final String name) {
+                return values.get(name);
             }
-        }
-        return context;
+
+        };
     }
 
     private void logFailure(final String expression, final Entity entity, final SpelEvaluationException exception) {
@@ -189,38 +217,38 @@ public final class ExpressionServiceImpl implements ExpressionService {
         return sb.toString();
     }
 
-    private Map<String, Object> getValuesForEntity(final Entity entity, final Locale locale, final int level) {
-        if (entity == null) {
-            return null;
+    private Object getValueForField(final Entity entity, final String fieldName, final Locale locale, final int level) {
+        if ("id".equals(fieldName)) {
+            return entity.getId();
         }
 
-        Map<String, Object> values = new HashMap<String, Object>();
-        values.put("id", entity.getId());
-
-        if (level == 0) {
-            values.putAll(entity.getFields());
-            return values;
-        }
-
-        for (Map.Entry<String, Object> entry : entity.getFields().entrySet()) {
-            if (entry.getValue() instanceof Collection) {
-                values.put(entry.getKey(), entry.getValue());
-            } else {
-                FieldType type = entity.getDataDefinition().getField(entry.getKey()).getType();
-                if (type instanceof BelongsToType) {
-                    Entity belongsToEntity = getBelongsToEntity(entry.getValue(), (BelongsToType) type);
-                    values.put(entry.getKey(), getValuesForEntity(belongsToEntity, locale, level - 1));
-                } else {
-                    String value = null;
-                    if (entry.getValue() != null) {
-                        value = type.toString(entry.getValue(), locale);
-                    }
-                    values.put(entry.getKey(), value);
-                }
-            }
+        Object value = entity.getField(fieldName);
+
+        if ((level == 0) || (value instanceof Collection)) {
+            return value;
         }
 
-        return values;
+        FieldDefinition fieldDefinition = entity.getDataDefinition().getField(fieldName);
+
+        if (fieldDefinition == null) {
+            return value;
+        }
+
+        FieldType type = fieldDefinition.getType();
+
+        if (type instanceof BelongsToType) {
+            Entity belongsToEntity = getBelongsToEntity(value, (BelongsToType) type);
+
+            if (belongsToEntity == null) {
+                return null;
+            }
+
+            return new EntityValues(belongsToEntity, locale, level - 1);
+        } else if (value == null) {
+            return null;
+        } else {
+            return type.toString(value, locale);
+        }
     }
 
     private Entity getBelongsToEntity(final Object value, final BelongsToType type) {
@@ -233,4 +261,46 @@ public final class ExpressionServiceImpl implements ExpressionService {
         }
     }
 
+    /**
+     * Values of the entity's fields flattened to the given depth, each one resolved on its first lookup.
+     */
+    private final class EntityValues extends AbstractMap<String, Object> {
+
+        private final Entity entity;
+
+        private final Locale locale;
+
+        private final int level;
+
+        private final Map<String, Object> values = new HashMap<String, Object>();
+
+        private EntityValues(final Entity entity, final Locale locale, final int level) {
+            this.entity = entity;
+            this.locale = locale;
+            this.level = level;
+        }
+
+        @Override
+        public Object get(final Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            if (!values.containsKey(key)) {
+                values.put((String) key, getValueForField(entity, (String) key, locale, level));
+            }
+            return values.get(key);
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> allValues = new HashMap<String, Object>();
+            allValues.put("id", get("id"));
+            for (String fieldName : entity.getFields().keySet()) {
+                allValues.put(fieldName, get(fieldName));
+            }
+            return allValues.entrySet();
+        }
+
+    }
+
 }
@@ -0,0 +1,235 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Assigns stable slot indexes to field names of one data definition, see {@link DataDefinitionImpl#getFieldSlots()}.
+ * 
+ * Names are resolved by a perfect-hash table built with the hash and displace method: names are grouped in buckets by their
+ * hash and each bucket gets a seed which places all its names in free cells of the table, so a lookup reads exactly one
+ * cell. Names which hash code equals the hash code of an earlier name get no slot.
+ */
+final class FieldSlots {
+
+    static final FieldSlots EMPTY = new FieldSlots(new String[0]);
+
+    private static final int NOT_FOUND = -1;
+
+    private static final int MAX_SEED = 1 << 16;
+
+    private final String[] names;
+
+    private final String[] cellNames;
+
+    private final int[] cellSlots;
+
+    private final int[] bucketSeeds;
+
+    private FieldSlots(final String[] names) {
+        this.names = names;
+
+        int tableSize = tableSizeFor(names.length);
+        String[] tableNames = new String[tableSize];
+        int[] tableSlots = new int[tableSize];
+        int[] tableSeeds = new int[tableSize];
+
+        while (!buildTable(tableNames, tableSlots, tableSeeds)) {
+            tableSize *= 2;
+            tableNames = new String[tableSize];
+            tableSlots = new int[tableSize];
+            tableSeeds = new int[tableSize];
+        }
+
+        cellNames = tableNames;
+        cellSlots = tableSlots;
+        bucketSeeds = tableSeeds;
+    }
+
+    /**
+     * Creates slots for the given names, in iteration order.
+     * 
+     * @param fieldNames
+     *            field names
+     * @return field slots
+     */
+    static FieldSlots of(final Collection<String> fieldNames) {
+        return EMPTY.extend(fieldNames);
+    }
+
+    /**
+     * Creates slots which keep slots of all names of this instance and assign next slots to the other given names.
+     * 
+     * @param fieldNames
+     *            field names
+     * @return field slots
+     */
+    FieldSlots extend(final Collection<String> fieldNames) {
+        List<String> extendedNames = Lists.newArrayList(names);
+        Set<Integer> hashCodes = Sets.newHashSet();
+
+        for (String name : names) {
+            hashCodes.add(name.hashCode());
+        }
+        for (String name : fieldNames) {
+            if (hashCodes.add(name.hashCode())) {
+                extendedNames.add(name);
+            }
+        }
+
+        if (extendedNames.size() == names.length) {
+            return this;
+        }
+
+        return new FieldSlots(extendedNames.toArray(new String[extendedNames.size()]));
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getName(final int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns slot of the given field name.
+     * 
+     * @param fieldName
+     *            field name
+     * @return slot or -1 if the name has no slot
+     */
+    int getSlot(final String fieldName) {
+        if (fieldName == null || names.length == 0) {
+            return NOT_FOUND;
+        }
+
+        int hashCode = fieldName.hashCode();
+        int cell = mix(hashCode, bucketSeeds[mix(hashCode, 0) & (bucketSeeds.length - 1)]) & (cellNames.length - 1);
+        String cellName = cellNames[cell];
+
+        if (cellName == fieldName || (cellName != null && cellName.equals(fieldName))) {
+            return cellSlots[cell];
+        }
+
+        return NOT_FOUND;
+    }
+
+    private boolean buildTable(final String[] tableNames, final int[] tableSlots, final int[] tableSeeds) {
+        int tableSize = tableNames.length;
+        List<List<Integer>> buckets = Lists.newArrayList();
+
+        for (int i = 0; i < tableSize; i++) {
+            buckets.add(Lists.<Integer> newArrayList());
+        }
+        for (int slot = 0; slot < names.length; slot++) {
+            buckets.get(mix(names[slot].hashCode(), 0) & (tableSize - 1)).add(slot);
+        }
+
+        List<Integer> bucketIndexes = Lists.newArrayList();
+
+        for (int i = 0; i < tableSize; i++) {
+            bucketIndexes.add(i);
+        }
+
+        bucketIndexes.sort(Comparator.comparing((Integer bucket) -> buckets.get(bucket).size()).reversed());
+
+        for (Integer bucket : bucketIndexes) {
+            List<Integer> slots = buckets.get(bucket);
+
+            if (slots.isEmpty()) {
+                break;
+            }
+
+            int seed = findSeed(slots, tableNames);
+
+            if (seed == NOT_FOUND) {
+                return false;
+            }
+
+            tableSeeds[bucket] = seed;
+
+            for (Integer slot : slots) {
+                int cell = mix(names[slot].hashCode(), seed) & (tableSize - 1);
+
+                tableNames[cell] = names[slot];
+                tableSlots[cell] = slot;
+            }
+        }
+
+        return true;
+    }
+
+    private int findSeed(final List<Integer> slots, final String[] tableNames) {
+        int tableSize = tableNames.length;
+        int[] cells = new int[slots.size()];
+
+        for (int seed = 1; seed < MAX_SEED; seed++) {
+            boolean free = true;
+
+            for (int i = 0; free && i < slots.size(); i++) {
+                cells[i] = mix(names[slots.get(i)].hashCode(), seed) & (tableSize - 1);
+                free = tableNames[cells[i]] == null;
+
+                for (int j = 0; free && j < i; j++) {
+                    free = cells[j] != cells[i];
+                }
+            }
+
+            if (free) {
+                return seed;
+            }
+        }
+
+        return NOT_FOUND;
+    }
+
+    private static int tableSizeFor(final int size) {
+        return Math.max(2, Integer.highestOneBit(Math.max(1, size)) * 4);
+    }
+
+    private static int mix(final int hashCode, final int seed) {
+        int hash = hashCode ^ (seed * 0x9E3779B9);
+
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(names);
+    }
+
+}
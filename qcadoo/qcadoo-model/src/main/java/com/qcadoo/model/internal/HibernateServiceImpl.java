@@ -34,10 +34,15 @@ import com.qcadoo.model.internal.types.DateTimeType;
 import com.qcadoo.model.internal.types.DecimalType;
 import com.qcadoo.model.internal.types.StringType;
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.classic.Session;
+import org.hibernate.dialect.PostgreSQLDialect;
 import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.engine.SessionImplementor;
 import org.hibernate.impl.CriteriaImpl;
@@ -52,12 +57,16 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 public class HibernateServiceImpl implements HibernateService {
 
     private static final Logger LOG = LoggerFactory.getLogger(HibernateServiceImpl.class);
 
+    private static final Pattern PLAN_ROWS_PATTERN = Pattern.compile("rows=(\\d+)");
+
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
@@ -71,6 +80,60 @@ public class HibernateServiceImpl implements HibernateService {
 
     @Override
     public int getTotalNumberOfEntities(final Criteria criteria) {
+        SQLQuery countQuery = createQueryWrappingCriteria(criteria, "select count(*) as cnt from (", ") sq");
+
+        return ((Number) countQuery.uniqueResult()).intValue();
+    }
+
+    @Override
+    public int getTotalNumberOfEntities(final Criteria criteria, final int maxNumberOfEntities) {
+        SQLQuery countQuery = createQueryWrappingCriteria(criteria, "select count(*) as cnt from (", " limit "
+                + maxNumberOfEntities + ") sq");
+
+        return ((Number) countQuery.uniqueResult()).intValue();
+    }
+
+    @Override
+    public int getTotalNumberOfEntities(final Query query) {
+        ScrollableResults results = query.scroll(ScrollMode.SCROLL_INSENSITIVE);
+
+        try {
+            if (!results.last()) {
+                return 0;
+            }
+
+            return results.getRowNumber() + 1;
+        } finally {
+            results.close();
+        }
+    }
+
+    @Override
+    public int getEstimatedNumberOfEntities(final Criteria criteria) {
+        SessionFactoryImplementor factory = ((SessionImplementor) getCurrentSession()).getFactory();
+
+        if (!(factory.getDialect() instanceof PostgreSQLDialect)) {
+            return -1;
+        }
+
+        List<?> plan = createQueryWrappingCriteria(criteria, "explain ", "").list();
+
+        if (plan.isEmpty()) {
+            return -1;
+        }
+
+        Matcher matcher = PLAN_ROWS_PATTERN.matcher(String.valueOf(plan.get(0)));
+
+        if (!matcher.find()) {
+            return -1;
+        }
+
+        long estimatedRows = Long.parseLong(matcher.group(1));
+
+        return (int) Math.min(estimatedRows, Integer.MAX_VALUE);
+    }
+
+    private SQLQuery createQueryWrappingCriteria(final Criteria criteria, final String sqlPrefix, final String sqlSuffix) {
         final CriteriaImpl criteriaImpl = (CriteriaImpl) criteria;
         final SessionImplementor session = (SessionImplementor) getCurrentSession();
         SessionFactoryImplementor factory = session.getFactory();
@@ -81,14 +144,15 @@ public class HibernateServiceImpl implements HibernateService {
         CriteriaJoinWalker walker = new CriteriaJoinWalker((OuterJoinLoadable) factory.getEntityPersister(implementors[0]),
                 translator, factory, criteriaImpl, criteriaImpl.getEntityOrClassName(), session.getLoadQueryInfluencers());
 
-        final String sql = "select count(*) as cnt from (" + walker.getSQLString() + ") sq";
+        final String sql = sqlPrefix + walker.getSQLString() + sqlSuffix;
 
         getCurrentSession().flush(); // is this safe?
 
-        return ((Number) getCurrentSession()
-                .createSQLQuery(sql)
-                .setParameters(translator.getQueryParameters().getPositionalParameterValues(),
-                        translator.getQueryParameters().getPositionalParameterTypes()).uniqueResult()).intValue();
+        SQLQuery query = getCurrentSession().createSQLQuery(sql);
+        query.setParameters(translator.getQueryParameters().getPositionalParameterValues(), translator.getQueryParameters()
+                .getPositionalParameterTypes());
+
+        return query;
     }
 
     @Override
@@ -193,4 +257,9 @@ public class HibernateServiceImpl implements HibernateService {
         return criteria.list();
     }
 
+    @Override
+    public ScrollableResults scroll(final Criteria criteria, final int fetchSize) {
+        return criteria.setFetchSize(fetchSize).setCacheMode(CacheMode.IGNORE).scroll(ScrollMode.FORWARD_ONLY);
+    }
+
 }
@@ -45,17 +45,28 @@ public final class ProxyEntity implements Entity, EntityAwareCopyPerformers, Ent
 
     private final Long id;
 
+    private final ProxyEntityBatch batch;
+
     private AtomicReference<Entity> entity = new AtomicReference<Entity>(null);
 
     public ProxyEntity(final DataDefinition dataDefinition, final Long id) {
+        this(dataDefinition, id, null);
+    }
+
+    ProxyEntity(final DataDefinition dataDefinition, final Long id, final ProxyEntityBatch batch) {
         checkNotNull(id, "missing id for proxied entity");
         this.dataDefinition = dataDefinition;
         this.id = id;
+        this.batch = batch;
+
+        if (batch != null) {
+            batch.register(dataDefinition, id);
+        }
     }
 
     private Entity getEntity() {
         if (entity.get() == null) {
-            entity.compareAndSet(null, dataDefinition.get(id));
+            entity.compareAndSet(null, batch == null ? dataDefinition.get(id) : batch.load(dataDefinition, id));
             checkNotNull(entity.get(), "Proxy can't load entity");
         }
         return entity.get();
@@ -0,0 +1,166 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCountMode;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Groups proxies created while converting one search result. The first proxy which needs its entity loads entities for all
+ * pending proxies of the same data definition using one query per {@value #MAX_BATCH_SIZE} ids, and the other proxies get
+ * their entities from that result without hitting the database. So proxies of one batch see their entities as they were when
+ * the first of them was used.
+ * 
+ * A loaded entity is kept only until all proxies of its id took it - the last one gets the loaded entity itself, the others
+ * get their own shallow copies, field values aren't copied to keep nested proxies lazy.
+ */
+final class ProxyEntityBatch {
+
+    private static final Logger PERFORMANCE_LOG = LoggerFactory.getLogger("PERFORMANCE");
+
+    private static final String L_ID = "id";
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final Map<DataDefinition, Set<Long>> pendingIds = Maps.newHashMap();
+
+    private final Map<DataDefinition, Multiset<Long>> waitingProxies = Maps.newHashMap();
+
+    private final Map<DataDefinition, Map<Long, Entity>> loadedEntities = Maps.newHashMap();
+
+    synchronized void register(final DataDefinition dataDefinition, final Long id) {
+        Multiset<Long> proxies = waitingProxies.get(dataDefinition);
+
+        if (proxies == null) {
+            proxies = HashMultiset.create();
+            waitingProxies.put(dataDefinition, proxies);
+        }
+
+        proxies.add(id);
+
+        Map<Long, Entity> entities = loadedEntities.get(dataDefinition);
+
+        if (entities != null && entities.containsKey(id)) {
+            return;
+        }
+
+        Set<Long> ids = pendingIds.get(dataDefinition);
+
+        if (ids == null) {
+            ids = Sets.newLinkedHashSet();
+            pendingIds.put(dataDefinition, ids);
+        }
+
+        ids.add(id);
+    }
+
+    synchronized Entity load(final DataDefinition dataDefinition, final Long id) {
+        Set<Long> ids = pendingIds.get(dataDefinition);
+
+        if (ids != null && ids.contains(id)) {
+            pendingIds.remove(dataDefinition);
+            loadEntities(dataDefinition, ids);
+        }
+
+        Map<Long, Entity> entities = loadedEntities.get(dataDefinition);
+
+        if (entities == null || !entities.containsKey(id)) {
+            return dataDefinition.get(id);
+        }
+
+        Multiset<Long> proxies = waitingProxies.get(dataDefinition);
+
+        if (proxies.remove(id, 1) > 1) {
+            return shallowCopy(dataDefinition, entities.get(id));
+        }
+
+        Entity entity = entities.remove(id);
+
+        if (entities.isEmpty()) {
+            loadedEntities.remove(dataDefinition);
+        }
+
+        return entity;
+    }
+
+    private Entity shallowCopy(final DataDefinition dataDefinition, final Entity entity) {
+        if (entity == null) {
+            return null;
+        }
+
+        Entity entityCopy = dataDefinition.create(entity.getId());
+        entityCopy.setActive(entity.isActive());
+
+        for (Map.Entry<String, Object> field : entity.getFields().entrySet()) {
+            entityCopy.setField(field.getKey(), field.getValue());
+        }
+
+        return entityCopy;
+    }
+
+    private void loadEntities(final DataDefinition dataDefinition, final Set<Long> ids) {
+        Map<Long, Entity> entities = loadedEntities.get(dataDefinition);
+
+        if (entities == null) {
+            entities = Maps.newHashMap();
+            loadedEntities.put(dataDefinition, entities);
+        }
+
+        // ids which weren't found are kept with null, so their proxies don't query the database again
+        for (Long id : ids) {
+            entities.put(id, null);
+        }
+
+        int queries = 0;
+
+        for (List<Long> idsPartition : Lists.partition(Lists.newArrayList(ids), MAX_BATCH_SIZE)) {
+            for (Entity entity : dataDefinition.find().add(SearchRestrictions.in(L_ID, idsPartition))
+                    .setCountMode(SearchCountMode.NONE).list().getEntities()) {
+                entities.put(entity.getId(), entity);
+            }
+
+            queries++;
+        }
+
+        if (PERFORMANCE_LOG.isDebugEnabled()) {
+            PERFORMANCE_LOG.debug("Batch of " + ids.size() + " proxies of " + dataDefinition.getPluginIdentifier() + "."
+                    + dataDefinition.getName() + " resolved with " + queries + " queries");
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Field values of {@link DefaultEntity}. Values of fields which have a slot in the given {@link FieldSlots} are kept in an
+ * array, values of other fields in a hash map allocated when such a field is set for the first time.
+ */
+final class SlotFieldsMap extends AbstractMap<String, Object> {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final FieldSlots fieldSlots;
+
+    private final Object[] values;
+
+    private int slotsSize;
+
+    private Map<String, Object> otherFields;
+
+    private Set<Entry<String, Object>> entrySet;
+
+    SlotFieldsMap(final FieldSlots fieldSlots) {
+        this.fieldSlots = fieldSlots;
+        this.values = fieldSlots.size() == 0 ? NO_VALUES : new Object[fieldSlots.size()];
+    }
+
+    @Override
+    public Object get(final Object key) {
+        int slot = getSlot(key);
+        if (slot >= 0) {
+            return unmask(values[slot]);
+        }
+        return otherFields == null ? null : otherFields.get(key);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        int slot = getSlot(key);
+        if (slot >= 0) {
+            return values[slot] != null;
+        }
+        return otherFields != null && otherFields.containsKey(key);
+    }
+
+    @Override
+    public Object put(final String key, final Object value) {
+        int slot = getSlot(key);
+        if (slot >= 0) {
+            Object previousValue = values[slot];
+            if (previousValue == null) {
+                slotsSize++;
+            }
+            values[slot] = value == null ? NULL_VALUE : value;
+            return unmask(previousValue);
+        }
+        if (otherFields == null) {
+            otherFields = new HashMap<>();
+        }
+        return otherFields.put(key, value);
+    }
+
+    @Override
+    public Object remove(final Object key) {
+        int slot = getSlot(key);
+        if (slot >= 0) {
+            Object previousValue = values[slot];
+            if (previousValue != null) {
+                values[slot] = null;
+                slotsSize--;
+            }
+            return unmask(previousValue);
+        }
+        return otherFields == null ? null : otherFields.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        slotsSize = 0;
+        otherFields = null;
+    }
+
+    @Override
+    public int size() {
+        return slotsSize + (otherFields == null ? 0 : otherFields.size());
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return SlotFieldsMap.this.size();
+                }
+
+                @Override
+                public void clear() {
+                    SlotFieldsMap.this.clear();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private int getSlot(final Object key) {
+        return key instanceof String ? fieldSlots.getSlot((String) key) : -1;
+    }
+
+    private static Object unmask(final Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+
+    private final class SlotEntry extends SimpleEntry<String, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int slot;
+
+        private SlotEntry(final int slot) {
+            super(fieldSlots.getName(slot), unmask(values[slot]));
+            this.slot = slot;
+        }
+
+        @Override
+        public Object setValue(final Object value) {
+            values[slot] = value == null ? NULL_VALUE : value;
+            return super.setValue(value);
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int nextSlot = findSlot(0);
+
+        private int lastSlot = -1;
+
+        private Iterator<Entry<String, Object>> otherFieldsIterator;
+
+        private int findSlot(final int fromSlot) {
+            int slot = fromSlot;
+            while (slot < values.length && values[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextSlot < values.length) {
+                return true;
+            }
+            if (otherFieldsIterator == null && otherFields != null) {
+                otherFieldsIterator = otherFields.entrySet().iterator();
+            }
+            return otherFieldsIterator != null && otherFieldsIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (nextSlot < values.length) {
+                lastSlot = nextSlot;
+                nextSlot = findSlot(nextSlot + 1);
+                return new SlotEntry(lastSlot);
+            }
+            lastSlot = -1;
+            return otherFieldsIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastSlot >= 0) {
+                if (values[lastSlot] == null) {
+                    throw new IllegalStateException();
+                }
+                values[lastSlot] = null;
+                slotsSize--;
+            } else if (otherFieldsIterator != null) {
+                otherFieldsIterator.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+
+    }
+
+}
@@ -25,11 +25,13 @@ package com.qcadoo.model.internal.api;
 
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityOpResult;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.internal.DataDefinitionImpl;
 import com.qcadoo.model.internal.search.SearchCriteria;
 import com.qcadoo.model.internal.search.SearchQuery;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -76,6 +78,24 @@ public interface DataAccessService {
      */
     Entity fastSave(InternalDataDefinition dataDefinition, Entity entity);
 
+    /**
+     * Save the entities related with given data definition in one batch.
+     * 
+     * @param dataDefinition
+     * @param entities
+     * @return saved entities
+     */
+    List<Entity> saveAll(InternalDataDefinition dataDefinition, Collection<Entity> entities);
+
+    /**
+     * Save the entities related with given data definition in one batch without invoke hooks.
+     * 
+     * @param dataDefinition
+     * @param entities
+     * @return saved entities
+     */
+    List<Entity> fastSaveAll(InternalDataDefinition dataDefinition, Collection<Entity> entities);
+
     /**
      * Return the entity related with given data definition, by its id.
      * 
@@ -128,6 +148,16 @@ public interface DataAccessService {
      */
     SearchResult find(SearchQuery searchQuery);
 
+    /**
+     * Iterate over entities matching given search criteria, total number of entities isn't computed. Must be called within
+     * the transaction.
+     * 
+     * @param searchCriteria
+     * @param fetchSize
+     * @return scrollable search result
+     */
+    ScrollableSearchResult scroll(SearchCriteria searchCriteria, int fetchSize);
+
     /**
      * Move the prioritizable entity to the target position.
      * 
@@ -37,6 +37,8 @@ public interface EntityHookDefinition {
 
     String getName();
 
+    String getPluginIdentifier();
+
     boolean isEnabled();
 
     void enable();
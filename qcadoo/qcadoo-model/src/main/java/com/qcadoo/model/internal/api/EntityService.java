@@ -23,6 +23,9 @@
  */
 package com.qcadoo.model.internal.api;
 
+import java.util.List;
+import java.util.Set;
+
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.FieldDefinition;
 
@@ -42,5 +45,27 @@ public interface EntityService {
 
     Entity convertToGenericEntity(InternalDataDefinition dataDefinition, Object databaseEntity);
 
+    /**
+     * Converts given database entities, belongsTo proxies of all returned entities are loaded in batches.
+     * 
+     * @param dataDefinition
+     * @param databaseEntities
+     * @return generic entities
+     */
+    List<Entity> convertToGenericEntities(InternalDataDefinition dataDefinition, List<?> databaseEntities);
+
+    /**
+     * Converts given database entities, belongsTo and hasMany fields from given fetch paths are filled with already loaded
+     * entities, other belongsTo proxies are loaded in batches.
+     * 
+     * @param dataDefinition
+     * @param databaseEntities
+     * @param fetchPaths
+     *            association paths fetched together with database entities
+     * @return generic entities
+     */
+    List<Entity> convertToGenericEntities(InternalDataDefinition dataDefinition, List<?> databaseEntities,
+            Set<String> fetchPaths);
+
     Object convertToDatabaseEntity(InternalDataDefinition dataDefinition, Entity genericEntity, Object existingDatabaseEntity);
 }
\ No newline at end of file
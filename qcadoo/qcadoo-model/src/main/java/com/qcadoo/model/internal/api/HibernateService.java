@@ -27,6 +27,7 @@ import java.util.List;
 
 import org.hibernate.Criteria;
 import org.hibernate.Query;
+import org.hibernate.ScrollableResults;
 import org.hibernate.classic.Session;
 
 public interface HibernateService {
@@ -35,6 +36,24 @@ public interface HibernateService {
 
     int getTotalNumberOfEntities(Criteria criteria);
 
+    int getTotalNumberOfEntities(Criteria criteria, int maxNumberOfEntities);
+
+    /**
+     * Returns number of rows returned by given query, using scrollable results instead of loading all entities.
+     * 
+     * @param query
+     * @return total number of entities
+     */
+    int getTotalNumberOfEntities(Query query);
+
+    /**
+     * Returns the database planner's estimate of the number of rows returned by given criteria.
+     * 
+     * @param criteria
+     * @return estimated number of entities or -1 if the estimate isn't supported by the database
+     */
+    int getEstimatedNumberOfEntities(Criteria criteria);
+
     InternalDataDefinition resolveDataDefinition(Criteria criteria);
 
     InternalDataDefinition resolveDataDefinition(Query query);
@@ -43,4 +62,13 @@ public interface HibernateService {
 
     List<?> list(Criteria criteria);
 
+    /**
+     * Returns forward-only scrollable results of given criteria, fetching given number of rows from the database at once.
+     * 
+     * @param criteria
+     * @param fetchSize
+     * @return scrollable results
+     */
+    ScrollableResults scroll(Criteria criteria, int fetchSize);
+
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ package com.qcadoo.model.internal.api;
 
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.internal.MasterModel;
 import com.qcadoo.model.internal.search.SearchCriteria;
@@ -43,6 +44,17 @@ public interface InternalDataDefinition extends DataDefinition {
      */
     SearchResult find(final SearchCriteria searchCriteria);
 
+    /**
+     * Iterate over entities for this data definition using given search criteria.
+     * 
+     * @param searchCriteria
+     *            search criteria
+     * @param fetchSize
+     *            number of entities fetched from the database at once
+     * @return scrollable search result
+     */
+    ScrollableSearchResult scroll(final SearchCriteria searchCriteria, final int fetchSize);
+
     /**
      * Get fully qualified class name representing given data definition.
      * 
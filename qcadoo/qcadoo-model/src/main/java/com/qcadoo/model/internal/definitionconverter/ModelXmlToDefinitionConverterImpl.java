@@ -40,6 +40,7 @@ import com.qcadoo.model.internal.api.*;
 import com.qcadoo.model.internal.hooks.EntityHookDefinitionImpl;
 import com.qcadoo.model.internal.hooks.FieldHookDefinitionImpl;
 import com.qcadoo.model.internal.hooks.HookInitializationException;
+import com.qcadoo.model.internal.hooks.HookProfiler;
 import com.qcadoo.model.internal.types.*;
 import com.qcadoo.model.internal.utils.ClassNameUtils;
 import com.qcadoo.model.internal.validators.*;
@@ -102,6 +103,9 @@ public final class ModelXmlToDefinitionConverterImpl extends AbstractModelXmlCon
     @Autowired
     private TranslationService translationService;
 
+    @Autowired
+    private HookProfiler hookProfiler;
+
     @Transactional
     @Override
     public Collection<DataDefinition> convert(final Resource... resources) {
@@ -255,6 +259,7 @@ public final class ModelXmlToDefinitionConverterImpl extends AbstractModelXmlCon
         LOG.info("Reading model " + modelName + " for plugin " + pluginIdentifier);
 
         DataDefinitionImpl dataDefinition = new DataDefinitionImpl(pluginIdentifier, modelName, dataAccessService);
+        dataDefinition.setHookProfiler(hookProfiler);
         dataDefinition.setDeletable(getBooleanAttribute(reader, "deletable", true));
         dataDefinition.setInsertable(getBooleanAttribute(reader, "insertable", true));
         dataDefinition.setUpdatable(getBooleanAttribute(reader, "updatable", true));
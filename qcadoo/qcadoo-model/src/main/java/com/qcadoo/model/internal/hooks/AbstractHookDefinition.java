@@ -23,6 +23,9 @@
  */
 package com.qcadoo.model.internal.hooks;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -36,6 +39,9 @@ import org.springframework.context.ApplicationContext;
 /**
  * Abstract superclass which provides some common building-blocks for Java hooks.
  * 
+ * Hook methods are called through a method handle bound to the hook bean when the hook is created, so calls don't go through
+ * reflective {@link Method#invoke(Object, Object...)}.
+ * 
  * @author Marcin Kubala
  * @since 1.4
  */
@@ -50,6 +56,8 @@ public abstract class AbstractHookDefinition {
 
     private final Method method;
 
+    private final MethodHandle methodHandle;
+
     protected AbstractHookDefinition(final String className, final String methodName, final String pluginIdentifier,
             final ApplicationContext applicationContext) throws HookInitializationException {
         this.pluginIdentifier = pluginIdentifier;
@@ -61,19 +69,17 @@ public abstract class AbstractHookDefinition {
         this.method = getMethod(clazz, methodName);
 
         checkHookMethodModifiers();
+
+        this.methodHandle = getMethodHandle();
     }
 
     protected abstract Class<?>[] getParameterTypes();
 
     protected Object performCall(final Object... args) {
         try {
-            return getMethod().invoke(getBean(), args);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalStateException("Failed to invoke hook method", e);
-        } catch (IllegalAccessException e) {
-            throw new IllegalStateException("Failed to invoke hook method", e);
-        } catch (InvocationTargetException e) {
-            throw new IllegalStateException("Failed to invoke hook method", e);
+            return (Object) methodHandle.invokeExact(args);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to invoke hook method", new InvocationTargetException(e));
         }
     }
 
@@ -123,6 +129,17 @@ public abstract class AbstractHookDefinition {
         }
     }
 
+    private MethodHandle getMethodHandle() throws HookInitializationException {
+        try {
+            return MethodHandles.publicLookup().unreflect(method).bindTo(bean)
+                    .asSpreader(Object[].class, method.getParameterTypes().length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new HookInitializationException(className, methodName, "Failed to access hook method '"
+                    + method.getDeclaringClass().getCanonicalName() + "#" + method.getName() + "'", e);
+        }
+    }
+
     private Method getMethod(final Class<?> clazz, final String methodName) throws HookInitializationException {
         if (StringUtils.isBlank(methodName)) {
             throw new HookInitializationException(className, methodName, "Hook method name cannot be empty");
@@ -23,8 +23,6 @@
  */
 package com.qcadoo.model.internal.hooks;
 
-import java.lang.reflect.InvocationTargetException;
-
 import org.springframework.context.ApplicationContext;
 
 import com.qcadoo.model.api.DataDefinition;
@@ -51,20 +49,12 @@ public abstract class AbstractModelHookDefinition extends AbstractHookDefinition
     }
 
     protected final boolean call(final Object... args) {
-        try {
-            Object result = getMethod().invoke(getBean(), args);
+        Object result = performCall(args);
 
-            if (result instanceof Boolean) {
-                return (Boolean) result;
-            } else {
-                return true;
-            }
-        } catch (IllegalArgumentException e) {
-            throw new IllegalStateException("Failed to invoke hook method", e);
-        } catch (IllegalAccessException e) {
-            throw new IllegalStateException("Failed to invoke hook method", e);
-        } catch (InvocationTargetException e) {
-            throw new IllegalStateException("Failed to invoke hook method", e);
+        if (result instanceof Boolean) {
+            return (Boolean) result;
+        } else {
+            return true;
         }
     }
 
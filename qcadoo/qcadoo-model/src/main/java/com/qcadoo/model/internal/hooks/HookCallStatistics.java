@@ -0,0 +1,92 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal.hooks;
+
+/**
+ * Snapshot of call counters of one model hook, see {@link HookProfiler}.
+ * 
+ * @since 1.4
+ */
+public class HookCallStatistics {
+
+    private final String pluginIdentifier;
+
+    private final String model;
+
+    private final String hookType;
+
+    private final String hookName;
+
+    private final long calls;
+
+    private final long totalTime;
+
+    private final long maxTime;
+
+    public HookCallStatistics(final String pluginIdentifier, final String model, final String hookType, final String hookName,
+            final long calls, final long totalTime, final long maxTime) {
+        this.pluginIdentifier = pluginIdentifier;
+        this.model = model;
+        this.hookType = hookType;
+        this.hookName = hookName;
+        this.calls = calls;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+    }
+
+    public String getPluginIdentifier() {
+        return pluginIdentifier;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getHookType() {
+        return hookType;
+    }
+
+    public String getHookName() {
+        return hookName;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return total time of all calls in microseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return time of the longest call in microseconds
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+}
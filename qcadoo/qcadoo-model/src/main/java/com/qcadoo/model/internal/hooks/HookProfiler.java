@@ -0,0 +1,178 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal.hooks;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Counts calls of model hooks and their times, per plugin of the hook, model, hook type and hook. Profiling is disabled unless
+ * the hookProfilingEnabled property is set or it is enabled with {@link #setEnabled(boolean)}.
+ * 
+ * @since 1.4
+ */
+@Service
+public class HookProfiler {
+
+    @Value("${hookProfilingEnabled:false}")
+    private String hookProfilingEnabled;
+
+    private volatile boolean enabled;
+
+    private final ConcurrentMap<HookKey, HookCounters> counters = new ConcurrentHashMap<HookKey, HookCounters>();
+
+    @PostConstruct
+    public void init() {
+        enabled = Boolean.parseBoolean(hookProfilingEnabled);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records one call of a hook.
+     * 
+     * @param pluginIdentifier
+     *            identifier of the plugin which defines the hook
+     * @param model
+     *            model of the hook, e.g. orders.order
+     * @param hookType
+     *            type of the hook, e.g. ONSAVE
+     * @param hookName
+     *            name of the hook, class and method
+     * @param time
+     *            time of the call in nanoseconds
+     */
+    public void record(final String pluginIdentifier, final String model, final String hookType, final String hookName,
+            final long time) {
+        HookKey key = new HookKey(pluginIdentifier, model, hookType, hookName);
+
+        counters.computeIfAbsent(key, hookKey -> new HookCounters()).record(time);
+    }
+
+    /**
+     * Returns statistics of all recorded hooks, the most time consuming first.
+     * 
+     * @return statistics of hooks
+     */
+    public List<HookCallStatistics> getStatistics() {
+        List<HookCallStatistics> statistics = Lists.newArrayList();
+
+        for (Map.Entry<HookKey, HookCounters> entry : counters.entrySet()) {
+            HookKey key = entry.getKey();
+            HookCounters hookCounters = entry.getValue();
+
+            statistics.add(new HookCallStatistics(key.pluginIdentifier, key.model, key.hookType, key.hookName, hookCounters.calls
+                    .sum(), TimeUnit.NANOSECONDS.toMicros(hookCounters.totalTime.sum()), TimeUnit.NANOSECONDS
+                    .toMicros(hookCounters.maxTime.get())));
+        }
+
+        Collections.sort(statistics, (first, second) -> Long.compare(second.getTotalTime(), first.getTotalTime()));
+
+        return statistics;
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+
+    private static final class HookCounters {
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder totalTime = new LongAdder();
+
+        private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0L);
+
+        private void record(final long time) {
+            calls.increment();
+            totalTime.add(time);
+            maxTime.accumulate(time);
+        }
+
+    }
+
+    private static final class HookKey {
+
+        private final String pluginIdentifier;
+
+        private final String model;
+
+        private final String hookType;
+
+        private final String hookName;
+
+        private HookKey(final String pluginIdentifier, final String model, final String hookType, final String hookName) {
+            this.pluginIdentifier = pluginIdentifier;
+            this.model = checkNotNull(model, "model is required");
+            this.hookType = checkNotNull(hookType, "hookType is required");
+            this.hookName = checkNotNull(hookName, "hookName is required");
+        }
+
+        @Override
+        public int hashCode() {
+            int result = pluginIdentifier == null ? 0 : pluginIdentifier.hashCode();
+            result = 31 * result + model.hashCode();
+            result = 31 * result + hookType.hashCode();
+            return 31 * result + hookName.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof HookKey)) {
+                return false;
+            }
+
+            HookKey other = (HookKey) obj;
+
+            return (pluginIdentifier == null ? other.pluginIdentifier == null : pluginIdentifier.equals(other.pluginIdentifier))
+                    && model.equals(other.model) && hookType.equals(other.hookType) && hookName.equals(other.hookName);
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal.search;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import com.google.common.base.Function;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
+
+public final class ScrollableSearchResultImpl implements ScrollableSearchResult {
+
+    private final ScrollableResults scrollableResults;
+
+    private final Session session;
+
+    private final Function<Object, Entity> converter;
+
+    private Boolean hasNext;
+
+    private boolean closed;
+
+    public ScrollableSearchResultImpl(final ScrollableResults scrollableResults, final Session session,
+            final Function<Object, Entity> converter) {
+        this.scrollableResults = scrollableResults;
+        this.session = session;
+        this.converter = converter;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+
+        if (hasNext == null) {
+            hasNext = scrollableResults.next();
+
+            if (!hasNext) {
+                close();
+            }
+        }
+
+        return hasNext;
+    }
+
+    @Override
+    public Entity next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        hasNext = null;
+
+        Object[] row = scrollableResults.get();
+        Object databaseEntity = row.length == 1 ? row[0] : row;
+
+        Entity entity = converter.apply(databaseEntity);
+
+        if (databaseEntity != null && session.contains(databaseEntity)) {
+            session.evict(databaseEntity);
+        }
+
+        return entity;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Cannot remove entity from scrollable search result");
+    }
+
+    @Override
+    public Stream<Entity> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            scrollableResults.close();
+        }
+    }
+
+}
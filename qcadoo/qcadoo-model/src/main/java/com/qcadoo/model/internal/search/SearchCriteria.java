@@ -23,11 +23,14 @@
  */
 package com.qcadoo.model.internal.search;
 
+import java.util.Set;
+
 import org.hibernate.Criteria;
 import org.hibernate.classic.Session;
 import org.hibernate.criterion.DetachedCriteria;
 
 import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.search.SearchCountMode;
 
 /**
  * Object represents the criteria for finding entities. It is used for building SQL query.
@@ -51,6 +54,41 @@ public interface SearchCriteria {
 
     void addOrders(Criteria criteria);
 
+    void addSeekRestriction(Criteria criteria);
+
+    /**
+     * Adds join fetch for association paths given by {@link com.qcadoo.model.api.search.SearchCriteriaBuilder#fetch(String)}.
+     * Collection paths of paged criteria are skipped, because the limit would cut joined rows - see
+     * {@link #getDeferredFetchPaths()}.
+     * 
+     * @param criteria
+     */
+    void addFetches(Criteria criteria);
+
+    /**
+     * Returns all fetched association paths (including intermediate paths).
+     * 
+     * @return fetched paths
+     */
+    Set<String> getFetchPaths();
+
+    /**
+     * Returns collection paths which have to be fetched by separate query for ids of already found page.
+     * 
+     * @return deferred fetch paths
+     */
+    Set<String> getDeferredFetchPaths();
+
+    SearchCountMode getCountMode();
+
+    /**
+     * Returns max number of entities which should be counted by {@link SearchCountMode#CAPPED} and
+     * {@link SearchCountMode#ESTIMATED} count modes.
+     * 
+     * @return max number of entities to count
+     */
+    int getMaxNumberOfEntitiesToCount();
+
     DetachedCriteria getHibernateDetachedCriteria();
 
 }
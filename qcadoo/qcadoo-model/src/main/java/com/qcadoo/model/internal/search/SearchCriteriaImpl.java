@@ -24,34 +24,52 @@
 package com.qcadoo.model.internal.search;
 
 import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.FieldDefinition;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.search.JoinType;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.model.api.search.SearchOrder;
 import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.ScrollableSearchResult;
 import com.qcadoo.model.api.search.SearchProjection;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.api.types.BelongsToType;
+import com.qcadoo.model.api.types.HasManyType;
 import com.qcadoo.model.internal.api.InternalDataDefinition;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.classic.Session;
 import org.hibernate.criterion.DetachedCriteria;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 public final class SearchCriteriaImpl implements SearchCriteriaBuilder, SearchCriteria {
 
     private static final String L_PLEASE_USE_NEW_CRITERIA_API = "Please use new criteria API";
 
+    private static final String L_ID = "id";
+
+    private static final int DEFAULT_COUNT_LIMIT = 1000;
+
+    private static final int DEFAULT_FETCH_SIZE = 100;
+
     private final DataDefinition sourceDataDefinition;
 
     private final DetachedCriteria criteria;
@@ -68,6 +86,20 @@ public final class SearchCriteriaImpl implements SearchCriteriaBuilder, SearchCr
 
     private boolean cacheable = false;
 
+    private SearchCountMode countMode = SearchCountMode.EXACT;
+
+    private int countLimit = DEFAULT_COUNT_LIMIT;
+
+    private String seekFieldName;
+
+    private Object seekLastValue;
+
+    private Long seekLastId;
+
+    private final Set<String> fetchPaths = new LinkedHashSet<String>();
+
+    private final Set<String> collectionFetchPaths = new LinkedHashSet<String>();
+
     public SearchCriteriaImpl(final DataDefinition dataDefinition) {
         checkNotNull(dataDefinition);
         sourceDataDefinition = dataDefinition;
@@ -103,6 +135,17 @@ public final class SearchCriteriaImpl implements SearchCriteriaBuilder, SearchCr
         return ((InternalDataDefinition) sourceDataDefinition).find(this);
     }
 
+    @Override
+    public ScrollableSearchResult scroll(final int fetchSize) {
+        checkArgument(fetchSize > 0, "Fetch size must be greater than 0");
+        return ((InternalDataDefinition) sourceDataDefinition).scroll(this, fetchSize);
+    }
+
+    @Override
+    public Stream<Entity> stream() {
+        return scroll(DEFAULT_FETCH_SIZE).stream();
+    }
+
     @Override
     public Entity uniqueResult() {
         SearchResult results = list();
@@ -125,7 +168,11 @@ public final class SearchCriteriaImpl implements SearchCriteriaBuilder, SearchCr
 
     @Override
     public void addFirstAndMaxResults(final Criteria criteria) {
-        criteria.setMaxResults(maxResults).setFirstResult(firstResult);
+        if (isSeekEnabled()) {
+            criteria.setMaxResults(maxResults).setFirstResult(0);
+        } else {
+            criteria.setMaxResults(maxResults).setFirstResult(firstResult);
+        }
     }
 
     @Override
@@ -137,11 +184,20 @@ public final class SearchCriteriaImpl implements SearchCriteriaBuilder, SearchCr
 
     @Override
     public void addOrders(final Criteria criteria) {
-        if (orders.isEmpty()) {
+        if (isSeekEnabled() && seekFieldName == null) {
+            criteria.addOrder(org.hibernate.criterion.Order.asc(L_ID));
+        } else if (isSeekEnabled()) {
+            for (SearchOrder order : orders) {
+                criteria.addOrder(order.getHibernateOrder());
+            }
+            if (!L_ID.equals(seekFieldName)) {
+                criteria.addOrder(org.hibernate.criterion.Order.asc(L_ID));
+            }
+        } else if (orders.isEmpty()) {
             if (sourceDataDefinition != null && sourceDataDefinition.isPrioritizable()) {
                 criteria.addOrder(org.hibernate.criterion.Order.asc(sourceDataDefinition.getPriorityField().getName()));
             } else {
-                criteria.addOrder(org.hibernate.criterion.Order.asc("id"));
+                criteria.addOrder(org.hibernate.criterion.Order.asc(L_ID));
             }
         } else {
             for (SearchOrder order : orders) {
@@ -150,6 +206,154 @@ public final class SearchCriteriaImpl implements SearchCriteriaBuilder, SearchCr
         }
     }
 
+    @Override
+    public void addSeekRestriction(final Criteria criteria) {
+        if (!isSeekEnabled()) {
+            return;
+        }
+        if (seekFieldName == null || L_ID.equals(seekFieldName)) {
+            criteria.add(SearchRestrictions.gt(L_ID, seekLastId).getHibernateCriterion());
+        } else if (isOrderedDescendingBy(seekFieldName)) {
+            criteria.add(SearchRestrictions.or(SearchRestrictions.lt(seekFieldName, seekLastValue),
+                    SearchRestrictions.and(SearchRestrictions.eq(seekFieldName, seekLastValue), SearchRestrictions.gt(L_ID, seekLastId)))
+                    .getHibernateCriterion());
+        } else {
+            criteria.add(SearchRestrictions.or(SearchRestrictions.gt(seekFieldName, seekLastValue),
+                    SearchRestrictions.and(SearchRestrictions.eq(seekFieldName, seekLastValue), SearchRestrictions.gt(L_ID, seekLastId)))
+                    .getHibernateCriterion());
+        }
+    }
+
+    private boolean isSeekEnabled() {
+        return seekLastId != null;
+    }
+
+    private boolean isOrderedDescendingBy(final String fieldName) {
+        for (SearchOrder order : orders) {
+            if ((fieldName + " desc").equals(order.getHibernateOrder().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public SearchCountMode getCountMode() {
+        return countMode;
+    }
+
+    @Override
+    public int getMaxNumberOfEntitiesToCount() {
+        if (isSeekEnabled() || firstResult > Integer.MAX_VALUE - countLimit) {
+            return countLimit;
+        }
+        return firstResult + countLimit;
+    }
+
+    @Override
+    public SearchCriteriaBuilder setCountMode(final SearchCountMode countMode) {
+        checkNotNull(countMode);
+        this.countMode = countMode;
+        return this;
+    }
+
+    @Override
+    public SearchCriteriaBuilder setCountLimit(final int countLimit) {
+        checkArgument(countLimit > 0, "Count limit must be greater than 0");
+        this.countLimit = countLimit;
+        return this;
+    }
+
+    @Override
+    public SearchCriteriaBuilder seekAfter(final Long lastId) {
+        return seekAfter(null, null, lastId);
+    }
+
+    @Override
+    public SearchCriteriaBuilder seekAfter(final String fieldName, final Object lastValue, final Long lastId) {
+        checkNotNull(lastId, "Id of the last entity must be given");
+        checkArgument(fieldName == null || L_ID.equals(fieldName) || lastValue != null, "Value of the last entity must be given");
+        this.seekFieldName = fieldName;
+        this.seekLastValue = lastValue;
+        this.seekLastId = lastId;
+        return this;
+    }
+
+    @Override
+    public SearchCriteriaBuilder fetch(final String associationPath) {
+        checkState(sourceDataDefinition != null, "Cannot fetch associations of subcriteria");
+        checkArgument(StringUtils.isNotBlank(associationPath), "Association path must be given");
+
+        DataDefinition dataDefinition = sourceDataDefinition;
+        StringBuilder path = new StringBuilder();
+        boolean collection = false;
+
+        for (String fieldName : StringUtils.split(associationPath, '.')) {
+            FieldDefinition fieldDefinition = dataDefinition.getField(fieldName);
+            checkArgument(fieldDefinition != null, "Cannot find field %s of %s", fieldName, associationPath);
+
+            if (fieldDefinition.getType() instanceof BelongsToType) {
+                dataDefinition = ((BelongsToType) fieldDefinition.getType()).getDataDefinition();
+            } else if (fieldDefinition.getType() instanceof HasManyType) {
+                dataDefinition = ((HasManyType) fieldDefinition.getType()).getDataDefinition();
+                collection = true;
+            } else {
+                throw new IllegalArgumentException(String.format("Field %s of %s is neither belongsTo nor hasMany", fieldName,
+                        associationPath));
+            }
+
+            if (path.length() > 0) {
+                path.append('.');
+            }
+            path.append(fieldName);
+
+            fetchPaths.add(path.toString());
+
+            if (collection) {
+                collectionFetchPaths.add(path.toString());
+            }
+        }
+
+        return this;
+    }
+
+    @Override
+    public void addFetches(final Criteria criteria) {
+        if (hasProjection) {
+            return;
+        }
+
+        for (String fetchPath : fetchPaths) {
+            if (!collectionFetchPaths.contains(fetchPath) || !isPaged()) {
+                criteria.setFetchMode(fetchPath, FetchMode.JOIN);
+            }
+        }
+
+        if (!collectionFetchPaths.isEmpty() && !isPaged()) {
+            criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        }
+    }
+
+    @Override
+    public Set<String> getFetchPaths() {
+        if (hasProjection) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(fetchPaths);
+    }
+
+    @Override
+    public Set<String> getDeferredFetchPaths() {
+        if (hasProjection || !isPaged()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(collectionFetchPaths);
+    }
+
+    private boolean isPaged() {
+        return maxResults != Integer.MAX_VALUE || firstResult > 0;
+    }
+
     @Override
     public SearchCriteriaBuilder setMaxResults(final int maxResults) {
         this.maxResults = maxResults;
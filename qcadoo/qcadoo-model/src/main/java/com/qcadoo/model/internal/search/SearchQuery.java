@@ -27,12 +27,24 @@ import org.hibernate.Query;
 import org.hibernate.classic.Session;
 
 import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchQueryBuilder;
 
 public interface SearchQuery extends SearchQueryBuilder {
 
     Query createQuery(Session session);
 
+    /**
+     * Creates query counting entities matching this query, derived from the query string.
+     * 
+     * @param session
+     *            session
+     * @return count query or null if the count query can't be derived from this query
+     */
+    Query createCountQuery(Session session);
+
+    SearchCountMode getCountMode();
+
     DataDefinition getDataDefinition();
 
     void addParameters(Query query);
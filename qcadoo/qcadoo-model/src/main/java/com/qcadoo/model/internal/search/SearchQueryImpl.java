@@ -25,6 +25,7 @@ package com.qcadoo.model.internal.search;
 
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchQueryBuilder;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.internal.api.DataAccessService;
@@ -37,12 +38,21 @@ import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class SearchQueryImpl implements SearchQuery {
 
+    private static final Pattern AGGREGATE_FUNCTION_PATTERN = Pattern.compile("\\b(count|sum|avg|min|max)\\s*\\(");
+
+    private static final Pattern JOIN_FETCH_PATTERN = Pattern.compile("(?i)\\bjoin\\s+fetch\\b");
+
+    private static final Pattern PROPERTY_PATH_PATTERN = Pattern.compile("\\b[a-zA-Z_][a-zA-Z0-9_]*\\s*\\.\\s*[a-zA-Z_]");
+
+    private static final Pattern PROJECTION_ALIAS_PATTERN = Pattern.compile("(?i)^(.+?)\\s+as\\s+[a-zA-Z0-9_]+$");
+
     private final Pattern pattern = Pattern.compile("#([a-zA-Z0-9]+)_([a-zA-Z0-9]+)");
 
     private final Map<String, String> strings = new HashMap<String, String>();
@@ -89,6 +99,8 @@ public class SearchQueryImpl implements SearchQuery {
 
     private boolean cacheable = false;
 
+    private SearchCountMode countMode = SearchCountMode.EXACT;
+
     public SearchQueryImpl(final InternalDataDefinition dataDefinition, final DataAccessService dataAccessService,
             final String queryString) {
         this.sourceDataDefinition = dataDefinition;
@@ -174,6 +186,17 @@ public class SearchQueryImpl implements SearchQuery {
         return this;
     }
 
+    @Override
+    public SearchQueryBuilder setCountMode(final SearchCountMode countMode) {
+        this.countMode = countMode;
+        return this;
+    }
+
+    @Override
+    public SearchCountMode getCountMode() {
+        return countMode;
+    }
+
     @Override
     public SearchQueryBuilder setString(final String name, final String val) {
         strings.put(name, val);
@@ -286,6 +309,100 @@ public class SearchQueryImpl implements SearchQuery {
         return session.createQuery(queryString);
     }
 
+    @Override
+    public Query createCountQuery(final Session session) {
+        String countQueryString = buildCountQueryString(queryString);
+
+        if (countQueryString == null) {
+            return null;
+        }
+
+        return session.createQuery(countQueryString);
+    }
+
+    static String buildCountQueryString(final String queryString) {
+        String lowerCaseQueryString = queryString.toLowerCase(Locale.ENGLISH);
+
+        int fromIndex = indexOfTopLevelKeyword(lowerCaseQueryString, "from", 0);
+
+        if (fromIndex < 0 || indexOfTopLevelKeyword(lowerCaseQueryString, "group by", fromIndex) >= 0) {
+            return null;
+        }
+
+        int orderByIndex = indexOfTopLevelKeyword(lowerCaseQueryString, "order by", fromIndex);
+
+        String selectSection = queryString.substring(0, fromIndex).trim();
+        String fromSection = queryString.substring(fromIndex, orderByIndex < 0 ? queryString.length() : orderByIndex).trim();
+
+        fromSection = JOIN_FETCH_PATTERN.matcher(fromSection).replaceAll("join");
+
+        if (selectSection.isEmpty()) {
+            return "select count(*) " + fromSection;
+        }
+
+        String projection = selectSection.substring("select".length()).trim();
+        String lowerCaseProjection = projection.toLowerCase(Locale.ENGLISH);
+
+        if (AGGREGATE_FUNCTION_PATTERN.matcher(lowerCaseProjection).find()) {
+            return null;
+        }
+
+        if (indexOfTopLevelKeyword(lowerCaseProjection, "distinct", 0) == 0) {
+            String distinctProjection = projection.substring("distinct".length()).trim();
+
+            if (indexOfTopLevelKeyword(distinctProjection, ",", 0) >= 0) {
+                return null;
+            }
+
+            Matcher aliasMatcher = PROJECTION_ALIAS_PATTERN.matcher(distinctProjection);
+
+            if (aliasMatcher.matches()) {
+                distinctProjection = aliasMatcher.group(1).trim();
+            }
+
+            return "select count(distinct " + distinctProjection + ") " + fromSection;
+        }
+
+        // a property path in the projection may add an implicit inner join, which count(*) would lose
+        if (PROPERTY_PATH_PATTERN.matcher(projection).find()) {
+            return null;
+        }
+
+        return "select count(*) " + fromSection;
+    }
+
+    private static int indexOfTopLevelKeyword(final String string, final String keyword, final int fromIndex) {
+        int depth = 0;
+        boolean inLiteral = false;
+
+        for (int i = fromIndex; i < string.length(); i++) {
+            char c = string.charAt(i);
+
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            } else if (inLiteral) {
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth <= 0 && string.startsWith(keyword, i) && isKeywordBoundary(string, keyword, i - 1)
+                    && isKeywordBoundary(string, keyword, i + keyword.length())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isKeywordBoundary(final String string, final String keyword, final int index) {
+        if (!Character.isLetter(keyword.charAt(0)) || index < 0 || index >= string.length()) {
+            return true;
+        }
+        char c = string.charAt(index);
+        return !Character.isLetterOrDigit(c) && c != '_' && c != '.';
+    }
+
     @Override
     public void addParameters(final Query query) {
         for (Map.Entry<String, String> parameter : strings.entrySet()) {
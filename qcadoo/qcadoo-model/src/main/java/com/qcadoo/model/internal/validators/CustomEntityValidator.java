@@ -70,6 +70,11 @@ public final class CustomEntityValidator implements EntityHookDefinition, ErrorM
         return entityHook.getName();
     }
 
+    @Override
+    public String getPluginIdentifier() {
+        return entityHook.getPluginIdentifier();
+    }
+
     @Override
     public boolean isEnabled() {
         return entityHook.isEnabled();
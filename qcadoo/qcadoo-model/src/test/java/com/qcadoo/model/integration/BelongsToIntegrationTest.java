@@ -26,12 +26,14 @@ package com.qcadoo.model.integration;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
 
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchOrders;
 
 public class BelongsToIntegrationTest extends IntegrationTest {
 
@@ -123,4 +125,30 @@ public class BelongsToIntegrationTest extends IntegrationTest {
         assertEquals(machine.getId(), ((Entity) component.getField("machine")).getId());
     }
 
+    @Test
+    public void shouldGetLazyBelongsToFieldsOfFoundEntities() throws Exception {
+        // given
+        DataDefinition productDataDefinition = dataDefinitionService.get(PLUGIN_PRODUCTS_NAME, ENTITY_NAME_PRODUCT);
+        DataDefinition machineDataDefinition = dataDefinitionService.get(PLUGIN_MACHINES_NAME, ENTITY_NAME_MACHINE);
+        DataDefinition componentDataDefinition = dataDefinitionService.get(PLUGIN_PRODUCTS_NAME, ENTITY_NAME_COMPONENT);
+
+        Entity machine1 = machineDataDefinition.save(createMachine("asd"));
+        Entity machine2 = machineDataDefinition.save(createMachine("qwe"));
+        Entity product1 = productDataDefinition.save(createProduct("asd", "asd"));
+        Entity product2 = productDataDefinition.save(createProduct("qwe", "qwe"));
+        componentDataDefinition.save(createComponent("name1", product1, machine1));
+        componentDataDefinition.save(createComponent("name2", product2, machine2));
+        componentDataDefinition.save(createComponent("name3", product1, machine1));
+
+        // when
+        List<Entity> components = componentDataDefinition.find().addOrder(SearchOrders.asc("name")).list().getEntities();
+
+        // then
+        assertEquals(3, components.size());
+        assertEquals("asd", components.get(0).getBelongsToField("machine").getStringField("name"));
+        assertEquals("qwe", components.get(1).getBelongsToField("machine").getStringField("name"));
+        assertEquals("asd", components.get(2).getBelongsToField("machine").getStringField("name"));
+        assertEquals(machine2.getId(), components.get(1).getBelongsToField("machine").getId());
+    }
+
 }
@@ -25,8 +25,19 @@ package com.qcadoo.model.integration;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import org.junit.Ignore;
 import org.junit.Test;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Lists;
 
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
@@ -81,6 +92,73 @@ public class CriteriaIntegrationTest extends IntegrationTest {
         assertEquals(2, result.getEntities().size());
     }
 
+    @Test
+    public void shouldStreamAllByQuery() throws Exception {
+        // given
+        final DataDefinition productDao = dataDefinitionService.get(PLUGIN_PRODUCTS_NAME, ENTITY_NAME_PRODUCT);
+
+        productDao.save(createProduct("csd", "csd"));
+        productDao.save(createProduct("asd", "asd"));
+        productDao.save(createProduct("bsd", "bsd"));
+
+        // when
+        List<String> names = createTransactionTemplate().execute(new TransactionCallback<List<String>>() {
+
+            @Override
+            public List<String> doInTransaction(final TransactionStatus status) {
+                try (Stream<Entity> products = productDao.find().addOrder(SearchOrders.asc("name")).setFirstResult(1)
+                        .stream()) {
+                    return products.map(product -> product.getStringField("name")).collect(Collectors.toList());
+                }
+            }
+
+        });
+
+        // then
+        assertEquals(Lists.newArrayList("bsd", "csd"), names);
+    }
+
+    @Test
+    public void shouldScrollAllByQueryInBatches() throws Exception {
+        // given
+        final DataDefinition productDao = dataDefinitionService.get(PLUGIN_PRODUCTS_NAME, ENTITY_NAME_PRODUCT);
+
+        for (int i = 0; i < 5; i++) {
+            productDao.save(createProduct("asd" + i, "asd" + i));
+        }
+
+        // when
+        int numberOfEntities = createTransactionTemplate().execute(new TransactionCallback<Integer>() {
+
+            @Override
+            public Integer doInTransaction(final TransactionStatus status) {
+                int numberOfEntities = 0;
+
+                try (ScrollableSearchResult products = productDao.find().scroll(2)) {
+                    while (products.hasNext()) {
+                        products.next();
+                        numberOfEntities++;
+                    }
+                }
+
+                return numberOfEntities;
+            }
+
+        });
+
+        // then
+        assertEquals(5, numberOfEntities);
+    }
+
+    @Test(expected = IllegalTransactionStateException.class)
+    public void shouldFailToScrollOutsideOfTransaction() throws Exception {
+        // given
+        DataDefinition productDao = dataDefinitionService.get(PLUGIN_PRODUCTS_NAME, ENTITY_NAME_PRODUCT);
+
+        // when
+        productDao.find().scroll(10);
+    }
+
     @Test
     public void shouldFindByQueryWithAlias() throws Exception {
         // given
@@ -479,4 +557,8 @@ public class CriteriaIntegrationTest extends IntegrationTest {
         assertEquals(2L, count);
     }
 
+    private TransactionTemplate createTransactionTemplate() {
+        return new TransactionTemplate(applicationContext.getBean("transactionManager", PlatformTransactionManager.class));
+    }
+
 }
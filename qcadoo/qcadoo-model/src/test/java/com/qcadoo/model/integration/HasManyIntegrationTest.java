@@ -29,6 +29,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.List;
 import java.util.Set;
 
 import org.junit.Before;
@@ -43,6 +44,8 @@ import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityList;
 import com.qcadoo.model.api.EntityOpResult;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.SearchResult;
 
 public class HasManyIntegrationTest extends IntegrationTest {
 
@@ -245,4 +248,67 @@ public class HasManyIntegrationTest extends IntegrationTest {
         assertNull(part1fromDb.getField("component"));
     }
 
+    @Test
+    public final void shouldFetchHasManyFieldOfFoundEntities() {
+        // given
+        Entity product1 = productDataDefinition.save(createProduct("asd", "asd"));
+        Entity product2 = productDataDefinition.save(createProduct("qwe", "qwe"));
+        Entity part1 = partDataDefinition.save(createPart("part1", product1));
+        Entity part2 = partDataDefinition.save(createPart("part2", product1));
+        Entity part3 = partDataDefinition.save(createPart("part3", product2));
+
+        // when
+        List<Entity> products = productDataDefinition.find().fetch(FIELD_PARTS).addOrder(SearchOrders.asc("name")).list()
+                .getEntities();
+
+        jdbcTemplate.execute("delete from " + TABLE_NAME_JOIN_PRODUCT_PART);
+        jdbcTemplate.execute("delete from " + TABLE_NAME_PART);
+
+        // then
+        assertEquals(2, products.size());
+        checkParts(products.get(0), part1, part2);
+        checkParts(products.get(1), part3);
+        assertEquals("part1", products.get(0).getHasManyField(FIELD_PARTS).get(0).getStringField("name"));
+    }
+
+    @Test
+    public final void shouldFetchHasManyFieldOfPagedEntities() {
+        // given
+        Entity product1 = productDataDefinition.save(createProduct("asd", "asd"));
+        Entity product2 = productDataDefinition.save(createProduct("qwe", "qwe"));
+        Entity part1 = partDataDefinition.save(createPart("part1", product1));
+        Entity part2 = partDataDefinition.save(createPart("part2", product1));
+        partDataDefinition.save(createPart("part3", product2));
+
+        // when
+        SearchResult result = productDataDefinition.find().fetch(FIELD_PARTS).addOrder(SearchOrders.asc("name"))
+                .setMaxResults(1).list();
+
+        jdbcTemplate.execute("delete from " + TABLE_NAME_JOIN_PRODUCT_PART);
+        jdbcTemplate.execute("delete from " + TABLE_NAME_PART);
+
+        // then
+        assertEquals(2, result.getTotalNumberOfEntities());
+        assertEquals(1, result.getEntities().size());
+        checkParts(result.getEntities().get(0), part1, part2);
+    }
+
+    @Test
+    public final void shouldFetchNestedAssociationsOfFoundEntities() {
+        // given
+        Entity product = productDataDefinition.save(createProduct("asd", "asd"));
+        Entity part1 = partDataDefinition.save(createPart("part1", product));
+        Entity part2 = partDataDefinition.save(createPart("part2", product));
+
+        // when
+        List<Entity> parts = partDataDefinition.find().fetch("product.parts").addOrder(SearchOrders.asc("name")).list()
+                .getEntities();
+
+        // then
+        assertEquals(2, parts.size());
+        assertEquals("asd", parts.get(0).getBelongsToField("product").getStringField("name"));
+        checkParts(parts.get(0).getBelongsToField("product"), part1, part2);
+        checkParts(parts.get(1).getBelongsToField("product"), part1, part2);
+    }
+
 }
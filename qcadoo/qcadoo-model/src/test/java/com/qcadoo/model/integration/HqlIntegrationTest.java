@@ -29,6 +29,7 @@ import org.junit.Test;
 
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.internal.types.BelongsToEntityType;
 import com.qcadoo.model.internal.types.DecimalType;
@@ -356,4 +357,27 @@ public class HqlIntegrationTest extends IntegrationTest {
         assertEquals("asd", result.getEntities().get(1).getField("0"));
     }
 
+    @Test
+    public void shouldCountAllEntitiesForPagedQuery() throws Exception {
+        // given
+        DataDefinition productDao = dataDefinitionService.get(PLUGIN_PRODUCTS_NAME, ENTITY_NAME_PRODUCT);
+
+        productDao.save(createProduct("asd", "asd"));
+        productDao.save(createProduct("asd", "asd"));
+        productDao.save(createProduct("bsd", "bsd"));
+
+        // when
+        SearchResult result = productDao.find("select distinct p.name from #products_product p order by p.name desc")
+                .setFirstResult(1).setMaxResults(1).list();
+        SearchResult resultWithoutCount = productDao.find("from #products_product p order by p.name desc").setMaxResults(2)
+                .setCountMode(SearchCountMode.NONE).list();
+
+        // then
+        assertEquals(2, result.getTotalNumberOfEntities());
+        assertEquals(1, result.getEntities().size());
+        assertEquals("asd", result.getEntities().get(0).getField("0"));
+        assertEquals(-1, resultWithoutCount.getTotalNumberOfEntities());
+        assertEquals(2, resultWithoutCount.getEntities().size());
+    }
+
 }
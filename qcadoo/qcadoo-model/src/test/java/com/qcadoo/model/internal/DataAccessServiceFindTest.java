@@ -25,6 +25,9 @@ package com.qcadoo.model.internal;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -33,6 +36,7 @@ import org.hibernate.Criteria;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.beans.sample.SampleSimpleDatabaseObject;
@@ -66,6 +70,72 @@ public class DataAccessServiceFindTest extends DataAccessTest {
         assertEquals(Long.valueOf(4L), resultSet.getEntities().get(3).getId());
     }
 
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void shouldCountEntitiesUpToFirstResultAndCountLimitInCappedMode() throws Exception {
+        // given
+        List<SampleSimpleDatabaseObject> databaseObjects = new ArrayList<SampleSimpleDatabaseObject>();
+        databaseObjects.add(createDatabaseObject(21L, "name21", 21));
+
+        SearchCriteriaBuilder searchCriteriaBuilder = dataDefinition.find().setFirstResult(20).setMaxResults(10)
+                .setCountMode(SearchCountMode.CAPPED).setCountLimit(100);
+
+        given(hibernateService.getTotalNumberOfEntities(Mockito.any(Criteria.class), Mockito.eq(120))).willReturn(120);
+        given(hibernateService.list(Mockito.any(Criteria.class))).willReturn((List) databaseObjects);
+
+        // when
+        SearchResult resultSet = searchCriteriaBuilder.list();
+
+        // then
+        assertEquals(120, resultSet.getTotalNumberOfEntities());
+        assertEquals(1, resultSet.getEntities().size());
+        verify(hibernateService, never()).getTotalNumberOfEntities(Mockito.any(Criteria.class));
+    }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void shouldReturnEstimatedNumberOfEntitiesInEstimatedMode() throws Exception {
+        // given
+        List<SampleSimpleDatabaseObject> databaseObjects = new ArrayList<SampleSimpleDatabaseObject>();
+        databaseObjects.add(createDatabaseObject(1L, "name1", 1));
+
+        SearchCriteriaBuilder searchCriteriaBuilder = dataDefinition.find().setMaxResults(10)
+                .setCountMode(SearchCountMode.ESTIMATED);
+
+        given(hibernateService.getEstimatedNumberOfEntities(Mockito.any(Criteria.class))).willReturn(2000000);
+        given(hibernateService.list(Mockito.any(Criteria.class))).willReturn((List) databaseObjects);
+
+        // when
+        SearchResult resultSet = searchCriteriaBuilder.list();
+
+        // then
+        assertEquals(2000000, resultSet.getTotalNumberOfEntities());
+        verify(hibernateService, never()).getTotalNumberOfEntities(Mockito.any(Criteria.class));
+        verify(hibernateService, never()).getTotalNumberOfEntities(Mockito.any(Criteria.class), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void shouldCountEntitiesIfEstimateIsNotAvailable() throws Exception {
+        // given
+        List<SampleSimpleDatabaseObject> databaseObjects = new ArrayList<SampleSimpleDatabaseObject>();
+        databaseObjects.add(createDatabaseObject(1L, "name1", 1));
+
+        SearchCriteriaBuilder searchCriteriaBuilder = dataDefinition.find().setMaxResults(10)
+                .setCountMode(SearchCountMode.ESTIMATED);
+
+        given(hibernateService.getEstimatedNumberOfEntities(Mockito.any(Criteria.class))).willReturn(-1);
+        given(hibernateService.getTotalNumberOfEntities(Mockito.any(Criteria.class), Mockito.eq(1000))).willReturn(1);
+        given(hibernateService.list(Mockito.any(Criteria.class))).willReturn((List) databaseObjects);
+
+        // when
+        SearchResult resultSet = searchCriteriaBuilder.list();
+
+        // then
+        assertEquals(1, resultSet.getTotalNumberOfEntities());
+        assertEquals(1, resultSet.getEntities().size());
+    }
+
     private SampleSimpleDatabaseObject createDatabaseObject(final Long id, final String name, final int age) {
         SampleSimpleDatabaseObject simpleDatabaseObject = new SampleSimpleDatabaseObject(id);
         simpleDatabaseObject.setName(name);
@@ -104,6 +104,68 @@ public final class DataAccessServiceSaveTest extends DataAccessTest {
         assertTrue(entity.isValid());
     }
 
+    @Test
+    public void shouldSaveAllEntitiesFetchingExistingOnesAtOnce() throws Exception {
+        // given
+        Entity newEntity = new DefaultEntity(dataDefinition);
+        newEntity.setField("name", "Mr T");
+        newEntity.setField("age", 66);
+
+        Entity existingEntity = new DefaultEntity(dataDefinition, 1L);
+        existingEntity.setField("name", "Mr Y");
+        existingEntity.setField("age", 44);
+
+        Entity invalidEntity = new DefaultEntity(dataDefinition);
+        invalidEntity.setField("name", "Mr Z");
+        invalidEntity.setField("age", "r");
+
+        SampleSimpleDatabaseObject existingDatabaseObject = new SampleSimpleDatabaseObject();
+        existingDatabaseObject.setId(1L);
+        existingDatabaseObject.setName("Mr X");
+        existingDatabaseObject.setAge(33);
+
+        given(session.get(any(Class.class), Matchers.anyInt())).willReturn(existingDatabaseObject);
+
+        SampleSimpleDatabaseObject newDatabaseObject = new SampleSimpleDatabaseObject();
+        newDatabaseObject.setName("Mr T");
+        newDatabaseObject.setAge(66);
+
+        SampleSimpleDatabaseObject updatedDatabaseObject = new SampleSimpleDatabaseObject();
+        updatedDatabaseObject.setId(1L);
+        updatedDatabaseObject.setName("Mr Y");
+        updatedDatabaseObject.setAge(44);
+
+        // when
+        List<Entity> entities = dataDefinition.saveAll(Arrays.asList(newEntity, existingEntity, invalidEntity));
+
+        // then
+        verify(session, times(1)).createCriteria(SampleSimpleDatabaseObject.class);
+        verify(hibernateService).list(criteria);
+        verify(session).save(newDatabaseObject);
+        verify(session).save(updatedDatabaseObject);
+        assertEquals(3, entities.size());
+        assertTrue(entities.get(0).isValid());
+        assertEquals(Long.valueOf(1L), entities.get(1).getId());
+        assertTrue(entities.get(1).isValid());
+        assertFalse(entities.get(2).isValid());
+    }
+
+    @Test
+    public void shouldNotFetchExistingEntitiesIfAllAreNew() throws Exception {
+        // given
+        Entity entity = new DefaultEntity(dataDefinition);
+        entity.setField("name", "Mr T");
+        entity.setField("age", 66);
+
+        // when
+        List<Entity> entities = dataDefinition.fastSaveAll(Collections.singletonList(entity));
+
+        // then
+        verify(session, Mockito.never()).createCriteria(any(Class.class));
+        assertEquals(1, entities.size());
+        assertTrue(entities.get(0).isValid());
+    }
+
     @Test
     public void shouldFailIfFieldTypeIsNotValid() throws Exception {
         // given
@@ -34,11 +34,14 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.model.api.DataDefinition;
@@ -2700,4 +2703,73 @@ public class DefaultEntityTest {
         Assert.assertNotNull(result);
         Assert.assertEquals(date, result);
     }
+
+    @Test
+    public final void shouldComputeLazyFieldOnceWhenRead() throws Exception {
+        // given
+        AtomicInteger computations = new AtomicInteger();
+        defaultEntity.setLazyField(STRING_FIELD_NAME, () -> "value" + computations.incrementAndGet());
+
+        // when
+        Object first = defaultEntity.getField(STRING_FIELD_NAME);
+        Object second = defaultEntity.getStringField(STRING_FIELD_NAME);
+
+        // then
+        assertEquals("value1", first);
+        assertEquals("value1", second);
+        assertEquals(1, computations.get());
+    }
+
+    @Test
+    public final void shouldNotComputeLazyFieldOverwrittenBeforeRead() throws Exception {
+        // given
+        AtomicInteger computations = new AtomicInteger();
+        defaultEntity.setLazyField(STRING_FIELD_NAME, () -> "value" + computations.incrementAndGet());
+
+        // when
+        defaultEntity.setField(STRING_FIELD_NAME, "other");
+
+        // then
+        assertEquals("other", defaultEntity.getFields().get(STRING_FIELD_NAME));
+        assertEquals(0, computations.get());
+    }
+
+    @Test
+    public final void shouldKeepFieldsOfDataDefinitionInSlots() throws Exception {
+        // given
+        DataDefinitionImpl slotsDataDefinition = new DataDefinitionImpl("plugin", "model", null);
+        slotsDataDefinition.withField(new FieldDefinitionImpl(slotsDataDefinition, "name"));
+        slotsDataDefinition.withField(new FieldDefinitionImpl(slotsDataDefinition, "number"));
+        DefaultEntity entity = new DefaultEntity(slotsDataDefinition, 1L);
+
+        // when
+        entity.setField("name", "Mr T");
+        entity.setField("number", null);
+        entity.setField("other", 5);
+
+        // then
+        assertEquals("Mr T", entity.getField("name"));
+        assertNull(entity.getField("number"));
+        assertEquals(5, entity.getField("other"));
+        assertEquals(3, entity.getFields().size());
+        assertTrue(entity.getFields().containsKey("number"));
+        assertEquals(ImmutableMap.of("name", "Mr T", "other", 5), Maps.filterValues(entity.getFields(), Predicates.notNull()));
+    }
+
+    @Test
+    public final void shouldRemoveSlotFieldThroughFieldsMap() throws Exception {
+        // given
+        DataDefinitionImpl slotsDataDefinition = new DataDefinitionImpl("plugin", "model", null);
+        slotsDataDefinition.withField(new FieldDefinitionImpl(slotsDataDefinition, "name"));
+        DefaultEntity entity = new DefaultEntity(slotsDataDefinition, 1L);
+        entity.setField("name", "Mr T");
+
+        // when
+        entity.getFields().entrySet().removeIf(field -> "name".equals(field.getKey()));
+
+        // then
+        assertFalse(entity.getFields().containsKey("name"));
+        assertTrue(entity.getFields().isEmpty());
+        assertTrue(entity.isValid());
+    }
 }
@@ -0,0 +1,84 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class FieldSlotsTest {
+
+    @Test
+    public void shouldFindSlotsOfAllNames() throws Exception {
+        // given
+        List<String> names = Lists.newArrayList();
+        for (int i = 0; i < 500; i++) {
+            names.add("field" + i);
+        }
+
+        // when
+        FieldSlots fieldSlots = FieldSlots.of(names);
+
+        // then
+        assertEquals(500, fieldSlots.size());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, fieldSlots.getSlot(new String("field" + i)));
+            assertEquals("field" + i, fieldSlots.getName(i));
+        }
+        assertEquals(-1, fieldSlots.getSlot("field500"));
+        assertEquals(-1, fieldSlots.getSlot(null));
+    }
+
+    @Test
+    public void shouldKeepSlotsWhenExtended() throws Exception {
+        // given
+        FieldSlots fieldSlots = FieldSlots.of(Lists.newArrayList("name", "number"));
+
+        // when
+        FieldSlots extendedFieldSlots = fieldSlots.extend(Lists.newArrayList("number", "name", "description"));
+
+        // then
+        assertEquals(0, extendedFieldSlots.getSlot("name"));
+        assertEquals(1, extendedFieldSlots.getSlot("number"));
+        assertEquals(2, extendedFieldSlots.getSlot("description"));
+        assertSame(extendedFieldSlots, extendedFieldSlots.extend(Lists.newArrayList("description")));
+    }
+
+    @Test
+    public void shouldNotAssignSlotToNameWithHashCodeOfOtherName() throws Exception {
+        // when
+        FieldSlots fieldSlots = FieldSlots.of(Lists.newArrayList("Aa", "BB"));
+
+        // then
+        assertEquals(1, fieldSlots.size());
+        assertEquals(0, fieldSlots.getSlot("Aa"));
+        assertEquals(-1, fieldSlots.getSlot("BB"));
+    }
+
+}
@@ -0,0 +1,133 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Compares field storage of {@link DefaultEntity} (slots of {@link SlotFieldsMap}, messages holder created on demand) with the
+ * previous one (a {@link HashMap} and a messages holder created for every entity). It isn't a test, run it by hand:
+ *
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.qcadoo.model.internal.FieldStorageBenchmark
+ * </pre>
+ *
+ * Retained heap is measured for entities kept as in a large search result, time for reading and writing all their fields.
+ */
+public final class FieldStorageBenchmark {
+
+    private static final int FIELDS = 20;
+
+    private static final int ENTITIES = 200_000;
+
+    private static final int ROUNDS = 10;
+
+    private static final String[] NAMES = new String[FIELDS];
+
+    static {
+        for (int i = 0; i < FIELDS; i++) {
+            NAMES[i] = "field" + i;
+        }
+    }
+
+    private static volatile Object[][] retainedEntities;
+
+    private FieldStorageBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        List<String> names = Lists.newArrayList(NAMES);
+        FieldSlots fieldSlots = FieldSlots.of(names);
+
+        Supplier<Object[]> hashMapEntity = () -> new Object[] { new HashMap<String, Object>(), new EntityMessagesHolderImpl() };
+        Supplier<Object[]> slotsEntity = () -> new Object[] { new SlotFieldsMap(fieldSlots), null };
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean warmUp = round < ROUNDS / 2;
+
+            report(warmUp, "HashMap", measure(hashMapEntity));
+            report(warmUp, "slots", measure(slotsEntity));
+        }
+    }
+
+    private static void report(final boolean warmUp, final String name, final long[] result) {
+        if (!warmUp) {
+            System.out.println(String.format("%-8s %6d bytes per entity, %6d ns per entity", name, result[0] / ENTITIES,
+                    result[1] / ENTITIES));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long[] measure(final Supplier<Object[]> entitySupplier) {
+        Object[][] entities = new Object[ENTITIES][];
+        long usedBefore = usedMemory();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ENTITIES; i++) {
+            Object[] entity = entitySupplier.get();
+            Map<String, Object> fields = (Map<String, Object>) entity[0];
+
+            for (int j = 0; j < FIELDS; j++) {
+                fields.put(NAMES[j], j);
+            }
+            entities[i] = entity;
+        }
+
+        long checksum = 0;
+        for (Object[] entity : entities) {
+            Map<String, Object> fields = (Map<String, Object>) entity[0];
+
+            for (String name : NAMES) {
+                checksum += (Integer) fields.get(name);
+            }
+        }
+
+        long time = System.nanoTime() - start;
+        retainedEntities = entities;
+        long used = usedMemory() - usedBefore;
+        retainedEntities = null;
+
+        if (checksum != (long) ENTITIES * FIELDS * (FIELDS - 1) / 2) {
+            throw new IllegalStateException("Unexpected checksum " + checksum);
+        }
+
+        return new long[] { used, time };
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,224 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCountMode;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+
+public class ProxyEntityBatchTest {
+
+    private DataDefinition dataDefinition;
+
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    private final Map<Long, String> savedNames = Maps.newHashMap();
+
+    private final List<List<Long>> queriedIds = Lists.newArrayList();
+
+    private List<Long> registeredIds;
+
+    @Before
+    public void init() {
+        dataDefinition = mock(DataDefinition.class);
+        searchCriteriaBuilder = mock(SearchCriteriaBuilder.class, RETURNS_DEEP_STUBS);
+
+        given(dataDefinition.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.setCountMode(any(SearchCountMode.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willAnswer(new Answer<SearchResult>() {
+
+            @Override
+            public SearchResult answer(final InvocationOnMock invocation) throws Throwable {
+                // the batch queries registered ids in order of registration, at most 500 per query
+                int from = queriedIds.stream().mapToInt(List::size).sum();
+                List<Long> ids = registeredIds.subList(from, Math.min(from + 500, registeredIds.size()));
+                queriedIds.add(ids);
+
+                List<Entity> entities = Lists.newArrayList();
+                for (Long id : ids) {
+                    entities.add(createEntity(id));
+                }
+
+                SearchResult searchResult = mock(SearchResult.class);
+                given(searchResult.getEntities()).willReturn(entities);
+                return searchResult;
+            }
+
+        });
+        given(dataDefinition.create(any(Long.class))).willAnswer(new Answer<Entity>() {
+
+            @Override
+            public Entity answer(final InvocationOnMock invocation) throws Throwable {
+                return new DefaultEntity(dataDefinition, (Long) invocation.getArguments()[0]);
+            }
+
+        });
+        given(dataDefinition.get(any(Long.class))).willAnswer(new Answer<Entity>() {
+
+            @Override
+            public Entity answer(final InvocationOnMock invocation) throws Throwable {
+                return createEntity((Long) invocation.getArguments()[0]);
+            }
+
+        });
+
+        savedNames.put(1L, "asd");
+        savedNames.put(2L, "qwe");
+        registeredIds = Lists.newArrayList(1L, 2L);
+    }
+
+    private Entity createEntity(final Long id) {
+        Entity entity = new DefaultEntity(dataDefinition, id);
+        entity.setField("name", savedNames.get(id));
+        return entity;
+    }
+
+    @Test
+    public void shouldLoadAllPendingProxiesWithOneQuery() throws Exception {
+        // given
+        ProxyEntityBatch batch = new ProxyEntityBatch();
+
+        Entity proxy1 = new ProxyEntity(dataDefinition, 1L, batch);
+        Entity proxy2 = new ProxyEntity(dataDefinition, 2L, batch);
+        Entity proxy3 = new ProxyEntity(dataDefinition, 1L, batch);
+
+        // when
+        String name1 = proxy1.getStringField("name");
+        String name2 = proxy2.getStringField("name");
+        String name3 = proxy3.getStringField("name");
+
+        // then
+        assertEquals("asd", name1);
+        assertEquals("qwe", name2);
+        assertEquals("asd", name3);
+        verify(dataDefinition, times(1)).find();
+        verify(dataDefinition, never()).get(any(Long.class));
+    }
+
+    @Test
+    public void shouldResolveProxiesWithOneQueryPerFiveHundredIds() throws Exception {
+        // given
+        ProxyEntityBatch batch = new ProxyEntityBatch();
+
+        registeredIds = Lists.newArrayList();
+        List<Entity> proxies = Lists.newArrayList();
+        for (long id = 1; id <= 1201; id++) {
+            savedNames.put(id, "name" + id);
+            registeredIds.add(id);
+            proxies.add(new ProxyEntity(dataDefinition, id, batch));
+        }
+
+        // when
+        for (Entity proxy : proxies) {
+            assertEquals("name" + proxy.getId(), proxy.getStringField("name"));
+        }
+
+        // then
+        assertEquals(3, queriedIds.size());
+        verify(searchCriteriaBuilder, times(3)).list();
+        verify(dataDefinition, never()).get(any(Long.class));
+    }
+
+    @Test
+    public void shouldGiveEachProxyItsOwnEntity() throws Exception {
+        // given
+        ProxyEntityBatch batch = new ProxyEntityBatch();
+
+        Entity proxy1 = new ProxyEntity(dataDefinition, 1L, batch);
+        Entity proxy2 = new ProxyEntity(dataDefinition, 1L, batch);
+
+        // when
+        proxy1.setField("name", "qwe");
+
+        // then
+        assertEquals("qwe", proxy1.getStringField("name"));
+        assertEquals("asd", proxy2.getStringField("name"));
+    }
+
+    @Test
+    public void shouldGiveProxiesEntitiesLoadedByTheirBatch() throws Exception {
+        // given
+        ProxyEntityBatch batch = new ProxyEntityBatch();
+
+        Entity proxy1 = new ProxyEntity(dataDefinition, 1L, batch);
+        Entity proxy2 = new ProxyEntity(dataDefinition, 2L, batch);
+
+        String name1 = proxy1.getStringField("name");
+
+        // when
+        savedNames.put(2L, "zxc");
+
+        String name2 = proxy2.getStringField("name");
+
+        // then
+        assertEquals("asd", name1);
+        assertEquals("qwe", name2);
+        verify(dataDefinition, times(1)).find();
+        verify(dataDefinition, never()).get(any(Long.class));
+    }
+
+    @Test
+    public void shouldLoadProxyRegisteredAfterLoadInNextBatch() throws Exception {
+        // given
+        ProxyEntityBatch batch = new ProxyEntityBatch();
+        registeredIds = Lists.newArrayList(1L);
+
+        Entity proxy1 = new ProxyEntity(dataDefinition, 1L, batch);
+        proxy1.getField("name");
+
+        Entity proxy2 = new ProxyEntity(dataDefinition, 2L, batch);
+        registeredIds = Lists.newArrayList(1L, 2L);
+
+        // when
+        String name2 = proxy2.getStringField("name");
+
+        // then
+        assertEquals("qwe", name2);
+        verify(dataDefinition, times(2)).find();
+    }
+
+}
@@ -25,6 +25,8 @@ package com.qcadoo.model.internal.hooks;
 
 import static org.mockito.BDDMockito.given;
 
+import java.lang.reflect.InvocationTargetException;
+
 import junit.framework.Assert;
 
 import org.junit.Before;
@@ -35,7 +37,9 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.ApplicationContext;
 
+import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.beans.sample.CustomEntityService;
+import com.qcadoo.model.internal.DefaultEntity;
 import com.qcadoo.plugin.api.PluginStateResolver;
 import com.qcadoo.plugin.internal.PluginUtilsService;
 
@@ -48,12 +52,15 @@ public class EntityHookDefinitionImplTest {
     @Mock
     private PluginStateResolver pluginStateResolver;
 
+    private ApplicationContext applicationContext;
+
     @Before
     public final void init() throws HookInitializationException {
         MockitoAnnotations.initMocks(this);
 
         ApplicationContext applicationContext = Mockito.mock(ApplicationContext.class);
         BDDMockito.given(applicationContext.getBean(CustomEntityService.class)).willReturn(new CustomEntityService());
+        this.applicationContext = applicationContext;
         entityHookDefinitionImpl = new EntityHookDefinitionImpl("com.qcadoo.model.beans.sample.CustomEntityService", "onSave",
                 SOME_PLUGIN_IDENTIFIER, applicationContext);
 
@@ -121,4 +128,50 @@ public class EntityHookDefinitionImplTest {
         // then
         Assert.assertFalse(isEnabled);
     }
+
+    @Test
+    public final void shouldCallHookMethod() throws Exception {
+        // given
+        Entity entity = new DefaultEntity(null);
+
+        // when
+        boolean result = entityHookDefinitionImpl.call(entity);
+
+        // then
+        Assert.assertTrue(result);
+        Assert.assertEquals(11, entity.getField("age"));
+    }
+
+    @Test
+    public final void shouldReturnResultOfHookMethod() throws Exception {
+        // given
+        EntityHookDefinitionImpl validator = new EntityHookDefinitionImpl("com.qcadoo.model.beans.sample.CustomEntityService",
+                "hasAge18AndNameMrT", SOME_PLUGIN_IDENTIFIER, applicationContext);
+        Entity entity = new DefaultEntity(null);
+        entity.setField("age", 18);
+        entity.setField("name", "Mr T");
+
+        // when
+        boolean result = validator.call(entity);
+
+        // then
+        Assert.assertTrue(result);
+    }
+
+    @Test
+    public final void shouldWrapExceptionThrownByHookMethod() throws Exception {
+        // given
+        EntityHookDefinitionImpl validator = new EntityHookDefinitionImpl("com.qcadoo.model.beans.sample.CustomEntityService",
+                "hasAge18AndNameMrT", SOME_PLUGIN_IDENTIFIER, applicationContext);
+
+        // when
+        try {
+            validator.call(new DefaultEntity(null));
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // then
+            Assert.assertTrue(e.getCause() instanceof InvocationTargetException);
+            Assert.assertTrue(((InvocationTargetException) e.getCause()).getTargetException() instanceof NullPointerException);
+        }
+    }
 }
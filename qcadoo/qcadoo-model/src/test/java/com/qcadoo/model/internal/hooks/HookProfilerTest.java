@@ -0,0 +1,76 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal.hooks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HookProfilerTest {
+
+    private HookProfiler hookProfiler;
+
+    @Before
+    public void init() {
+        hookProfiler = new HookProfiler();
+    }
+
+    @Test
+    public void shouldSumCallsOfHookAndSortByTotalTime() throws Exception {
+        // given
+        hookProfiler.record("orders", "orders.order", "ONSAVE", "OrderHooks.onSave", TimeUnit.MILLISECONDS.toNanos(2));
+        hookProfiler.record("orders", "orders.order", "ONSAVE", "OrderHooks.onSave", TimeUnit.MILLISECONDS.toNanos(5));
+        hookProfiler.record("basic", "orders.order", "ONVIEW", "OrderHooksBasic.onView", TimeUnit.MILLISECONDS.toNanos(1));
+
+        // when
+        List<HookCallStatistics> statistics = hookProfiler.getStatistics();
+
+        // then
+        assertEquals(2, statistics.size());
+        assertEquals("OrderHooks.onSave", statistics.get(0).getHookName());
+        assertEquals(2, statistics.get(0).getCalls());
+        assertEquals(7000, statistics.get(0).getTotalTime());
+        assertEquals(5000, statistics.get(0).getMaxTime());
+        assertEquals("basic", statistics.get(1).getPluginIdentifier());
+        assertEquals(1, statistics.get(1).getCalls());
+    }
+
+    @Test
+    public void shouldForgetCallsWhenReset() throws Exception {
+        // given
+        hookProfiler.record("orders", "orders.order", "ONSAVE", "OrderHooks.onSave", 10L);
+
+        // when
+        hookProfiler.reset();
+
+        // then
+        assertTrue(hookProfiler.getStatistics().isEmpty());
+    }
+
+}
@@ -24,9 +24,24 @@
 package com.qcadoo.model.internal.search;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import com.google.common.collect.Sets;
+import com.qcadoo.model.api.search.SearchCountMode;
+import com.qcadoo.model.api.search.SearchOrders;
+import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.internal.DataAccessTest;
 
 public final class SearchCriteriaBuilderTest extends DataAccessTest {
@@ -40,4 +55,100 @@ public final class SearchCriteriaBuilderTest extends DataAccessTest {
         assertEquals(dataDefinition, searchCriteria.getDataDefinition());
     }
 
+    @Test
+    public void shouldUseExactCountModeByDefault() throws Exception {
+        // when
+        SearchCriteria searchCriteria = (SearchCriteria) dataDefinition.find().setFirstResult(50);
+
+        // then
+        assertEquals(SearchCountMode.EXACT, searchCriteria.getCountMode());
+        assertEquals(1050, searchCriteria.getMaxNumberOfEntitiesToCount());
+    }
+
+    @Test
+    public void shouldIgnoreFirstResultAndOrderByIdWhenSeekingAfterId() throws Exception {
+        // given
+        Criteria hibernateCriteria = mock(Criteria.class, RETURNS_DEEP_STUBS);
+        SearchCriteria searchCriteria = (SearchCriteria) dataDefinition.find().setFirstResult(50).setMaxResults(25)
+                .addOrder(SearchOrders.desc("name")).seekAfter(100L);
+
+        // when
+        searchCriteria.addSeekRestriction(hibernateCriteria);
+        searchCriteria.addFirstAndMaxResults(hibernateCriteria);
+        searchCriteria.addOrders(hibernateCriteria);
+
+        // then
+        ArgumentCaptor<Criterion> criterionCaptor = ArgumentCaptor.forClass(Criterion.class);
+        ArgumentCaptor<Order> orderCaptor = ArgumentCaptor.forClass(Order.class);
+        verify(hibernateCriteria).add(criterionCaptor.capture());
+        verify(hibernateCriteria).addOrder(orderCaptor.capture());
+        verify(hibernateCriteria).setMaxResults(25);
+        assertEquals(SearchRestrictions.gt("id", 100L).getHibernateCriterion().toString(), criterionCaptor.getValue().toString());
+        assertEquals("id asc", orderCaptor.getValue().toString());
+    }
+
+    @Test
+    public void shouldSeekAfterSortKeyInDescendingOrder() throws Exception {
+        // given
+        Criteria hibernateCriteria = mock(Criteria.class);
+        SearchCriteria searchCriteria = (SearchCriteria) dataDefinition.find().addOrder(SearchOrders.desc("name"))
+                .seekAfter("name", "xxx", 100L);
+
+        // when
+        searchCriteria.addSeekRestriction(hibernateCriteria);
+        searchCriteria.addOrders(hibernateCriteria);
+
+        // then
+        ArgumentCaptor<Criterion> criterionCaptor = ArgumentCaptor.forClass(Criterion.class);
+        ArgumentCaptor<Order> orderCaptor = ArgumentCaptor.forClass(Order.class);
+        verify(hibernateCriteria).add(criterionCaptor.capture());
+        verify(hibernateCriteria, times(2)).addOrder(orderCaptor.capture());
+        assertEquals(
+                SearchRestrictions.or(SearchRestrictions.lt("name", "xxx"),
+                        SearchRestrictions.and(SearchRestrictions.eq("name", "xxx"), SearchRestrictions.gt("id", 100L)))
+                        .getHibernateCriterion().toString(), criterionCaptor.getValue().toString());
+        assertEquals("name desc", orderCaptor.getAllValues().get(0).toString());
+        assertEquals("id asc", orderCaptor.getAllValues().get(1).toString());
+    }
+
+    @Test
+    public void shouldJoinFetchAssociationPaths() throws Exception {
+        // given
+        Criteria hibernateCriteria = mock(Criteria.class);
+        SearchCriteria searchCriteria = (SearchCriteria) dataDefinition.find().fetch("lazyBelongsTo.entities");
+
+        // when
+        searchCriteria.addFetches(hibernateCriteria);
+
+        // then
+        verify(hibernateCriteria).setFetchMode("lazyBelongsTo", FetchMode.JOIN);
+        verify(hibernateCriteria).setFetchMode("lazyBelongsTo.entities", FetchMode.JOIN);
+        verify(hibernateCriteria).setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        assertEquals(Sets.newHashSet("lazyBelongsTo", "lazyBelongsTo.entities"), searchCriteria.getFetchPaths());
+        assertTrue(searchCriteria.getDeferredFetchPaths().isEmpty());
+    }
+
+    @Test
+    public void shouldDeferCollectionFetchOfPagedCriteria() throws Exception {
+        // given
+        Criteria hibernateCriteria = mock(Criteria.class);
+        SearchCriteria searchCriteria = (SearchCriteria) dataDefinition.find().fetch("lazyBelongsTo.entities")
+                .setMaxResults(10);
+
+        // when
+        searchCriteria.addFetches(hibernateCriteria);
+
+        // then
+        verify(hibernateCriteria).setFetchMode("lazyBelongsTo", FetchMode.JOIN);
+        verify(hibernateCriteria, never()).setFetchMode("lazyBelongsTo.entities", FetchMode.JOIN);
+        verify(hibernateCriteria, never()).setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+        assertEquals(Sets.newHashSet("lazyBelongsTo.entities"), searchCriteria.getDeferredFetchPaths());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToFetchNotAssociationField() throws Exception {
+        // when
+        dataDefinition.find().fetch("name");
+    }
+
 }
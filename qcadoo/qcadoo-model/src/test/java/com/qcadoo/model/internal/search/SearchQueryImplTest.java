@@ -0,0 +1,88 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.model.internal.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SearchQueryImplTest {
+
+    @Test
+    public void shouldBuildCountQueryForQueryWithoutSelect() throws Exception {
+        // when
+        String countQuery = SearchQueryImpl.buildCountQueryString("from Product as p where p.name = :name order by p.name");
+
+        // then
+        assertEquals("select count(*) from Product as p where p.name = :name", countQuery);
+    }
+
+    @Test
+    public void shouldBuildCountQueryForQueryWithSelect() throws Exception {
+        // when
+        String countQuery = SearchQueryImpl
+                .buildCountQueryString("select p as product, v as vendor from Product p left join fetch p.vendor v");
+
+        // then
+        assertEquals("select count(*) from Product p left join p.vendor v", countQuery);
+    }
+
+    @Test
+    public void shouldBuildCountQueryForDistinctProjection() throws Exception {
+        // when
+        String countQuery = SearchQueryImpl
+                .buildCountQueryString("select distinct p.name as name from Product p order by p.name desc");
+
+        // then
+        assertEquals("select count(distinct p.name) from Product p", countQuery);
+    }
+
+    @Test
+    public void shouldIgnoreKeywordsInSubqueriesAndLiterals() throws Exception {
+        // when
+        String countQuery = SearchQueryImpl.buildCountQueryString("select p from Product p where p.name <> 'order by' and "
+                + "p.id in (select c.product.id from Component c order by c.id)");
+
+        // then
+        assertEquals("select count(*) from Product p where p.name <> 'order by' and "
+                + "p.id in (select c.product.id from Component c order by c.id)", countQuery);
+    }
+
+    @Test
+    public void shouldNotBuildCountQueryForGroupedOrAggregatedQueries() throws Exception {
+        // when & then
+        assertNull(SearchQueryImpl.buildCountQueryString("select p.name, count(p.id) from Product p group by p.name"));
+        assertNull(SearchQueryImpl.buildCountQueryString("select sum(p.quantity) from Product p"));
+        assertNull(SearchQueryImpl.buildCountQueryString("select distinct p.name, p.number from Product p"));
+    }
+
+    @Test
+    public void shouldNotBuildCountQueryForProjectionWithPropertyPaths() throws Exception {
+        // when & then
+        assertNull(SearchQueryImpl.buildCountQueryString("select p.vendor.name as vendorName from Product p"));
+        assertNull(SearchQueryImpl.buildCountQueryString("select p, upper(p.vendor) from Product p order by p.name"));
+    }
+
+}
@@ -26,9 +26,13 @@ package com.qcadoo.model.utils;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import java.util.Locale;
@@ -171,4 +175,23 @@ public class ExpressionUtilTest {
         assertEquals("P1", value);
     }
 
+    @Test
+    public void shouldReadOnlyFieldsUsedByExpression() throws Exception {
+        // given
+        DataDefinition dataDefinition = mock(DataDefinition.class, RETURNS_DEEP_STUBS);
+        Entity entity = mock(Entity.class);
+        given(entity.getDataDefinition()).willReturn(dataDefinition);
+        given(entity.getField("name")).willReturn("Mr T");
+
+        given(dataDefinition.getField(eq("name")).getType().toString(eq("Mr T"), eq(Locale.ENGLISH))).willReturn("Mr T");
+
+        // when
+        String value = expressionService.getValue(entity, "#name + ' ' + #name", Locale.ENGLISH);
+
+        // then
+        assertEquals("Mr T Mr T", value);
+        verify(entity, times(1)).getField(anyString());
+        verify(entity, never()).getFields();
+    }
+
 }
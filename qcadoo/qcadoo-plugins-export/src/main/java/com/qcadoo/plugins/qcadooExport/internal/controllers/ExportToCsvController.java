@@ -36,7 +36,6 @@ import java.util.Locale;
 import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -67,6 +66,8 @@ public class ExportToCsvController {
 
     private static final String L_PLUGIN_IDENTIFIER_VARIABLE = "pluginIdentifier";
 
+    private static final int L_PAGE_SIZE = 1000;
+
     private static final String L_CONTROLLER_PATH = "exportToCsv/{" + L_PLUGIN_IDENTIFIER_VARIABLE + "}/{" + L_VIEW_NAME_VARIABLE
             + "}";
 
@@ -87,67 +88,61 @@ public class ExportToCsvController {
     @RequestMapping(value = { L_CONTROLLER_PATH }, method = RequestMethod.POST)
     public Object generateCsv(@PathVariable(L_PLUGIN_IDENTIFIER_VARIABLE) final String pluginIdentifier,
             @PathVariable(L_VIEW_NAME_VARIABLE) final String viewName, @RequestBody final JSONObject body, final Locale locale) {
-        try {
-            changeMaxResults(body);
-
-            ViewDefinitionState state = crudService.invokeEvent(pluginIdentifier, viewName, body, locale);
-
-            GridComponent grid = (GridComponent) state.getComponentByReference(L_GRID);
+        ViewDefinitionState state = crudService.invokeEvent(pluginIdentifier, viewName, body, locale);
 
-            String date = DateFormat.getDateInstance().format(new Date());
-            File file = fileService.createExportFile("export_" + grid.getName() + "_" + date + ".csv");
+        GridComponent grid = (GridComponent) state.getComponentByReference(L_GRID);
 
-            BufferedWriter bufferedWriter = null;
+        String date = DateFormat.getDateInstance().format(new Date());
+        File file = fileService.createExportFile("export_" + grid.getName() + "_" + date + ".csv");
 
-            try {
-                FileOutputStream fileOutputStream = new FileOutputStream(file);
+        BufferedWriter bufferedWriter = null;
 
-                fileOutputStream.write(239);
-                fileOutputStream.write(187);
-                fileOutputStream.write(191);
+        try {
+            FileOutputStream fileOutputStream = new FileOutputStream(file);
 
-                bufferedWriter = new BufferedWriter(new OutputStreamWriter(fileOutputStream, Charset.forName("UTF-8")));
+            fileOutputStream.write(239);
+            fileOutputStream.write(187);
+            fileOutputStream.write(191);
 
-                boolean firstName = true;
+            bufferedWriter = new BufferedWriter(new OutputStreamWriter(fileOutputStream, Charset.forName("UTF-8")));
 
-                List<String> columns = getColumns(grid);
-                List<String> columnNames = getColumnNames(grid, columns);
+            boolean firstName = true;
 
-                for (String name : columnNames) {
-                    if (firstName) {
-                        firstName = false;
-                    } else {
-                        bufferedWriter.append(exportedCsvSeparator);
-                    }
+            List<String> columns = getColumns(grid);
+            List<String> columnNames = getColumnNames(grid, columns);
 
-                    bufferedWriter.append("\"").append(normalizeString(name)).append("\"");
+            for (String name : columnNames) {
+                if (firstName) {
+                    firstName = false;
+                } else {
+                    bufferedWriter.append(exportedCsvSeparator);
                 }
 
-                bufferedWriter.append("\n");
-
-                List<Map<String, String>> rows;
+                bufferedWriter.append("\"").append(normalizeString(name)).append("\"");
+            }
 
-                if (grid.getSelectedEntitiesIds().isEmpty()) {
-                    rows = grid.getColumnValuesOfAllRecords();
-                } else {
-                    rows = grid.getColumnValuesOfSelectedRecords();
-                }
+            bufferedWriter.append("\n");
 
-                addCsvTableCells(bufferedWriter, rows, columns);
+            Iterable<Map<String, String>> rows;
 
-                bufferedWriter.flush();
-            } catch (IOException e) {
-                throw new IllegalStateException(e.getMessage(), e);
-            } finally {
-                IOUtils.closeQuietly(bufferedWriter);
+            if (grid.getSelectedEntitiesIds().isEmpty()) {
+                rows = grid.getColumnValuesOfAllRecords(L_PAGE_SIZE);
+            } else {
+                rows = grid.getColumnValuesOfSelectedRecords(L_PAGE_SIZE);
             }
 
-            state.redirectTo(fileService.getUrl(file.getAbsolutePath()) + "?clean", true, false);
+            addCsvTableCells(bufferedWriter, rows, columns);
 
-            return crudService.renderView(state);
-        } catch (JSONException e) {
+            bufferedWriter.flush();
+        } catch (IOException e) {
             throw new IllegalStateException(e.getMessage(), e);
+        } finally {
+            IOUtils.closeQuietly(bufferedWriter);
         }
+
+        state.redirectTo(fileService.getUrl(file.getAbsolutePath()) + "?clean", true, false);
+
+        return crudService.renderView(state);
     }
 
     private List<String> getColumns(final GridComponent grid) {
@@ -168,7 +163,7 @@ public class ExportToCsvController {
         return columnNames;
     }
 
-    private void addCsvTableCells(final BufferedWriter bufferedWriter, final List<Map<String, String>> rows,
+    private void addCsvTableCells(final BufferedWriter bufferedWriter, final Iterable<Map<String, String>> rows,
             final List<String> columns) throws IOException {
         for (Map<String, String> row : rows) {
             boolean firstValue = true;
@@ -195,27 +190,4 @@ public class ExportToCsvController {
         }
     }
 
-    private void changeMaxResults(final JSONObject json) throws JSONException {
-        JSONObject component = getComponent(json, getComponentName(json));
-
-        component.getJSONObject("content").put("firstEntity", 0);
-        component.getJSONObject("content").put("maxEntities", Integer.MAX_VALUE);
-    }
-
-    private JSONObject getComponent(final JSONObject json, final String componentName) throws JSONException {
-        String[] path = componentName.split("\\.");
-
-        JSONObject component = json;
-
-        for (String p : path) {
-            component = component.getJSONObject("components").getJSONObject(p);
-        }
-
-        return component;
-    }
-
-    private String getComponentName(final JSONObject body) throws JSONException {
-        return body.getJSONObject("event").getString("component");
-    }
-
 }
@@ -32,7 +32,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -73,6 +72,8 @@ public class ExportToPdfController {
 
     private static final String L_PLUGIN_IDENTIFIER_VARIABLE = "pluginIdentifier";
 
+    private static final int L_PAGE_SIZE = 1000;
+
     private static final String L_CONTROLLER_PATH = "exportToPdf/{" + L_PLUGIN_IDENTIFIER_VARIABLE + "}/{" + L_VIEW_NAME_VARIABLE
             + "}";
 
@@ -103,8 +104,6 @@ public class ExportToPdfController {
     public Object generatePdf(@PathVariable(L_PLUGIN_IDENTIFIER_VARIABLE) final String pluginIdentifier,
             @PathVariable(L_VIEW_NAME_VARIABLE) final String viewName, @RequestBody final JSONObject body, final Locale locale) {
         try {
-            changeMaxResults(body);
-
             ViewDefinitionState state = crudService.invokeEvent(pluginIdentifier, viewName, body, locale);
 
             GridComponent grid = (GridComponent) state.getComponentByReference(L_GRID);
@@ -138,15 +137,15 @@ public class ExportToPdfController {
 
             PdfPTable pdfTable = pdfHelper.createTableWithHeader(columnNames.size(), columnNames, false);
 
-            List<Map<String, String>> rows;
+            Iterable<Map<String, String>> rows;
 
             if (grid.getSelectedEntitiesIds().isEmpty()) {
-                rows = grid.getColumnValuesOfAllRecords();
+                rows = grid.getColumnValuesOfAllRecords(L_PAGE_SIZE);
             } else {
-                rows = grid.getColumnValuesOfSelectedRecords();
+                rows = grid.getColumnValuesOfSelectedRecords(L_PAGE_SIZE);
             }
 
-            addPdfTableCells(pdfTable, rows, columns, viewName);
+            addPdfTableCells(document, pdfTable, rows, columns);
 
             document.add(pdfTable);
             document.close();
@@ -154,8 +153,6 @@ public class ExportToPdfController {
             state.redirectTo(fileService.getUrl(file.getAbsolutePath()) + "?clean", true, false);
 
             return crudService.renderView(state);
-        } catch (JSONException e) {
-            throw new IllegalStateException(e.getMessage(), e);
         } catch (FileNotFoundException e) {
             throw new IllegalStateException(e.getMessage(), e);
         } catch (DocumentException e) {
@@ -181,36 +178,23 @@ public class ExportToPdfController {
         return columnNames;
     }
 
-    private void addPdfTableCells(final PdfPTable pdfTable, final List<Map<String, String>> rows, final List<String> columns,
-            final String viewName) {
-        rows.forEach(row -> {
+    private void addPdfTableCells(final Document document, final PdfPTable pdfTable, final Iterable<Map<String, String>> rows,
+            final List<String> columns) throws DocumentException {
+        pdfTable.setComplete(false);
+
+        int rowsCount = 0;
+
+        for (Map<String, String> row : rows) {
             columns.forEach(column -> {
                 pdfTable.addCell(new Phrase(row.get(column), FontUtils.getDejavuRegular7Dark()));
             });
-        });
-    }
-
-    private void changeMaxResults(final JSONObject json) throws JSONException {
-        JSONObject component = getComponent(json, getComponentName(json));
 
-        component.getJSONObject("content").put("firstEntity", 0);
-        component.getJSONObject("content").put("maxEntities", Integer.MAX_VALUE);
-    }
-
-    private JSONObject getComponent(final JSONObject json, final String componentName) throws JSONException {
-        String[] path = componentName.split("\\.");
-
-        JSONObject component = json;
-
-        for (String p : path) {
-            component = component.getJSONObject("components").getJSONObject(p);
+            if (++rowsCount % L_PAGE_SIZE == 0) {
+                document.add(pdfTable);
+            }
         }
 
-        return component;
-    }
-
-    private String getComponentName(final JSONObject body) throws JSONException {
-        return body.getJSONObject("event").getString("component");
+        pdfTable.setComplete(true);
     }
 
 }
@@ -0,0 +1,117 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.api.jobs;
+
+/**
+ * Snapshot of report job queue metrics.
+ * 
+ * @since 1.4
+ */
+public class ReportJobMetrics {
+
+    private final int poolSize;
+
+    private final int queueCapacity;
+
+    private final int queuedInteractive;
+
+    private final int queuedBatch;
+
+    private final int running;
+
+    private final long completed;
+
+    private final long failed;
+
+    private final long rejected;
+
+    private final long deduplicated;
+
+    private final long averageWaitTime;
+
+    public ReportJobMetrics(final int poolSize, final int queueCapacity, final int queuedInteractive, final int queuedBatch,
+            final int running, final long completed, final long failed, final long rejected, final long deduplicated,
+            final long averageWaitTime) {
+        this.poolSize = poolSize;
+        this.queueCapacity = queueCapacity;
+        this.queuedInteractive = queuedInteractive;
+        this.queuedBatch = queuedBatch;
+        this.running = running;
+        this.completed = completed;
+        this.failed = failed;
+        this.rejected = rejected;
+        this.deduplicated = deduplicated;
+        this.averageWaitTime = averageWaitTime;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getQueuedInteractive() {
+        return queuedInteractive;
+    }
+
+    public int getQueuedBatch() {
+        return queuedBatch;
+    }
+
+    public int getQueued() {
+        return queuedInteractive + queuedBatch;
+    }
+
+    public int getRunning() {
+        return running;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getDeduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * Returns average time between queueing and start of a job, in milliseconds.
+     * 
+     * @return average wait time
+     */
+    public long getAverageWaitTime() {
+        return averageWaitTime;
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.api.jobs;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Service for generating report documents in a bounded pool of background workers.
+ * 
+ * State and progress of each job are persisted in qcadooReport.reportJob entity, so the UI can poll them. Identical requests
+ * (the same plugin, model, entity id, parameters and locale) submitted while a job is pending or in progress share that job.
+ * 
+ * Pool size and queue capacity are configured with {@code reportJobsPoolSize} and {@code reportJobsQueueCapacity}.
+ * 
+ * @since 1.4
+ */
+public interface ReportJobService {
+
+    /**
+     * Queues report job. When the caller runs in a transaction, the job is started after its commit.
+     * 
+     * @param pluginIdentifier
+     *            plugin identifier of the entity the report is generated for
+     * @param modelName
+     *            model name of the entity the report is generated for
+     * @param entityId
+     *            id of the entity the report is generated for
+     * @param parameters
+     *            additional parameters distinguishing report requests, may be null
+     * @param priority
+     *            priority class of the job
+     * @param job
+     *            document generation
+     * @return reportJob entity, already existing one if identical job is pending or in progress
+     * @throws RejectedExecutionException
+     *             if the queue is full
+     */
+    Entity submit(final String pluginIdentifier, final String modelName, final Long entityId, final String parameters,
+            final ReportJobPriority priority, final ReportJob job);
+
+    /**
+     * Returns reportJob entity.
+     * 
+     * @param jobId
+     *            job id
+     * @return reportJob entity or null if not found
+     */
+    Entity getJob(final Long jobId);
+
+    /**
+     * Returns current metrics of the queue and the workers.
+     * 
+     * @return metrics
+     */
+    ReportJobMetrics getMetrics();
+
+}
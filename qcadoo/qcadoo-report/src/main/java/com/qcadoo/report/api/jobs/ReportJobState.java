@@ -0,0 +1,55 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.api.jobs;
+
+/**
+ * State of report job, persisted in reportJob entity.
+ * 
+ * @since 1.4
+ */
+public enum ReportJobState {
+
+    PENDING("pending"), IN_PROGRESS("inProgress"), COMPLETED("completed"), FAILED("failed");
+
+    private final String stringValue;
+
+    private ReportJobState(final String stringValue) {
+        this.stringValue = stringValue;
+    }
+
+    public String getStringValue() {
+        return stringValue;
+    }
+
+    public static ReportJobState parseString(final String stringValue) {
+        for (ReportJobState state : values()) {
+            if (state.getStringValue().equals(stringValue)) {
+                return state;
+            }
+        }
+
+        throw new IllegalArgumentException("Couldn't parse ReportJobState from string '" + stringValue + "'");
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.api.xls;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Named fonts and cell styles of a single workbook.
+ * 
+ * Each font and style is created in the workbook once and then reused by every sheet and cell, which keeps the number of
+ * styles far below the workbook limit regardless of the number of rows.
+ * 
+ * 
+ */
+public class XlsStylesContainer {
+
+    private final Workbook workbook;
+
+    private final Map<String, Font> fonts = Maps.newHashMap();
+
+    private final Map<String, CellStyle> styles = Maps.newHashMap();
+
+    private final Map<String, CellStyle> alignedStyles = Maps.newHashMap();
+
+    public XlsStylesContainer(final Workbook workbook) {
+        checkNotNull(workbook);
+
+        this.workbook = workbook;
+    }
+
+    public Workbook getWorkbook() {
+        return workbook;
+    }
+
+    /**
+     * Creates new font registered under given name.
+     * 
+     * @param name
+     *            font name
+     * @return created font
+     */
+    public Font addFont(final String name) {
+        checkArgument(!fonts.containsKey(name), "Font '%s' already exists", name);
+
+        Font font = workbook.createFont();
+        fonts.put(name, font);
+
+        return font;
+    }
+
+    public Font getFont(final String name) {
+        Font font = fonts.get(name);
+
+        checkArgument(font != null, "Font '%s' does not exist", name);
+
+        return font;
+    }
+
+    public boolean containsFont(final String name) {
+        return fonts.containsKey(name);
+    }
+
+    /**
+     * Creates new cell style registered under given name.
+     * 
+     * @param name
+     *            style name
+     * @return created style
+     */
+    public CellStyle addStyle(final String name) {
+        checkArgument(!styles.containsKey(name), "Style '%s' already exists", name);
+
+        CellStyle style = workbook.createCellStyle();
+        styles.put(name, style);
+
+        return style;
+    }
+
+    public CellStyle getStyle(final String name) {
+        CellStyle style = styles.get(name);
+
+        checkArgument(style != null, "Style '%s' does not exist", name);
+
+        return style;
+    }
+
+    public boolean containsStyle(final String name) {
+        return styles.containsKey(name);
+    }
+
+    /**
+     * Returns copy of named style with given horizontal alignment, the copy is created once per style and alignment.
+     * 
+     * @param name
+     *            style name
+     * @param alignment
+     *            one of CellStyle.ALIGN_* constants
+     * @return aligned style
+     */
+    public CellStyle getStyle(final String name, final short alignment) {
+        CellStyle style = getStyle(name);
+
+        if (style.getAlignment() == alignment) {
+            return style;
+        }
+
+        String key = name + "#" + alignment;
+        CellStyle alignedStyle = alignedStyles.get(key);
+
+        if (alignedStyle == null) {
+            alignedStyle = workbook.createCellStyle();
+            alignedStyle.cloneStyleFrom(style);
+            alignedStyle.setAlignment(alignment);
+            alignedStyles.put(key, alignedStyle);
+        }
+
+        return alignedStyle;
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.api.xls;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+
+import com.google.common.collect.Maps;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Rectangle;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.file.FileService;
+import com.qcadoo.report.api.ReportDocumentService;
+import com.qcadoo.report.api.ReportService;
+
+/**
+ * Service for creating XLSX report documents in streaming mode.
+ * 
+ * Only the last {@code xlsxRowAccessWindowSize} rows of each sheet are kept in memory, older rows are flushed to a temporary
+ * file, so rows can be neither read back nor modified once they leave the window. Styles and fonts should be taken from
+ * {@link #getStylesContainer(Workbook)}, which is shared by all sheets of the document.
+ * 
+ * 
+ */
+public abstract class XlsxDocumentService implements ReportDocumentService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(XlsxDocumentService.class);
+
+    @Autowired
+    private FileService fileService;
+
+    @Value("${xlsxRowAccessWindowSize:100}")
+    private int rowAccessWindowSize;
+
+    private final Map<Workbook, XlsStylesContainer> stylesContainers = Collections.synchronizedMap(Maps
+            .<Workbook, XlsStylesContainer> newIdentityHashMap());
+
+    @Override
+    public final void generateDocument(final Entity entity, final Locale locale) throws IOException {
+        generateDocument(entity, locale, PageSize.A4);
+    }
+
+    @Override
+    public final void generateDocument(final Entity entity, final Locale locale, final Rectangle pageSize) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(getRowAccessWindowSize());
+        workbook.setCompressTempFiles(true);
+        stylesContainers.put(workbook, new XlsStylesContainer(workbook));
+        FileOutputStream outputStream = null;
+        try {
+            Sheet sheet = createSheet(workbook, getReportTitle(locale));
+            addHeader(sheet, locale, entity);
+            addSeries(sheet, entity);
+            addExtraSheets(workbook, entity, locale);
+            outputStream = new FileOutputStream(fileService.createReportFile((String) entity.getField("fileName") + "."
+                    + ReportService.ReportType.XLSX.getExtension()));
+            workbook.write(outputStream);
+        } catch (IOException e) {
+            LOG.error("Problem with generating document - " + e.getMessage());
+            throw e;
+        } finally {
+            if (outputStream != null) {
+                outputStream.close();
+            }
+            stylesContainers.remove(workbook);
+            workbook.dispose();
+        }
+    }
+
+    protected abstract void addHeader(final Sheet sheet, final Locale locale, final Entity entity);
+
+    protected abstract void addSeries(final Sheet sheet, final Entity entity);
+
+    protected void addExtraSheets(final Workbook workbook, final Entity entity, final Locale locale) {
+
+    }
+
+    protected Sheet createSheet(final Workbook workbook, final String title) {
+        Sheet sheet = workbook.createSheet(title);
+        sheet.setZoom(4, 3);
+        return sheet;
+    }
+
+    /**
+     * Returns number of rows kept in memory for each sheet, override to change the window for a particular report.
+     * 
+     * @return row access window size
+     */
+    protected int getRowAccessWindowSize() {
+        return rowAccessWindowSize;
+    }
+
+    /**
+     * Returns styles container shared by all sheets of the document being generated.
+     * 
+     * @param workbook
+     *            workbook of the document being generated
+     * @return styles container
+     */
+    protected final XlsStylesContainer getStylesContainer(final Workbook workbook) {
+        XlsStylesContainer stylesContainer = stylesContainers.get(workbook);
+
+        if (stylesContainer == null) {
+            throw new IllegalStateException("Workbook is not being generated by " + getClass().getSimpleName());
+        }
+
+        return stylesContainer;
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.internal.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.report.api.jobs.ReportJobMetrics;
+import com.qcadoo.report.api.jobs.ReportJobService;
+import com.qcadoo.report.constants.ReportJobFields;
+
+@Controller
+public class ReportJobController {
+
+    @Autowired
+    private ReportJobService reportJobService;
+
+    @ResponseBody
+    @RequestMapping(value = "reportJobs/{jobId}", method = RequestMethod.GET)
+    public Map<String, Object> getReportJob(@PathVariable("jobId") final Long jobId) {
+        Entity reportJob = reportJobService.getJob(jobId);
+
+        Map<String, Object> result = Maps.newHashMap();
+
+        if (reportJob == null) {
+            return result;
+        }
+
+        result.put("id", reportJob.getId());
+        result.put(ReportJobFields.STATE, reportJob.getStringField(ReportJobFields.STATE));
+        result.put(ReportJobFields.PROGRESS, reportJob.getIntegerField(ReportJobFields.PROGRESS));
+        result.put(ReportJobFields.ENTITY_ID, reportJob.getIntegerField(ReportJobFields.ENTITY_ID));
+        result.put(ReportJobFields.ERROR_MESSAGE, reportJob.getStringField(ReportJobFields.ERROR_MESSAGE));
+
+        return result;
+    }
+
+    @ResponseBody
+    @RequestMapping(value = "reportJobs/metrics", method = RequestMethod.GET)
+    public ReportJobMetrics getReportJobMetrics() {
+        return reportJobService.getMetrics();
+    }
+
+}
@@ -0,0 +1,399 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.internal.jobs;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.report.api.jobs.ReportJob;
+import com.qcadoo.report.api.jobs.ReportJobContext;
+import com.qcadoo.report.api.jobs.ReportJobMetrics;
+import com.qcadoo.report.api.jobs.ReportJobPriority;
+import com.qcadoo.report.api.jobs.ReportJobService;
+import com.qcadoo.report.api.jobs.ReportJobState;
+import com.qcadoo.report.constants.QcadooReportConstants;
+import com.qcadoo.report.constants.ReportJobFields;
+import com.qcadoo.security.api.SecurityService;
+
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReportJobServiceImpl.class);
+
+    @Value("${reportJobsPoolSize:2}")
+    private int poolSize;
+
+    @Value("${reportJobsQueueCapacity:50}")
+    private int queueCapacity;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private SecurityService securityService;
+
+    private ThreadPoolExecutor executor;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<String, Long> activeJobs = Maps.newHashMap();
+
+    private int awaitingCommit;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong started = new AtomicLong();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong deduplicated = new AtomicLong();
+
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    @Autowired
+    public void setTransactionManager(@Qualifier("transactionManager") final PlatformTransactionManager transactionManager) {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+                new CustomizableThreadFactory("reportJob-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Entity submit(final String pluginIdentifier, final String modelName, final Long entityId, final String parameters,
+            final ReportJobPriority priority, final ReportJob job) {
+        checkArgument(StringUtils.isNotEmpty(pluginIdentifier), "pluginIdentifier is required");
+        checkArgument(StringUtils.isNotEmpty(modelName), "modelName is required");
+        checkNotNull(entityId, "entityId is required");
+        checkNotNull(priority, "priority is required");
+        checkNotNull(job, "job is required");
+
+        String key = pluginIdentifier + "." + modelName + "#" + entityId + "#" + StringUtils.defaultString(parameters) + "#"
+                + LocaleContextHolder.getLocale();
+
+        synchronized (activeJobs) {
+            Long activeJobId = activeJobs.get(key);
+
+            if (activeJobId != null) {
+                deduplicated.incrementAndGet();
+
+                return getJob(activeJobId);
+            }
+
+            if (executor.getQueue().size() + awaitingCommit >= queueCapacity) {
+                rejected.incrementAndGet();
+
+                LOG.warn(String.format("Report job queue is full (%d jobs), rejecting %s", queueCapacity, key));
+
+                throw new RejectedExecutionException("Report job queue is full");
+            }
+
+            Entity reportJob = getReportJobDD().create();
+
+            reportJob.setField(ReportJobFields.PLUGIN_IDENTIFIER, pluginIdentifier);
+            reportJob.setField(ReportJobFields.MODEL_NAME, modelName);
+            reportJob.setField(ReportJobFields.ENTITY_ID, entityId.intValue());
+            reportJob.setField(ReportJobFields.PARAMETERS, parameters);
+            reportJob.setField(ReportJobFields.PRIORITY, priority.getStringValue());
+            reportJob.setField(ReportJobFields.STATE, ReportJobState.PENDING.getStringValue());
+            reportJob.setField(ReportJobFields.PROGRESS, 0);
+            reportJob.setField(ReportJobFields.USER_NAME, securityService.getCurrentUserName());
+            reportJob.setField(ReportJobFields.QUEUE_DATE, new Date());
+
+            reportJob = getReportJobDD().save(reportJob);
+
+            if (!reportJob.isValid()) {
+                throw new IllegalStateException("Report job for " + key + " couldn't be saved");
+            }
+
+            activeJobs.put(key, reportJob.getId());
+
+            executeAfterCommit(new ReportJobTask(reportJob.getId(), key, priority, job, SecurityContextHolder.getContext()
+                    .getAuthentication()));
+
+            return reportJob;
+        }
+    }
+
+    private void executeAfterCommit(final ReportJobTask task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // jobs waiting for the commit take their places in the queue already, see submit()
+            awaitingCommit++;
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    synchronized (activeJobs) {
+                        awaitingCommit--;
+                    }
+
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        try {
+                            execute(task);
+                        } catch (RuntimeException e) {
+                            // already logged and marked as failed, exceptions thrown from afterCompletion are only logged
+                        }
+                    } else {
+                        release(task.key);
+                    }
+                }
+            });
+        } else {
+            execute(task);
+        }
+    }
+
+    private void execute(final ReportJobTask task) {
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+
+            LOG.error(String.format("Report job %d (%s) couldn't be queued", task.jobId, task.key), e);
+
+            task.markFailed(e);
+
+            release(task.key);
+
+            throw e;
+        }
+    }
+
+    private void release(final String key) {
+        synchronized (activeJobs) {
+            activeJobs.remove(key);
+        }
+    }
+
+    @Override
+    public Entity getJob(final Long jobId) {
+        return getReportJobDD().get(jobId);
+    }
+
+    @Override
+    public ReportJobMetrics getMetrics() {
+        int queuedInteractive = 0;
+        int queuedBatch = 0;
+
+        for (Runnable queuedTask : executor.getQueue()) {
+            if (ReportJobPriority.INTERACTIVE.equals(((ReportJobTask) queuedTask).priority)) {
+                queuedInteractive++;
+            } else {
+                queuedBatch++;
+            }
+        }
+
+        long startedJobs = started.get();
+        long averageWaitTime = (startedJobs == 0) ? 0 : totalWaitTime.get() / startedJobs;
+
+        return new ReportJobMetrics(poolSize, queueCapacity, queuedInteractive, queuedBatch, executor.getActiveCount(),
+                completed.get(), failed.get(), rejected.get(), deduplicated.get(), averageWaitTime);
+    }
+
+    private void updateJob(final Long jobId, final ReportJobState state, final Integer progress, final String errorMessage) {
+        Entity reportJob = getJob(jobId);
+
+        if (reportJob == null) {
+            return;
+        }
+
+        if (state != null) {
+            reportJob.setField(ReportJobFields.STATE, state.getStringValue());
+
+            if (ReportJobState.IN_PROGRESS.equals(state)) {
+                reportJob.setField(ReportJobFields.START_DATE, new Date());
+            } else {
+                reportJob.setField(ReportJobFields.FINISH_DATE, new Date());
+            }
+        }
+        if (progress != null) {
+            reportJob.setField(ReportJobFields.PROGRESS, progress);
+        }
+
+        reportJob.setField(ReportJobFields.ERROR_MESSAGE, errorMessage);
+
+        getReportJobDD().save(reportJob);
+    }
+
+    private DataDefinition getReportJobDD() {
+        return dataDefinitionService.get(QcadooReportConstants.PLUGIN_IDENTIFIER, QcadooReportConstants.MODEL_REPORT_JOB);
+    }
+
+    private final class ReportJobTask implements Runnable, Comparable<ReportJobTask>, ReportJobContext {
+
+        private final Long jobId;
+
+        private final String key;
+
+        private final ReportJobPriority priority;
+
+        private final ReportJob job;
+
+        private final Authentication authentication;
+
+        private final long number = sequence.incrementAndGet();
+
+        private final long queuedAt = System.currentTimeMillis();
+
+        private int progress;
+
+        private ReportJobTask(final Long jobId, final String key, final ReportJobPriority priority, final ReportJob job,
+                final Authentication authentication) {
+            this.jobId = jobId;
+            this.key = key;
+            this.priority = priority;
+            this.job = job;
+            this.authentication = authentication;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.currentTimeMillis();
+
+            started.incrementAndGet();
+            totalWaitTime.addAndGet(startTime - queuedAt);
+
+            SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+            securityContext.setAuthentication(authentication);
+            SecurityContextHolder.setContext(securityContext);
+
+            try {
+                updateJob(jobId, ReportJobState.IN_PROGRESS, 0, null);
+
+                job.generate(this);
+
+                updateJob(jobId, ReportJobState.COMPLETED, 100, null);
+
+                completed.incrementAndGet();
+
+                LOG.info(String.format("Report job %d (%s) completed in %d ms", jobId, key, System.currentTimeMillis() - startTime));
+            } catch (Exception e) {
+                failed.incrementAndGet();
+
+                LOG.error(String.format("Report job %d (%s) failed", jobId, key), e);
+
+                markFailed(e);
+            } finally {
+                release(key);
+
+                SecurityContextHolder.clearContext();
+            }
+        }
+
+        private void markFailed(final Exception cause) {
+            // may be called after completion of the submitting transaction, which doesn't accept changes anymore
+            try {
+                transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+                    @Override
+                    protected void doInTransactionWithoutResult(final TransactionStatus status) {
+                        updateJob(jobId, ReportJobState.FAILED, null, StringUtils.defaultString(cause.getMessage(), cause
+                                .getClass().getName()));
+                    }
+
+                });
+            } catch (RuntimeException e) {
+                LOG.error(String.format("Couldn't mark report job %d as failed", jobId), e);
+            }
+        }
+
+        @Override
+        public Long getJobId() {
+            return jobId;
+        }
+
+        @Override
+        public void setProgress(final int progress) {
+            checkArgument((progress >= 0) && (progress <= 100), "progress should be between 0 and 100");
+
+            if (progress != this.progress) {
+                this.progress = progress;
+
+                updateJob(jobId, null, progress, null);
+            }
+        }
+
+        @Override
+        public int compareTo(final ReportJobTask other) {
+            int result = priority.compareTo(other.priority);
+
+            if (result == 0) {
+                result = Long.compare(number, other.number);
+            }
+
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.api.xls;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class XlsStylesContainerTest {
+
+    private SXSSFWorkbook workbook;
+
+    private XlsStylesContainer stylesContainer;
+
+    @Before
+    public void init() {
+        workbook = new SXSSFWorkbook(10);
+        stylesContainer = new XlsStylesContainer(workbook);
+    }
+
+    @After
+    public void dispose() {
+        workbook.dispose();
+    }
+
+    @Test
+    public void shouldCreateAlignedStyleOncePerAlignment() {
+        // given
+        Font bold = stylesContainer.addFont("bold");
+        bold.setBoldweight(Font.BOLDWEIGHT_BOLD);
+
+        CellStyle regular = stylesContainer.addStyle("regular");
+        regular.setFont(bold);
+
+        int numberOfStyles = workbook.getNumCellStyles();
+
+        // when
+        CellStyle left = stylesContainer.getStyle("regular", CellStyle.ALIGN_LEFT);
+        CellStyle right = stylesContainer.getStyle("regular", CellStyle.ALIGN_RIGHT);
+
+        for (int i = 0; i < 100; i++) {
+            stylesContainer.getStyle("regular", CellStyle.ALIGN_LEFT);
+            stylesContainer.getStyle("regular", CellStyle.ALIGN_RIGHT);
+        }
+
+        // then
+        assertNotSame(left, right);
+        assertEquals(CellStyle.ALIGN_LEFT, left.getAlignment());
+        assertEquals(CellStyle.ALIGN_RIGHT, right.getAlignment());
+        assertEquals(bold.getIndex(), right.getFontIndex());
+        assertEquals(CellStyle.ALIGN_GENERAL, regular.getAlignment());
+        assertEquals(numberOfStyles + 2, workbook.getNumCellStyles());
+        assertSame(bold, stylesContainer.getFont("bold"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionForUnknownStyle() {
+        // when
+        stylesContainer.getStyle("unknown");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrowExceptionForDuplicatedStyle() {
+        // given
+        stylesContainer.addStyle("regular");
+
+        // when
+        stylesContainer.addStyle("regular");
+    }
+
+}
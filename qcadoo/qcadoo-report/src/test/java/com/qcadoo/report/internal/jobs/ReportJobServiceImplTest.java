@@ -0,0 +1,273 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.report.internal.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.report.api.jobs.ReportJob;
+import com.qcadoo.report.api.jobs.ReportJobContext;
+import com.qcadoo.report.api.jobs.ReportJobPriority;
+import com.qcadoo.report.api.jobs.ReportJobState;
+import com.qcadoo.report.constants.QcadooReportConstants;
+import com.qcadoo.report.constants.ReportJobFields;
+import com.qcadoo.security.api.SecurityService;
+
+public class ReportJobServiceImplTest {
+
+    private static final long TIMEOUT = 5000L;
+
+    private ReportJobServiceImpl reportJobService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private SecurityService securityService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private DataDefinition reportJobDD;
+
+    @Mock
+    private Entity reportJob;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        reportJobService = new ReportJobServiceImpl();
+
+        ReflectionTestUtils.setField(reportJobService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(reportJobService, "securityService", securityService);
+        ReflectionTestUtils.setField(reportJobService, "poolSize", 1);
+        ReflectionTestUtils.setField(reportJobService, "queueCapacity", 2);
+
+        given(transactionManager.getTransaction(any(TransactionDefinition.class))).willReturn(new SimpleTransactionStatus());
+        reportJobService.setTransactionManager(transactionManager);
+
+        reportJobService.init();
+
+        given(dataDefinitionService.get(QcadooReportConstants.PLUGIN_IDENTIFIER, QcadooReportConstants.MODEL_REPORT_JOB))
+                .willReturn(reportJobDD);
+        given(reportJobDD.create()).willReturn(reportJob);
+        given(reportJobDD.save(any(Entity.class))).willReturn(reportJob);
+        given(reportJobDD.get(anyLong())).willReturn(reportJob);
+        given(reportJob.isValid()).willReturn(true);
+        given(reportJob.getId()).willReturn(1L, 2L, 3L, 4L);
+    }
+
+    @After
+    public void destroy() {
+        release.countDown();
+
+        reportJobService.destroy();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void shouldShareJobForIdenticalRequest() throws Exception {
+        // given
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE, blockingJob());
+
+        // when
+        Entity duplicatedJob = reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE,
+                blockingJob());
+
+        // then
+        assertSame(reportJob, duplicatedJob);
+        verify(reportJobDD).create();
+        assertEquals(1L, reportJobService.getMetrics().getDeduplicated());
+    }
+
+    @Test
+    public void shouldStartInteractiveJobsBeforeBatchJobs() throws Exception {
+        // given
+        final List<String> executed = Lists.newCopyOnWriteArrayList();
+
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.BATCH, blockingJob());
+        reportJobService.submit("plugin", "model", 2L, null, ReportJobPriority.BATCH, recordingJob(executed, "batch"));
+        reportJobService.submit("plugin", "model", 3L, null, ReportJobPriority.INTERACTIVE,
+                recordingJob(executed, "interactive"));
+
+        assertEquals(1, reportJobService.getMetrics().getQueuedInteractive());
+        assertEquals(1, reportJobService.getMetrics().getQueuedBatch());
+
+        // when
+        release.countDown();
+
+        // then
+        verify(reportJob, timeout(TIMEOUT).times(3)).setField(ReportJobFields.STATE, ReportJobState.COMPLETED.getStringValue());
+        assertEquals(Lists.newArrayList("interactive", "batch"), executed);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shouldRejectJobWhenQueueIsFull() throws Exception {
+        // given
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.BATCH, blockingJob());
+        reportJobService.submit("plugin", "model", 2L, null, ReportJobPriority.BATCH, blockingJob());
+        reportJobService.submit("plugin", "model", 3L, null, ReportJobPriority.BATCH, blockingJob());
+
+        // when
+        try {
+            reportJobService.submit("plugin", "model", 4L, null, ReportJobPriority.BATCH, blockingJob());
+        } finally {
+            assertEquals(1L, reportJobService.getMetrics().getRejected());
+        }
+    }
+
+    @Test
+    public void shouldMarkJobAsFailed() throws Exception {
+        // when
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE, new ReportJob() {
+
+            @Override
+            public void generate(final ReportJobContext context) throws Exception {
+                throw new IllegalStateException("error");
+            }
+        });
+
+        // then
+        verify(reportJob, timeout(TIMEOUT)).setField(ReportJobFields.ERROR_MESSAGE, "error");
+        verify(reportJob).setField(ReportJobFields.STATE, ReportJobState.FAILED.getStringValue());
+        assertEquals(1L, reportJobService.getMetrics().getFailed());
+    }
+
+    @Test
+    public void shouldNotShareJobForRequestInOtherLocale() throws Exception {
+        // given
+        LocaleContextHolder.setLocale(Locale.ENGLISH);
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE, blockingJob());
+
+        // when
+        LocaleContextHolder.setLocale(Locale.GERMAN);
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE, blockingJob());
+
+        // then
+        verify(reportJobDD, times(2)).create();
+        assertEquals(0L, reportJobService.getMetrics().getDeduplicated());
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void shouldCountJobsAwaitingCommitAsQueued() throws Exception {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.BATCH, blockingJob());
+        reportJobService.submit("plugin", "model", 2L, null, ReportJobPriority.BATCH, blockingJob());
+
+        // when
+        try {
+            reportJobService.submit("plugin", "model", 3L, null, ReportJobPriority.BATCH, blockingJob());
+        } finally {
+            assertEquals(1L, reportJobService.getMetrics().getRejected());
+        }
+    }
+
+    @Test
+    public void shouldMarkJobAsFailedIfItCannotBeQueuedAfterCommit() throws Exception {
+        // given
+        TransactionSynchronizationManager.initSynchronization();
+
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE, blockingJob());
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        reportJobService.destroy();
+
+        // when
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+
+        // then
+        verify(reportJob).setField(ReportJobFields.STATE, ReportJobState.FAILED.getStringValue());
+        verify(transactionManager).getTransaction(any(TransactionDefinition.class));
+        assertEquals(1L, reportJobService.getMetrics().getFailed());
+
+        TransactionSynchronizationManager.initSynchronization();
+        reportJobService.submit("plugin", "model", 1L, null, ReportJobPriority.INTERACTIVE, blockingJob());
+        verify(reportJobDD, times(2)).create();
+    }
+
+    private ReportJob blockingJob() {
+        return new ReportJob() {
+
+            @Override
+            public void generate(final ReportJobContext context) throws Exception {
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    private ReportJob recordingJob(final List<String> executed, final String name) {
+        return new ReportJob() {
+
+            @Override
+            public void generate(final ReportJobContext context) throws Exception {
+                executed.add(name);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,173 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.security.internal;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Sets;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.security.constants.GroupFields;
+import com.qcadoo.security.constants.RoleFields;
+import com.qcadoo.security.constants.UserFields;
+
+/**
+ * Keeps the id, name, group and role identifiers of authenticated users in memory, so that resolving the current user does
+ * not query the user, group and role tables on every call.
+ * 
+ * Entries are dropped by the user, group and role model hooks and on each successful authentication. An entry loaded
+ * concurrently with an invalidation is never stored.
+ * 
+ * @since 1.4
+ */
+@Service
+public class PrincipalCache {
+
+    private final ConcurrentMap<String, Principal> principals = new ConcurrentHashMap<String, Principal>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns the generation which has to be passed to {@link #put(String, Principal, long)} for a principal loaded after this call.
+     * 
+     * @return current cache generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public Principal get(final String userName) {
+        return principals.get(userName);
+    }
+
+    /**
+     * Stores principal unless the cache was invalidated since the given generation was read.
+     * 
+     * @param userName
+     *            name the principal was authenticated with
+     * @param principal
+     *            principal to store
+     * @param loadedInGeneration
+     *            generation read before the principal was loaded
+     */
+    public void put(final String userName, final Principal principal, final long loadedInGeneration) {
+        principals.put(userName, principal);
+
+        if (generation.get() != loadedInGeneration) {
+            principals.remove(userName, principal);
+        }
+    }
+
+    public void invalidate(final String userName) {
+        generation.incrementAndGet();
+        principals.remove(userName);
+    }
+
+    /**
+     * Drops all principals now and, when called inside a transaction, once more after it completes, so that a principal
+     * loaded from not yet committed state does not survive.
+     */
+    public void invalidateAll() {
+        clear();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    clear();
+                }
+            });
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        principals.clear();
+    }
+
+    public static final class Principal {
+
+        private final Long id;
+
+        private final String userName;
+
+        private final String groupIdentifier;
+
+        private final Set<String> roleIdentifiers;
+
+        public Principal(final Long id, final String userName, final String groupIdentifier, final Set<String> roleIdentifiers) {
+            this.id = id;
+            this.userName = userName;
+            this.groupIdentifier = groupIdentifier;
+            this.roleIdentifiers = Collections.unmodifiableSet(Sets.newHashSet(roleIdentifiers));
+        }
+
+        public static Principal forUser(final Entity user) {
+            Entity group = user.getBelongsToField(UserFields.GROUP);
+
+            Set<String> roleIdentifiers = Sets.newHashSet();
+            String groupIdentifier = null;
+
+            if (group != null) {
+                groupIdentifier = group.getStringField(GroupFields.IDENTIFIER);
+
+                for (Entity role : group.getManyToManyField(GroupFields.ROLES)) {
+                    roleIdentifiers.add(role.getStringField(RoleFields.IDENTIFIER));
+                }
+            }
+
+            return new Principal(user.getId(), user.getStringField(UserFields.USER_NAME), groupIdentifier, roleIdentifiers);
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public String getGroupIdentifier() {
+            return groupIdentifier;
+        }
+
+        public Set<String> getRoleIdentifiers() {
+            return roleIdentifiers;
+        }
+
+        public boolean hasRole(final String roleIdentifier) {
+            return roleIdentifiers.contains(roleIdentifier);
+        }
+
+    }
+
+}
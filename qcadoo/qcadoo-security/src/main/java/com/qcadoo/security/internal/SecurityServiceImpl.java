@@ -62,6 +62,7 @@ import com.qcadoo.security.constants.PersistentTokenFields;
 import com.qcadoo.security.constants.QcadooSecurityConstants;
 import com.qcadoo.security.constants.RoleFields;
 import com.qcadoo.security.constants.UserFields;
+import com.qcadoo.security.internal.PrincipalCache.Principal;
 import com.qcadoo.security.internal.api.InternalSecurityService;
 import com.qcadoo.security.internal.api.QcadooUser;
 
@@ -79,6 +80,9 @@ public class SecurityServiceImpl implements InternalSecurityService, UserDetails
     @Autowired
     private SecurityRolesService securityRolesService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     @Autowired(required = false)
     private HttpServletRequest request;
 
@@ -87,6 +91,8 @@ public class SecurityServiceImpl implements InternalSecurityService, UserDetails
         if (!(event instanceof AbstractAuthenticationFailureEvent)) {
             UserDetails userDetails = (UserDetails) event.getAuthentication().getPrincipal();
 
+            principalCache.invalidate(userDetails.getUsername());
+
             Entity user = dataDefinitionService
                     .get(QcadooSecurityConstants.PLUGIN_IDENTIFIER, QcadooSecurityConstants.MODEL_USER).find()
                     .add(SearchRestrictions.eq(UserFields.USER_NAME, userDetails.getUsername())).uniqueResult();
@@ -124,13 +130,25 @@ public class SecurityServiceImpl implements InternalSecurityService, UserDetails
             return null;
         }
 
-        String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-        
-        Entity user = getUserEntity(userName);
+        return getPrincipal(SecurityContextHolder.getContext().getAuthentication().getName()).getUserName();
+    }
+
+    private Principal getPrincipal(final String userName) {
+        Principal principal = principalCache.get(userName);
 
-        checkNotNull(user, "Current user with login %s cannot be found", userName);
+        if (principal == null) {
+            long generation = principalCache.getGeneration();
+
+            Entity user = getUserEntity(userName);
+
+            checkNotNull(user, "Current user with login %s cannot be found", userName);
+
+            principal = Principal.forUser(user);
+
+            principalCache.put(userName, principal, generation);
+        }
 
-        return user.getStringField(UserFields.USER_NAME);
+        return principal;
     }
 
     @Override
@@ -157,13 +175,7 @@ public class SecurityServiceImpl implements InternalSecurityService, UserDetails
     @Override
     @Monitorable
     public Long getCurrentUserId() {
-        String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        Entity user = getUserEntity(userName);
-
-        checkNotNull(user, "Current user with login %s cannot be found", userName);
-
-        return user.getId();
+        return getPrincipal(SecurityContextHolder.getContext().getAuthentication().getName()).getId();
     }
 
     @Override
@@ -280,15 +292,7 @@ public class SecurityServiceImpl implements InternalSecurityService, UserDetails
     @Override
     public boolean hasCurrentUserRole(String targetRoleIdentifier) {
         checkNotNull(targetRoleIdentifier, L_TARGET_ROLE_IDENTIFIER_MUST_BE_GIVEN);
-        Entity user = getUserEntity(getCurrentUserName());
-        List<Entity> roles = user.getBelongsToField(UserFields.GROUP).getManyToManyField(GroupFields.ROLES);
-
-        for (Entity role : roles) {
-            if (targetRoleIdentifier.equals(role.getStringField(RoleFields.IDENTIFIER))) {
-                return true;
-            }
-        }
 
-        return false;
+        return getPrincipal(getCurrentUserName()).hasRole(targetRoleIdentifier);
     }
 }
@@ -23,6 +23,7 @@
  */
 package com.qcadoo.security.internal.aop;
 
+import java.util.Collection;
 import java.util.Date;
 
 import org.aspectj.lang.annotation.Aspect;
@@ -43,7 +44,17 @@ public class AuditableAdvice {
 
     @Before("execution(@com.qcadoo.model.api.aop.Auditable * *(..)) &&" + "args(dataDefinition,genericEntity,..)")
     public void auditEntity(final InternalDataDefinition dataDefinition, final Entity genericEntity) {
+        audit(genericEntity);
+    }
+
+    @Before("execution(@com.qcadoo.model.api.aop.Auditable * *(..)) &&" + "args(dataDefinition,genericEntities,..)")
+    public void auditEntities(final InternalDataDefinition dataDefinition, final Collection<?> genericEntities) {
+        for (Object genericEntity : genericEntities) {
+            audit((Entity) genericEntity);
+        }
+    }
 
+    private void audit(final Entity genericEntity) {
         if (genericEntity.getDataDefinition().isAuditable()) {
             if (genericEntity.getId() == null) {
                 genericEntity.setField("createDate", new Date());
@@ -32,6 +32,7 @@ import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.security.constants.UserFields;
+import com.qcadoo.security.internal.PrincipalCache;
 
 @Service
 public class UserModelHooks {
@@ -41,6 +42,9 @@ public class UserModelHooks {
     @Autowired
     private SecurityService securityService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     public boolean preventSelfDeletion(final DataDefinition userDD, final Entity user) {
         if (ObjectUtils.equals(securityService.getCurrentUserId(), user.getId())) {
             user.addGlobalError(SELF_DELETION_ERROR);
@@ -54,6 +58,10 @@ public class UserModelHooks {
         replaceByUserNameIfBlank(user, UserFields.LAST_NAME);
     }
 
+    public void invalidatePrincipalCache(final DataDefinition userDD, final Entity user) {
+        principalCache.invalidateAll();
+    }
+
     private void replaceByUserNameIfBlank(final Entity user, final String fieldName) {
         String fieldValue = user.getStringField(fieldName);
         if (StringUtils.isBlank(fieldValue)) {
@@ -0,0 +1,153 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.security.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.security.constants.GroupFields;
+import com.qcadoo.security.constants.QcadooSecurityConstants;
+import com.qcadoo.security.constants.RoleFields;
+import com.qcadoo.security.constants.UserFields;
+
+public class SecurityServiceImplTest {
+
+    private static final String USER_NAME = "admin";
+
+    private static final Long USER_ID = 1L;
+
+    private SecurityServiceImpl securityService;
+
+    private PrincipalCache principalCache;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private DataDefinition userDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private Entity user, group, role;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        securityService = new SecurityServiceImpl();
+        principalCache = new PrincipalCache();
+
+        ReflectionTestUtils.setField(securityService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(securityService, "principalCache", principalCache);
+
+        given(dataDefinitionService.get(QcadooSecurityConstants.PLUGIN_IDENTIFIER, QcadooSecurityConstants.MODEL_USER))
+                .willReturn(userDD);
+        given(userDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.setMaxResults(anyInt())).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.uniqueResult()).willReturn(user);
+
+        given(user.getId()).willReturn(USER_ID);
+        given(user.getStringField(UserFields.USER_NAME)).willReturn(USER_NAME);
+        given(user.getBelongsToField(UserFields.GROUP)).willReturn(group);
+        given(group.getManyToManyField(GroupFields.ROLES)).willReturn(Lists.newArrayList(role));
+        given(role.getStringField(RoleFields.IDENTIFIER)).willReturn("ROLE_ADMIN");
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(USER_NAME, null));
+    }
+
+    @After
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldResolveCurrentUserOnce() {
+        // when
+        String userName = securityService.getCurrentUserName();
+        Long userId = securityService.getCurrentUserId();
+        boolean hasAdminRole = securityService.hasCurrentUserRole("ROLE_ADMIN");
+        boolean hasOtherRole = securityService.hasCurrentUserRole("ROLE_OTHER");
+
+        // then
+        assertEquals(USER_NAME, userName);
+        assertEquals(USER_ID, userId);
+        assertTrue(hasAdminRole);
+        assertFalse(hasOtherRole);
+        verify(searchCriteriaBuilder, times(1)).uniqueResult();
+    }
+
+    @Test
+    public void shouldResolveCurrentUserAgainAfterInvalidation() {
+        // given
+        securityService.getCurrentUserId();
+
+        // when
+        principalCache.invalidateAll();
+
+        securityService.getCurrentUserId();
+
+        // then
+        verify(searchCriteriaBuilder, times(2)).uniqueResult();
+    }
+
+    @Test
+    public void shouldNotCachePrincipalLoadedBeforeInvalidation() {
+        // given
+        long generation = principalCache.getGeneration();
+
+        principalCache.invalidateAll();
+
+        // when
+        principalCache.put(USER_NAME, PrincipalCache.Principal.forUser(user), generation);
+
+        // then
+        assertNull(principalCache.get(USER_NAME));
+    }
+
+}
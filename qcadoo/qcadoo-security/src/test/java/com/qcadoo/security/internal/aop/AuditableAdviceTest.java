@@ -24,10 +24,20 @@
 package com.qcadoo.security.internal.aop;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
 
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.aop.Auditable;
+import com.qcadoo.model.internal.DefaultEntity;
+import com.qcadoo.model.internal.api.InternalDataDefinition;
+import com.qcadoo.security.api.SecurityService;
 
 public class AuditableAdviceTest {
 
@@ -35,4 +45,29 @@ public class AuditableAdviceTest {
     public final void checkPointcutDefinifions() {
         assertEquals("com.qcadoo.model.api.aop.Auditable", Auditable.class.getCanonicalName());
     }
+
+    @Test
+    public final void shouldAuditEveryEntityOfCollection() {
+        // given
+        SecurityService securityService = mock(SecurityService.class);
+        given(securityService.getCurrentUserName()).willReturn("admin");
+
+        AuditableAdvice auditableAdvice = new AuditableAdvice();
+        setField(auditableAdvice, "securityService", securityService);
+
+        DataDefinition dataDefinition = mock(DataDefinition.class);
+        given(dataDefinition.isAuditable()).willReturn(true);
+
+        Entity newEntity = new DefaultEntity(dataDefinition);
+        Entity existingEntity = new DefaultEntity(dataDefinition, 1L);
+
+        // when
+        auditableAdvice.auditEntities(mock(InternalDataDefinition.class), Lists.newArrayList(newEntity, existingEntity));
+
+        // then
+        assertEquals("admin", newEntity.getStringField("createUser"));
+        assertEquals("admin", newEntity.getStringField("updateUser"));
+        assertNull(existingEntity.getField("createUser"));
+        assertEquals("admin", existingEntity.getStringField("updateUser"));
+    }
 }
@@ -107,6 +107,25 @@ public interface GridComponent extends ComponentState {
      */
     List<Map<String, String>> getColumnValuesOfSelectedRecords();
 
+    /**
+     * Returns column values of the current grid of all records, loading them lazily from database in pages of given size. Unlike
+     * {@link #getColumnValuesOfAllRecords()} it never keeps more than one page in memory, so it should be used for exports.
+     * 
+     * @param pageSize
+     *            number of records loaded at once
+     * @return column values
+     */
+    Iterable<Map<String, String>> getColumnValuesOfAllRecords(final int pageSize);
+
+    /**
+     * Returns column values of the current grid of selected records, loading them lazily from database in pages of given size.
+     * 
+     * @param pageSize
+     *            number of records loaded at once
+     * @return column values
+     */
+    Iterable<Map<String, String>> getColumnValuesOfSelectedRecords(final int pageSize);
+
     /**
      * Adds restriction to this grid
      * 
@@ -28,18 +28,26 @@ import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.view.api.ViewDefinitionState;
 import com.qcadoo.view.api.components.FieldComponent;
 import com.qcadoo.view.api.components.FormComponent;
 
 /**
- * Helper service for automatically generating numbers for entities
+ * Helper service for automatically generating numbers for entities. Numbers are allocated from per model, field, prefix and
+ * suffix sequences (see {@link NumberSequenceAllocator}), existing numbers are scanned only to initialize the sequence.
+ * 
+ * Numbers inserted into forms of new entities are only proposed - they aren't taken from the sequence, so abandoned forms don't
+ * leave gaps. The sequence is advanced past a proposed number when it is found to be used by a saved entity.
  * 
  * @since 0.4.0
  */
@@ -56,6 +64,9 @@ public class NumberGeneratorService {
     @Autowired
     private NumberGeneratorModelHelper numberGeneratorModelHelper;
 
+    @Autowired
+    private NumberSequenceAllocator numberSequenceAllocator;
+
     /**
      * Generates and inserts new number to entity's form
      * 
@@ -76,7 +87,7 @@ public class NumberGeneratorService {
             return;
         }
         FieldComponent number = (FieldComponent) state.getComponentByReference(numberFieldReferenceName);
-        number.setFieldValue(generateNumber(plugin, entityName));
+        number.setFieldValue(proposeNumberWithPrefix(plugin, entityName, DEFAULT_NUM_OF_DIGITS, null));
     }
 
     /**
@@ -155,7 +166,27 @@ public class NumberGeneratorService {
     // TODO MAKU move this responsibility to the qcadoo-model
     public String generateNumberWithPrefix(final String pluginIdentifier, final String modelName, final int numOfDigits,
             final String prefix) {
-        String generatedNumber = generateNumberWithExtension(pluginIdentifier, modelName, numOfDigits, prefix, "", "");
+        String generatedNumber = generateNumberWithExtension(pluginIdentifier, modelName, numOfDigits, prefix, "", "", false);
+        return prependPrefix(prefix, generatedNumber);
+    }
+
+    /**
+     * Proposes new number of entity with specified digits number, e.g. for a form of a new entity. The number isn't taken from
+     * the sequence, so it is proposed again until an entity with that number is saved.
+     * 
+     * @param pluginIdentifier
+     *            plugin identifier of entity
+     * @param modelName
+     *            name of entity
+     * @param numOfDigits
+     *            number of digits of generated number
+     * @param prefix
+     *            number prefix
+     * @return proposed number of entity
+     */
+    public String proposeNumberWithPrefix(final String pluginIdentifier, final String modelName, final int numOfDigits,
+            final String prefix) {
+        String generatedNumber = generateNumberWithExtension(pluginIdentifier, modelName, numOfDigits, prefix, "", "", true);
         return prependPrefix(prefix, generatedNumber);
     }
 
@@ -181,19 +212,103 @@ public class NumberGeneratorService {
      */
     public String generateNumberWithSuffix(final String pluginIdentifier, final String modelName, final int numOfDigits,
                                            final String suffix, final String numberFieldName) {
-        String generatedNumber = generateNumberWithExtension(pluginIdentifier, modelName, numOfDigits, "", suffix, numberFieldName);
+        String generatedNumber = generateNumberWithExtension(pluginIdentifier, modelName, numOfDigits, "", suffix,
+                numberFieldName, false);
         return appendSuffix(suffix, generatedNumber);
     }
 
-    private String generateNumberWithExtension(String pluginIdentifier, String modelName, int numOfDigits, String prefix, String suffix, String numberFieldName) {
+    private String generateNumberWithExtension(String pluginIdentifier, String modelName, int numOfDigits, String prefix,
+            String suffix, String numberFieldName, final boolean onlyPropose) {
+        String fieldName = StringUtils.isEmpty(numberFieldName) ? DEFAULT_NUMBER_FIELD_NAME : numberFieldName;
+
+        if (numberSequenceAllocator.isAvailable()) {
+            try {
+                if (onlyPropose) {
+                    return proposeNumberFromSequence(pluginIdentifier, modelName, numOfDigits, prefix, suffix, fieldName);
+                }
+                return generateNumberFromSequence(pluginIdentifier, modelName, numOfDigits, prefix, suffix, fieldName);
+            } catch (DataAccessException e) {
+                if (numberSequenceAllocator.isAvailable()) {
+                    throw e;
+                }
+            }
+        }
+
+        return formatNumber(getGreatestNumber(pluginIdentifier, modelName, fieldName, prefix, suffix) + 1, numOfDigits);
+    }
+
+    private String generateNumberFromSequence(final String pluginIdentifier, final String modelName, final int numOfDigits,
+            final String prefix, final String suffix, final String fieldName) {
+        String sequenceKey = getSequenceKey(pluginIdentifier, modelName, fieldName, prefix, suffix);
+        Supplier<Long> greatestNumberSupplier = getGreatestNumberSupplier(pluginIdentifier, modelName, fieldName, prefix, suffix);
+
+        while (true) {
+            String generatedNumber = formatNumber(numberSequenceAllocator.allocate(sequenceKey, greatestNumberSupplier),
+                    numOfDigits);
+
+            // skip numbers entered manually by users
+            if (!isNumberUsed(pluginIdentifier, modelName, fieldName, prefix, generatedNumber, suffix)) {
+                return generatedNumber;
+            }
+        }
+    }
+
+    private String proposeNumberFromSequence(final String pluginIdentifier, final String modelName, final int numOfDigits,
+            final String prefix, final String suffix, final String fieldName) {
+        String sequenceKey = getSequenceKey(pluginIdentifier, modelName, fieldName, prefix, suffix);
+        Supplier<Long> greatestNumberSupplier = getGreatestNumberSupplier(pluginIdentifier, modelName, fieldName, prefix, suffix);
+
+        long number = numberSequenceAllocator.peek(sequenceKey, greatestNumberSupplier);
+
+        // a proposed number which was saved, or a number entered manually by users, is used, so it's taken from the sequence
+        while (isNumberUsed(pluginIdentifier, modelName, fieldName, prefix, formatNumber(number, numOfDigits), suffix)) {
+            numberSequenceAllocator.advance(sequenceKey, number);
+            number++;
+        }
+
+        return formatNumber(number, numOfDigits);
+    }
+
+    private String getSequenceKey(final String pluginIdentifier, final String modelName, final String fieldName,
+            final String prefix, final String suffix) {
+        return StringUtils.join(new String[] { pluginIdentifier, modelName, fieldName, StringUtils.defaultString(prefix),
+                StringUtils.defaultString(suffix) }, '.');
+    }
+
+    private Supplier<Long> getGreatestNumberSupplier(final String pluginIdentifier, final String modelName,
+            final String fieldName, final String prefix, final String suffix) {
+        return new Supplier<Long>() {
+
+            @Override
+            public Long get() {
+                return getGreatestNumber(pluginIdentifier, modelName, fieldName, prefix, suffix);
+            }
+
+        };
+    }
+
+    private boolean isNumberUsed(final String pluginIdentifier, final String modelName, final String fieldName,
+            final String prefix, final String number, final String suffix) {
+        String fullNumber = StringUtils.defaultString(prefix) + number + StringUtils.defaultString(suffix);
+        DataDefinition dataDefinition = dataDefinitionService.get(pluginIdentifier, modelName);
+
+        return dataDefinition.count(SearchRestrictions.eq(fieldName, fullNumber)) > 0;
+    }
+
+    private Long getGreatestNumber(final String pluginIdentifier, final String modelName, final String fieldName,
+            final String prefix, final String suffix) {
         Collection<Entity> numberProjections = numberGeneratorModelHelper.getNumbersProjection(pluginIdentifier, modelName,
-                StringUtils.isEmpty(numberFieldName) ? DEFAULT_NUMBER_FIELD_NAME : numberFieldName, prefix, suffix);
+                fieldName, prefix, suffix);
         Collection<Long> numericValues = extractNumericValues(numberProjections);
         Long greatestNumber = 0L;
         if (!numericValues.isEmpty()) {
             greatestNumber = Ordering.natural().max(numericValues);
         }
-        return String.format("%0" + numOfDigits + "d", greatestNumber + 1);
+        return greatestNumber;
+    }
+
+    private String formatNumber(final long number, final int numOfDigits) {
+        return String.format("%0" + numOfDigits + "d", number);
     }
 
     private String appendSuffix(final String suffix, final String generatedNumber) {
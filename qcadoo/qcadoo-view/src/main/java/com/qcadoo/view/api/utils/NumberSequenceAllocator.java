@@ -0,0 +1,341 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.view.api.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Allocates numbers from row-locked counters kept in the qcadooview_numbersequence table. Counters are incremented in separate
+ * transactions, by blocks of numberGeneratorBlockSize numbers kept in memory, so concurrent callers never get the same value and
+ * the counter row is locked only for a moment.
+ * 
+ * Numbers only proposed to users (e.g. in a form of a new entity which may never be saved) should be read with
+ * {@link #peek(String, Supplier)}, which doesn't take the number from the sequence.
+ * 
+ * @since 1.5
+ */
+@Service
+public class NumberSequenceAllocator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NumberSequenceAllocator.class);
+
+    private static final int MAX_SEQUENCE_KEY_LENGTH = 255;
+
+    private static final String L_SEQUENCE_KEY = "sequenceKey";
+
+    private static final String L_VALUE = "value";
+
+    private static final String INCREMENT_QUERY = "UPDATE qcadooview_numbersequence SET lastvalue = lastvalue + :value "
+            + "WHERE sequencekey = :sequenceKey";
+
+    private static final String SELECT_QUERY = "SELECT lastvalue FROM qcadooview_numbersequence WHERE sequencekey = :sequenceKey";
+
+    private static final String ADVANCE_QUERY = "UPDATE qcadooview_numbersequence SET lastvalue = :value "
+            + "WHERE sequencekey = :sequenceKey AND lastvalue < :value";
+
+    private static final String INSERT_QUERY = "INSERT INTO qcadooview_numbersequence (sequencekey, lastvalue) "
+            + "VALUES (:sequenceKey, :value)";
+
+    private static final String TABLE_EXISTS_QUERY = "SELECT count(*) FROM information_schema.tables "
+            + "WHERE table_schema = current_schema() AND table_name = 'qcadooview_numbersequence'";
+
+    private final ConcurrentMap<String, NumberBlock> numberBlocks = new ConcurrentHashMap<String, NumberBlock>();
+
+    @Value("${numberGeneratorBlockSize:1}")
+    private int blockSize;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private volatile boolean available = true;
+
+    private volatile Boolean counterTableExists;
+
+    @Autowired
+    public void setDataSource(final DataSource dataSource) {
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Autowired
+    public void setTransactionManager(@Qualifier("transactionManager") final PlatformTransactionManager transactionManager) {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns false if counters table doesn't exist, in which case numbers have to be generated by scanning existing ones.
+     * 
+     * @return true if sequences can be used
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Allocates next number of given sequence.
+     * 
+     * @param sequenceKey
+     *            key of the sequence, e.g. plugin, model, field name and number prefix
+     * @param initialValueSupplier
+     *            supplies the last used number when sequence is used for the first time
+     * @return next number of the sequence
+     * @throws DataAccessException
+     *             if counter cannot be incremented
+     */
+    public long allocate(final String sequenceKey, final Supplier<Long> initialValueSupplier) {
+        checkArgument(StringUtils.isNotEmpty(sequenceKey), "Sequence key must be given");
+
+        String key = shortenSequenceKey(sequenceKey);
+
+        NumberBlock numberBlock = numberBlocks.get(key);
+
+        if (numberBlock == null) {
+            numberBlocks.putIfAbsent(key, new NumberBlock());
+            numberBlock = numberBlocks.get(key);
+        }
+
+        synchronized (numberBlock) {
+            if (numberBlock.isExhausted()) {
+                long lastValue = reserve(key, initialValueSupplier, getBlockSize());
+
+                numberBlock.reset(lastValue - getBlockSize() + 1, lastValue);
+            }
+
+            return numberBlock.next();
+        }
+    }
+
+    /**
+     * Returns next number of given sequence without taking it, so the same number is returned until it is allocated or the
+     * sequence is advanced past it.
+     * 
+     * @param sequenceKey
+     *            key of the sequence, e.g. plugin, model, field name and number prefix
+     * @param initialValueSupplier
+     *            supplies the last used number when sequence wasn't used yet
+     * @return next number of the sequence
+     * @throws DataAccessException
+     *             if counter cannot be read
+     */
+    public long peek(final String sequenceKey, final Supplier<Long> initialValueSupplier) {
+        checkArgument(StringUtils.isNotEmpty(sequenceKey), "Sequence key must be given");
+
+        final String key = shortenSequenceKey(sequenceKey);
+
+        Long lastValue = executeOnCounters(new TransactionCallback<Long>() {
+
+            @Override
+            public Long doInTransaction(final TransactionStatus status) {
+                return getLastValue(key);
+            }
+
+        });
+
+        if (lastValue == null) {
+            lastValue = initialValueSupplier.get();
+        }
+
+        return lastValue + 1;
+    }
+
+    /**
+     * Advances given sequence to the given number, if it is behind it, e.g. because the number was already used by an entity.
+     * 
+     * @param sequenceKey
+     *            key of the sequence, e.g. plugin, model, field name and number prefix
+     * @param value
+     *            used number
+     * @throws DataAccessException
+     *             if counter cannot be updated
+     */
+    public void advance(final String sequenceKey, final long value) {
+        checkArgument(StringUtils.isNotEmpty(sequenceKey), "Sequence key must be given");
+
+        String key = shortenSequenceKey(sequenceKey);
+
+        try {
+            advanceOrCreate(key, value);
+        } catch (DuplicateKeyException e) {
+            // sequence was created concurrently by other node
+            advanceOrCreate(key, value);
+        }
+    }
+
+    private void advanceOrCreate(final String sequenceKey, final long value) {
+        executeOnCounters(new TransactionCallback<Void>() {
+
+            @Override
+            public Void doInTransaction(final TransactionStatus status) {
+                Map<String, Object> params = ImmutableMap.<String, Object> of(L_SEQUENCE_KEY, sequenceKey, L_VALUE, value);
+
+                if ((jdbcTemplate.update(ADVANCE_QUERY, params) == 0) && (getLastValue(sequenceKey) == null)) {
+                    jdbcTemplate.update(INSERT_QUERY, params);
+                }
+
+                return null;
+            }
+
+        });
+    }
+
+    private Long getLastValue(final String sequenceKey) {
+        List<Long> lastValues = jdbcTemplate.queryForList(SELECT_QUERY,
+                ImmutableMap.<String, Object> of(L_SEQUENCE_KEY, sequenceKey), Long.class);
+
+        if (lastValues.isEmpty()) {
+            return null;
+        }
+
+        return lastValues.get(0);
+    }
+
+    private long reserve(final String sequenceKey, final Supplier<Long> initialValueSupplier, final long size) {
+        try {
+            return incrementOrCreate(sequenceKey, initialValueSupplier, size);
+        } catch (DuplicateKeyException e) {
+            // sequence was created concurrently by other node
+            return incrementOrCreate(sequenceKey, initialValueSupplier, size);
+        }
+    }
+
+    private <T> T executeOnCounters(final TransactionCallback<T> callback) {
+        try {
+            return transactionTemplate.execute(callback);
+        } catch (DuplicateKeyException e) {
+            throw e;
+        } catch (DataAccessException e) {
+            if (counterTableExists()) {
+                throw e;
+            }
+
+            LOG.warn("Table qcadooview_numbersequence doesn't exist, numbers will be generated by scanning existing ones");
+            available = false;
+
+            throw e;
+        }
+    }
+
+    private long incrementOrCreate(final String sequenceKey, final Supplier<Long> initialValueSupplier, final long size) {
+        return executeOnCounters(new TransactionCallback<Long>() {
+
+            @Override
+            public Long doInTransaction(final TransactionStatus status) {
+                Map<String, Object> params = ImmutableMap.<String, Object> of(L_SEQUENCE_KEY, sequenceKey, L_VALUE, size);
+
+                if (jdbcTemplate.update(INCREMENT_QUERY, params) > 0) {
+                    return jdbcTemplate.queryForObject(SELECT_QUERY, params, Long.class);
+                }
+
+                Long lastValue = initialValueSupplier.get() + size;
+                jdbcTemplate.update(INSERT_QUERY, ImmutableMap.<String, Object> of(L_SEQUENCE_KEY, sequenceKey, L_VALUE, lastValue));
+
+                return lastValue;
+            }
+
+        });
+    }
+
+    private boolean counterTableExists() {
+        if (counterTableExists == null) {
+            counterTableExists = transactionTemplate.execute(new TransactionCallback<Boolean>() {
+
+                @Override
+                public Boolean doInTransaction(final TransactionStatus status) {
+                    try {
+                        return jdbcTemplate.queryForObject(TABLE_EXISTS_QUERY, ImmutableMap.<String, Object> of(), Long.class) > 0;
+                    } catch (DataAccessException e) {
+                        status.setRollbackOnly();
+
+                        return false;
+                    }
+                }
+
+            });
+        }
+
+        return counterTableExists;
+    }
+
+    private int getBlockSize() {
+        return Math.max(1, blockSize);
+    }
+
+    private String shortenSequenceKey(final String sequenceKey) {
+        if (sequenceKey.length() <= MAX_SEQUENCE_KEY_LENGTH) {
+            return sequenceKey;
+        }
+        String hash = DigestUtils.md5Hex(sequenceKey);
+        return StringUtils.left(sequenceKey, MAX_SEQUENCE_KEY_LENGTH - hash.length() - 1) + "#" + hash;
+    }
+
+    private static final class NumberBlock {
+
+        private long nextValue = 1;
+
+        private long lastValue = 0;
+
+        boolean isExhausted() {
+            return nextValue > lastValue;
+        }
+
+        void reset(final long firstValue, final long lastValue) {
+            this.nextValue = firstValue;
+            this.lastValue = lastValue;
+        }
+
+        long next() {
+            return nextValue++;
+        }
+
+    }
+
+}
@@ -47,6 +47,7 @@ import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.FieldDefinition;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.types.DataDefinitionHolder;
 import com.qcadoo.model.api.types.EnumeratedType;
 import com.qcadoo.model.api.types.FieldType;
@@ -176,6 +177,10 @@ public class GridComponentPattern extends AbstractComponentPattern {
 
     private boolean suppressSelectEvent = false;
 
+    private SearchCountMode countMode = SearchCountMode.EXACT;
+
+    private Integer countLimit;
+
     public GridComponentPattern(final ComponentDefinition componentDefinition) {
         super(componentDefinition);
         securityRolesService = getApplicationContext().getBean(SecurityRolesService.class);
@@ -616,6 +621,10 @@ public class GridComponentPattern extends AbstractComponentPattern {
                 columnsToSummaryTime = option.getValue();
             } else if ("suppressSelectEvent".equals(option.getType())) {
                 suppressSelectEvent = Boolean.parseBoolean(option.getValue());
+            } else if ("countMode".equals(option.getType())) {
+                countMode = SearchCountMode.parseString(option.getValue());
+            } else if ("countLimit".equals(option.getType())) {
+                countLimit = Integer.parseInt(option.getValue());
             }
         }
         if (defaultOrderColumn == null) {
@@ -786,6 +795,14 @@ public class GridComponentPattern extends AbstractComponentPattern {
         return columnsToSummaryTime;
     }
 
+    public SearchCountMode getCountMode() {
+        return countMode;
+    }
+
+    public Integer getCountLimit() {
+        return countLimit;
+    }
+
     private boolean isLinkAllowed() {
         return Strings.isNullOrEmpty(linkAuthorizationRole) || securityRolesService.canAccess(linkAuthorizationRole);
     }
@@ -23,6 +23,9 @@
  */
 package com.qcadoo.view.internal.components.grid;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +36,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -42,6 +46,7 @@ import com.qcadoo.model.api.EntityOpResult;
 import com.qcadoo.model.api.FieldDefinition;
 import com.qcadoo.model.api.search.CustomRestriction;
 import com.qcadoo.model.api.search.JoinType;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchOrders;
 import com.qcadoo.model.api.search.SearchRestrictions;
@@ -195,6 +200,10 @@ public final class GridComponentState extends AbstractComponentState implements
 
     private boolean autoRefresh = false;
 
+    private final SearchCountMode countMode;
+
+    private final Integer countLimit;
+
     private final GridComponentPattern pattern;
 
     private Set<String> userHiddenColumns = Sets.newHashSet();
@@ -228,6 +237,8 @@ public final class GridComponentState extends AbstractComponentState implements
         this.columnsToSummaryTime = pattern.getColumnsToSummaryTime();
         this.useDto = pattern.isUseDto();
         this.columns = pattern.getColumns();
+        this.countMode = pattern.getCountMode();
+        this.countLimit = pattern.getCountLimit();
 
         registerEvent("refresh", eventPerformer, "refresh");
         registerEvent("select", eventPerformer, "selectEntity");
@@ -880,67 +891,115 @@ public final class GridComponentState extends AbstractComponentState implements
         }
 
         private void reload() {
-            if (belongsToFieldDefinition == null || belongsToEntityId != null) {
-                SearchCriteriaBuilder criteria = getDataDefinition().find();
-
-                if (belongsToFieldDefinition != null && !useDto) {
-                    if (belongsToFieldDefinition.getType() instanceof ManyToManyType) {
-                        String belongsToFieldName = belongsToFieldDefinition.getName();
-                        criteria.createAlias(belongsToFieldName, belongsToFieldName).add(
-                                SearchRestrictions.eq(belongsToFieldName + ".id", belongsToEntityId));
-                    } else {
-                        // criteria.add(SearchRestrictions.belongsTo(belongsToFieldDefinition.getName(), ((DataDefinitionHolder)
-                        // belongsToFieldDefinition.getType()).getDataDefinition(), belongsToEntityId));
-                        criteria.add(SearchRestrictions.eq(belongsToFieldDefinition.getName() + ".id", belongsToEntityId));
-                    }
+            try {
+                SearchCriteriaBuilder criteria = createCriteria();
+
+                if (criteria == null) {
+                    clear();
+
+                    return;
                 }
-                if (useDto) {
-                    criteria.add(SearchRestrictions.eq(buildDtoIdFieldName(belongsToFieldDefinition.getName()),
-                            belongsToEntityId.intValue()));
+
+                addPaging(criteria);
+                applyCriteriaModifier(criteria);
+
+                SearchResult result = criteria.list();
+
+                if (repeatWithFixedFirstResult(result)) {
+                    addPaging(criteria);
+                    result = criteria.list();
                 }
 
-                try {
-                    if (filtersEnabled) {
-                        GridComponentFilterUtils.addFilters(filters, columns, getDataDefinition(), criteria);
-                    }
+                entities = result.getEntities();
+                totalEntities = result.getTotalNumberOfEntities();
+            } catch (GridComponentFilterException gcfe) {
+                addMessage("qcadooView.grid.filter.incorrectValue", MessageType.FAILURE, gcfe.getFilterValue());
+                clear();
+            }
+        }
 
-                    if (multiSearchEnabled) {
-                        GridComponentFilterUtils.addMultiSearchFilter(multiSearchFilter, columns, getDataDefinition(), criteria);
-                    }
+        private List<Entity> loadPage(final ExportMode mode, final int first, final int pageSize) {
+            if (mode == ExportMode.SELECTED && selectedEntities.isEmpty()) {
+                return Lists.newArrayList();
+            }
 
-                    if (customRestriction != null) {
-                        customRestriction.addRestriction(criteria);
-                    }
+            try {
+                SearchCriteriaBuilder criteria = createCriteria();
 
-                    if (activable && onlyActive) {
-                        criteria.add(SearchRestrictions.eq("active", true));
-                    }
-                    if (activable && onlyInactive) {
-                        criteria.add(SearchRestrictions.eq("active", false));
-                    }
+                if (criteria == null) {
+                    return Lists.newArrayList();
+                }
 
-                    addOrder(criteria);
-                    addPaging(criteria);
+                if (mode == ExportMode.SELECTED) {
+                    criteria.add(SearchRestrictions.in("id", selectedEntities));
+                }
 
-                    if (criteriaModifier != null) {
-                        criteriaModifier.modifyCriteria(criteria, criteriaModifierParameter);
-                    }
+                criteria.setFirstResult(first);
+                criteria.setMaxResults(pageSize);
+                criteria.setCountMode(SearchCountMode.NONE);
 
-                    SearchResult result = criteria.list();
+                applyCriteriaModifier(criteria);
 
-                    if (repeatWithFixedFirstResult(result)) {
-                        addPaging(criteria);
-                        result = criteria.list();
-                    }
+                criteria.addOrder(SearchOrders.asc("id"));
 
-                    entities = result.getEntities();
-                    totalEntities = result.getTotalNumberOfEntities();
-                } catch (GridComponentFilterException gcfe) {
-                    addMessage("qcadooView.grid.filter.incorrectValue", MessageType.FAILURE, gcfe.getFilterValue());
-                    clear();
+                return criteria.list().getEntities();
+            } catch (GridComponentFilterException gcfe) {
+                addMessage("qcadooView.grid.filter.incorrectValue", MessageType.FAILURE, gcfe.getFilterValue());
+
+                return Lists.newArrayList();
+            }
+        }
+
+        private SearchCriteriaBuilder createCriteria() throws GridComponentFilterException {
+            if (belongsToFieldDefinition != null && belongsToEntityId == null) {
+                return null;
+            }
+
+            SearchCriteriaBuilder criteria = getDataDefinition().find();
+
+            if (belongsToFieldDefinition != null && !useDto) {
+                if (belongsToFieldDefinition.getType() instanceof ManyToManyType) {
+                    String belongsToFieldName = belongsToFieldDefinition.getName();
+                    criteria.createAlias(belongsToFieldName, belongsToFieldName).add(
+                            SearchRestrictions.eq(belongsToFieldName + ".id", belongsToEntityId));
+                } else {
+                    // criteria.add(SearchRestrictions.belongsTo(belongsToFieldDefinition.getName(), ((DataDefinitionHolder)
+                    // belongsToFieldDefinition.getType()).getDataDefinition(), belongsToEntityId));
+                    criteria.add(SearchRestrictions.eq(belongsToFieldDefinition.getName() + ".id", belongsToEntityId));
                 }
-            } else {
-                clear();
+            }
+            if (useDto) {
+                criteria.add(SearchRestrictions.eq(buildDtoIdFieldName(belongsToFieldDefinition.getName()),
+                        belongsToEntityId.intValue()));
+            }
+
+            if (filtersEnabled) {
+                GridComponentFilterUtils.addFilters(filters, columns, getDataDefinition(), criteria);
+            }
+
+            if (multiSearchEnabled) {
+                GridComponentFilterUtils.addMultiSearchFilter(multiSearchFilter, columns, getDataDefinition(), criteria);
+            }
+
+            if (customRestriction != null) {
+                customRestriction.addRestriction(criteria);
+            }
+
+            if (activable && onlyActive) {
+                criteria.add(SearchRestrictions.eq("active", true));
+            }
+            if (activable && onlyInactive) {
+                criteria.add(SearchRestrictions.eq("active", false));
+            }
+
+            addOrder(criteria);
+
+            return criteria;
+        }
+
+        private void applyCriteriaModifier(final SearchCriteriaBuilder criteria) {
+            if (criteriaModifier != null) {
+                criteriaModifier.modifyCriteria(criteria, criteriaModifierParameter);
             }
         }
 
@@ -952,6 +1011,11 @@ public final class GridComponentState extends AbstractComponentState implements
         private void addPaging(final SearchCriteriaBuilder criteria) {
             criteria.setFirstResult(firstResult);
             criteria.setMaxResults(maxResults);
+            criteria.setCountMode(countMode);
+
+            if (countLimit != null) {
+                criteria.setCountLimit(countLimit);
+            }
         }
 
         private void addOrder(final SearchCriteriaBuilder criteria) {
@@ -1026,6 +1090,29 @@ public final class GridComponentState extends AbstractComponentState implements
         return getColumnValues(ExportMode.SELECTED);
     }
 
+    @Override
+    public Iterable<Map<String, String>> getColumnValuesOfAllRecords(final int pageSize) {
+        return getColumnValues(ExportMode.ALL, pageSize);
+    }
+
+    @Override
+    public Iterable<Map<String, String>> getColumnValuesOfSelectedRecords(final int pageSize) {
+        return getColumnValues(ExportMode.SELECTED, pageSize);
+    }
+
+    private Iterable<Map<String, String>> getColumnValues(final ExportMode mode, final int pageSize) {
+        checkArgument(pageSize > 0, "Page size must be positive");
+
+        return new Iterable<Map<String, String>>() {
+
+            @Override
+            public Iterator<Map<String, String>> iterator() {
+                return new ColumnValuesIterator(mode, pageSize);
+            }
+
+        };
+    }
+
     private List<Map<String, String>> getColumnValues(final ExportMode mode) {
         if (entities == null) {
             eventPerformer.reload();
@@ -1142,4 +1229,41 @@ public final class GridComponentState extends AbstractComponentState implements
     public GridComponentMultiSearchFilter getMultiSearchFilter() {
         return multiSearchFilter;
     }
+
+    private final class ColumnValuesIterator extends AbstractIterator<Map<String, String>> {
+
+        private final ExportMode mode;
+
+        private final int pageSize;
+
+        private int nextFirstResult;
+
+        private boolean lastPage;
+
+        private Iterator<Entity> page = Collections.emptyIterator();
+
+        private ColumnValuesIterator(final ExportMode mode, final int pageSize) {
+            this.mode = mode;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        protected Map<String, String> computeNext() {
+            while (!page.hasNext()) {
+                if (lastPage) {
+                    return endOfData();
+                }
+
+                List<Entity> pageEntities = eventPerformer.loadPage(mode, nextFirstResult, pageSize);
+
+                nextFirstResult += pageSize;
+                lastPage = pageEntities.size() < pageSize;
+                page = pageEntities.iterator();
+            }
+
+            return convertEntityToMap(page.next());
+        }
+
+    }
+
 }
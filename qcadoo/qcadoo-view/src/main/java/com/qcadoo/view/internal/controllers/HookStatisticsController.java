@@ -0,0 +1,79 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.view.internal.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.qcadoo.model.internal.hooks.HookCallStatistics;
+import com.qcadoo.model.internal.hooks.HookProfiler;
+import com.qcadoo.security.api.SecurityService;
+import com.qcadoo.security.constants.QcadooSecurityConstants;
+
+@Controller
+public class HookStatisticsController {
+
+    @Autowired
+    private HookProfiler hookProfiler;
+
+    @Autowired
+    private SecurityService securityService;
+
+    @ResponseBody
+    @RequestMapping(value = "hooks/statistics", method = RequestMethod.GET)
+    public List<HookCallStatistics> getHookStatistics() {
+        checkSuperAdmin();
+        return hookProfiler.getStatistics();
+    }
+
+    @ResponseBody
+    @RequestMapping(value = "hooks/profiling", method = RequestMethod.POST)
+    public boolean setHookProfilingEnabled(@RequestParam("enabled") final boolean enabled) {
+        checkSuperAdmin();
+        hookProfiler.setEnabled(enabled);
+        return hookProfiler.isEnabled();
+    }
+
+    @ResponseBody
+    @RequestMapping(value = "hooks/statistics/reset", method = RequestMethod.POST)
+    public boolean resetHookStatistics() {
+        checkSuperAdmin();
+        hookProfiler.reset();
+        return true;
+    }
+
+    private void checkSuperAdmin() {
+        if (!securityService.hasCurrentUserRole(QcadooSecurityConstants.ROLE_SUPERADMIN)) {
+            throw new AccessDeniedException("Hook statistics are available only for super admins");
+        }
+    }
+
+}
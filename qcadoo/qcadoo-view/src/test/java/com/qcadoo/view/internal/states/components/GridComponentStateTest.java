@@ -32,6 +32,7 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.util.ReflectionTestUtils.getField;
 import static org.springframework.test.util.ReflectionTestUtils.setField;
@@ -51,10 +52,12 @@ import org.mockito.Mockito;
 import org.springframework.context.ApplicationContext;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.FieldDefinition;
+import com.qcadoo.model.api.search.SearchCountMode;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.model.api.types.FieldType;
@@ -270,6 +273,28 @@ public class GridComponentStateTest extends AbstractStateTest {
         grid.performEvent(viewDefinitionState, "refresh", new String[0]);
     }
 
+    @Test
+    public void shouldLoadColumnValuesOfAllRecordsInPages() throws Exception {
+        // given
+        SearchResult firstPage = mock(SearchResult.class);
+        given(firstPage.getEntities()).willReturn(Lists.newArrayList(entity, entity));
+        SearchResult secondPage = mock(SearchResult.class);
+        given(secondPage.getEntities()).willReturn(Lists.newArrayList(entity));
+        given(substituteCriteria.list()).willReturn(firstPage, secondPage);
+        grid.initialize(json, Locale.ENGLISH);
+
+        // when
+        List<Map<String, String>> values = Lists.newArrayList(grid.getColumnValuesOfAllRecords(2));
+
+        // then
+        assertEquals(3, values.size());
+        verify(substituteCriteria).setFirstResult(0);
+        verify(substituteCriteria).setFirstResult(2);
+        verify(substituteCriteria, times(2)).setMaxResults(2);
+        verify(substituteCriteria, times(2)).setCountMode(SearchCountMode.NONE);
+        verify(substituteCriteria, times(2)).list();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void shouldNotModeUpSelectedEntityOnFail() throws Exception {
         // given
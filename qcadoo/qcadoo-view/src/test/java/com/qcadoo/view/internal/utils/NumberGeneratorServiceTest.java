@@ -25,23 +25,36 @@ package com.qcadoo.view.internal.utils;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.view.api.utils.NumberGeneratorModelHelper;
 import com.qcadoo.view.api.utils.NumberGeneratorService;
+import com.qcadoo.view.api.utils.NumberSequenceAllocator;
 import junit.framework.Assert;
 
 public class NumberGeneratorServiceTest {
@@ -55,12 +68,31 @@ public class NumberGeneratorServiceTest {
     @Mock
     private NumberGeneratorModelHelper numberGeneratorModelHelper;
 
+    @Mock
+    private NumberSequenceAllocator numberSequenceAllocator;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private DataDefinition dataDefinition;
+
     @Before
     public final void init() {
         MockitoAnnotations.initMocks(this);
 
         numberGeneratorService = new NumberGeneratorService();
         ReflectionTestUtils.setField(numberGeneratorService, "numberGeneratorModelHelper", numberGeneratorModelHelper);
+        ReflectionTestUtils.setField(numberGeneratorService, "numberSequenceAllocator", numberSequenceAllocator);
+        ReflectionTestUtils.setField(numberGeneratorService, "dataDefinitionService", dataDefinitionService);
+
+        given(dataDefinitionService.get(PLUGIN_IDENTIFIER, MODEL_NAME)).willReturn(dataDefinition);
+    }
+
+    private void stubSequence(final Long... values) {
+        given(numberSequenceAllocator.isAvailable()).willReturn(true);
+        given(numberSequenceAllocator.allocate(anyString(), Mockito.<Supplier<Long>> any())).willReturn(values[0],
+                Arrays.copyOfRange(values, 1, values.length));
     }
 
     private void stubExistingNumbers(final Iterable<String> numbers) {
@@ -219,4 +251,102 @@ public class NumberGeneratorServiceTest {
         Assert.assertEquals("QCD-1-000003", generated);
     }
 
+    @Test
+    public final void shouldAllocateNumberFromSequence() {
+        // given
+        stubSequence(7L);
+
+        // when
+        String generated = performGenerate("QCD-1-");
+
+        // then
+        Assert.assertEquals("QCD-1-000007", generated);
+        verify(numberSequenceAllocator).allocate(eq("somePlugin.model.number.QCD-1-."), Mockito.<Supplier<Long>> any());
+        verify(numberGeneratorModelHelper, never()).getNumbersProjection(anyString(), anyString(), anyString(), anyString(),
+                anyString());
+    }
+
+    @Test
+    public final void shouldSkipAllocatedNumbersWhichAreAlreadyUsed() {
+        // given
+        stubSequence(7L, 8L);
+        given(dataDefinition.count(any(SearchCriterion.class))).willReturn(1L, 0L);
+
+        // when
+        String generated = performGenerate();
+
+        // then
+        Assert.assertEquals("000008", generated);
+    }
+
+    @Test
+    public final void shouldInitializeSequenceWithGreatestExistingNumber() {
+        // given
+        stubExistingNumbers(Lists.newArrayList("0002", "1", "000001"));
+        given(numberSequenceAllocator.isAvailable()).willReturn(true);
+        given(numberSequenceAllocator.allocate(anyString(), Mockito.<Supplier<Long>> any())).willAnswer(new Answer<Long>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Long answer(final InvocationOnMock invocation) throws Throwable {
+                return ((Supplier<Long>) invocation.getArguments()[1]).get() + 1;
+            }
+        });
+
+        // when
+        String generated = performGenerate();
+
+        // then
+        Assert.assertEquals("000003", generated);
+    }
+
+    @Test
+    public final void shouldScanExistingNumbersIfSequencesAreNotAvailable() {
+        // given
+        stubExistingNumbers(Lists.newArrayList("0002", "1", "000001"));
+        given(numberSequenceAllocator.isAvailable()).willReturn(true, false);
+        given(numberSequenceAllocator.allocate(anyString(), Mockito.<Supplier<Long>> any())).willThrow(
+                new BadSqlGrammarException("allocate", "UPDATE qcadooview_numbersequence", new SQLException()));
+
+        // when
+        String generated = performGenerate();
+
+        // then
+        Assert.assertEquals("000003", generated);
+    }
+
+    @Test
+    public final void shouldProposeNumberWithoutTakingItFromSequence() {
+        // given
+        given(numberSequenceAllocator.isAvailable()).willReturn(true);
+        given(numberSequenceAllocator.peek(anyString(), Mockito.<Supplier<Long>> any())).willReturn(7L);
+
+        // when
+        String proposed = numberGeneratorService.proposeNumberWithPrefix(PLUGIN_IDENTIFIER, MODEL_NAME,
+                NumberGeneratorService.DEFAULT_NUM_OF_DIGITS, "QCD-1-");
+
+        // then
+        Assert.assertEquals("QCD-1-000007", proposed);
+        verify(numberSequenceAllocator, never()).allocate(anyString(), Mockito.<Supplier<Long>> any());
+        verify(numberSequenceAllocator, never()).advance(anyString(), Mockito.anyLong());
+    }
+
+    @Test
+    public final void shouldAdvanceSequencePastProposedNumbersWhichAreUsed() {
+        // given
+        given(numberSequenceAllocator.isAvailable()).willReturn(true);
+        given(numberSequenceAllocator.peek(anyString(), Mockito.<Supplier<Long>> any())).willReturn(7L);
+        given(dataDefinition.count(any(SearchCriterion.class))).willReturn(1L, 1L, 0L);
+
+        // when
+        String proposed = numberGeneratorService.proposeNumberWithPrefix(PLUGIN_IDENTIFIER, MODEL_NAME,
+                NumberGeneratorService.DEFAULT_NUM_OF_DIGITS, null);
+
+        // then
+        Assert.assertEquals("000009", proposed);
+        verify(numberSequenceAllocator).advance("somePlugin.model.number..", 7L);
+        verify(numberSequenceAllocator).advance("somePlugin.model.number..", 8L);
+        verify(numberSequenceAllocator, never()).allocate(anyString(), Mockito.<Supplier<Long>> any());
+    }
+
 }
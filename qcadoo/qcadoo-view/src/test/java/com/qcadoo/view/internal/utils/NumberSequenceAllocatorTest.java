@@ -0,0 +1,265 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.view.internal.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.qcadoo.view.api.utils.NumberSequenceAllocator;
+
+public class NumberSequenceAllocatorTest {
+
+    private static final String SEQUENCE_KEY = "somePlugin.model.number..";
+
+    private static final Supplier<Long> GREATEST_NUMBER = Suppliers.ofInstance(41L);
+
+    private NumberSequenceAllocator numberSequenceAllocator;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        given(transactionManager.getTransaction(any(TransactionDefinition.class))).willReturn(new SimpleTransactionStatus());
+
+        numberSequenceAllocator = new NumberSequenceAllocator();
+        numberSequenceAllocator.setTransactionManager(transactionManager);
+        ReflectionTestUtils.setField(numberSequenceAllocator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(numberSequenceAllocator, "blockSize", 10);
+    }
+
+    private Map<String, Object> params(final long value) {
+        return ImmutableMap.<String, Object> of("sequenceKey", SEQUENCE_KEY, "value", value);
+    }
+
+    @Test
+    public final void shouldCreateSequenceStartingAfterGreatestNumber() {
+        // given
+        given(jdbcTemplate.update(anyString(), eq(params(10)))).willReturn(0);
+
+        // when
+        long first = numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+        long second = numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+
+        // then
+        assertEquals(42L, first);
+        assertEquals(43L, second);
+        verify(jdbcTemplate).update(eq("INSERT INTO qcadooview_numbersequence (sequencekey, lastvalue) "
+                + "VALUES (:sequenceKey, :value)"), eq(params(51)));
+    }
+
+    @Test
+    public final void shouldReserveNextBlockOnlyWhenCurrentOneIsExhausted() {
+        // given
+        given(jdbcTemplate.update(anyString(), eq(params(10)))).willReturn(1);
+        given(jdbcTemplate.queryForObject(anyString(), eq(params(10)), eq(Long.class))).willReturn(110L, 120L);
+
+        // when
+        long first = 0;
+        long last = 0;
+        for (int i = 0; i < 11; i++) {
+            last = numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+            if (i == 0) {
+                first = last;
+            }
+        }
+
+        // then
+        assertEquals(101L, first);
+        assertEquals(111L, last);
+        verify(jdbcTemplate, times(2)).update(anyString(), eq(params(10)));
+        verify(jdbcTemplate, never()).update(anyString(), eq(params(51)));
+    }
+
+    @Test
+    public final void shouldIncrementSequenceCreatedConcurrently() {
+        // given
+        given(jdbcTemplate.update(anyString(), eq(params(10)))).willReturn(0, 1);
+        given(jdbcTemplate.update(anyString(), eq(params(51)))).willThrow(new DuplicateKeyException("duplicate"));
+        given(jdbcTemplate.queryForObject(anyString(), eq(params(10)), eq(Long.class))).willReturn(60L);
+
+        // when
+        long allocated = numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+
+        // then
+        assertEquals(51L, allocated);
+        assertTrue(numberSequenceAllocator.isAvailable());
+    }
+
+    @Test
+    public final void shouldBecomeUnavailableIfCountersTableDoesNotExist() {
+        // given
+        BadSqlGrammarException exception = new BadSqlGrammarException("allocate", "UPDATE qcadooview_numbersequence",
+                new SQLException());
+        given(jdbcTemplate.update(anyString(), anyMapOf(String.class, Object.class))).willThrow(exception);
+        given(jdbcTemplate.queryForObject(anyString(), anyMapOf(String.class, Object.class), eq(Long.class))).willThrow(
+                exception);
+
+        // when
+        try {
+            numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+        } catch (BadSqlGrammarException e) {
+            // expected
+        }
+
+        // then
+        assertFalse(numberSequenceAllocator.isAvailable());
+    }
+
+    @Test
+    public final void shouldCheckCountersTableOnlyOnce() {
+        // given
+        BadSqlGrammarException exception = new BadSqlGrammarException("allocate", "UPDATE qcadooview_numbersequence",
+                new SQLException());
+        given(jdbcTemplate.update(anyString(), anyMapOf(String.class, Object.class))).willThrow(exception);
+        given(jdbcTemplate.queryForObject(anyString(), eq(ImmutableMap.<String, Object> of()), eq(Long.class))).willReturn(1L);
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            try {
+                numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+            } catch (BadSqlGrammarException e) {
+                // expected
+            }
+        }
+
+        // then
+        assertTrue(numberSequenceAllocator.isAvailable());
+        verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(ImmutableMap.<String, Object> of()), eq(Long.class));
+        verify(transactionManager, times(3)).getTransaction(any(TransactionDefinition.class));
+    }
+
+    @Test
+    public final void shouldPeekNextNumberWithoutIncrementingSequence() {
+        // given
+        given(jdbcTemplate.queryForList(anyString(), eq(ImmutableMap.<String, Object> of("sequenceKey", SEQUENCE_KEY)),
+                eq(Long.class))).willReturn(Collections.singletonList(110L));
+
+        // when
+        long first = numberSequenceAllocator.peek(SEQUENCE_KEY, GREATEST_NUMBER);
+        long second = numberSequenceAllocator.peek(SEQUENCE_KEY, GREATEST_NUMBER);
+
+        // then
+        assertEquals(111L, first);
+        assertEquals(111L, second);
+        verify(jdbcTemplate, never()).update(anyString(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public final void shouldPeekNumberAfterGreatestNumberIfSequenceDoesNotExist() {
+        // given
+        given(jdbcTemplate.queryForList(anyString(), anyMapOf(String.class, Object.class), eq(Long.class))).willReturn(
+                Collections.<Long> emptyList());
+
+        // when
+        long peeked = numberSequenceAllocator.peek(SEQUENCE_KEY, GREATEST_NUMBER);
+
+        // then
+        assertEquals(42L, peeked);
+        verify(jdbcTemplate, never()).update(anyString(), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public final void shouldAdvanceSequenceOnlyForward() {
+        // given
+        given(jdbcTemplate.update(contains("lastvalue < :value"), eq(params(42)))).willReturn(0);
+        given(jdbcTemplate.queryForList(anyString(), anyMapOf(String.class, Object.class), eq(Long.class))).willReturn(
+                Collections.singletonList(110L));
+
+        // when
+        numberSequenceAllocator.advance(SEQUENCE_KEY, 42L);
+
+        // then
+        verify(jdbcTemplate, never()).update(contains("INSERT"), anyMapOf(String.class, Object.class));
+    }
+
+    @Test
+    public final void shouldCreateSequenceWhenAdvancingNotExistingOne() {
+        // given
+        given(jdbcTemplate.update(contains("lastvalue < :value"), eq(params(42)))).willReturn(0);
+        given(jdbcTemplate.queryForList(anyString(), anyMapOf(String.class, Object.class), eq(Long.class))).willReturn(
+                Collections.<Long> emptyList());
+
+        // when
+        numberSequenceAllocator.advance(SEQUENCE_KEY, 42L);
+
+        // then
+        verify(jdbcTemplate).update(contains("INSERT"), eq(params(42)));
+    }
+
+    @Test
+    public final void shouldLookForCountersTableInCurrentSchemaOnly() {
+        // given
+        BadSqlGrammarException exception = new BadSqlGrammarException("allocate", "UPDATE qcadooview_numbersequence",
+                new SQLException());
+        given(jdbcTemplate.update(anyString(), anyMapOf(String.class, Object.class))).willThrow(exception);
+        given(jdbcTemplate.queryForObject(anyString(), eq(ImmutableMap.<String, Object> of()), eq(Long.class))).willReturn(0L);
+
+        // when
+        try {
+            numberSequenceAllocator.allocate(SEQUENCE_KEY, GREATEST_NUMBER);
+        } catch (BadSqlGrammarException e) {
+            // expected
+        }
+
+        // then
+        verify(jdbcTemplate).queryForObject(contains("table_schema = current_schema()"), eq(ImmutableMap.<String, Object> of()),
+                eq(Long.class));
+    }
+
+}